@@ -23,7 +23,6 @@ import static com.eucalyptus.autoscaling.activities.BackoffRunner.TaskWithBackOf
 import static com.eucalyptus.autoscaling.activities.ZoneUnavailabilityMarkers.ZoneCallback;
 import static com.eucalyptus.autoscaling.common.AutoScalingMetadata.AutoScalingGroupMetadata;
 import static com.eucalyptus.autoscaling.instances.AutoScalingInstances.availabilityZone;
-import static com.eucalyptus.autoscaling.instances.AutoScalingInstances.instanceId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -219,6 +218,7 @@ public class ActivityManager {
       .add( state( LifecycleState.InService, ConfigurationState.Instantiated, addToLoadBalancer() )  )
       .build();
   private final AtomicLong selectorCounter = new AtomicLong( );
+  private volatile GroupInstanceSnapshot cycleInstanceSnapshot;
   private final List<ScalingTask> scalingTasks = ImmutableList.<ScalingTask>builder()
       .add( new ScalingTask(   10, ActivityTask.Next              ) { @Override void doWork( ) throws Exception { nextSelectors( ); } } )
       .add( new ScalingTask(   30, ActivityTask.Timeout           ) { @Override void doWork( ) throws Exception { timeoutScalingActivities( ); } } )
@@ -287,12 +287,17 @@ public class ActivityManager {
   }
 
   public void doScaling() {
-    for ( final ScalingTask scalingTask : scalingTasks ) {
-      try {
-        scalingTask.perhapsWork( );
-      } catch ( Exception e ) {
-        logger.error( e, e );
+    cycleInstanceSnapshot = null;
+    try {
+      for ( final ScalingTask scalingTask : scalingTasks ) {
+        try {
+          scalingTask.perhapsWork( );
+        } catch ( Exception e ) {
+          logger.error( e, e );
+        }
       }
+    } finally {
+      cycleInstanceSnapshot = null;
     }
   }
 
@@ -425,8 +430,11 @@ public class ActivityManager {
     try {
       for ( final AutoScalingGroupCoreView group : autoScalingGroups.listRequiringMonitoring( selectors( ), TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupCoreView.class ) ) ) {
         autoScalingAccounts.put( group.getOwnerAccountNumber(), group );
-        final List<String> groupInstancesPending = autoScalingInstances.listByGroup( group, LifecycleState.Pending, instanceId() );
-        final List<String> groupInstancesInService = autoScalingInstances.listByGroup( group, LifecycleState.InService, instanceId() );
+        final GroupInstanceSnapshot snapshot = instanceSnapshot( );
+        final List<String> groupInstancesPending = Lists.newArrayList( Iterables.transform(
+            snapshot.listByGroup( group, LifecycleState.Pending.forView( ) ), RestrictedTypes.toDisplayName( ) ) );
+        final List<String> groupInstancesInService = Lists.newArrayList( Iterables.transform(
+            snapshot.listByGroup( group, LifecycleState.InService.forView( ) ), RestrictedTypes.toDisplayName( ) ) );
         if ( !groupInstancesPending.isEmpty() || !groupInstancesInService.isEmpty() ) {
           runTask( new MonitoringScalingProcessTask( group, groupInstancesPending, groupInstancesInService ) );
         }
@@ -472,7 +480,7 @@ public class ActivityManager {
         if ( !group.getEnabledMetrics().isEmpty() ) {
           final List<AutoScalingInstanceCoreView> groupInstances = Sets.intersection( group.getEnabledMetrics(), instanceMetrics ).isEmpty() ?
               Collections.<AutoScalingInstanceCoreView>emptyList() :
-              autoScalingInstances.listByGroup( group, Predicates.alwaysTrue(), TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+              instanceSnapshot( ).listByGroup( group, Predicates.alwaysTrue() );
           runTask( new MetricsSubmissionScalingProcessTask(
               group,
               groupInstances ) );
@@ -488,7 +496,7 @@ public class ActivityManager {
    */
   private void replaceUnhealthy() throws AutoScalingMetadataException {
     for ( final AutoScalingGroupScalingView group : autoScalingGroups.listRequiringInstanceReplacement( TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupScalingView.class ) ) ) {
-      runTask( perhapsReplaceInstances( group ) ) ;
+      runCycleTask( perhapsReplaceInstances( group ) ) ;
     }
   }
 
@@ -497,7 +505,7 @@ public class ActivityManager {
    */
   private void scalingActivities() throws AutoScalingMetadataException {
     for ( final AutoScalingGroupScalingView group : autoScalingGroups.listRequiringScaling( TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupScalingView.class ) ) ) {
-      runTask( perhapsScale( group ) );
+      runCycleTask( perhapsScale( group ) );
     }
   }
 
@@ -515,7 +523,7 @@ public class ActivityManager {
         for ( final String groupArn : groupArns ) {
           final Iterable<AutoScalingInstanceGroupView> groupInstances =
               Iterables.filter( instanceInState, CollectionUtils.propertyPredicate( groupArn, AutoScalingInstances.groupArn() ) );
-          runTask( state.getStateProgressFunction().apply( groupInstances ) );
+          runCycleTask( state.getStateProgressFunction().apply( groupInstances ) );
         }
       } catch ( Exception e ) {
         logger.error( e, e );
@@ -610,6 +618,35 @@ public class ActivityManager {
     }
   }
 
+  /**
+   * Instances for the current scaling cycle, loaded on first use.
+   */
+  private GroupInstanceSnapshot instanceSnapshot( ) throws AutoScalingMetadataException {
+    GroupInstanceSnapshot snapshot = cycleInstanceSnapshot;
+    if ( snapshot == null ) {
+      final long start = System.currentTimeMillis( );
+      snapshot = cycleInstanceSnapshot = GroupInstanceSnapshot.load( autoScalingInstances );
+      if ( logger.isTraceEnabled( ) ) {
+        logger.trace( "Loaded " + snapshot.size( ) + " instance(s) for scaling cycle in " +
+            ( System.currentTimeMillis( ) - start ) + "ms" );
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Run a task that may launch, terminate or transition instances.
+   *
+   * Instances for the tasks group are no longer read from the cycle snapshot.
+   */
+  private void runCycleTask( final ScalingProcessTask<?,?> task ) {
+    final GroupInstanceSnapshot snapshot = cycleInstanceSnapshot;
+    if ( snapshot != null ) {
+      snapshot.invalidate( task.getGroup( ) );
+    }
+    runTask( task );
+  }
+
   private boolean scalingProcessEnabled( final ScalingProcessType type, final AutoScalingGroupCoreView group ) {
     return !AutoScalingConfiguration.getSuspendedProcesses().contains( type ) && type.forView().apply( group );
   }
@@ -666,7 +703,7 @@ public class ActivityManager {
     int currentCapacity = 0;
     try {
       final List<AutoScalingInstanceCoreView> currentInstances =
-          autoScalingInstances.listByGroup( group, Predicates.alwaysTrue(), TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+          instanceSnapshot( ).listByGroup( group, Predicates.alwaysTrue() );
       currentCapacity = currentInstances.size();
       if ( currentInstances.size() == terminateCount ) {
         Iterables.addAll(
@@ -733,7 +770,7 @@ public class ActivityManager {
     boolean anyRegisteredInstances = false;
     if ( scalingProcessEnabled( ScalingProcessType.ReplaceUnhealthy, group ) ) try {
       final List<AutoScalingInstanceCoreView> currentInstances =
-          autoScalingInstances.listUnhealthyByGroup( group, TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+          instanceSnapshot( ).listByGroup( group, HealthStatus.Unhealthy.forView( ) );
       Iterables.addAll(
             instancesToTerminate,
             Iterables.limit(
@@ -759,7 +796,7 @@ public class ActivityManager {
   private ScalingProcessTask<?,?> perhapsScale( final AutoScalingGroupScalingView group ) {
     final List<AutoScalingInstanceCoreView> currentInstances;
     try {
-      currentInstances = autoScalingInstances.listByGroup( group, Predicates.alwaysTrue(), TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+      currentInstances = instanceSnapshot( ).listByGroup( group, Predicates.alwaysTrue() );
     } catch ( final Exception e ) {
       logger.error( e, e );
       return new LaunchInstancesScalingProcessTask( group, 0, "" );
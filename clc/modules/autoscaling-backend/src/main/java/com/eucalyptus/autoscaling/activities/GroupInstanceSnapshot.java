@@ -0,0 +1,101 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.autoscaling.activities;
+
+import static com.eucalyptus.autoscaling.common.AutoScalingMetadata.AutoScalingGroupMetadata;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import com.eucalyptus.autoscaling.metadata.AutoScalingMetadataException;
+import com.eucalyptus.autoscaling.instances.AutoScalingInstance;
+import com.eucalyptus.autoscaling.instances.AutoScalingInstanceCoreView;
+import com.eucalyptus.autoscaling.instances.AutoScalingInstances;
+import com.eucalyptus.util.TypeMappers;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+
+/**
+ * Point in time index of auto scaling instances by group.
+ *
+ * A snapshot is loaded with a single query and shared by the periodic
+ * scaling work for a cycle. Groups with work submitted during the cycle
+ * are invalidated so that later tasks see their current instances.
+ */
+class GroupInstanceSnapshot {
+
+  private final AutoScalingInstances autoScalingInstances;
+  private final ImmutableListMultimap<String,AutoScalingInstanceCoreView> instancesByGroup;
+  private final Set<String> invalidatedGroups = Collections.newSetFromMap( Maps.<String,Boolean>newConcurrentMap( ) );
+
+  private GroupInstanceSnapshot( final AutoScalingInstances autoScalingInstances,
+                                 final ImmutableListMultimap<String,AutoScalingInstanceCoreView> instancesByGroup ) {
+    this.autoScalingInstances = autoScalingInstances;
+    this.instancesByGroup = instancesByGroup;
+  }
+
+  static GroupInstanceSnapshot load( final AutoScalingInstances autoScalingInstances ) throws AutoScalingMetadataException {
+    final ImmutableListMultimap.Builder<String,AutoScalingInstanceCoreView> builder = ImmutableListMultimap.builder( );
+    for ( final AutoScalingInstanceCoreView instance : autoScalingInstances.list(
+        null,
+        Predicates.alwaysTrue( ),
+        TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) ) ) {
+      builder.put( key( instance.getOwnerAccountNumber( ), instance.getAutoScalingGroupName( ) ), instance );
+    }
+    return new GroupInstanceSnapshot( autoScalingInstances, builder.build( ) );
+  }
+
+  /**
+   * List instances for the group, from the snapshot if the group is still valid.
+   */
+  List<AutoScalingInstanceCoreView> listByGroup( final AutoScalingGroupMetadata group,
+                                                 final Predicate<? super AutoScalingInstanceCoreView> filter ) throws AutoScalingMetadataException {
+    final String key = key( group );
+    if ( invalidatedGroups.contains( key ) ) {
+      return ImmutableList.copyOf( Iterables.filter( autoScalingInstances.listByGroup(
+          group,
+          Predicates.alwaysTrue( ),
+          TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) ), filter ) );
+    }
+    return ImmutableList.copyOf( Iterables.filter( instancesByGroup.get( key ), filter ) );
+  }
+
+  /**
+   * Mark the group as modified, further lookups for the group will not use the snapshot.
+   */
+  void invalidate( final AutoScalingGroupMetadata group ) {
+    invalidatedGroups.add( key( group ) );
+  }
+
+  int size( ) {
+    return instancesByGroup.size( );
+  }
+
+  private static String key( final AutoScalingGroupMetadata group ) {
+    return key( group.getOwner( ).getAccountNumber( ), group.getDisplayName( ) );
+  }
+
+  private static String key( final String accountNumber, final String groupName ) {
+    return accountNumber + ":" + groupName;
+  }
+}
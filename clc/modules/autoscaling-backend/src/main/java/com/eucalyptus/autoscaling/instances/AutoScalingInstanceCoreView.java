@@ -66,6 +66,10 @@ public class AutoScalingInstanceCoreView implements AutoScalingInstanceMetadata
     return instance.getHealthStatus();
   }
 
+  public String getAutoScalingGroupName() {
+    return instance.getAutoScalingGroupName();
+  }
+
   public String getLaunchConfigurationName() {
     return instance.getLaunchConfigurationName();
   }
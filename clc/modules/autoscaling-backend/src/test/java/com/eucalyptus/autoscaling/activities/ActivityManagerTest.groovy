@@ -84,6 +84,7 @@ import org.junit.Test
 
 import java.lang.reflect.Method
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 import javax.annotation.Nonnull
 import javax.annotation.Nullable
@@ -1090,6 +1091,53 @@ class ActivityManagerTest {
     }
   }
 
+  @Test
+  void testInstanceQueriesPerCycle() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    int groupCount = 2000
+    int instancesPerGroup = 20
+    List<AutoScalingGroup> groups = (1..groupCount).collect { int index ->
+      new AutoScalingGroup(
+          id: String.valueOf( index ),
+          naturalId: String.valueOf( index ),
+          availabilityZones: [ "Zone1" ],
+          healthCheckType: HealthCheckType.EC2,
+          displayName: "Group" + index,
+          launchConfiguration: new LaunchConfiguration(
+              id: "1",
+              naturalId: "1",
+              ownerAccountNumber: "000000000000",
+              displayName: "Config1",
+              imageId: "emi-00000001",
+              instanceType: "m1.small",
+          ),
+          scalingRequired: false,
+          desiredCapacity: instancesPerGroup,
+          capacity: instancesPerGroup,
+          minSize: 0,
+          maxSize: instancesPerGroup,
+          ownerAccountNumber: "000000000000",
+          version: 1,
+      )
+    }
+    List<AutoScalingInstance> instances = []
+    groups.eachWithIndex { AutoScalingGroup group, int groupIndex ->
+      (1..instancesPerGroup).each { int index ->
+        instances.add( instance( groupIndex * instancesPerGroup + index, group, "Zone1" ) )
+      }
+    }
+    List<ScalingActivity> scalingActivities = []
+    AtomicInteger instanceQueries = new AtomicInteger( )
+    ActivityManager manager = activityManager( groups.get( 0 ), scalingActivities, instances, true, [], [], [], groups, instanceQueries )
+
+    manager.doScaling()
+
+    assertEquals( "Instance count", groupCount * instancesPerGroup, instances.size() )
+    assertEquals( "Scaling activity count", 0, scalingActivities.size() )
+    assertTrue( "Instance queries per cycle " + instanceQueries.get( ), instanceQueries.get( ) <= 4 )
+  }
+
   Date timestamp( String text ) {
     Timestamps.parseIso8601Timestamp( text )
   }
@@ -1136,11 +1184,13 @@ class ActivityManagerTest {
                                            boolean healthChecks = false,
                                            List<String> unhealthyInstanceIds = [],
                                            List<String> unhealthyElbInstanceIds = [],
-                                           List<String> unavailableZones = [] ) {
+                                           List<String> unavailableZones = [],
+                                           List<AutoScalingGroup> groups = [ group ],
+                                           AtomicInteger instanceQueries = new AtomicInteger( ) ) {
     ActivityManager manager = new ActivityManager(
         autoScalingActivitiesStore(scalingActivities),
-        autoScalingGroupStore([group],healthChecks),
-        autoScalingInstanceStore(instances),
+        autoScalingGroupStore(groups,healthChecks),
+        autoScalingInstanceStore(instances,instanceQueries),
         zoneAvailabilityMarkers(),
         zoneMonitor(unavailableZones)
     ) {
@@ -1419,7 +1469,8 @@ class ActivityManagerTest {
     }
   }
 
-  AutoScalingInstances autoScalingInstanceStore( List<AutoScalingInstance> instances = [] ) {
+  AutoScalingInstances autoScalingInstanceStore( List<AutoScalingInstance> instances = [],
+                                                 AtomicInteger queries = new AtomicInteger( ) ) {
     new AutoScalingInstances(){
       long timestamp = System.currentTimeMillis() - 1000
 
@@ -1427,6 +1478,7 @@ class ActivityManagerTest {
       <T> List<T> list(@Nullable OwnerFullName ownerFullName,
                        @Nonnull Predicate<? super AutoScalingInstance> filter,
                        @Nonnull Function<? super AutoScalingInstance, T> transform ) {
+        queries.incrementAndGet( )
         instances
             .findAll { instance -> ( ownerFullName==null || instance.ownerAccountNumber.equals( ownerFullName.accountNumber ) ) && filter.apply( instance ) }
             .collect { instance -> transform.apply( instance ) }
@@ -1459,6 +1511,7 @@ class ActivityManagerTest {
       <T> List<T> listByState(LifecycleState lifecycleState,
                               ConfigurationState configurationState,
                               Function<? super AutoScalingInstance, T> transform) {
+        queries.incrementAndGet( )
         instances
             .findAll { instance -> lifecycleState.apply( instance ) && configurationState.apply( instance ) }
             .collect { instance -> transform.apply( instance ) }
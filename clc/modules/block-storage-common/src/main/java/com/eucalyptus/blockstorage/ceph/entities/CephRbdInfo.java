@@ -64,6 +64,7 @@ package com.eucalyptus.blockstorage.ceph.entities;
 
 import java.util.UUID;
 
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.PersistenceContext;
@@ -77,10 +78,12 @@ import com.eucalyptus.blockstorage.util.StorageProperties;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.crypto.Crypto;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Transactions;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
 
 @Entity
 @PersistenceContext(name = "eucalyptus_storage")
@@ -292,7 +295,21 @@ public class CephRbdInfo extends AbstractPersistent {
     return info;
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static CephRbdInfo getStorageInfo() {
+    final CephRbdInfo info = ConfigurationSnapshots.get(CephRbdInfo.class, StorageProperties.NAME, new Supplier<CephRbdInfo>() {
+      @Override
+      public CephRbdInfo get() {
+        return lookupStorageInfo();
+      }
+    });
+    return info != null ? info : generateDefault();
+  }
+
+  @Nullable
+  private static CephRbdInfo lookupStorageInfo() {
     CephRbdInfo info = null;
 
     try {
@@ -310,10 +327,6 @@ public class CephRbdInfo extends AbstractPersistent {
       }
     }
 
-    if (info == null) {
-      info = generateDefault();
-    }
-
     return info;
   }
 
@@ -65,6 +65,7 @@
  */
 package com.eucalyptus.blockstorage.entities;
 
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.PersistenceContext;
@@ -75,8 +76,10 @@ import com.eucalyptus.blockstorage.util.StorageProperties;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Transactions;
+import com.google.common.base.Supplier;
 
 @Entity
 @PersistenceContext(name = "eucalyptus_storage")
@@ -152,7 +155,21 @@ public class DASInfo extends AbstractPersistent {
     return this.name;
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static DASInfo getStorageInfo() {
+    final DASInfo conf = ConfigurationSnapshots.get(DASInfo.class, StorageProperties.NAME, new Supplier<DASInfo>() {
+      @Override
+      public DASInfo get() {
+        return lookupStorageInfo();
+      }
+    });
+    return conf != null ? conf : new DASInfo(StorageProperties.NAME, StorageProperties.DAS_DEVICE);
+  }
+
+  @Nullable
+  private static DASInfo lookupStorageInfo() {
     DASInfo conf = null;
 
     try {
@@ -170,10 +187,6 @@ public class DASInfo extends AbstractPersistent {
       }
     }
 
-    if (conf == null) {
-      conf = new DASInfo(StorageProperties.NAME, StorageProperties.DAS_DEVICE);
-    }
-
     return conf;
   }
 }
@@ -64,6 +64,7 @@ package com.eucalyptus.blockstorage.entities;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.PersistenceContext;
@@ -77,6 +78,7 @@ import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableFieldType;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
@@ -85,6 +87,7 @@ import com.eucalyptus.upgrade.Upgrades.EntityUpgrade;
 import com.eucalyptus.upgrade.Upgrades.Version;
 import com.eucalyptus.util.Exceptions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 
 @Entity
 @PersistenceContext(name = "eucalyptus_storage")
@@ -192,7 +195,22 @@ public class DirectStorageInfo extends AbstractPersistent {
     }
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static DirectStorageInfo getStorageInfo() {
+    final DirectStorageInfo conf = ConfigurationSnapshots.get(DirectStorageInfo.class, StorageProperties.NAME, new Supplier<DirectStorageInfo>() {
+      @Override
+      public DirectStorageInfo get() {
+        return lookupStorageInfo();
+      }
+    });
+    return conf != null ? conf : new DirectStorageInfo(StorageProperties.NAME, StorageProperties.iface, StorageProperties.storageRootDirectory,
+        StorageProperties.zeroFillVolumes, StorageProperties.timeoutInMillis);
+  }
+
+  @Nullable
+  private static DirectStorageInfo lookupStorageInfo() {
     DirectStorageInfo conf = null;
 
     try {
@@ -212,12 +230,6 @@ public class DirectStorageInfo extends AbstractPersistent {
       }
     }
 
-    if (conf == null) {
-      conf =
-          new DirectStorageInfo(StorageProperties.NAME, StorageProperties.iface, StorageProperties.storageRootDirectory,
-              StorageProperties.zeroFillVolumes, StorageProperties.timeoutInMillis);
-    }
-
     return conf;
   }
 
@@ -88,6 +88,7 @@ import com.eucalyptus.configurable.ConfigurableFieldType;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
 import com.eucalyptus.configurable.ConfigurableProperty;
 import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.configurable.PropertyChangeListener;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Entities;
@@ -98,6 +99,7 @@ import com.eucalyptus.upgrade.Upgrades.EntityUpgrade;
 import com.eucalyptus.upgrade.Upgrades.PreUpgrade;
 import com.eucalyptus.util.Exceptions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 
 @Entity
 @PersistenceContext(name = "eucalyptus_storage")
@@ -418,7 +420,21 @@ public class StorageInfo extends AbstractPersistent {
     return info;
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static StorageInfo getStorageInfo() {
+    final StorageInfo conf = ConfigurationSnapshots.get(StorageInfo.class, StorageProperties.NAME, new Supplier<StorageInfo>() {
+      @Override
+      public StorageInfo get() {
+        return lookupStorageInfo();
+      }
+    });
+    return conf != null ? conf : getDefaultInstance();
+  }
+
+  @Nullable
+  private static StorageInfo lookupStorageInfo() {
     StorageInfo conf = null;
 
     try {
@@ -436,10 +452,6 @@ public class StorageInfo extends AbstractPersistent {
       }
     }
 
-    if (conf == null) {
-      conf = getDefaultInstance();
-    }
-
     return conf;
   }
 
@@ -66,6 +66,7 @@ package com.eucalyptus.blockstorage.san.common.entities;
 import java.util.List;
 import java.util.TreeMap;
 
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Lob;
@@ -86,11 +87,13 @@ import com.eucalyptus.configurable.ConfigurableFieldType;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
 import com.eucalyptus.configurable.ConfigurableProperty;
 import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.configurable.PropertyChangeListener;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.HostSpecifier;
@@ -304,7 +307,21 @@ public class SANInfo extends AbstractPersistent {
     return this.name;
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static SANInfo getStorageInfo() {
+    final SANInfo conf = ConfigurationSnapshots.get(SANInfo.class, StorageProperties.NAME, new Supplier<SANInfo>() {
+      @Override
+      public SANInfo get() {
+        return lookupStorageInfo();
+      }
+    });
+    return conf != null ? conf : newDefault();
+  }
+
+  @Nullable
+  private static SANInfo lookupStorageInfo() {
     SANInfo conf = null;
 
     try {
@@ -322,10 +339,6 @@ public class SANInfo extends AbstractPersistent {
       }
     }
 
-    if (conf == null) {
-      conf = newDefault();
-    }
-
     return conf;
   }
 
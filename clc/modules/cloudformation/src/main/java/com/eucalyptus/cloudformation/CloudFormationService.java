@@ -37,6 +37,7 @@ import com.eucalyptus.cloudformation.entity.SignalEntityManager;
 import com.eucalyptus.cloudformation.entity.StackEntity;
 import com.eucalyptus.cloudformation.entity.StackEntityHelper;
 import com.eucalyptus.cloudformation.entity.StackEntityManager;
+import com.eucalyptus.cloudformation.entity.StackEventEntity;
 import com.eucalyptus.cloudformation.entity.StackEventEntityManager;
 import com.eucalyptus.cloudformation.entity.StackResourceEntity;
 import com.eucalyptus.cloudformation.entity.StackResourceEntityManager;
@@ -621,14 +622,23 @@ public class CloudFormationService {
       String stackName = request.getStackName();
       if (stackName == null) throw new ValidationErrorException("Stack name is null");
       checkStackPermission( ctx, stackName, accountId );
-      ArrayList<StackEvent> stackEventList = StackEventEntityManager.getStackEventsByNameOrId( stackName, accountId );
-      if ( stackEventList.isEmpty( ) && ctx.isAdministrator( ) && stackName.startsWith( STACK_ID_PREFIX ) ) {
-        stackEventList = StackEventEntityManager.getStackEventsByNameOrId( stackName, null );
+      final String nextToken = request.getNextToken();
+      List<StackEventEntity> stackEventEntityList =
+          StackEventEntityManager.getStackEventsByNameOrId( stackName, accountId, nextToken, Limits.STACK_EVENTS_PAGE_SIZE );
+      if ( stackEventEntityList.isEmpty( ) && ctx.isAdministrator( ) && stackName.startsWith( STACK_ID_PREFIX ) ) {
+        stackEventEntityList = StackEventEntityManager.getStackEventsByNameOrId( stackName, null, nextToken, Limits.STACK_EVENTS_PAGE_SIZE );
+      }
+      ArrayList<StackEvent> stackEventList = Lists.newArrayList();
+      for (StackEventEntity stackEventEntity: Iterables.limit( stackEventEntityList, Limits.STACK_EVENTS_PAGE_SIZE )) {
+        stackEventList.add(StackEventEntityManager.stackEventEntityToStackEvent(stackEventEntity));
       }
       StackEvents stackEvents = new StackEvents();
       stackEvents.setMember(stackEventList);
       DescribeStackEventsResult describeStackEventsResult = new DescribeStackEventsResult();
       describeStackEventsResult.setStackEvents(stackEvents);
+      if ( stackEventEntityList.size( ) > Limits.STACK_EVENTS_PAGE_SIZE ) {
+        describeStackEventsResult.setNextToken( stackEventEntityList.get( Limits.STACK_EVENTS_PAGE_SIZE - 1 ).getNaturalId( ) );
+      }
       reply.setDescribeStackEventsResult(describeStackEventsResult);
     } catch (Exception ex) {
       handleException(ex);
@@ -940,8 +950,15 @@ public class CloudFormationService {
       ArrayList<StackResourceSummary> stackResourceSummaryList = Lists.newArrayList();
       List<StackResourceEntity> stackResourceEntityList = StackResourceEntityManager.listStackResources(
           ctx.isAdministrator( ) && stackName.startsWith( STACK_ID_PREFIX ) ? null : accountId,
-          stackName );
+          stackName,
+          request.getNextToken( ),
+          Limits.STACK_RESOURCES_PAGE_SIZE );
+      String nextToken = null;
       if (stackResourceEntityList != null) {
+        if (stackResourceEntityList.size() > Limits.STACK_RESOURCES_PAGE_SIZE) {
+          stackResourceEntityList = stackResourceEntityList.subList(0, Limits.STACK_RESOURCES_PAGE_SIZE);
+          nextToken = stackResourceEntityList.get(Limits.STACK_RESOURCES_PAGE_SIZE - 1).getLogicalResourceId();
+        }
         for (StackResourceEntity stackResourceEntity: stackResourceEntityList) {
           StackResourceSummary stackResourceSummary = new StackResourceSummary();
           stackResourceSummary.setLogicalResourceId(stackResourceEntity.getLogicalResourceId());
@@ -957,6 +974,7 @@ public class CloudFormationService {
       StackResourceSummaries stackResourceSummaries = new StackResourceSummaries();
       stackResourceSummaries.setMember(stackResourceSummaryList);
       listStackResourcesResult.setStackResourceSummaries(stackResourceSummaries);
+      listStackResourcesResult.setNextToken(nextToken);
       reply.setListStackResourcesResult(listStackResourcesResult);
     } catch (Exception ex) {
       handleException(ex);
@@ -57,5 +57,7 @@ public class Limits {
   public volatile static long REQUEST_STACK_POLICY_MAX_CONTENT_LENGTH_BYTES = 16384;
 
   public final static long TEMPLATE_DESCRIPTION_MAX_LENGTH_BYTES = 1024;
+  public final static int STACK_EVENTS_PAGE_SIZE = 100;
+  public final static int STACK_RESOURCES_PAGE_SIZE = 100;
 
 }
@@ -22,6 +22,7 @@ package com.eucalyptus.cloudformation.config;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.simpleworkflow.common.client.Config;
+import com.eucalyptus.ws.WebServices;
 
 /**
  *
@@ -59,6 +60,18 @@ public class CloudFormationProperties {
       changeListener = Config.WorkflowWorkerConfigurationValidatingChangeListener.class )
   public static volatile String SWF_WORKFLOW_WORKER_CONFIG = "{ \"DomainRetentionPeriodInDays\": 1, \"PollThreadCount\": 8, \"MaximumPollRateIntervalMilliseconds\": 50 }";
 
+  @ConfigurableField(
+      initial = "90",
+      description = "The number of days events are kept for deleted stacks",
+      changeListener = WebServices.CheckNonNegativeIntegerPropertyChangeListener.class )
+  public static volatile int DELETED_STACK_EVENT_RETENTION_DAYS = 90;
+
+  @ConfigurableField(
+      initial = "0",
+      description = "The maximum number of events kept for a stack, older events are removed (0 for no limit)",
+      changeListener = WebServices.CheckNonNegativeIntegerPropertyChangeListener.class )
+  public static volatile int MAX_EVENTS_PER_STACK = 0;
+
   // In case we are using AWS SWF
   public static boolean USE_AWS_SWF = "true".equalsIgnoreCase(System.getProperty("cloudformation.use_aws_swf"));
   public static String AWS_ACCESS_KEY = System.getProperty("cloudformation.aws_access_key", "");
@@ -0,0 +1,69 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.entity;
+
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.cloudformation.CloudFormation;
+import com.eucalyptus.cloudformation.config.CloudFormationProperties;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import org.apache.log4j.Logger;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes expired events for deleted stacks and trims live stacks to the configured number of events.
+ */
+public class StackEventCleanupEventListener implements EventListener<ClockTick> {
+
+  private static final Logger logger = Logger.getLogger( StackEventCleanupEventListener.class );
+
+  private static final long CLEANUP_INTERVAL = TimeUnit.HOURS.toMillis( 1 );
+  private static final AtomicLong lastCleanup = new AtomicLong( 0 );
+
+  public static void register( ) {
+    Listeners.register( ClockTick.class, new StackEventCleanupEventListener( ) );
+  }
+
+  @Override
+  public void fireEvent( final ClockTick event ) {
+    final long now = System.currentTimeMillis( );
+    final long last = lastCleanup.get( );
+    if ( last + CLEANUP_INTERVAL < now &&
+        Topology.isEnabledLocally( CloudFormation.class ) &&
+        !Databases.isVolatile( ) &&
+        lastCleanup.compareAndSet( last, now ) ) {
+      try {
+        final Date deletedBefore =
+            new Date( now - TimeUnit.DAYS.toMillis( CloudFormationProperties.DELETED_STACK_EVENT_RETENTION_DAYS ) );
+        final int purged = StackEventEntityManager.purgeStackEvents( deletedBefore, CloudFormationProperties.MAX_EVENTS_PER_STACK );
+        if ( purged > 0 ) {
+          logger.info( "Removed " + purged + " stack events" );
+        }
+      } catch ( final Exception e ) {
+        logger.error( "Error removing stack events", e );
+      }
+    }
+  }
+}
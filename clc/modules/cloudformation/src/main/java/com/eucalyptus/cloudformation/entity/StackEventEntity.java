@@ -26,6 +26,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
@@ -38,7 +39,10 @@ import java.util.Date;
 
 @Entity
 @PersistenceContext( name = "eucalyptus_cloudformation" )
-@Table( name = "stack_events" )
+@Table( name = "stack_events", indexes = {
+    @Index( name = "stack_events_stack_id_timestamp_idx", columnList = "stack_id, timestamp" ),
+    @Index( name = "stack_events_stack_name_idx", columnList = "stack_name" )
+} )
 public class StackEventEntity extends AbstractPersistent {
   @Column(name = "account_id", nullable = false)
   String accountId;
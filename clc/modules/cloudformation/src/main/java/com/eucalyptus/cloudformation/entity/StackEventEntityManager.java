@@ -20,13 +20,18 @@
 package com.eucalyptus.cloudformation.entity;
 
 import com.eucalyptus.cloudformation.StackEvent;
+import com.eucalyptus.cloudformation.ValidationErrorException;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -100,24 +105,99 @@ public class StackEventEntityManager {
     return stackEvent;
   }
 
-  public static ArrayList<StackEvent> getStackEventsByNameOrId(String stackNameOrId, String accountId) {
-    ArrayList<StackEvent> returnValue = Lists.newArrayList();
+  /**
+   * Get a page of events for a stack, most recent first.
+   *
+   * <p>Events are ordered by timestamp and then by natural id, the next token is the natural id of the last event
+   * on the previous page. Up to maxResults + 1 events are returned so that the caller can tell whether there is a
+   * further page.</p>
+   */
+  public static List<StackEventEntity> getStackEventsByNameOrId(String stackNameOrId, String accountId, @Nullable String nextToken, int maxResults)
+      throws ValidationErrorException {
     try ( TransactionResource db =
             Entities.transactionFor( StackEventEntity.class ) ) {
       Criteria criteria = Entities.createCriteria(StackEventEntity.class)
-        .add(accountId != null ? Restrictions.eq("accountId", accountId) : Restrictions.conjunction( ))
-        .add(Restrictions.or(
+        .add(stackEventsRestriction(stackNameOrId, accountId));
+      if (nextToken != null) {
+        // the token must identify an event for the requested stack
+        Criteria tokenCriteria = Entities.createCriteria(StackEventEntity.class)
+          .add(stackEventsRestriction(stackNameOrId, accountId))
+          .add(Restrictions.eq("naturalId", nextToken));
+        StackEventEntity tokenEntity = (StackEventEntity) tokenCriteria.uniqueResult();
+        if (tokenEntity == null) {
+          throw new ValidationErrorException("Invalid NextToken");
+        }
+        criteria.add(Restrictions.or(
+            Restrictions.lt("timestamp", tokenEntity.getTimestamp()),
+            Restrictions.and(Restrictions.eq("timestamp", tokenEntity.getTimestamp()), Restrictions.gt("naturalId", nextToken)))
+        );
+      }
+      criteria.addOrder( Order.desc("timestamp") ).addOrder( Order.asc("naturalId") );
+      criteria.setMaxResults(maxResults + 1);
+      return (List<StackEventEntity>) criteria.list();
+    }
+  }
+
+  private static Criterion stackEventsRestriction(String stackNameOrId, String accountId) {
+    return Restrictions.and(
+        accountId != null ? Restrictions.eq("accountId", accountId) : Restrictions.conjunction( ),
+        Restrictions.or(
             Restrictions.and(Restrictions.eq("recordDeleted", Boolean.FALSE), Restrictions.eq("stackName", stackNameOrId)),
             Restrictions.eq("stackId", stackNameOrId))
-        ).addOrder( Order.desc("timestamp") );
-      List<StackEventEntity> results = criteria.list();
-      if (results != null) {
-        for (StackEventEntity stackEventEntity: results) {
-          returnValue.add(stackEventEntityToStackEvent(stackEventEntity));
+    );
+  }
+
+  /**
+   * Purge events for deleted stacks that are older than the given date and trim live stacks to the given number
+   * of most recent events.
+   *
+   * @param deletedBefore Events for deleted stacks with an earlier timestamp are removed
+   * @param maxEventsPerStack The maximum number of events to keep for a stack, zero for no limit
+   * @return The number of events removed
+   */
+  public static int purgeStackEvents(Date deletedBefore, int maxEventsPerStack) {
+    int purged;
+    try ( TransactionResource db =
+            Entities.transactionFor( StackEventEntity.class ) ) {
+      purged = Entities.deleteAllMatching(StackEventEntity.class,
+          "WHERE recordDeleted = :recordDeleted AND timestamp < :timestamp",
+          ImmutableMap.of("recordDeleted", Boolean.TRUE, "timestamp", deletedBefore));
+      db.commit( );
+    }
+    if (maxEventsPerStack > 0) {
+      List<Object[]> stackEventCounts;
+      try ( TransactionResource db =
+              Entities.transactionFor( StackEventEntity.class ) ) {
+        stackEventCounts = (List<Object[]>) Entities.createCriteria(StackEventEntity.class)
+          .add(Restrictions.eq("recordDeleted", Boolean.FALSE))
+          .setProjection(Projections.projectionList()
+              .add(Projections.groupProperty("stackId"))
+              .add(Projections.rowCount()))
+          .list();
+      }
+      for (Object[] stackEventCount : stackEventCounts) {
+        if (((Number) stackEventCount[1]).intValue() <= maxEventsPerStack) continue;
+        String stackId = (String) stackEventCount[0];
+        try ( TransactionResource db =
+                Entities.transactionFor( StackEventEntity.class ) ) {
+          // events older than the oldest one kept, ties with it are kept as well
+          Date oldestKept = (Date) Entities.createCriteria(StackEventEntity.class)
+            .add(Restrictions.eq("stackId", stackId))
+            .setProjection(Projections.property("timestamp"))
+            .addOrder(Order.desc("timestamp"))
+            .setFirstResult(maxEventsPerStack - 1)
+            .setMaxResults(1)
+            .uniqueResult();
+          if (oldestKept != null) {
+            purged += Entities.deleteAllMatching(StackEventEntity.class,
+                "WHERE stackId = :stackId AND timestamp < :timestamp",
+                ImmutableMap.of("stackId", stackId, "timestamp", oldestKept));
+          }
+          db.commit( );
         }
       }
     }
-    return returnValue;
+    return purged;
   }
 
   public static ArrayList<StackEventEntity> getStackEventEntitiesById(String stackId, String accountId) {
@@ -28,6 +28,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
@@ -37,7 +38,9 @@ import javax.persistence.Table;
  */
 @Entity
 @PersistenceContext( name = "eucalyptus_cloudformation" )
-@Table( name = "stack_resources" )
+@Table( name = "stack_resources", indexes = {
+    @Index( name = "stack_resources_stack_id_logical_id_idx", columnList = "stack_id, logical_resource_id" )
+} )
 @Cache( usage = CacheConcurrencyStrategy.TRANSACTIONAL )
 public class StackResourceEntity extends AbstractPersistent {
   @Column(name = "account_id", nullable = false)
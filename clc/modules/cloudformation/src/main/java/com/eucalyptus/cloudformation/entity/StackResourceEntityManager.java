@@ -31,6 +31,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
@@ -306,8 +307,44 @@ public class StackResourceEntityManager {
     }
   }
 
-  public static List<StackResourceEntity> listStackResources(String accountId, String stackNameOrId) {
-    return describeStackResources(accountId, stackNameOrId);
+  /**
+   * Get a page of the latest version of the resources for a stack, ordered by logical resource id.
+   *
+   * <p>The next token is the logical resource id of the last resource on the previous page. Up to maxResults + 1
+   * resources are returned so that the caller can tell whether there is a further page.</p>
+   */
+  public static List<StackResourceEntity> listStackResources(@Nullable String accountId, String stackNameOrId, @Nullable String nextToken, int maxResults) {
+    try ( final TransactionResource db = Entities.transactionFor( StackResourceEntity.class ) ) {
+      // Find the logical resource ids for the page first so that only their versions are loaded
+      final Criteria idCriteria = stackResourcesCriteria( accountId, stackNameOrId );
+      if ( nextToken != null ) {
+        idCriteria.add( Restrictions.gt( "logicalResourceId", nextToken ) );
+      }
+      idCriteria.setProjection( Projections.distinct( Projections.property( "logicalResourceId" ) ) )
+          .addOrder( Order.asc( "logicalResourceId" ) )
+          .setMaxResults( maxResults + 1 );
+      //noinspection unchecked
+      final List<String> logicalResourceIds = (List<String>) idCriteria.list( );
+      if ( logicalResourceIds.isEmpty( ) ) {
+        return Lists.newArrayList( );
+      }
+      final Criteria criteria = stackResourcesCriteria( accountId, stackNameOrId )
+          .add( Restrictions.in( "logicalResourceId", logicalResourceIds ) )
+          .addOrder( Order.asc( "logicalResourceId" ) );
+      //noinspection unchecked
+      return takeLatestVersions( criteria.list( ) );
+    }
+  }
+
+  private static Criteria stackResourcesCriteria( @Nullable final String accountId, final String stackNameOrId ) {
+    // There is some weirdness in this request.  The stack name represents either the stack name of the
+    // non-deleted stack or the stack id of the deleted or non-deleted stack.
+    return Entities.createCriteria( StackResourceEntity.class )
+        .add( accountId != null ? Restrictions.eq( "accountId", accountId ) : Restrictions.conjunction( ) )
+        .add( Restrictions.or(
+            Restrictions.and( Restrictions.eq( "recordDeleted", Boolean.FALSE ), Restrictions.eq( "stackName", stackNameOrId ) ),
+            Restrictions.eq( "stackId", stackNameOrId ) ) )
+        .add( Restrictions.ne( "resourceStatus", Status.NOT_STARTED ) ); // placeholder, AWS doesn't return these
   }
 
   private static List<StackResourceEntity> takeLatestVersions(List<StackResourceEntity> original) {
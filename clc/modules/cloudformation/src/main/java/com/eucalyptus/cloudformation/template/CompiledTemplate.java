@@ -0,0 +1,207 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.template;
+
+import com.eucalyptus.cloudformation.CloudFormationException;
+import com.eucalyptus.cloudformation.entity.StackEntity;
+import com.eucalyptus.cloudformation.entity.StackEntityHelper;
+import com.eucalyptus.cloudformation.entity.VersionedStackEntity;
+import com.eucalyptus.cloudformation.resources.ResourceInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template sections used by intrinsic functions, decoded once from the stored stack JSON.
+ *
+ * <p>Compiled templates are cached by a hash of the stored sections. Evaluation results are memoized using the
+ * expression, the compiled template and the current values of the resource references and attributes that the
+ * expression uses, so a result is reused until one of those values changes.</p>
+ */
+public class CompiledTemplate {
+
+  private static final Cache<String, CompiledTemplate> compiledTemplates = CacheBuilder.newBuilder( )
+      .maximumSize( 256 )
+      .build( );
+
+  private static final Cache<String, JsonNode> evaluations = CacheBuilder.newBuilder( )
+      .maximumSize( 10_000 )
+      .recordStats( )
+      .build( );
+
+  private final String hash;
+  private final String description;
+  private final String templateFormatVersion;
+  private final Map<String, String> pseudoParameterMap;
+  private final Map<String, Map<String, Map<String, String>>> mapping;
+  private final List<StackEntity.Parameter> parameters;
+  private final Map<String, Boolean> conditionMap;
+
+  private CompiledTemplate( final String hash, final VersionedStackEntity stackEntity ) throws CloudFormationException {
+    this.hash = hash;
+    this.description = stackEntity.getDescription( );
+    this.templateFormatVersion = stackEntity.getTemplateFormatVersion( );
+    this.pseudoParameterMap = Collections.unmodifiableMap( StackEntityHelper.jsonToPseudoParameterMap( stackEntity.getPseudoParameterMapJson( ) ) );
+    this.mapping = Collections.unmodifiableMap( StackEntityHelper.jsonToMapping( stackEntity.getMappingJson( ) ) );
+    this.parameters = Collections.unmodifiableList( StackEntityHelper.jsonToParameters( stackEntity.getParametersJson( ) ) );
+    this.conditionMap = Collections.unmodifiableMap( StackEntityHelper.jsonToConditionMap( stackEntity.getConditionMapJson( ) ) );
+  }
+
+  /**
+   * Get the compiled template for the given stack, decoding the stored sections only if they have not been seen.
+   */
+  public static CompiledTemplate of( final VersionedStackEntity stackEntity ) throws CloudFormationException {
+    final String hash = Hashing.sha256( ).newHasher( )
+        .putString( String.valueOf( stackEntity.getDescription( ) ), Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( String.valueOf( stackEntity.getTemplateFormatVersion( ) ), Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( String.valueOf( stackEntity.getPseudoParameterMapJson( ) ), Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( String.valueOf( stackEntity.getMappingJson( ) ), Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( String.valueOf( stackEntity.getParametersJson( ) ), Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( String.valueOf( stackEntity.getConditionMapJson( ) ), Charsets.UTF_8 )
+        .hash( ).toString( );
+    CompiledTemplate compiledTemplate = compiledTemplates.getIfPresent( hash );
+    if ( compiledTemplate == null ) {
+      compiledTemplate = new CompiledTemplate( hash, stackEntity );
+      compiledTemplates.put( hash, compiledTemplate );
+    }
+    return compiledTemplate;
+  }
+
+  /**
+   * Evaluate the intrinsic functions in the given JSON, reusing an earlier result when nothing it depends on has changed.
+   */
+  public JsonNode evaluate( final JsonNode jsonNode,
+                            final Map<String, ResourceInfo> resourceInfoMap,
+                            final String effectiveUserId ) throws CloudFormationException {
+    if ( jsonNode == null || jsonNode.isValueNode( ) ) return jsonNode;
+    final References references = new References( );
+    references.scan( jsonNode );
+    final String key = references.cacheable ? evaluationKey( jsonNode, references, resourceInfoMap ) : null;
+    JsonNode result = key == null ? null : evaluations.getIfPresent( key );
+    if ( result == null ) {
+      result = FunctionEvaluation.evaluateFunctions( jsonNode, newTemplate( resourceInfoMap ), effectiveUserId );
+      if ( key != null && result != null ) {
+        evaluations.put( key, result.deepCopy( ) ); // the result may share nodes with the expression
+      }
+    }
+    return result == null ? null : result.deepCopy( );
+  }
+
+  /**
+   * Statistics for memoized evaluations.
+   */
+  static CacheStats evaluationStats( ) {
+    return evaluations.stats( );
+  }
+
+  /**
+   * A template for evaluating functions, the template sections are shared and must not be modified.
+   */
+  public Template newTemplate( final Map<String, ResourceInfo> resourceInfoMap ) {
+    final Template template = new Template( );
+    template.setResourceInfoMap( resourceInfoMap );
+    template.setDescription( description );
+    template.setTemplateFormatVersion( templateFormatVersion );
+    template.setPseudoParameterMap( pseudoParameterMap );
+    template.setMapping( mapping );
+    template.setParameters( new ArrayList<>( parameters ) );
+    template.setConditionMap( conditionMap );
+    return template;
+  }
+
+  /**
+   * The key for an evaluation, or null if a referenced value cannot be determined.
+   */
+  private String evaluationKey( final JsonNode jsonNode,
+                                final References references,
+                                final Map<String, ResourceInfo> resourceInfoMap ) {
+    final Hasher hasher = Hashing.sha256( ).newHasher( )
+        .putString( hash, Charsets.UTF_8 ).putByte( (byte) 0 )
+        .putString( jsonNode.toString( ), Charsets.UTF_8 );
+    for ( final String resourceName : references.refs ) {
+      final ResourceInfo resourceInfo = resourceInfoMap.get( resourceName );
+      if ( resourceInfo != null ) { // otherwise a parameter or pseudo parameter
+        hasher.putByte( (byte) 0 ).putString( resourceName, Charsets.UTF_8 )
+            .putByte( (byte) 0 ).putString( String.valueOf( resourceInfo.getReady( ) ), Charsets.UTF_8 )
+            .putByte( (byte) 0 ).putString( String.valueOf( resourceInfo.getReferenceValueJson( ) ), Charsets.UTF_8 );
+      }
+    }
+    for ( final List<String> attribute : references.attributes ) {
+      final ResourceInfo resourceInfo = resourceInfoMap.get( attribute.get( 0 ) );
+      if ( resourceInfo == null ) return null;
+      final String attributeJson;
+      try {
+        attributeJson = resourceInfo.getResourceAttributeJson( attribute.get( 1 ) );
+      } catch ( Exception e ) {
+        return null;
+      }
+      hasher.putByte( (byte) 0 ).putString( Joiner.on( '.' ).join( attribute ), Charsets.UTF_8 )
+          .putByte( (byte) 0 ).putString( String.valueOf( resourceInfo.getReady( ) ), Charsets.UTF_8 )
+          .putByte( (byte) 0 ).putString( String.valueOf( attributeJson ), Charsets.UTF_8 );
+    }
+    return hasher.hash( ).toString( );
+  }
+
+  /**
+   * The resources and attributes an expression refers to.
+   */
+  private static final class References {
+    private final Set<String> refs = Sets.newTreeSet( );
+    private final Set<List<String>> attributes = Sets.newLinkedHashSet( );
+    private boolean cacheable = true;
+
+    private void scan( final JsonNode jsonNode ) {
+      if ( jsonNode.isArray( ) ) {
+        for ( final JsonNode element : jsonNode ) {
+          scan( element );
+        }
+      } else if ( jsonNode.isObject( ) ) {
+        final JsonNode ref = jsonNode.get( FunctionEvaluation.REF_STR );
+        if ( ref != null && ref.isTextual( ) ) {
+          refs.add( ref.asText( ) );
+        }
+        final JsonNode getAtt = jsonNode.get( FunctionEvaluation.FN_GET_ATT );
+        if ( getAtt != null && getAtt.isArray( ) && getAtt.size( ) == 2 ) {
+          attributes.add( Lists.newArrayList( getAtt.get( 0 ).asText( ), getAtt.get( 1 ).asText( ) ) );
+        }
+        if ( jsonNode.has( FunctionEvaluation.FN_GET_AZS ) ) {
+          cacheable = false; // depends on the current zones
+        }
+        for ( final Iterator<JsonNode> elements = jsonNode.elements( ); elements.hasNext( ); ) {
+          scan( elements.next( ) );
+        }
+      }
+    }
+  }
+}
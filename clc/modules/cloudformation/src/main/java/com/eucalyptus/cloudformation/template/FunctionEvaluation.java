@@ -22,12 +22,11 @@ package com.eucalyptus.cloudformation.template;
 
 import com.eucalyptus.cloudformation.CloudFormationException;
 import com.eucalyptus.cloudformation.ValidationErrorException;
-import com.eucalyptus.cloudformation.entity.StackEntityHelper;
 import com.eucalyptus.cloudformation.entity.VersionedStackEntity;
 import com.eucalyptus.cloudformation.resources.ResourceInfo;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Lists;
 
@@ -108,9 +107,9 @@ public class FunctionEvaluation {
   public static JsonNode evaluateFunctions(JsonNode jsonNode, Template template, String effectiveUserId) throws CloudFormationException {
     if (jsonNode == null) return jsonNode;
     if (!jsonNode.isArray() && !jsonNode.isObject()) return jsonNode;
-    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
     if (jsonNode.isArray()) {
-      ArrayNode arrayCopy = objectMapper.createArrayNode();
+      ArrayNode arrayCopy = nodeFactory.arrayNode();
       for (int i = 0;i < jsonNode.size(); i++) {
         JsonNode arrayElement = evaluateFunctions(jsonNode.get(i), template, effectiveUserId);
         arrayCopy.add(arrayElement);
@@ -129,7 +128,7 @@ public class FunctionEvaluation {
       }
     }
     // Otherwise, not a function, so evaluate functions of values
-    ObjectNode objectCopy = objectMapper.createObjectNode();
+    ObjectNode objectCopy = nodeFactory.objectNode();
     List<String> fieldNames = Lists.newArrayList(jsonNode.fieldNames());
     for (String key: fieldNames) {
       JsonNode objectElement = evaluateFunctions(jsonNode.get(key), template, effectiveUserId);
@@ -141,9 +140,9 @@ public class FunctionEvaluation {
   public static JsonNode evaluateFunctionsPreResourceResolution(JsonNode jsonNode, Template template, String effectiveUserId) throws CloudFormationException {
     if (jsonNode == null) return jsonNode;
     if (!jsonNode.isArray() && !jsonNode.isObject()) return jsonNode;
-    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
     if (jsonNode.isArray()) {
-      ArrayNode arrayCopy = objectMapper.createArrayNode();
+      ArrayNode arrayCopy = nodeFactory.arrayNode();
       for (int i = 0;i < jsonNode.size(); i++) {
         JsonNode arrayElement = evaluateFunctionsPreResourceResolution(jsonNode.get(i), template, effectiveUserId);
         arrayCopy.add(arrayElement);
@@ -167,7 +166,7 @@ public class FunctionEvaluation {
       }
     }
     // Otherwise, not a function, so evaluate functions of values
-    ObjectNode objectCopy = objectMapper.createObjectNode();
+    ObjectNode objectCopy = nodeFactory.objectNode();
     List<String> fieldNames = Lists.newArrayList(jsonNode.fieldNames());
     for (String key: fieldNames) {
       JsonNode objectElement = evaluateFunctionsPreResourceResolution(jsonNode.get(key), template, effectiveUserId);
@@ -179,13 +178,8 @@ public class FunctionEvaluation {
 
 
   public static JsonNode evaluateFunctions(JsonNode jsonNode, VersionedStackEntity stackEntity, Map<String, ResourceInfo> resourceInfoMap, String effectiveUserId) throws CloudFormationException {
-    Template template = new Template();
-    template.setResourceInfoMap(resourceInfoMap);
-    StackEntityHelper.populateTemplateWithStackEntity(template, stackEntity);
-    JsonNode result = evaluateFunctions(jsonNode, template, effectiveUserId);
-    // just in case the above function changes the template, put the results back into the stack entity
-    StackEntityHelper.populateStackEntityWithTemplate(stackEntity, template);
-    return result;
+    // Functions only read the template so the decoded sections are shared rather than written back to the stack entity
+    return CompiledTemplate.of(stackEntity).evaluate(jsonNode, resourceInfoMap, effectiveUserId);
   }
 }
 
@@ -29,6 +29,8 @@ import java.io.IOException;
 
 public class JsonHelper {
 
+  private static final ObjectMapper mapper = new ObjectMapper();
+
   public static JsonNode checkObject(JsonNode parent, String key, String errorMsg) throws CloudFormationException {
     JsonNode jsonNode = parent.get(key);
     if (jsonNode != null && !jsonNode.isObject()) {
@@ -148,7 +150,6 @@ public class JsonHelper {
 
   public static JsonNode getJsonNodeFromString(String json) throws ValidationErrorException {
     if (json == null) return null;
-    ObjectMapper mapper = new ObjectMapper();
     try {
       return mapper.readTree(json);
     } catch (IOException e) {
@@ -1019,7 +1019,10 @@ public class TemplateParser {
     }
 
     try {
-      resourceDependencies.dependencyList(); // just to trigger the check...
+      final List<List<String>> resourceWaves = resourceDependencies.dependencyWaves(); // also checks for cycles
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Template has " + resourceDependencies.getNodes().size() + " resources in " + resourceWaves.size() + " dependency waves");
+      }
     } catch (CyclicDependencyException ex) {
       throw new ValidationErrorException("Circular dependency between resources: " + ex.getMessage());
     }
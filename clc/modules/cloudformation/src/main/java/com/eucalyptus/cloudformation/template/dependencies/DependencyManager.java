@@ -22,20 +22,20 @@ package com.eucalyptus.cloudformation.template.dependencies;
 
 import com.eucalyptus.cloudformation.CloudFormationException;
 import com.eucalyptus.cloudformation.ValidationErrorException;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -43,40 +43,60 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+/**
+ * Dependency graph for template resources, conditions and outputs.
+ *
+ * <p>Nodes are given int ids in the order they are added and edges are held as bit sets of ids in both directions.
+ * The JSON form is the node names followed by the ids of the dependents of each node.</p>
+ */
 public class DependencyManager {
 
-  private Set<String> nodes = Sets.newLinkedHashSet();
-  private Table<String, String, Integer> edgeTable = TreeBasedTable.create();
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final Map<String, Integer> nodeIds = Maps.newLinkedHashMap();
+  private final List<String> nodeNames = Lists.newArrayList();
+  private final List<BitSet> dependents = Lists.newArrayList(); // An edge from A to B means B depends on A. (i.e. can start with A)
+  private final List<BitSet> dependencies = Lists.newArrayList(); // The same edges, from B to A
 
   public Set<String> getNodes() {
-    return nodes;
+    return Collections.unmodifiableSet(nodeIds.keySet());
   }
 
   public Collection<String> getDependentNodes(String independentNode) {
-    return edgeTable.row(independentNode).keySet();
+    Integer id = nodeIds.get(independentNode);
+    return id == null ? Collections.<String>emptySet() : names(dependents.get(id));
   }
 
   public Collection<String> getReverseDependentNodes(String independentNode) {
-    return edgeTable.column(independentNode).keySet();
+    Integer id = nodeIds.get(independentNode);
+    return id == null ? Collections.<String>emptySet() : names(dependencies.get(id));
   }
 
   public synchronized void addNode(String node) {
-    nodes.add(node);
+    if (!nodeIds.containsKey(node)) {
+      nodeIds.put(node, nodeNames.size());
+      nodeNames.add(node);
+      dependents.add(new BitSet());
+      dependencies.add(new BitSet());
+    }
   }
 
   public synchronized boolean containsNode(String node) {
-    return nodes.contains(node);
+    return nodeIds.containsKey(node);
   }
 
   public synchronized void addDependency(String dependentNode, String independentNode) throws NoSuchElementException {
-    if (!nodes.contains(dependentNode)) throw new NoSuchElementException(dependentNode);
-    if (!nodes.contains(independentNode)) throw new NoSuchElementException(independentNode);
-    edgeTable.put(independentNode, dependentNode, 1); // An edge from A to B means B depends on A. (i.e. can start with A)
+    Integer dependentId = nodeIds.get(dependentNode);
+    Integer independentId = nodeIds.get(independentNode);
+    if (dependentId == null) throw new NoSuchElementException(dependentNode);
+    if (independentId == null) throw new NoSuchElementException(independentNode);
+    dependents.get(independentId).set(dependentId);
+    dependencies.get(dependentId).set(independentId);
   }
 
   public synchronized List<String> dependencyList() throws CyclicDependencyException {
     LinkedList<String> sortedNodes = Lists.newLinkedList();
-    Set<String> unmarkedNodes = Sets.newTreeSet(nodes);
+    Set<String> unmarkedNodes = Sets.newTreeSet(nodeIds.keySet());
     Set<String> temporarilyMarkedNodes = Sets.newLinkedHashSet(); // this also represents the current path...
     Set<String> permanentlyMarkedNodes = Sets.newHashSet();
     while (!unmarkedNodes.isEmpty()) {
@@ -93,7 +113,7 @@ public class DependencyManager {
     if (unmarkedNodes.contains(currentNode)) {
       unmarkedNodes.remove(currentNode);
       temporarilyMarkedNodes.add(currentNode);
-      for (String adjacentNode: edgeTable.row(currentNode).keySet()) {
+      for (String adjacentNode: getDependentNodes(currentNode)) {
         visitNode(adjacentNode, unmarkedNodes, temporarilyMarkedNodes, permanentlyMarkedNodes, sortedNodes);
       }
       temporarilyMarkedNodes.remove(currentNode);
@@ -102,55 +122,106 @@ public class DependencyManager {
     }
   }
 
-  public String toJson() throws CloudFormationException {
-    try {
-      ObjectMapper mapper = new ObjectMapper();
-      String nodesStr = mapper.writeValueAsString(nodes);
-      Map<String,List<String>> dependencies = convertToMap(edgeTable);
-      String dependenciesStr = mapper.writeValueAsString(dependencies);
-      ObjectNode objectNode = mapper.createObjectNode();
-      objectNode.put("nodes", nodesStr);
-      objectNode.put("dependencies", dependenciesStr);
-      return objectNode.toString();
-    } catch (JsonProcessingException e) {
-      throw new ValidationErrorException(e.getMessage());
+  /**
+   * Group the nodes into waves, each node is in the wave following the last of the nodes it depends on.
+   *
+   * <p>All the nodes in a wave can be processed concurrently once the previous waves are done, so the number of
+   * waves is the length of the critical path through the graph.</p>
+   */
+  public synchronized List<List<String>> dependencyWaves() throws CyclicDependencyException {
+    final int[] remainingDependencies = new int[nodeNames.size()];
+    BitSet ready = new BitSet();
+    for (int id = 0; id < nodeNames.size(); id++) {
+      remainingDependencies[id] = dependencies.get(id).cardinality();
+      if (remainingDependencies[id] == 0) ready.set(id);
+    }
+    final List<List<String>> waves = Lists.newArrayList();
+    int placed = 0;
+    while (!ready.isEmpty()) {
+      waves.add(Lists.newArrayList(names(ready)));
+      placed += ready.cardinality();
+      final BitSet next = new BitSet();
+      for (int id = ready.nextSetBit(0); id >= 0; id = ready.nextSetBit(id + 1)) {
+        final BitSet nodeDependents = dependents.get(id);
+        for (int dependentId = nodeDependents.nextSetBit(0); dependentId >= 0; dependentId = nodeDependents.nextSetBit(dependentId + 1)) {
+          if (--remainingDependencies[dependentId] == 0) next.set(dependentId);
+        }
+      }
+      ready = next;
+    }
+    if (placed < nodeNames.size()) {
+      dependencyList(); // reports the cycle
+      throw new CyclicDependencyException();
     }
+    return waves;
   }
 
-  private Map<String,List<String>> convertToMap(Table<String, String, Integer> table) {
-    Map<String, List<String>> map = Maps.newLinkedHashMap();
-    for (String row:table.rowKeySet()) {
-      map.put(row, Lists.newArrayList(table.row(row).keySet()));
+  public synchronized String toJson() throws CloudFormationException {
+    ObjectNode objectNode = mapper.createObjectNode();
+    ArrayNode nodesNode = objectNode.putArray("nodes");
+    for (String node : nodeNames) {
+      nodesNode.add(node);
     }
-    return map;
+    ArrayNode dependentsNode = objectNode.putArray("dependents");
+    for (BitSet nodeDependents : dependents) {
+      ArrayNode idsNode = dependentsNode.addArray();
+      for (int id = nodeDependents.nextSetBit(0); id >= 0; id = nodeDependents.nextSetBit(id + 1)) {
+        idsNode.add(id);
+      }
+    }
+    return objectNode.toString();
   }
 
   public static DependencyManager fromJson(String json) throws CloudFormationException {
     if (json == null) return new DependencyManager();
     try {
-      ObjectMapper mapper = new ObjectMapper();
       JsonNode jsonNode = mapper.readTree(json);
-      String nodeStr = jsonNode.get("nodes").asText();
-      String dependenciesStr = jsonNode.get("dependencies").asText();
-      ArrayList<String> nodes = mapper.readValue(nodeStr,
-        new TypeReference<ArrayList<String>>(){});
-      Map<String, List<String>> dependencies = mapper.readValue(dependenciesStr,
-        new TypeReference<LinkedHashMap<String, List<String>>>(){});
       DependencyManager dependencyManager = new DependencyManager();
-      for (String node:nodes) {
-        dependencyManager.addNode(node);
-      }
-      for (String row: dependencies.keySet()) {
-        for (String column: dependencies.get(row)) {
-          dependencyManager.addDependency(column, row);
+      if (jsonNode.get("nodes").isArray()) {
+        for (JsonNode node : jsonNode.get("nodes")) {
+          dependencyManager.addNode(node.asText());
+        }
+        JsonNode dependentsNode = jsonNode.get("dependents");
+        for (int id = 0; id < dependentsNode.size(); id++) {
+          for (JsonNode dependentId : dependentsNode.get(id)) {
+            dependencyManager.dependents.get(id).set(dependentId.asInt());
+            dependencyManager.dependencies.get(dependentId.asInt()).set(id);
+          }
+        }
+      } else {
+        // Earlier form with the nodes and a map of dependencies each as an embedded JSON string
+        String nodeStr = jsonNode.get("nodes").asText();
+        String dependenciesStr = jsonNode.get("dependencies").asText();
+        ArrayList<String> nodes = mapper.readValue(nodeStr,
+          new TypeReference<ArrayList<String>>(){});
+        Map<String, List<String>> dependencies = mapper.readValue(dependenciesStr,
+          new TypeReference<LinkedHashMap<String, List<String>>>(){});
+        for (String node:nodes) {
+          dependencyManager.addNode(node);
+        }
+        for (String row: dependencies.keySet()) {
+          for (String column: dependencies.get(row)) {
+            dependencyManager.addDependency(column, row);
+          }
         }
       }
       return dependencyManager;
-    } catch (IOException e) {
+    } catch (IOException | RuntimeException e) {
       throw new ValidationErrorException(e.getMessage());
     }
   }
 
+  /**
+   * Names for the given ids, sorted by name so that iteration order does not depend on the order nodes were added
+   */
+  private Collection<String> names(BitSet ids) {
+    Set<String> names = Sets.newTreeSet();
+    for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+      names.add(nodeNames.get(id));
+    }
+    return names;
+  }
+
   private List<String> subListFrom(List<String> list, String element) {
     int index = list.indexOf(element);
     if (index == -1) return list;
@@ -0,0 +1,156 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.template
+
+import com.eucalyptus.cloudformation.entity.StackEntity
+import com.eucalyptus.cloudformation.entity.StackEntityHelper
+import com.eucalyptus.cloudformation.resources.ResourceInfo
+import com.eucalyptus.cloudformation.resources.standard.info.AWSS3BucketResourceInfo
+import com.fasterxml.jackson.databind.JsonNode
+import com.google.common.cache.CacheStats
+import com.google.common.collect.Maps
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotSame
+
+/**
+ * Compares compiled template evaluation with evaluation against a template decoded from the stack entity.
+ */
+class CompiledTemplateTest {
+
+  private static final List<String> EXPRESSIONS = [
+      '{"Ref":"Environment"}',
+      '{"Ref":"AWS::Region"}',
+      '{"Ref":"Bucket"}',
+      '{"Fn::GetAtt":["Bucket","DomainName"]}',
+      '{"Fn::Join":["-",[{"Ref":"AWS::StackName"},{"Ref":"Environment"},"logs"]]}',
+      '{"Fn::FindInMap":["RegionMap",{"Ref":"AWS::Region"},"AMI"]}',
+      '{"Fn::If":["IsProduction",{"Ref":"Bucket"},"none"]}',
+      '{"Fn::If":["IsDevelopment",{"Ref":"Bucket"},{"Ref":"AWS::NoValue"}]}',
+      '{"Fn::Select":["1",["a",{"Ref":"Environment"},"c"]]}',
+      '{"Fn::Base64":{"Fn::Join":["",["#!/bin/bash\\n","echo ",{"Fn::GetAtt":["Bucket","DomainName"]}]]}}',
+      '{"Tags":[{"Key":"Name","Value":{"Ref":"AWS::StackName"}},{"Key":"Env","Value":{"Ref":"Environment"}}]}',
+      '["literal",1,true,{"Ref":"Environment"}]',
+  ]
+
+  @Test
+  void testEvaluationMatchesDecodedTemplate( ) {
+    StackEntity stackEntity = stackEntity( )
+    Map<String, ResourceInfo> resourceInfoMap = resourceInfoMap( 'bucket-1', '"bucket-1.s3.example.com"' )
+    CompiledTemplate compiledTemplate = CompiledTemplate.of( stackEntity )
+    EXPRESSIONS.each { String expression ->
+      JsonNode expected = evaluateDecoded( expression, stackEntity, resourceInfoMap )
+      assertEquals( expression, expected, compiledTemplate.evaluate( JsonHelper.getJsonNodeFromString( expression ), resourceInfoMap, 'user' ) )
+      // memoized
+      assertEquals( expression, expected, compiledTemplate.evaluate( JsonHelper.getJsonNodeFromString( expression ), resourceInfoMap, 'user' ) )
+    }
+  }
+
+  @Test
+  void testReferenceChangeInvalidates( ) {
+    StackEntity stackEntity = stackEntity( )
+    CompiledTemplate compiledTemplate = CompiledTemplate.of( stackEntity )
+    JsonNode expression = JsonHelper.getJsonNodeFromString( '{"Fn::Join":[":",[{"Ref":"Bucket"},{"Fn::GetAtt":["Bucket","DomainName"]}]]}' )
+    Map<String, ResourceInfo> resourceInfoMap = resourceInfoMap( 'bucket-1', '"bucket-1.s3.example.com"' )
+    assertEquals( 'Result', '"bucket-1:bucket-1.s3.example.com"', compiledTemplate.evaluate( expression, resourceInfoMap, 'user' ).toString( ) )
+    resourceInfoMap.get( 'Bucket' ).setReferenceValueJson( '"bucket-2"' )
+    assertEquals( 'Result', '"bucket-2:bucket-1.s3.example.com"', compiledTemplate.evaluate( expression, resourceInfoMap, 'user' ).toString( ) )
+    ( (AWSS3BucketResourceInfo) resourceInfoMap.get( 'Bucket' ) ).setDomainName( '"bucket-2.s3.example.com"' )
+    assertEquals( 'Result', '"bucket-2:bucket-2.s3.example.com"', compiledTemplate.evaluate( expression, resourceInfoMap, 'user' ).toString( ) )
+  }
+
+  @Test
+  void testCompiledTemplateCached( ) {
+    CompiledTemplate compiledTemplate = CompiledTemplate.of( stackEntity( ) )
+    assertEquals( 'Same template', compiledTemplate, CompiledTemplate.of( stackEntity( ) ) )
+    StackEntity changed = stackEntity( )
+    changed.setConditionMapJson( StackEntityHelper.conditionMapToJson( [ IsProduction: false, IsDevelopment: true ] ) )
+    assertNotSame( 'Changed template', compiledTemplate, CompiledTemplate.of( changed ) )
+    assertEquals( 'Condition', '"none"',
+        CompiledTemplate.of( changed ).evaluate( JsonHelper.getJsonNodeFromString( '{"Fn::If":["IsProduction",{"Ref":"Bucket"},"none"]}' ),
+            resourceInfoMap( 'bucket-1', '"bucket-1.s3.example.com"' ), 'user' ).toString( ) )
+  }
+
+  /**
+   * Evaluates properties for a 500 resource template, as each resource step of a stack operation does.
+   */
+  @Test
+  void testLargeTemplateEvaluation( ) {
+    StackEntity stackEntity = stackEntity( )
+    Map<String, ResourceInfo> resourceInfoMap = resourceInfoMap( 'bucket-1', '"bucket-1.s3.example.com"' )
+    List<JsonNode> properties = ( 1..500 ).collect { int i ->
+      JsonHelper.getJsonNodeFromString( """{"BucketName":{"Fn::Join":["-",[{"Ref":"AWS::StackName"},"${i}",{"Ref":"Environment"}]]},
+          "Region":{"Fn::FindInMap":["RegionMap",{"Ref":"AWS::Region"},"AMI"]},
+          "Website":{"Fn::If":["IsProduction",{"Fn::GetAtt":["Bucket","DomainName"]},"none"]}}""" as String )
+    }
+    List<JsonNode> expected = properties.collect { JsonNode node -> evaluateDecoded( node.toString( ), stackEntity, resourceInfoMap ) }
+
+    CacheStats initial = CompiledTemplate.evaluationStats( )
+    List<JsonNode> actual = properties.collect { JsonNode node -> CompiledTemplate.of( stackEntity ).evaluate( node, resourceInfoMap, 'user' ) }
+    CacheStats evaluated = CompiledTemplate.evaluationStats( ).minus( initial )
+    assertEquals( 'Results', expected, actual )
+    assertEquals( 'Memoized evaluations', 0, evaluated.hitCount( ) )
+    assertEquals( 'Evaluations', 500, evaluated.missCount( ) )
+
+    initial = CompiledTemplate.evaluationStats( )
+    actual = properties.collect { JsonNode node -> CompiledTemplate.of( stackEntity ).evaluate( node, resourceInfoMap, 'user' ) }
+    evaluated = CompiledTemplate.evaluationStats( ).minus( initial )
+    assertEquals( 'Memoized results', expected, actual )
+    assertEquals( 'Memoized evaluations', 500, evaluated.hitCount( ) )
+    assertEquals( 'Evaluations', 0, evaluated.missCount( ) )
+  }
+
+  private static JsonNode evaluateDecoded( String expression, StackEntity stackEntity, Map<String, ResourceInfo> resourceInfoMap ) {
+    Template template = new Template( )
+    template.setResourceInfoMap( resourceInfoMap )
+    StackEntityHelper.populateTemplateWithStackEntity( template, stackEntity )
+    FunctionEvaluation.evaluateFunctions( JsonHelper.getJsonNodeFromString( expression ), template, 'user' )
+  }
+
+  private static Map<String, ResourceInfo> resourceInfoMap( String bucketName, String domainNameJson ) {
+    AWSS3BucketResourceInfo bucket = new AWSS3BucketResourceInfo( )
+    bucket.setLogicalResourceId( 'Bucket' )
+    bucket.setReady( true )
+    bucket.setReferenceValueJson( "\"${bucketName}\"" as String )
+    bucket.setDomainName( domainNameJson )
+    Map<String, ResourceInfo> resourceInfoMap = Maps.newLinkedHashMap( )
+    resourceInfoMap.put( 'Bucket', bucket )
+    resourceInfoMap
+  }
+
+  private static StackEntity stackEntity( ) {
+    StackEntity stackEntity = new StackEntity( )
+    stackEntity.setDescription( 'test' )
+    stackEntity.setTemplateFormatVersion( '2010-09-09' )
+    stackEntity.setPseudoParameterMapJson( StackEntityHelper.pseudoParameterMapToJson( [
+        'AWS::Region': '"eucalyptus"',
+        'AWS::StackName': '"stack"'
+    ] ) )
+    stackEntity.setMappingJson( StackEntityHelper.mappingToJson( [ RegionMap: [ eucalyptus: [ AMI: '"emi-12345678"' ] ] ] ) )
+    StackEntity.Parameter environment = new StackEntity.Parameter( )
+    environment.setKey( 'Environment' )
+    environment.setStringValue( 'prod' )
+    environment.setJsonValue( '"prod"' )
+    stackEntity.setParametersJson( StackEntityHelper.parametersToJson( [ environment ] as ArrayList ) )
+    stackEntity.setConditionMapJson( StackEntityHelper.conditionMapToJson( [ IsProduction: true, IsDevelopment: false ] ) )
+    stackEntity
+  }
+}
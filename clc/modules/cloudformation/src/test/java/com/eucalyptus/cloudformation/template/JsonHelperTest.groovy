@@ -0,0 +1,76 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.template
+
+import com.eucalyptus.cloudformation.ValidationErrorException
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ * Tests for parsing JSON with the shared object mapper.
+ */
+class JsonHelperTest {
+
+  private static final List<String> DOCUMENTS = [
+      '{"Version":"2012-10-17","Statement":[{"Effect":"Allow","Action":"s3:*","Resource":"*"}]}',
+      '{"BucketName":{"Ref":"Bucket"},"Tags":[{"Key":"Name","Value":"test"}]}',
+      '["a",1,true,null,{"b":1.5}]',
+      '"text"',
+      '1',
+  ]
+
+  @Test
+  void testParse( ) {
+    DOCUMENTS.each { String json ->
+      assertEquals( json, new ObjectMapper( ).readTree( json ), JsonHelper.getJsonNodeFromString( json ) )
+    }
+  }
+
+  @Test
+  void testIndependentTrees( ) {
+    String json = '{"Name":"original","Nested":{"Value":"original"}}'
+    JsonNode first = JsonHelper.getJsonNodeFromString( json )
+    JsonNode second = JsonHelper.getJsonNodeFromString( json )
+    assertNotSame( 'Tree', first, second )
+
+    ( (ObjectNode) first ).put( 'Name', 'modified' )
+    ( (ObjectNode) first.get( 'Nested' ) ).put( 'Value', 'modified' )
+    ( (ObjectNode) first ).put( 'Added', 'added' )
+
+    JsonNode third = JsonHelper.getJsonNodeFromString( json )
+    assertEquals( 'Unmodified tree', new ObjectMapper( ).readTree( json ), second )
+    assertEquals( 'Unmodified tree after change', new ObjectMapper( ).readTree( json ), third )
+  }
+
+  @Test
+  void testInvalid( ) {
+    assertNull( 'Null', JsonHelper.getJsonNodeFromString( null ) )
+    try {
+      JsonHelper.getJsonNodeFromString( '{"Value":' )
+      fail( 'Expected validation error' )
+    } catch ( ValidationErrorException e ) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.template.dependencies
+
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.fail
+
+/**
+ *
+ */
+class DependencyManagerTest {
+
+  @Test
+  void testDependencyWaves( ) {
+    DependencyManager manager = diamond( )
+    assertEquals( 'Dependency list', [ 'A', 'C', 'B', 'D' ], manager.dependencyList( ) )
+    assertEquals( 'Dependency waves', [ [ 'A' ], [ 'B', 'C' ], [ 'D' ] ], manager.dependencyWaves( ) )
+    assertEquals( 'Reverse dependents', [ 'B', 'C' ], manager.getReverseDependentNodes( 'D' ) as List )
+    assertEquals( 'Dependents', [ 'B', 'C' ], manager.getDependentNodes( 'A' ) as List )
+  }
+
+  @Test
+  void testCycle( ) {
+    DependencyManager manager = diamond( )
+    manager.addDependency( 'A', 'D' )
+    try {
+      manager.dependencyWaves( )
+      fail( 'Expected cycle' )
+    } catch ( CyclicDependencyException e ) {
+      assertEquals( 'Cycle', '[A, B, D]', e.getMessage( ) )
+    }
+  }
+
+  @Test
+  void testJsonRoundTrip( ) {
+    DependencyManager manager = diamond( )
+    String json = manager.toJson( )
+    assertEquals( 'JSON', '{"nodes":["C","A","B","D"],"dependents":[[3],[0,2],[3],[]]}', json )
+    DependencyManager copy = DependencyManager.fromJson( json )
+    assertEquals( 'Nodes', manager.getNodes( ) as List, copy.getNodes( ) as List )
+    assertEquals( 'Dependency waves', manager.dependencyWaves( ), copy.dependencyWaves( ) )
+  }
+
+  @Test
+  void testEarlierJsonForm( ) {
+    String json = '{"nodes":"[\\"C\\",\\"A\\",\\"B\\",\\"D\\"]","dependencies":"{\\"A\\":[\\"B\\",\\"C\\"],\\"B\\":[\\"D\\"],\\"C\\":[\\"D\\"]}"}'
+    DependencyManager manager = DependencyManager.fromJson( json )
+    assertEquals( 'Nodes', [ 'C', 'A', 'B', 'D' ], manager.getNodes( ) as List )
+    assertEquals( 'Dependency waves', [ [ 'A' ], [ 'B', 'C' ], [ 'D' ] ], manager.dependencyWaves( ) )
+  }
+
+  /**
+   * Wide template, many independent resources behind a single dependency.
+   */
+  @Test
+  void testWideTemplateWaves( ) {
+    DependencyManager manager = new DependencyManager( )
+    manager.addNode( 'Vpc' )
+    ( 1..100 ).each { int i ->
+      manager.addNode( "Subnet${i}" as String )
+      manager.addDependency( "Subnet${i}" as String, 'Vpc' )
+    }
+    List<List<String>> waves = manager.dependencyWaves( )
+    assertEquals( 'Waves', 2, waves.size( ) )
+    assertEquals( 'First wave', [ 'Vpc' ], waves[ 0 ] )
+    assertEquals( 'Second wave', ( 1..100 ).collect{ "Subnet${it}" as String } as Set, waves[ 1 ] as Set )
+  }
+
+  /**
+   * Deep template, a chain of dependent resources.
+   */
+  @Test
+  void testDeepTemplateWaves( ) {
+    DependencyManager manager = new DependencyManager( )
+    ( 1..10 ).each { int i ->
+      manager.addNode( "Resource${i}" as String )
+      if ( i > 1 ) manager.addDependency( "Resource${i}" as String, "Resource${i-1}" as String )
+    }
+    assertEquals( 'Waves', ( 1..10 ).collect{ [ "Resource${it}" as String ] }, manager.dependencyWaves( ) )
+  }
+
+  private static DependencyManager diamond( ) {
+    DependencyManager manager = new DependencyManager( )
+    [ 'C', 'A', 'B', 'D' ].each { String node -> manager.addNode( node ) }
+    manager.addDependency( 'B', 'A' )
+    manager.addDependency( 'C', 'A' )
+    manager.addDependency( 'D', 'B' )
+    manager.addDependency( 'D', 'C' )
+    manager
+  }
+}
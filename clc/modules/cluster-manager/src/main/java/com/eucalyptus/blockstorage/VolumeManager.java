@@ -404,6 +404,12 @@ public class VolumeManager {
       // Fire attach volume request to NC/CC
       final VolumeAttachCallback cb = new VolumeAttachCallback(attachVolume);
       AsyncRequests.newRequest(cb).dispatch(ccConfig);
+      try {
+        Clusters.lookup( ccConfig ).expediteRefresh( );
+      } catch ( Exception ex ) {
+        LOG.error( ex );
+        Logs.extreme( ).error( ex, ex );
+      }
     } else {
       throw new ClientComputeException( "IncorrectState", "Instance '"+instanceId+"' is not 'running'" );
     }
@@ -521,6 +527,7 @@ public class VolumeManager {
     		//GRZE: attach is idempotent, failure here is ok, throw new EucalyptusCloudException( e.getMessage( ) );
     	}*/
     	AsyncRequests.newRequest( ncDetach ).dispatch( cluster.getConfiguration( ) );
+      cluster.expediteRefresh( );
     	
     	//Update the state of the attachment to 'detaching'
       VmInstances.updateVolumeAttachment( vm, volumeId, AttachmentState.detaching );
@@ -65,6 +65,7 @@ package com.eucalyptus.cloud.run;
 import static com.eucalyptus.cloud.VmInstanceLifecycleHelpers.NetworkResourceVmInstanceLifecycleHelper;
 import static com.eucalyptus.util.RestrictedTypes.BatchAllocator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.persistence.EntityTransaction;
@@ -110,14 +111,14 @@ import com.eucalyptus.util.HasName;
 import com.eucalyptus.util.LogUtil;
 import com.eucalyptus.util.RestrictedTypes;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.compute.common.internal.vmtypes.VmType;
 import com.eucalyptus.vmtypes.VmTypes;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.TreeMultimap;
+import com.google.common.collect.Maps;
 
 public class AdmissionControl {
   private static Logger LOG = Logger.getLogger( AdmissionControl.class );
@@ -331,7 +332,7 @@ public class AdmissionControl {
     	  throw new RuntimeException("Maximum instance count must not be smaller than minimum instance count");
       
       /* Retrieve our context and list of clusters associated with this zone */
-      List<Cluster> authorizedClusters = this.doPrivilegedLookup( zoneName, vmTypeName );
+      List<Cluster> authorizedClusters = this.doPrivilegedLookup( zoneName, allocInfo.getVmType( ) );
       
       int remaining = maxAmount;
       int allocated = 0;
@@ -354,10 +355,9 @@ public class AdmissionControl {
             if( allocInfo.getPartition( ).equals( Partition.DEFAULT ) ) {
             	/* 
             	 * Ok, do we have enough slots in this partition to support our request? We should have at least
-            	 * the minimum. The list is sorted in order of resource availability from the cluster with the most 
-            	 * available to the cluster with the least amount available. This is why we don't check against the
-            	 * maxAmount value since its a best effort at this point. If we select the partition here and we
-            	 * can't fit maxAmount, based on the sorting order, the next partition will not fit maxAmount anyway. 
+            	 * the minimum. The list is ranked by the configured placement policy (by default from the cluster
+            	 * with the most available to the cluster with the least amount available). This is why we don't
+            	 * check against the maxAmount value since its a best effort at this point.
             	 */
             	int zoneAvailable = checkZoneAvailability( vmTypeName, partition, authorizedClusters );
             	if( zoneAvailable < minAmount )
@@ -454,17 +454,17 @@ public class AdmissionControl {
       return available;
     }
       
-    private List<Cluster> doPrivilegedLookup( String partitionName, String vmTypeName ) throws NotEnoughResourcesException {
+    private List<Cluster> doPrivilegedLookup( String partitionName, VmType vmType ) throws NotEnoughResourcesException {
       if ( Partition.DEFAULT_NAME.equals( partitionName ) ) {
         Iterable<Cluster> authorizedClusters = Iterables.filter( Clusters.getInstance( ).listValues( ), RestrictedTypes.filterPrivilegedWithoutOwner( ) );
-        Multimap<VmTypeAvailability, Cluster> sorted = TreeMultimap.create( );
+        Map<Cluster, List<VmTypeAvailability>> capacity = Maps.newLinkedHashMap( );
         for ( Cluster c : authorizedClusters ) {
-          sorted.put( c.getNodeState( ).getAvailability( vmTypeName ), c );
+          capacity.put( c, c.getNodeState( ).snapshot( ) );
         }
-        if ( sorted.isEmpty( ) ) {
+        if ( capacity.isEmpty( ) ) {
           throw new NotEnoughResourcesException( "Not enough resources: no availability zone is available in which you have permissions to run instances." );
         } else {
-          return Lists.newArrayList( sorted.values( ) );
+          return PlacementPolicies.policy( ).rank( vmType, capacity );
         }
       } else {
         ServiceConfiguration ccConfig = Topology.lookup( ClusterController.class, Partitions.lookupByName( partitionName ) );
@@ -763,6 +763,7 @@ public class ClusterAllocator implements Runnable {
   @Override
   public void run( ) {
     this.messages.run( );
+    this.cluster.expediteRefresh( );
   }
   
 }
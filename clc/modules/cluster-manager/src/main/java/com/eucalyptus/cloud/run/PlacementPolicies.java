@@ -0,0 +1,166 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloud.run;
+
+import java.util.List;
+import java.util.Map;
+import com.eucalyptus.cluster.ResourceState.VmTypeAvailability;
+import com.eucalyptus.compute.common.internal.vmtypes.VmType;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.ConfigurableProperty;
+import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.PropertyChangeListener;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Doubles;
+
+/**
+ * Policies for ranking clusters when placing instances.
+ *
+ * Policies score a point in time capacity snapshot for each cluster, the
+ * reservation itself is performed atomically by the cluster resource state
+ * so a stale ranking can only result in a less preferred placement.
+ */
+@ConfigurableClass( root = "cloud.placement", description = "Configuration options controlling instance placement." )
+public class PlacementPolicies {
+
+  @ConfigurableField( description = "Policy for selecting a cluster when no availability zone is requested ('spread', 'binpack', 'least-fragmentation')",
+      initial = "spread", changeListener = PlacementPolicyChangeListener.class )
+  public static volatile String POLICY = "spread";
+
+  public enum PlacementPolicy {
+    /**
+     * Prefer the cluster with the most availability for the type.
+     */
+    Spread( "spread" ) {
+      @Override
+      double score( final VmType type, final List<VmTypeAvailability> capacity ) {
+        return available( type, capacity );
+      }
+    },
+    /**
+     * Prefer the cluster with the least (non-zero) availability for the type.
+     */
+    BinPack( "binpack" ) {
+      @Override
+      double score( final VmType type, final List<VmTypeAvailability> capacity ) {
+        return -available( type, capacity );
+      }
+    },
+    /**
+     * Prefer the cluster where the largest type has the least remaining
+     * capacity, so that capacity for large types is not consumed by smaller
+     * types while less fragmented clusters are available.
+     */
+    LeastFragmentation( "least-fragmentation" ) {
+      @Override
+      double score( final VmType type, final List<VmTypeAvailability> capacity ) {
+        final VmTypeAvailability largest = Iterables.getLast( capacity, null );
+        if ( largest == null || largest.getMax( ) <= 0 || largest.getType( ).equals( type ) ) {
+          return -available( type, capacity );
+        }
+        return 1d - ( (double) largest.getAvailable( ) / largest.getMax( ) );
+      }
+    },
+    ;
+
+    private final String value;
+
+    PlacementPolicy( final String value ) {
+      this.value = value;
+    }
+
+    /**
+     * Score the capacity for placement of the given type, higher is better.
+     *
+     * @param type The type to place
+     * @param capacity The capacity snapshot ordered by type
+     * @return The score
+     */
+    abstract double score( VmType type, List<VmTypeAvailability> capacity );
+
+    /**
+     * Rank the given targets by their capacity.
+     *
+     * Targets without availability for the type are ranked last.
+     *
+     * @param type The type to place
+     * @param capacityByTarget Capacity snapshots for each target
+     * @return The targets in order of preference
+     */
+    public <T> List<T> rank( final VmType type, final Map<T,List<VmTypeAvailability>> capacityByTarget ) {
+      final List<Map.Entry<T,List<VmTypeAvailability>>> entries = Lists.newArrayList( capacityByTarget.entrySet( ) );
+      final List<Map.Entry<T,List<VmTypeAvailability>>> sorted = new Ordering<Map.Entry<T,List<VmTypeAvailability>>>( ) {
+        @Override
+        public int compare( final Map.Entry<T,List<VmTypeAvailability>> left,
+                            final Map.Entry<T,List<VmTypeAvailability>> right ) {
+          final boolean leftAvailable = available( type, left.getValue( ) ) > 0;
+          final boolean rightAvailable = available( type, right.getValue( ) ) > 0;
+          if ( leftAvailable != rightAvailable ) {
+            return leftAvailable ? -1 : 1;
+          }
+          final int result = Doubles.compare( score( type, right.getValue( ) ), score( type, left.getValue( ) ) );
+          return result != 0 ?
+              result :
+              Integer.compare( available( type, right.getValue( ) ), available( type, left.getValue( ) ) );
+        }
+      }.sortedCopy( entries );
+      final List<T> ranked = Lists.newArrayListWithCapacity( sorted.size( ) );
+      for ( final Map.Entry<T,List<VmTypeAvailability>> entry : sorted ) {
+        ranked.add( entry.getKey( ) );
+      }
+      return ranked;
+    }
+
+    private static int available( final VmType type, final List<VmTypeAvailability> capacity ) {
+      for ( final VmTypeAvailability availability : capacity ) {
+        if ( availability.getType( ).equals( type ) ) {
+          return availability.getAvailable( );
+        }
+      }
+      return 0;
+    }
+
+    public static Optional<PlacementPolicy> fromString( final String value ) {
+      for ( final PlacementPolicy policy : values( ) ) {
+        if ( policy.value.equalsIgnoreCase( value.trim( ) ) ) {
+          return Optional.of( policy );
+        }
+      }
+      return Optional.absent( );
+    }
+  }
+
+  public static PlacementPolicy policy( ) {
+    return PlacementPolicy.fromString( POLICY ).or( PlacementPolicy.Spread );
+  }
+
+  public static class PlacementPolicyChangeListener implements PropertyChangeListener {
+    @Override
+    public void fireChange( final ConfigurableProperty t, final Object newValue ) throws ConfigurablePropertyException {
+      if ( newValue == null || !PlacementPolicy.fromString( String.valueOf( newValue ) ).isPresent( ) ) {
+        throw new ConfigurablePropertyException( "Invalid placement policy " + newValue + "; valid values are 'spread', 'binpack', 'least-fragmentation'" );
+      }
+    }
+  }
+}
@@ -178,6 +178,8 @@ import com.google.common.collect.Sets;
 
 import edu.ucsb.eucalyptus.cloud.NodeInfo;
 import edu.ucsb.eucalyptus.cloud.VirtualBootRecord;
+import edu.ucsb.eucalyptus.cloud.VmDescribeResponseType;
+import edu.ucsb.eucalyptus.cloud.VmInfo;
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 import edu.ucsb.eucalyptus.msgs.ClusterMigrateInstancesType;
 import edu.ucsb.eucalyptus.msgs.NodeCertInfo;
@@ -243,6 +245,7 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
   private boolean                                        hasClusterCert = false;
   private boolean                                        hasNodeCert    = false;
   private final ReadWriteLock                            gateLock       = new ReentrantReadWriteLock( );
+  private final RefreshScheduler<Refresh>                refreshScheduler;
   
   enum ZoneRegistration implements Predicate<Cluster> {
     REGISTER {
@@ -453,11 +456,54 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
       }
     }
     
+    /**
+     * Dispatch without waiting for the reply.
+     *
+     * @throws CancellationException if there is nothing to refresh
+     */
+    @SuppressWarnings( "unchecked" )
+    CheckedListenableFuture<BaseMessage> dispatch( final Cluster input ) throws Exception {
+      final SubjectRemoteCallbackFactory<RemoteCallback, Cluster> factory = newSubjectMessageFactory( this.refresh, input );
+      final RemoteCallback messageCallback = factory.newInstance( );
+      return AsyncRequests.newRequest( messageCallback ).dispatch( input.getConfiguration( ) );
+    }
+
     @Override
     public String toString( ) {
       return this.name( ) + ":" + this.refresh.getSimpleName( );
     }
   }
+
+  private static final class RefreshDispatcher implements RefreshScheduler.Dispatcher<Refresh> {
+    private final Cluster cluster;
+
+    private RefreshDispatcher( final Cluster cluster ) {
+      this.cluster = cluster;
+    }
+
+    @Override
+    public CheckedListenableFuture<?> dispatch( final Refresh kind ) throws Exception {
+      return kind.dispatch( this.cluster );
+    }
+
+    /**
+     * Volatile instance replies are compared by instance state, other replies
+     * are always treated as changed.
+     */
+    @Override
+    public Object fingerprint( final Refresh kind, final Object reply ) {
+      if ( kind == Refresh.VOLATILEINSTANCES ) {
+        final Set<String> instanceStates = Sets.newTreeSet( );
+        if ( reply instanceof VmDescribeResponseType ) {
+          for ( final VmInfo vmInfo : ( (VmDescribeResponseType) reply ).getVms( ) ) {
+            instanceStates.add( vmInfo.getInstanceId( ) + ":" + vmInfo.getStateName( ) );
+          }
+        }
+        return instanceStates;
+      }
+      return null;
+    }
+  }
   
   private static void fireCallback( final Cluster parent, final SubjectRemoteCallbackFactory<RemoteCallback, Cluster> factory, final Callback.Completion transitionCallback ) {
     fireCallback( parent, parent.getConfiguration( ), true, factory, transitionCallback );
@@ -627,6 +673,7 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
     this.configuration = configuration;
     this.nodeState = new ResourceState( configuration.getName( ) );
     this.nodeMap = new ConcurrentSkipListMap<String, NodeInfo>( );
+    this.refreshScheduler = new RefreshScheduler<>( configuration.getName( ), Refresh.class, new RefreshDispatcher( this ) );
     this.stateMachine = new StateMachineBuilder<Cluster, State, Transition>( this, State.PENDING ) {
       {
         final TransitionAction<Cluster> noop = Transitions.noop( );
@@ -720,9 +767,15 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
           case ENABLED_RSC:
           case ENABLED_VMS:
           case ENABLED_SERVICE_CHECK:
-            if ( initialized && tick.isAsserted( VmInstances.VOLATILE_STATE_INTERVAL_SEC )
-                 && Component.State.ENABLED.equals( this.configuration.lookupState( ) ) ) {
-              Refresh.VOLATILEINSTANCES.fire( this );
+            if ( initialized && Component.State.ENABLED.equals( this.configuration.lookupState( ) ) ) {
+              this.refreshScheduler.poll(
+                  Refresh.VOLATILEINSTANCES,
+                  TimeUnit.SECONDS.toMillis( VmInstances.VOLATILE_STATE_INTERVAL_SEC ) );
+              if ( tick.isAsserted( REFRESH_STATISTICS_INTERVAL_SEC ) && LOG.isDebugEnabled( ) ) {
+                for ( final Refresh refresh : Refresh.values( ) ) {
+                  LOG.debug( this.getName( ) + ": refresh " + refresh.name( ) + " " + this.refreshScheduler.getStatistics( refresh ) );
+                }
+              }
             }
             break;
           default:
@@ -743,6 +796,7 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
     }
   }
   
+  private static final long    REFRESH_STATISTICS_INTERVAL_SEC = 300;
   private static final State[] PATH_NOTREADY      = new State[] { State.PENDING,
                                                                   State.AUTHENTICATING,
                                                                   State.STARTING,
@@ -1268,15 +1322,33 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
     }
   }
   
+  /**
+   * Refresh resource availability, waiting for the reply.
+   *
+   * <p>Concurrent callers share a single outstanding request.</p>
+   */
   public void refreshResources( ) {
     try {
-      Refresh.RESOURCES.fire( this );
+      this.refreshScheduler.refresh( Refresh.RESOURCES ).get( );
+    } catch ( InterruptedException ex ) {
+      Thread.currentThread( ).interrupt( );
     } catch ( Exception ex ) {
       LOG.error( ex );
       LOG.debug(  ex, ex );
     }
   }
   
+  /**
+   * Poll for volatile instance state at the base interval.
+   *
+   * <p>Called after sending requests that change instance state (run,
+   * terminate, volume attach or detach) so the change is observed promptly
+   * even when polling has backed off.</p>
+   */
+  public void expediteRefresh( ) {
+    this.refreshScheduler.expedite( Refresh.VOLATILEINSTANCES );
+  }
+
   public void check( ) throws Faults.CheckException, IllegalStateException, InterruptedException, ServiceStateException {
     if ( this.gateLock.readLock( ).tryLock( 60, TimeUnit.SECONDS ) ) {
       try {    	
@@ -0,0 +1,373 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cluster;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import com.eucalyptus.util.async.CheckedListenableFuture;
+import com.eucalyptus.util.async.Futures;
+
+/**
+ * Non-blocking refresh of cluster state.
+ *
+ * <p>Each kind of refresh has at most one request outstanding, a refresh
+ * requested while one is in flight shares the outstanding result. Polled kinds
+ * back off while replies are unchanged or slow and return to the base interval
+ * when the state changes or the poll is expedited.</p>
+ */
+public class RefreshScheduler<K extends Enum<K>> {
+  private static final Logger LOG = Logger.getLogger( RefreshScheduler.class );
+  static final int MAX_BACKOFF_FACTOR = 8;
+
+  public interface Dispatcher<K> {
+    /**
+     * Dispatch a refresh request without waiting for the reply.
+     *
+     * @throws CancellationException if there is currently nothing to refresh
+     */
+    CheckedListenableFuture<?> dispatch( K kind ) throws Exception;
+
+    /**
+     * Summary of a reply used to detect unchanged state, null if unknown.
+     */
+    @Nullable
+    Object fingerprint( K kind, @Nullable Object reply );
+  }
+
+  private final String name;
+  private final Dispatcher<K> dispatcher;
+  private final Map<K, KindState> kinds;
+  private final LongSupplier clock;
+
+  public RefreshScheduler( final String name,
+                           final Class<K> kindClass,
+                           final Dispatcher<K> dispatcher ) {
+    this( name, kindClass, dispatcher, System::currentTimeMillis );
+  }
+
+  /**
+   * @param clock Supplier for the current time in milliseconds
+   */
+  RefreshScheduler( final String name,
+                    final Class<K> kindClass,
+                    final Dispatcher<K> dispatcher,
+                    final LongSupplier clock ) {
+    this.name = name;
+    this.dispatcher = dispatcher;
+    this.clock = clock;
+    this.kinds = new EnumMap<>( kindClass );
+    for ( final K kind : kindClass.getEnumConstants( ) ) {
+      this.kinds.put( kind, new KindState( ) );
+    }
+  }
+
+  /**
+   * Refresh now, or join the refresh already in flight.
+   *
+   * <p>The returned future has the reply or null if there was nothing to
+   * refresh.</p>
+   */
+  public CheckedListenableFuture<Object> refresh( final K kind ) {
+    final KindState state = this.kinds.get( kind );
+    while ( true ) {
+      final CheckedListenableFuture<Object> outstanding = state.outstanding.get( );
+      if ( outstanding != null ) {
+        state.coalesced.incrementAndGet( );
+        return outstanding;
+      }
+      final CheckedListenableFuture<Object> future = Futures.newGenericeFuture( );
+      if ( state.outstanding.compareAndSet( null, future ) ) {
+        this.dispatch( kind, state, future );
+        return future;
+      }
+    }
+  }
+
+  /**
+   * Refresh if the (backed off) poll interval has elapsed and no refresh is in flight.
+   *
+   * @return the refresh dispatched, null if not yet due
+   */
+  @Nullable
+  public CheckedListenableFuture<Object> poll( final K kind, final long baseIntervalMillis ) {
+    final KindState state = this.kinds.get( kind );
+    final long now = this.clock.getAsLong( );
+    state.baseIntervalMillis = baseIntervalMillis;
+    if ( state.outstanding.get( ) != null || now < state.nextPoll ) {
+      return null;
+    }
+    state.nextPoll = saturatedAdd( now, saturatedMultiply( baseIntervalMillis, state.backoffFactor ) );
+    return this.refresh( kind );
+  }
+
+  /**
+   * Poll at the base interval starting from the next poll.
+   *
+   * <p>Used after sending requests that change state on the cluster, a reply
+   * in flight may predate the change so the poll following it is not delayed.</p>
+   */
+  public void expedite( final K kind ) {
+    final KindState state = this.kinds.get( kind );
+    state.backoffFactor = 1;
+    state.nextPoll = 0;
+    state.expedited = true;
+  }
+
+  public Statistics getStatistics( final K kind ) {
+    return this.kinds.get( kind ).statistics( this.clock.getAsLong( ) );
+  }
+
+  private void dispatch( final K kind, final KindState state, final CheckedListenableFuture<Object> future ) {
+    final long started = this.clock.getAsLong( );
+    state.expedited = false;
+    state.dispatched.incrementAndGet( );
+    final CheckedListenableFuture<?> reply;
+    try {
+      reply = this.dispatcher.dispatch( kind );
+    } catch ( final CancellationException e ) {
+      this.complete( kind, state, future, started, null, null );
+      return;
+    } catch ( final Exception e ) {
+      this.complete( kind, state, future, started, null, e );
+      return;
+    }
+    reply.addListener( new Runnable( ) {
+      @Override
+      public void run( ) {
+        try {
+          RefreshScheduler.this.complete( kind, state, future, started, reply.get( ), null );
+        } catch ( final ExecutionException e ) {
+          RefreshScheduler.this.complete( kind, state, future, started, null, e.getCause( ) );
+        } catch ( final CancellationException e ) {
+          RefreshScheduler.this.complete( kind, state, future, started, null, null );
+        } catch ( final Throwable e ) {
+          RefreshScheduler.this.complete( kind, state, future, started, null, e );
+        }
+      }
+    } );
+  }
+
+  private void complete( final K kind,
+                         final KindState state,
+                         final CheckedListenableFuture<Object> future,
+                         final long started,
+                         @Nullable final Object reply,
+                         @Nullable final Throwable error ) {
+    final long now = this.clock.getAsLong( );
+    final long duration = now - started;
+    state.duration.record( duration );
+    boolean changed = false;
+    if ( error == null ) {
+      final long lastRefreshed = state.lastRefreshed;
+      if ( lastRefreshed > 0 ) {
+        state.lag.record( now - lastRefreshed );
+      }
+      state.lastRefreshed = now;
+      final Object fingerprint = this.dispatcher.fingerprint( kind, reply );
+      changed = fingerprint == null || !Objects.equals( fingerprint, state.lastFingerprint );
+      state.lastFingerprint = fingerprint;
+    } else {
+      state.failed.incrementAndGet( );
+      LOG.debug( this.name + ": refresh " + kind + " failed: " + error.getMessage( ) );
+    }
+
+    final boolean slow = duration > state.baseIntervalMillis;
+    if ( state.expedited ) {
+      state.nextPoll = 0;
+    } else if ( changed && !slow ) {
+      state.backoffFactor = 1;
+      state.nextPoll = saturatedAdd( started, state.baseIntervalMillis );
+    } else {
+      final int factor = Math.min( state.backoffFactor * 2, MAX_BACKOFF_FACTOR );
+      if ( factor != state.backoffFactor && LOG.isTraceEnabled( ) ) {
+        LOG.trace( this.name + ": refresh " + kind + " backing off to " + factor + "x after " + duration + "ms" );
+      }
+      state.backoffFactor = factor;
+      state.nextPoll = saturatedAdd( started, saturatedMultiply( state.baseIntervalMillis, factor ) );
+    }
+
+    state.outstanding.compareAndSet( future, null );
+    if ( error == null ) {
+      future.set( reply );
+    } else {
+      future.setException( error );
+    }
+  }
+
+  private static long saturatedAdd( final long a, final long b ) {
+    final long result = a + b;
+    return ( ( a ^ result ) & ( b ^ result ) ) < 0 ? Long.MAX_VALUE : result;
+  }
+
+  private static long saturatedMultiply( final long a, final long b ) {
+    return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+  }
+
+  private static final class KindState {
+    private final AtomicReference<CheckedListenableFuture<Object>> outstanding = new AtomicReference<>( );
+    private final AtomicLong dispatched = new AtomicLong( );
+    private final AtomicLong coalesced = new AtomicLong( );
+    private final AtomicLong failed = new AtomicLong( );
+    private final Histogram duration = new Histogram( );
+    private final Histogram lag = new Histogram( );
+    private volatile long baseIntervalMillis = Long.MAX_VALUE;
+    private volatile long nextPoll = 0;
+    private volatile int backoffFactor = 1;
+    private volatile boolean expedited = false;
+    private volatile long lastRefreshed = 0;
+    private volatile Object lastFingerprint;
+
+    private Statistics statistics( final long now ) {
+      return new Statistics(
+          this.dispatched.get( ),
+          this.coalesced.get( ),
+          this.failed.get( ),
+          this.backoffFactor,
+          this.lastRefreshed == 0 ? -1 : now - this.lastRefreshed,
+          this.duration.snapshot( ),
+          this.lag.snapshot( ) );
+    }
+  }
+
+  /**
+   * Counts of millisecond values in power of two buckets, the last bucket is unbounded.
+   */
+  static final class Histogram {
+    static final int BUCKETS = 20;
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+    void record( final long millis ) {
+      final int bucket = millis <= 0 ? 0 : Math.min( BUCKETS - 1, 64 - Long.numberOfLeadingZeros( millis ) );
+      this.counts.incrementAndGet( bucket );
+    }
+
+    long[] snapshot( ) {
+      final long[] snapshot = new long[ BUCKETS ];
+      for ( int i = 0; i < BUCKETS; i++ ) {
+        snapshot[ i ] = this.counts.get( i );
+      }
+      return snapshot;
+    }
+
+    /**
+     * Upper bound (exclusive) in milliseconds for values in the given bucket
+     */
+    static long bucketLimit( final int bucket ) {
+      return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    static long percentile( final long[] counts, final double percentile ) {
+      long total = 0;
+      for ( final long count : counts ) total += count;
+      final long target = (long) Math.ceil( total * percentile );
+      long seen = 0;
+      for ( int i = 0; i < counts.length; i++ ) {
+        seen += counts[ i ];
+        if ( seen >= target && seen > 0 ) return bucketLimit( i );
+      }
+      return 0;
+    }
+  }
+
+  public static final class Statistics {
+    private final long dispatched;
+    private final long coalesced;
+    private final long failed;
+    private final int backoffFactor;
+    private final long lagMillis;
+    private final long[] durations;
+    private final long[] lags;
+
+    Statistics( final long dispatched,
+                final long coalesced,
+                final long failed,
+                final int backoffFactor,
+                final long lagMillis,
+                final long[] durations,
+                final long[] lags ) {
+      this.dispatched = dispatched;
+      this.coalesced = coalesced;
+      this.failed = failed;
+      this.backoffFactor = backoffFactor;
+      this.lagMillis = lagMillis;
+      this.durations = durations;
+      this.lags = lags;
+    }
+
+    public long getDispatched( ) {
+      return dispatched;
+    }
+
+    public long getCoalesced( ) {
+      return coalesced;
+    }
+
+    public long getFailed( ) {
+      return failed;
+    }
+
+    public int getBackoffFactor( ) {
+      return backoffFactor;
+    }
+
+    /**
+     * Milliseconds since the last successful refresh, -1 if never refreshed.
+     */
+    public long getLagMillis( ) {
+      return lagMillis;
+    }
+
+    /**
+     * Request duration counts, bucket i holds durations below 2^i milliseconds.
+     */
+    public long[] getDurations( ) {
+      return durations.clone( );
+    }
+
+    /**
+     * Counts of time between successful refreshes, bucketed as for durations.
+     */
+    public long[] getLags( ) {
+      return lags.clone( );
+    }
+
+    @Override
+    public String toString( ) {
+      return "dispatched=" + dispatched +
+          " coalesced=" + coalesced +
+          " failed=" + failed +
+          " backoff=" + backoffFactor + "x" +
+          " lag=" + lagMillis + "ms" +
+          " duration.p50<" + Histogram.percentile( durations, 0.5 ) + "ms" +
+          " duration.p99<" + Histogram.percentile( durations, 0.99 ) + "ms" +
+          " lag.p50<" + Histogram.percentile( lags, 0.5 ) + "ms" +
+          " lag.p99<" + Histogram.percentile( lags, 0.99 ) + "ms";
+    }
+  }
+}
@@ -62,15 +62,20 @@
 
 package com.eucalyptus.cluster;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nonnull;
 
 import com.eucalyptus.auth.principal.AccountFullName;
@@ -89,6 +94,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import edu.ucsb.eucalyptus.msgs.ResourceType;
 
 public class ResourceState {
@@ -98,6 +104,7 @@ public class ResourceState {
   private NavigableSet<ResourceToken>                        submittedTokens;
   private NavigableSet<ResourceToken>                        redeemedTokens;
   private String                                             clusterName;
+  private final ReadWriteLock                                updateLock = new ReentrantReadWriteLock( );
 
   public static class NoSuchTokenException extends Exception {
     private static final long serialVersionUID = 1L;
@@ -130,48 +137,60 @@ public class ResourceState {
     } );
   }
   
-  public synchronized List<ResourceToken> requestResourceAllocation( Allocation allocInfo, int minAmount, int maxAmount ) throws NotEnoughResourcesException {
-    VmTypeAvailability vmTypeStatus = this.typeMap.get( allocInfo.getVmType( ).getName( ) );
-    Integer available = vmTypeStatus.getAvailable( );
-    NavigableSet<VmTypeAvailability> sorted = this.sorted( );
-    LOG.debug( LogUtil.header( "BEFORE ALLOCATE" ) );
-    LOG.debug( sorted );
-    //:: if not enough, then bail out :://
-    final Integer quantity;
-    if ( vmTypeStatus.getAvailable( ) < minAmount ) {
-      throw new NotEnoughResourcesException( "Not enough resources (" + available + " < " + minAmount + ": vm instances." );
-    } else {
-      quantity = ( maxAmount < available
-                                        ? maxAmount
-                                        : available );
-    }
+  /**
+   * Reserve resources for the given allocation.
+   *
+   * <p>Availability for the requested type is reserved atomically so
+   * concurrent allocations do not serialize on this state. Availability for
+   * other types is adjusted on a best effort basis until the next resource
+   * refresh.</p>
+   */
+  public List<ResourceToken> requestResourceAllocation( Allocation allocInfo, int minAmount, int maxAmount ) throws NotEnoughResourcesException {
+    final VmTypeAvailability vmTypeStatus = this.typeMap.get( allocInfo.getVmType( ).getName( ) );
+    final List<ResourceToken> tokenList = Lists.newArrayList( );
+    final Lock lock = this.updateLock.readLock( );
+    lock.lock( );
+    try {
+      final Map<VmTypeAvailability,Integer> before = this.availabilitySnapshot( );
+      final Integer available = before.get( vmTypeStatus );
+      LOG.debug( LogUtil.header( "BEFORE ALLOCATE" ) );
+      LOG.debug( before );
+      //:: if not enough, then bail out :://
+      final int quantity = vmTypeStatus.reserve( minAmount, maxAmount );
+      if ( quantity < minAmount ) {
+        throw new NotEnoughResourcesException( "Not enough resources (" + available + " < " + minAmount + ": vm instances." );
+      }
 
-    Set<VmTypeAvailability> tailSet = sorted.tailSet( vmTypeStatus );
-    Set<VmTypeAvailability> headSet = sorted.headSet( vmTypeStatus );
-    LOG.debug( LogUtil.header( "DURING ALLOCATE" ) );
-    LOG.debug( LogUtil.subheader( "TAILSET: \n" + tailSet ) );
-    LOG.debug( LogUtil.subheader( "HEADSET: \n" + headSet ) );
-    //:: decrement available resources across the "active" partition :://
-    for ( VmTypeAvailability v : tailSet )
-      v.decrement( quantity );
-    for ( VmTypeAvailability v : headSet )
-      v.setAvailable( vmTypeStatus.getAvailable( ) );
-    LOG.debug( LogUtil.header( "AFTER ALLOCATE" ) );
-    LOG.debug( sorted );
-    List<ResourceToken> tokenList = Lists.newArrayList( );
-    for ( int i = 0; i < quantity; i++ ) {
-      try {
-        ResourceToken token = new ResourceToken( allocInfo, i );
-        LOG.debug( EventType.TOKEN_RESERVED.name( ) + ": " + token.toString( ) );
-        this.pendingTokens.add( token );
-        tokenList.add( token );
-      } catch ( Exception ex ) {
-        LOG.error( ex );
-        Logs.extreme( ).error( ex, ex );
-        for ( ResourceToken token : tokenList ) {
-          this.pendingTokens.remove( token );
+      //:: decrement available resources across the "active" partition :://
+      final int remaining = vmTypeStatus.getAvailable( );
+      for ( final Map.Entry<VmTypeAvailability,Integer> entry : before.entrySet( ) ) {
+        final VmTypeAvailability v = entry.getKey( );
+        if ( v == vmTypeStatus ) continue;
+        if ( entry.getValue( ) < available ||
+            ( entry.getValue( ).equals( available ) && v.getType( ).compareTo( vmTypeStatus.getType( ) ) > 0 ) ) {
+          v.decrement( quantity );
+        } else {
+          v.lowerTo( remaining );
         }
       }
+      LOG.debug( LogUtil.header( "AFTER ALLOCATE" ) );
+      LOG.debug( this.availabilitySnapshot( ) );
+      for ( int i = 0; i < quantity; i++ ) {
+        try {
+          ResourceToken token = new ResourceToken( allocInfo, i );
+          LOG.debug( EventType.TOKEN_RESERVED.name( ) + ": " + token.toString( ) );
+          this.pendingTokens.add( token );
+          tokenList.add( token );
+        } catch ( Exception ex ) {
+          LOG.error( ex );
+          Logs.extreme( ).error( ex, ex );
+          for ( ResourceToken token : tokenList ) {
+            this.pendingTokens.remove( token );
+          }
+        }
+      }
+    } finally {
+      lock.unlock( );
     }
     return tokenList;
   }
@@ -237,7 +256,7 @@ public class ResourceState {
   }
 
 
-  public synchronized void releaseToken( ResourceToken token ) {
+  public void releaseToken( ResourceToken token ) {
     LOG.debug( EventType.TOKEN_RELEASED.name( ) + ": " + token.toString( ) );
     if ( this.pendingTokens.remove( token ) ) {
       // It is only safe to adjust availability for the vm type that was
@@ -248,14 +267,14 @@ public class ResourceState {
       // on resource refresh.
       final VmTypeAvailability vmAvailable = this.typeMap.get( token.getAllocationInfo( ).getVmType( ).getName( ) );
       if ( vmAvailable != null ) {
-        vmAvailable.decrement( -1 );
+        vmAvailable.release( 1 );
       }
     }
     this.submittedTokens.remove( token );
     this.redeemedTokens.remove( token );
   }
   
-  public synchronized void submitToken( ResourceToken token ) throws NoSuchTokenException {
+  public void submitToken( ResourceToken token ) throws NoSuchTokenException {
     LOG.debug( EventType.TOKEN_SUBMITTED.name( ) + ": " + token.toString( ) );
     if ( this.pendingTokens.remove( token ) ) {
       this.submittedTokens.add( token );
@@ -264,7 +283,7 @@ public class ResourceState {
     }
   }
   
-  public synchronized void redeemToken( ResourceToken token ) throws NoSuchTokenException {
+  public void redeemToken( ResourceToken token ) throws NoSuchTokenException {
     LOG.debug( EventType.TOKEN_REDEEMED.name( ) + ": " + token.toString( ) );
     if ( this.submittedTokens.remove( token ) || this.pendingTokens.remove( token ) ) {
       this.redeemedTokens.add( token );
@@ -278,11 +297,21 @@ public class ResourceState {
     }
   }
 
-  public synchronized boolean isPending( final ResourceToken token ) {
+  public boolean isPending( final ResourceToken token ) {
     return this.pendingTokens.contains( token );
   }
 
-  public synchronized void update( List<ResourceType> rscUpdate ) {
+  public void update( List<ResourceType> rscUpdate ) {
+    final Lock lock = this.updateLock.writeLock( );
+    lock.lock( );
+    try {
+      doUpdate( rscUpdate );
+    } finally {
+      lock.unlock( );
+    }
+  }
+
+  private void doUpdate( List<ResourceType> rscUpdate ) {
     long expiryAge = System.currentTimeMillis( ) - TimeUnit.MINUTES.toMillis( getExpiryMinutes( 15 ) );
     expirePendingTokens( expiryAge );
 
@@ -333,14 +362,28 @@ public class ResourceState {
     }
   }
 
-  private NavigableSet<VmTypeAvailability> sorted( ) {
-    NavigableSet<VmTypeAvailability> available = new TreeSet<>( );
-    for ( String typeName : this.typeMap.keySet( ) )
-      available.add( this.typeMap.get( typeName ) );
-    available.add( VmTypeAvailability.ZERO );
+  private Map<VmTypeAvailability,Integer> availabilitySnapshot( ) {
+    final Map<VmTypeAvailability,Integer> available = Maps.newLinkedHashMap( );
+    for ( final VmTypeAvailability v : this.typeMap.values( ) ) {
+      available.put( v, v.getAvailable( ) );
+    }
     LOG.debug( "Resource information for " + this.clusterName );
     return available;
   }
+
+  /**
+   * Get a point in time copy of the availability for all types.
+   *
+   * @return The availability ordered by type
+   */
+  public List<VmTypeAvailability> snapshot( ) {
+    final List<VmTypeAvailability> snapshot = Lists.newArrayList( );
+    for ( final VmTypeAvailability v : this.typeMap.values( ) ) {
+      snapshot.add( new VmTypeAvailability( v.getType( ), v.getMax( ), v.getAvailable( ) ) );
+    }
+    Collections.sort( snapshot, VmTypeAvailability.TYPE_ORDER );
+    return snapshot;
+  }
   
   public VmTypeAvailability getAvailability( String vmTypeName ) {
     return this.typeMap.get( vmTypeName );
@@ -353,14 +396,21 @@ public class ResourceState {
   }
   
   public static class VmTypeAvailability implements Comparable {
-    private VmType type;
-    private int    max;
-    private int    available;
+    public static final Comparator<VmTypeAvailability> TYPE_ORDER = new Comparator<VmTypeAvailability>( ) {
+      @Override
+      public int compare( final VmTypeAvailability o1, final VmTypeAvailability o2 ) {
+        return o1.getType( ).compareTo( o2.getType( ) );
+      }
+    };
+
+    private final VmType        type;
+    private volatile int        max;
+    private final AtomicInteger available;
     
     public VmTypeAvailability( final VmType type, final int max, final int available ) {
       this.type = type;
       this.max = max;
-      this.available = available;
+      this.available = new AtomicInteger( available );
     }
     
     public VmType getType( ) {
@@ -368,10 +418,41 @@ public class ResourceState {
     }
     
     public void decrement( int quantity ) {
-      this.available -= quantity;
-      this.available = ( this.available < 0 )
-                                             ? 0
-                                             : this.available;
+      int current;
+      do {
+        current = this.available.get( );
+      } while ( !this.available.compareAndSet( current, Math.max( 0, current - quantity ) ) );
+    }
+
+    /**
+     * Atomically reserve up to the maximum quantity, limited by availability.
+     *
+     * @return The quantity reserved, zero if less than the minimum is available
+     */
+    public int reserve( final int minQuantity, final int maxQuantity ) {
+      int current;
+      int quantity;
+      do {
+        current = this.available.get( );
+        quantity = Math.min( current, maxQuantity );
+        if ( quantity <= 0 || quantity < minQuantity ) return 0;
+      } while ( !this.available.compareAndSet( current, current - quantity ) );
+      return quantity;
+    }
+
+    public void release( final int quantity ) {
+      this.available.addAndGet( quantity );
+    }
+
+    /**
+     * Atomically reduce availability to the given value if currently higher.
+     */
+    public void lowerTo( final int value ) {
+      int current;
+      do {
+        current = this.available.get( );
+        if ( current <= value ) return;
+      } while ( !this.available.compareAndSet( current, value ) );
     }
     
     public int getMax( ) {
@@ -383,11 +464,11 @@ public class ResourceState {
     }
     
     public int getAvailable( ) {
-      return available;
+      return available.get( );
     }
     
     public void setAvailable( final int available ) {
-      this.available = available;
+      this.available.set( available );
     }
     
     @SuppressWarnings( "RedundantIfStatement" )
@@ -418,7 +499,7 @@ public class ResourceState {
     public String toString( ) {
       return "VmTypeAvailability " +
              " " + type +
-             " " + available +
+             " " + available.get( ) +
              " / " + max;
     }
     
@@ -443,6 +524,17 @@ public class ResourceState {
       
       @Override
       public void decrement( final int quantity ) {}
+
+      @Override
+      public int reserve( final int minQuantity, final int maxQuantity ) {
+        return 0;
+      }
+
+      @Override
+      public void release( final int quantity ) {}
+
+      @Override
+      public void lowerTo( final int value ) {}
       
       @SuppressWarnings( { "EqualsWhichDoesntCheckParameterClass", "RedundantIfStatement" } )
       @Override
@@ -111,7 +111,8 @@ public class NetworkInfoBroadcaster {
       Restrictions.not( VmInstance.criterion( TORNDOWN.array( ) ) ),
       Sets.newHashSet( "networkGroups" ),
       Sets.newHashSet( "bootRecord.machineImage", "bootRecord.vmType" ),
-      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class )  );
+      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class ),
+      true );
   private static final EntityCache<NetworkGroup,NetworkGroupNetworkView> securityGroupCache =
       new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup.class, NetworkGroupNetworkView.class )  );
   private static final EntityCache<Vpc,VpcNetworkView> vpcCache =
@@ -936,8 +936,10 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
                 LOG.info( "Attempted terminate timed out in queue for " + instanceId );
               } else if ( Partitions.exists( partition )  ) try {
                 final TerminateCallback cb = new TerminateCallback( instanceId );
-                AsyncRequests.newRequest(  cb ).sendSync(
-                    Topology.lookup( ClusterController.class, Partitions.lookupByName( partition ) ) );
+                final ServiceConfiguration ccConfig =
+                    Topology.lookup( ClusterController.class, Partitions.lookupByName( partition ) );
+                AsyncRequests.newRequest(  cb ).sendSync( ccConfig );
+                Clusters.lookup( ccConfig ).expediteRefresh( );
               } catch ( Exception ex ) {
                 LOG.error( ex );
                 Logs.extreme( ).error( ex, ex );
@@ -0,0 +1,157 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloud.run
+
+import com.eucalyptus.cloud.run.PlacementPolicies.PlacementPolicy
+import com.eucalyptus.cluster.ResourceState.VmTypeAvailability
+import com.eucalyptus.compute.common.internal.vmtypes.VmType
+import com.google.common.collect.Maps
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+import static org.junit.Assert.*
+
+/**
+ * Placement policy tests, including a simple launch trace simulation.
+ */
+@CompileStatic
+class PlacementPoliciesTest {
+
+  private static final VmType small = VmType.create( 'm1.small', 1, 5, 256, 1 )
+  private static final VmType large = VmType.create( 'm1.xlarge', 4, 20, 1024, 1 )
+
+  @Test
+  void testParsePolicy( ) {
+    assertEquals( 'spread', PlacementPolicy.Spread, PlacementPolicy.fromString( 'spread' ).orNull( ) )
+    assertEquals( 'binpack', PlacementPolicy.BinPack, PlacementPolicy.fromString( 'binpack' ).orNull( ) )
+    assertEquals( 'least-fragmentation', PlacementPolicy.LeastFragmentation, PlacementPolicy.fromString( ' least-fragmentation ' ).orNull( ) )
+    assertFalse( 'invalid', PlacementPolicy.fromString( 'random' ).isPresent( ) )
+  }
+
+  @Test
+  void testUnavailableRankedLast( ) {
+    Map<String,List<VmTypeAvailability>> capacity = Maps.newLinkedHashMap( )
+    capacity.put( 'full', [ new VmTypeAvailability( small, 16, 0 ), new VmTypeAvailability( large, 4, 0 ) ] )
+    capacity.put( 'some', [ new VmTypeAvailability( small, 16, 2 ), new VmTypeAvailability( large, 4, 0 ) ] )
+    capacity.put( 'most', [ new VmTypeAvailability( small, 16, 12 ), new VmTypeAvailability( large, 4, 2 ) ] )
+    assertEquals( 'spread', [ 'most', 'some', 'full' ], PlacementPolicy.Spread.rank( small, capacity ) )
+    assertEquals( 'binpack', [ 'some', 'most', 'full' ], PlacementPolicy.BinPack.rank( small, capacity ) )
+    assertEquals( 'least-fragmentation', [ 'some', 'most', 'full' ], PlacementPolicy.LeastFragmentation.rank( small, capacity ) )
+  }
+
+  @Test
+  void testConcurrentReservation( ) {
+    VmTypeAvailability availability = new VmTypeAvailability( small, 1000, 1000 )
+    ExecutorService executor = Executors.newFixedThreadPool( 8 )
+    try {
+      List<Future<Integer>> futures = ( 1..16 ).collect {
+        executor.submit( {
+          int reserved = 0
+          int quantity
+          while ( ( quantity = availability.reserve( 1, 3 ) ) > 0 ) {
+            reserved += quantity
+          }
+          reserved
+        } as Callable<Integer> )
+      }
+      int total = (int) futures.sum( 0 ) { Future<Integer> future -> future.get( ) }
+      assertEquals( 'total reserved', 1000, total )
+      assertEquals( 'remaining', 0, availability.getAvailable( ) )
+    } finally {
+      executor.shutdownNow( )
+    }
+  }
+
+  @Test
+  void testFragmentationSimulation( ) {
+    int spread = strandedLargeLaunches( PlacementPolicy.Spread )
+    int binPack = strandedLargeLaunches( PlacementPolicy.BinPack )
+    int leastFragmentation = strandedLargeLaunches( PlacementPolicy.LeastFragmentation )
+    assertTrue( "binpack ${binPack} < spread ${spread}", binPack < spread )
+    assertTrue( "least-fragmentation ${leastFragmentation} < spread ${spread}", leastFragmentation < spread )
+  }
+
+  /**
+   * Replay a trace of small launches followed by large launches across
+   * clusters whose nodes are filled round robin, returning the number of
+   * large launches that failed although the total free capacity would fit.
+   */
+  private static int strandedLargeLaunches( final PlacementPolicy policy ) {
+    List<SimulatedCluster> clusters = ( 1..3 ).collect{ new SimulatedCluster( 4, 4 ) }
+    ( 1..12 ).each { launch( policy, clusters, small ) }
+    int stranded = 0
+    ( 1..9 ).each {
+      if ( !launch( policy, clusters, large ) && (int) clusters.sum( 0 ) { SimulatedCluster c -> c.free( ) } >= 4 ) {
+        stranded++
+      }
+    }
+    stranded
+  }
+
+  private static boolean launch( final PlacementPolicy policy, final List<SimulatedCluster> clusters, final VmType type ) {
+    Map<SimulatedCluster,List<VmTypeAvailability>> capacity = Maps.newLinkedHashMap( )
+    clusters.each { SimulatedCluster cluster -> capacity.put( cluster, cluster.snapshot( ) ) }
+    for ( SimulatedCluster cluster : policy.rank( type, capacity ) ) {
+      if ( cluster.launch( type ) ) return true
+    }
+    false
+  }
+
+  private static final class SimulatedCluster {
+    private final int[] nodes
+    private final int nodeSize
+    private int next = 0
+
+    SimulatedCluster( int nodeCount, int nodeSize ) {
+      this.nodes = new int[ nodeCount ]
+      this.nodeSize = nodeSize
+      Arrays.fill( nodes, nodeSize )
+    }
+
+    int free( ) {
+      (int) nodes.toList( ).sum( 0 )
+    }
+
+    List<VmTypeAvailability> snapshot( ) {
+      [
+          new VmTypeAvailability( small, nodes.length * nodeSize, free( ) ),
+          new VmTypeAvailability( large, nodes.length, nodes.toList( ).count { Integer node -> node == nodeSize } as int )
+      ]
+    }
+
+    boolean launch( VmType type ) {
+      int size = type.is( small ) ? 1 : nodeSize
+      for ( int i = 0; i < nodes.length; i++ ) {
+        int node = ( next + i ) % nodes.length
+        if ( nodes[ node ] >= size ) {
+          nodes[ node ] -= size
+          next = node + 1
+          return true
+        }
+      }
+      false
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cluster
+
+import com.eucalyptus.util.async.CheckedListenableFuture
+import com.eucalyptus.util.async.Futures
+import org.junit.Test
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.LongSupplier
+
+import static org.junit.Assert.*
+
+/**
+ * Refresh scheduler tests against a stub cluster controller that replies on
+ * request, using a manually advanced clock.
+ */
+class RefreshSchedulerTest {
+
+  enum Kind { RESOURCES, INSTANCES }
+
+  static class StubClusterController implements RefreshScheduler.Dispatcher<Kind> {
+    final Queue<Runnable> pending = new ConcurrentLinkedQueue<>( )
+    final AtomicInteger requests = new AtomicInteger( )
+    volatile boolean changeEveryRequest = false
+    volatile String state = 'pending'
+
+    @Override
+    CheckedListenableFuture<?> dispatch( final Kind kind ) {
+      requests.incrementAndGet( )
+      if ( changeEveryRequest ) state = UUID.randomUUID( ).toString( )
+      final CheckedListenableFuture<Object> reply = Futures.newGenericeFuture( )
+      final String current = state
+      pending << { reply.set( current ) }
+      reply
+    }
+
+    @Override
+    Object fingerprint( final Kind kind, final Object reply ) {
+      reply
+    }
+
+    /**
+     * Reply to the oldest outstanding request
+     */
+    void reply( ) {
+      Runnable reply = pending.poll( )
+      assertNotNull( 'Outstanding request', reply )
+      reply.run( )
+    }
+  }
+
+  private final AtomicLong clock = new AtomicLong( 1000 )
+  private final StubClusterController cc = new StubClusterController( )
+  private final RefreshScheduler<Kind> scheduler =
+      new RefreshScheduler<>( 'test', Kind, cc, { clock.get( ) } as LongSupplier )
+
+  /**
+   * Advance the clock until a poll is dispatched then reply after the given latency.
+   */
+  private Object pollWhenDue( final Kind kind, final long baseIntervalMillis, final long latencyMillis = 0 ) {
+    CheckedListenableFuture<Object> future
+    for ( int i = 0; i <= RefreshScheduler.MAX_BACKOFF_FACTOR * baseIntervalMillis && future == null; i++ ) {
+      future = scheduler.poll( kind, baseIntervalMillis )
+      if ( future == null ) clock.incrementAndGet( )
+    }
+    assertNotNull( 'Poll dispatched', future )
+    clock.addAndGet( latencyMillis )
+    cc.reply( )
+    future.get( )
+  }
+
+  @Test
+  void testCoalesceOutstanding( ) {
+    final List<CheckedListenableFuture<Object>> futures = ( 1..10 ).collect{ scheduler.refresh( Kind.RESOURCES ) }
+    assertEquals( 'Requests', 1, cc.requests.get( ) )
+    assertEquals( 'Coalesced', 9, scheduler.getStatistics( Kind.RESOURCES ).coalesced )
+    cc.reply( )
+    futures.each{ assertEquals( 'Reply', 'pending', it.get( ) ) }
+
+    final CheckedListenableFuture<Object> future = scheduler.refresh( Kind.RESOURCES )
+    assertEquals( 'Requests after completion', 2, cc.requests.get( ) )
+    cc.reply( )
+    future.get( )
+  }
+
+  @Test
+  void testKindsPipelined( ) {
+    final List<CheckedListenableFuture<Object>> futures = Kind.values( ).collect{ scheduler.refresh( it ) }
+    assertEquals( 'Requests outstanding', 2, cc.requests.get( ) )
+    assertFalse( 'Replies pending', futures.any{ it.isDone( ) } )
+    Kind.values( ).length.times{ cc.reply( ) }
+    futures*.get( )
+  }
+
+  @Test
+  void testBackoffWhenUnchanged( ) {
+    final List<Integer> factors = [ ]
+    5.times {
+      pollWhenDue( Kind.INSTANCES, 10 )
+      factors << scheduler.getStatistics( Kind.INSTANCES ).backoffFactor
+    }
+    assertEquals( 'Backoff factors', [ 1, 2, 4, 8, 8 ], factors )
+    assertNull( 'Poll before backed off interval', scheduler.poll( Kind.INSTANCES, 10 ) )
+
+    cc.state = 'running'
+    pollWhenDue( Kind.INSTANCES, 10 )
+    assertEquals( 'Backoff factor after change', 1, scheduler.getStatistics( Kind.INSTANCES ).backoffFactor )
+  }
+
+  @Test
+  void testBackoffWhenSlow( ) {
+    cc.changeEveryRequest = true
+    final List<Integer> factors = [ ]
+    3.times {
+      pollWhenDue( Kind.INSTANCES, 10, 30 )
+      factors << scheduler.getStatistics( Kind.INSTANCES ).backoffFactor
+    }
+    assertEquals( 'Backoff factors', [ 2, 4, 8 ], factors )
+  }
+
+  @Test
+  void testExpedite( ) {
+    4.times { pollWhenDue( Kind.INSTANCES, 1000 ) }
+    assertEquals( 'Backoff factor', 8, scheduler.getStatistics( Kind.INSTANCES ).backoffFactor )
+    assertNull( 'Poll before backed off interval', scheduler.poll( Kind.INSTANCES, 1000 ) )
+
+    scheduler.expedite( Kind.INSTANCES )
+    assertNotNull( 'Poll after expedite', scheduler.poll( Kind.INSTANCES, 1000 ) )
+  }
+
+  @Test
+  void testExpediteWhileOutstanding( ) {
+    pollWhenDue( Kind.INSTANCES, 1000 )
+    final CheckedListenableFuture<Object> outstanding = scheduler.refresh( Kind.INSTANCES )
+    scheduler.expedite( Kind.INSTANCES )
+    cc.reply( )
+    outstanding.get( )
+    assertNotNull( 'Poll after expedited reply', scheduler.poll( Kind.INSTANCES, 1000 ) )
+  }
+
+  @Test
+  void testLag( ) {
+    pollWhenDue( Kind.INSTANCES, 10 )
+    clock.addAndGet( 25 )
+    assertEquals( 'Lag', 25, scheduler.getStatistics( Kind.INSTANCES ).lagMillis )
+  }
+
+  @Test
+  void testFailure( ) {
+    final RefreshScheduler<Kind> failing = new RefreshScheduler<>( 'test', Kind, new RefreshScheduler.Dispatcher<Kind>( ) {
+      @Override
+      CheckedListenableFuture<?> dispatch( final Kind kind ) {
+        Futures.predestinedFailedFuture( new IOException( 'connection refused' ) )
+      }
+
+      @Override
+      Object fingerprint( final Kind kind, final Object reply ) {
+        reply
+      }
+    } )
+    try {
+      failing.refresh( Kind.RESOURCES ).get( )
+      fail( 'Expected failure' )
+    } catch ( ExecutionException e ) {
+      assertTrue( 'Cause', e.cause instanceof IOException )
+    }
+    assertEquals( 'Failed', 1, failing.getStatistics( Kind.RESOURCES ).failed )
+  }
+}
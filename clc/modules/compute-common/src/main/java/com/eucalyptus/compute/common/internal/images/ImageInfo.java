@@ -101,6 +101,8 @@ import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.compute.common.internal.identifier.ResourceIdentifiers;
 import com.eucalyptus.entities.UserMetadata;
+import com.eucalyptus.entities.CachedEntity;
+import com.eucalyptus.entities.RequestCachedEntity;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.records.Logs;
@@ -120,6 +122,8 @@ import com.google.common.collect.Sets;
 @Inheritance( strategy = InheritanceType.SINGLE_TABLE )
 @DiscriminatorColumn( name = "metadata_image_discriminator", discriminatorType = DiscriminatorType.STRING )
 @DiscriminatorValue( value = "metadata_kernel_or_ramdisk" )
+@CachedEntity
+@RequestCachedEntity
 public class ImageInfo extends UserMetadata<ImageMetadata.State> implements ImageMetadata {
   @Transient
   private static final long          serialVersionUID = 1L;
@@ -75,6 +75,7 @@ import com.eucalyptus.compute.common.CloudMetadata.KeyPairMetadata;
 import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.entities.UserMetadata;
+import com.eucalyptus.entities.CachedEntity;
 import com.eucalyptus.auth.principal.FullName;
 import com.eucalyptus.auth.principal.OwnerFullName;
 
@@ -85,6 +86,7 @@ import com.eucalyptus.auth.principal.OwnerFullName;
     @Index( name = "metadata_keypairs_account_id_idx", columnList = "metadata_account_id" ),
     @Index( name = "metadata_keypairs_display_name_idx", columnList = "metadata_display_name" ),
 } )
+@CachedEntity( CachedEntity.Usage.READ_ONLY )
 public class SshKeyPair extends UserMetadata<SshKeyPair.State> implements KeyPairMetadata {
   enum State {
     available, removing
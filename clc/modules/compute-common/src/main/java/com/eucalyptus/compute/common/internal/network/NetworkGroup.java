@@ -97,6 +97,7 @@ import com.eucalyptus.compute.common.CloudMetadatas;
 import com.eucalyptus.compute.common.internal.identifier.ResourceIdentifiers;
 import com.eucalyptus.compute.common.internal.vpc.Vpc;
 import com.eucalyptus.entities.UserMetadata;
+import com.eucalyptus.entities.RequestCachedEntity;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.upgrade.Upgrades;
 import com.eucalyptus.util.Exceptions;
@@ -117,6 +118,7 @@ import groovy.sql.Sql;
     @Index( name = "metadata_network_group_account_id_idx", columnList = "metadata_account_id" ),
     @Index( name = "metadata_network_group_display_name_idx", columnList = "metadata_display_name" ),
 } )
+@RequestCachedEntity
 public class NetworkGroup extends UserMetadata<NetworkGroup.State> implements NetworkGroupMetadata {
   private static final long   serialVersionUID = 1L;
   private static final Logger LOG              = Logger.getLogger( NetworkGroup.class );
@@ -80,6 +80,8 @@ import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.crypto.Crypto;
 import com.eucalyptus.crypto.Digest;
 import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.CachedEntity;
+import com.eucalyptus.entities.RequestCachedEntity;
 import com.eucalyptus.compute.common.internal.images.DeviceMapping;
 import com.eucalyptus.compute.common.internal.images.Images;
 import com.eucalyptus.auth.principal.FullName;
@@ -126,6 +128,8 @@ import com.google.common.collect.Sets;
 @Entity
 @PersistenceContext( name = "eucalyptus_cloud" )
 @Table( name = "cloud_vm_type" )
+@CachedEntity
+@RequestCachedEntity
 public class VmType extends AbstractPersistent implements VmTypeMetadata, HasFullName<VmTypeMetadata> {
   @Transient
   private static final long  serialVersionUID = 1L;
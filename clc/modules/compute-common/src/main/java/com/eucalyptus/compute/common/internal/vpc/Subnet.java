@@ -36,6 +36,7 @@ import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.compute.common.internal.identifier.ResourceIdentifiers;
 import com.eucalyptus.entities.UserMetadata;
+import com.eucalyptus.entities.RequestCachedEntity;
 import com.eucalyptus.util.Cidr;
 import com.eucalyptus.auth.principal.FullName;
 import com.eucalyptus.auth.principal.OwnerFullName;
@@ -50,6 +51,7 @@ import com.eucalyptus.auth.principal.OwnerFullName;
     @Index( name = "metadata_subnets_account_id_idx", columnList = "metadata_account_id" ),
     @Index( name = "metadata_subnets_display_name_idx", columnList = "metadata_display_name" ),
 }  )
+@RequestCachedEntity
 public class Subnet extends UserMetadata<Subnet.State> implements SubnetMetadata {
 
   private static final long serialVersionUID = 1L;
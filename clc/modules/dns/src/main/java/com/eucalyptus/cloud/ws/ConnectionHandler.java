@@ -97,7 +97,6 @@ import static com.eucalyptus.util.dns.DnsResolvers.DnsRequest;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -139,7 +138,7 @@ public class ConnectionHandler extends Thread {
 	Map caches = new ConcurrentHashMap();
 
 	byte []
-	      generateReply(Message query, byte [] in, int length, Socket s)
+	      generateReply(Message query, byte [] in, int length, boolean tcp)
 	throws IOException
 	{
 		Header header;
@@ -164,7 +163,7 @@ public class ConnectionHandler extends Thread {
 		if (queryOPT != null && queryOPT.getVersion() > 0)
 			badversion = true;
 
-		if (s != null)
+		if (tcp)
 			maxLength = 65535;
 		else if (queryOPT != null)
 			maxLength = Math.max(queryOPT.getPayloadSize(), 512);
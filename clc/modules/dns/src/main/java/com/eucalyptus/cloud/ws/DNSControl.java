@@ -62,20 +62,17 @@
 
 package com.eucalyptus.cloud.ws;
 
-import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
@@ -96,12 +93,15 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.DatagramChannelFactory;
-import org.jboss.netty.channel.socket.ServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
 import org.jboss.netty.handler.codec.frame.LengthFieldPrepender;
 import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
 
 import org.xbill.DNS.ResolverConfig;
 
@@ -111,14 +111,12 @@ import com.eucalyptus.configurable.*;
 import com.eucalyptus.util.Cidr;
 import com.eucalyptus.util.DNSProperties;
 import com.eucalyptus.util.Internets;
-import com.eucalyptus.util.LockResource;
 import com.eucalyptus.ws.WebServices;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 @ConfigurableClass( root = "dns", description = "Controls dns listeners." )
@@ -128,11 +126,6 @@ public class DNSControl {
   private static final AtomicReference<Collection<Cidr>> addressMatchers =
       new AtomicReference<Collection<Cidr>>( Collections.<Cidr>emptySet( ) );
 
-	private static final AtomicReference<Collection<TCPListener>> tcpListenerRef =
-			new AtomicReference<Collection<TCPListener>>( Collections.<TCPListener>emptySet( ) );
-
-	private static final Lock listenerLock = new ReentrantLock( );
-
   @ConfigurableField( displayName = "dns_listener_address_match",
       description = "Additional address patterns to listen on for DNS requests.",
       initial = "",
@@ -227,8 +220,10 @@ public class DNSControl {
       + ":tcp:53");
   
   private static DatagramChannelFactory udpChannelFactory = null;
-  private static ServerSocketChannelFactory tcpChannelFactory = null;
+  private static NioServerSocketChannelFactory tcpChannelFactory = null;
   private static ExecutionHandler udpExecHandler = null;
+  private static ExecutionHandler tcpExecHandler = null;
+  private static HashedWheelTimer tcpIdleTimer = null;
   private static Executor createWorkerPool() {
      final Executor executor =
          Executors.newFixedThreadPool(SERVER_POOL_MAX_THREADS);
@@ -270,6 +265,34 @@ public class DNSControl {
     }
   }
   
+  /**
+   * Pipeline for DNS over TCP, queries are length prefixed and may be
+   * pipelined on a connection, responses are written in request order.
+   */
+  private static class TcpChannelPipelineFactory implements ChannelPipelineFactory {
+    private final ExecutionHandler execHandler;
+    private final Timer idleTimer;
+    private final TCPHandler connectionHandler;
+    private TcpChannelPipelineFactory( final ExecutionHandler execHandler,
+                                       final Timer idleTimer,
+                                       final TCPHandler connectionHandler ) {
+      this.execHandler = execHandler;
+      this.idleTimer = idleTimer;
+      this.connectionHandler = connectionHandler;
+    }
+    @Override
+    public ChannelPipeline getPipeline() throws Exception {
+      final ChannelPipeline p = Channels.pipeline( );
+      p.addLast( "idlehandler", new IdleStateHandler( this.idleTimer, 0, 0, TCPHandler.timeout_seconds ) );
+      p.addLast( "connection", this.connectionHandler );
+      p.addLast( "framer", new LengthFieldBasedFrameDecoder( 65535 + 2, 0, 2, 0, 2 ) );
+      p.addLast( "prepender", new LengthFieldPrepender( 2 ) );
+      p.addLast( "executor", this.execHandler );
+      p.addLast( "dns-server", new DnsServerHandler( ) );
+      return p;
+    }
+  }
+
   private static class UdpChannelPipelineFactory implements ChannelPipelineFactory {
     private ExecutionHandler execHandler = null;
     private UdpChannelPipelineFactory(final ExecutionHandler execHandler) {
@@ -301,18 +324,7 @@ public class DNSControl {
         b.setOption("reuseAddress", true);
         b.setOption("connectTimeoutMillis", 3000);
         
-        final Set<InetAddress> listenAddresses = Sets.newLinkedHashSet( );
-        listenAddresses.add( Internets.localHostInetAddress( ) );
-        
-        if(addressMatchers.get().size()>0) {
-          Iterables.addAll(
-              listenAddresses,
-              Iterables.filter( Internets.getAllInetAddresses( ), Predicates.or( addressMatchers.get( ) ) ) );
-        }else{
-          Iterables.addAll(
-              listenAddresses,
-              Internets.getAllInetAddresses( ));
-        }
+        final Set<InetAddress> listenAddresses = listenAddresses( );
         Capabilities.runWithCapabilities( new Callable<Boolean>() {
           @Override
           public Boolean call() throws Exception {
@@ -343,112 +355,78 @@ public class DNSControl {
 	  }
 	}
 
-	private static void initializeTCP() throws Exception{
-	  initializeTCPSocket();
-	}
-	
-	private static void initializeTCPSocket( ) throws Exception{
-	  initializeListeners( tcpListenerRef, "TCP", new ListenerBuilder<TCPListener>() {
-      @Override
-      public TCPListener build( final InetAddress address, final int port ) throws IOException {
-        return new TCPListener( address, port );
-      }
-    });
-	}
-	
-	private static void initializeTCPNetty() throws Exception {
-	  // currently there's an issue with bind() throwing Socket permission exception
-	  // due to the port < 1024
-	  if(tcpChannelFactory == null){
-	    try{
-	      tcpChannelFactory = 
-	          new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), 
-	              createWorkerPool());
-	      final ServerBootstrap b = new ServerBootstrap(tcpChannelFactory);
-	      b.setPipelineFactory(new ChannelPipelineFactory() {
-	        public ChannelPipeline getPipeline() throws Exception {
-	          ChannelPipeline p = Channels.pipeline();
-	          p.addLast("framer", new LengthFieldBasedFrameDecoder(65536, 0, 2, 0, 2));
-	          p.addLast("prepender", new LengthFieldPrepender(2));
-	          p.addLast("dns-server", new DnsServerHandler());
-	          return p;
-	        }
-	      });
+	private static void initializeTCP() throws Exception {
+	  if ( tcpChannelFactory == null ) {
+	    try {
+	      tcpChannelFactory =
+	          new NioServerSocketChannelFactory( Executors.newCachedThreadPool( ), Executors.newCachedThreadPool( ) );
+	      tcpExecHandler = new ExecutionHandler( new OrderedMemoryAwareThreadPoolExecutor(
+	          SERVER_POOL_MAX_THREADS, 1048576, 16777216, 60, TimeUnit.SECONDS ) );
+	      tcpIdleTimer = new HashedWheelTimer( );
+	      final ServerBootstrap b = new ServerBootstrap( tcpChannelFactory );
+	      b.setPipelineFactory( new TcpChannelPipelineFactory( tcpExecHandler, tcpIdleTimer, new TCPHandler( ) ) );
 	      b.setOption( "child.tcpNoDelay", true );
 	      b.setOption( "child.keepAlive", false );
 	      b.setOption( "child.reuseAddress", true );
-	      b.setOption( "child.connectTimeoutMillis", 3000 ); 
-	      b.setOption("tcpNoDelay", true);
-	      b.setOption("keepAlive", false);
-	      b.setOption("reuseAddress", true);
-	      b.setOption("connectTimeoutMillis", 3000);
+	      b.setOption( "child.connectTimeoutMillis", 3000 );
+	      b.setOption( "backlog", 1024 );
+	      b.setOption( "reuseAddress", true );
+
+	      final int listenPort = DNSProperties.PORT;
+	      final Set<InetAddress> listenAddresses = listenAddresses( );
+	      LOG.info( "Starting DNS TCP listeners on " + listenAddresses + ":" + listenPort );
 	      Capabilities.runWithCapabilities( new Callable<Boolean>() {
 	        @Override
 	        public Boolean call() throws Exception {
-	          final Channel tcpChannel = b.bind(new InetSocketAddress(53));
-	          tcpChannelGroup.add(tcpChannel);
+	          for ( final InetAddress listenAddress : listenAddresses ) {
+	            try {
+	              tcpChannelGroup.add( b.bind( new InetSocketAddress( listenAddress, listenPort ) ) );
+	            } catch ( final Exception ex ) {
+	              LOG.error( "Error starting DNS TCP listener on " + listenAddress + ":" + listenPort, ex );
+	            }
+	          }
 	          return true;
 	        }
-	      });
-	    }catch(final Exception ex) {
-	      LOG.debug(ex,ex);
-	      tcpChannelGroup.close().awaitUninterruptibly();
-	      if(tcpChannelFactory!=null)
-	        tcpChannelFactory.releaseExternalResources();
-	      tcpChannelFactory = null;
+	      } );
+	    } catch ( final Exception ex ) {
+	      LOG.debug( "Failed initializing DNS tcp listener", ex );
+	      stopTCP( );
 	      throw ex;
 	    }
 	  }
 	}
 
-	private static <T extends Thread> void initializeListeners(
-			final AtomicReference<Collection<T>> listenerRef,
-			final String description,
-			final ListenerBuilder<T> builder
-	) {
-		try ( final LockResource lock = LockResource.lock( listenerLock ) ) {
-			if ( listenerRef.get( ).isEmpty( ) ) {
-				final int listenPort = DNSProperties.PORT;
-				final Set<InetAddress> listenAddresses = Sets.newLinkedHashSet( );
-				listenAddresses.add( Internets.localHostInetAddress( ) );
-				
-			  if(addressMatchers.get().size()>0) {
-          Iterables.addAll(
-              listenAddresses,
-              Iterables.filter( Internets.getAllInetAddresses( ), Predicates.or( addressMatchers.get( ) ) ) );
-        }else{
-          Iterables.addAll(
-              listenAddresses,
-              Internets.getAllInetAddresses( ));
-        }
-				LOG.info( "Starting DNS " + description + " listeners on " + listenAddresses + ":" + listenPort );
-
-				// Configured listeners
-				final List<T> listeners = Lists.newArrayList( );
-				for ( final InetAddress listenAddress : listenAddresses ) {
-					try {
-						final T listener = Capabilities.runWithCapabilities( new Callable<T>() {
-							@Override
-							public T call() throws Exception {
-								final T listener = builder.build( listenAddress, listenPort );
-								listener.start( );
-								return listener;
-							}
-						} );
-						listeners.add( listener );
-					} catch( final Exception ex ) {
-						LOG.error( "Error starting DNS "+description+" listener on "+listenAddress+":"+listenPort, ex );
-					}
-				}
-				listenerRef.set( ImmutableList.copyOf( listeners ) );
-			}
-		}
+	private static void stopTCP( ) {
+	  tcpChannelGroup.close( ).awaitUninterruptibly( );
+	  if ( tcpChannelFactory != null ) {
+	    tcpChannelFactory.releaseExternalResources( );
+	    tcpChannelFactory = null;
+	  }
+	  if ( tcpExecHandler != null ) {
+	    tcpExecHandler.releaseExternalResources( );
+	    tcpExecHandler = null;
+	  }
+	  if ( tcpIdleTimer != null ) {
+	    tcpIdleTimer.stop( );
+	    tcpIdleTimer = null;
+	  }
 	}
 
-	private interface ListenerBuilder<T> {
-		T build( InetAddress address, int port ) throws IOException;
+	private static Set<InetAddress> listenAddresses( ) {
+	  final Set<InetAddress> listenAddresses = Sets.newLinkedHashSet( );
+	  listenAddresses.add( Internets.localHostInetAddress( ) );
+	  if ( addressMatchers.get( ).size( ) > 0 ) {
+	    Iterables.addAll(
+	        listenAddresses,
+	        Iterables.filter( Internets.getAllInetAddresses( ), Predicates.or( addressMatchers.get( ) ) ) );
+	  } else {
+	    Iterables.addAll(
+	        listenAddresses,
+	        Internets.getAllInetAddresses( ) );
+	  }
+	  return listenAddresses;
 	}
-	
+
 	public static void initialize() throws Exception {
 		try {
 		  initializeUDP();
@@ -470,12 +448,7 @@ public class DNSControl {
 		    udpChannelFactory.releaseExternalResources( );
 		    udpChannelFactory = null;
 		  }
-		  /* if(tcpChannelGroup!=null)
-		    tcpChannelGroup.close().awaitUninterruptibly();
-		  if(tcpChannelFactory!=null) {
-		    tcpChannelFactory.releaseExternalResources();
-		    tcpChannelFactory = null;
-		  }*/
+		  stopTCP( );
 	}
 
 	public static void restart()  throws Exception {
@@ -30,6 +30,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.SocketChannel;
 import org.xbill.DNS.Message;
 import org.xbill.DNS.Rcode;
 
@@ -55,7 +56,7 @@ public class DnsServerHandler extends SimpleChannelUpstreamHandler {
       }else {
         final ChannelBuffer buffer = ((ChannelBuffer) e.getMessage());
         inbuf = new byte[buffer.readableBytes( )];
-        buffer.getBytes( 0, inbuf );
+        buffer.getBytes( buffer.readerIndex( ), inbuf );
       }
       
       Message query = new Message(inbuf);
@@ -63,7 +64,7 @@ public class DnsServerHandler extends SimpleChannelUpstreamHandler {
       final InetAddress remoteAddr = ((InetSocketAddress) e.getRemoteAddress()).getAddress();
       ConnectionHandler.setLocalAndRemoteInetAddresses(localAddr, remoteAddr );
       try {
-        byte[] outbuf = legacyDns.generateReply( query, inbuf, inbuf.length, null );
+        byte[] outbuf = legacyDns.generateReply( query, inbuf, inbuf.length, e.getChannel( ) instanceof SocketChannel );
         ChannelBuffer chanOutBuf = ChannelBuffers.wrappedBuffer( outbuf );
         ctx.getChannel().write(chanOutBuf,e.getRemoteAddress( ));
         return;
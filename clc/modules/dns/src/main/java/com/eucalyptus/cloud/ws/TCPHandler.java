@@ -62,78 +62,87 @@
 
 package com.eucalyptus.cloud.ws;
 
-import com.eucalyptus.component.id.Dns;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
-import com.eucalyptus.system.Threads;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
+import com.eucalyptus.ws.WebServices;
+import com.google.common.collect.Maps;
 
 import org.apache.log4j.Logger;
-import org.xbill.DNS.Message;
-import org.xbill.DNS.Rcode;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.handler.timeout.IdleStateAwareChannelUpstreamHandler;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.Socket;
-import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Connection guard for the DNS TCP pipeline.
+ *
+ * Closes connections that are idle for longer than the configured timeout
+ * and rejects connections from a source address that already has the
+ * maximum number of open connections.
+ */
 @ConfigurableClass( root = "dns.tcp",
         description = "Handles dns TCP requests." )
-public class TCPHandler extends ConnectionHandler {
+@ChannelHandler.Sharable
+public class TCPHandler extends IdleStateAwareChannelUpstreamHandler {
   @ConfigurableField( description = "Parameter controlling tcp handler timeout in seconds." )
   public static Integer timeout_seconds = 30;
+
+  @ConfigurableField( description = "Maximum number of concurrent tcp connections from a single source address (0 for unlimited).",
+      initial = "64",
+      changeListener = WebServices.CheckNonNegativeIntegerPropertyChangeListener.class )
+  public static Integer max_connections_per_source = 64;
+
   private static Logger LOG = Logger.getLogger( TCPHandler.class );
 
-  private final Socket socket;
+  private final ConcurrentMap<InetAddress,AtomicInteger> connectionsBySource = Maps.newConcurrentMap( );
 
-  public TCPHandler( final Socket s ) {
-    this.socket = s;
+  @Override
+  public void channelConnected( final ChannelHandlerContext ctx, final ChannelStateEvent e ) throws Exception {
+    final InetAddress source = ((InetSocketAddress) e.getChannel( ).getRemoteAddress( )).getAddress( );
+    AtomicInteger count = connectionsBySource.get( source );
+    if ( count == null ) {
+      final AtomicInteger newCount = new AtomicInteger( );
+      count = connectionsBySource.putIfAbsent( source, newCount );
+      if ( count == null ) count = newCount;
+    }
+    ctx.setAttachment( source );
+    final int limit = max_connections_per_source;
+    if ( count.incrementAndGet( ) > limit && limit > 0 ) {
+      LOG.debug( "Rejecting dns tcp connection from " + source + ", connection limit " + limit + " reached" );
+      e.getChannel( ).close( );
+    } else {
+      super.channelConnected( ctx, e );
+    }
   }
 
-  public void run() {
-    try ( final Socket socket = this.socket ) {
-      socket.setSoTimeout( timeout_seconds * 1000 );
-      final TimeLimiter limiter = new SimpleTimeLimiter( Threads.lookup( Dns.class, TCPHandler.class ) );
-      final byte[] inBytes = limiter.callWithTimeout( new Callable<byte[]>( ) {
-        @Override
-        public byte[] call() throws Exception {
-          final DataInputStream inStream = new DataInputStream(socket.getInputStream());
-          final int inputLength = inStream.readUnsignedShort();
-          byte[] inBytes = new byte[inputLength];
-          inStream.readFully(inBytes);
-          return inBytes;
-        }
-      }, timeout_seconds, TimeUnit.SECONDS, false );
-
-      byte [] response = null;
-      try {
-        final Message query = new Message(inBytes);
-        ConnectionHandler.setLocalAndRemoteInetAddresses( socket.getLocalAddress( ), socket.getInetAddress( ) );
-        try {
-          response = generateReply(query, inBytes, inBytes.length, socket);
-        } catch ( RuntimeException ex ) {
-          response = errorMessage(query, Rcode.SERVFAIL);
-          throw ex;
-        } finally {
-          ConnectionHandler.clearInetAddresses( );
-        }
-        if (response == null)
-          return;
-      } catch ( IOException exception ) {
-        LOG.error(exception);
+  @Override
+  public void channelClosed( final ChannelHandlerContext ctx, final ChannelStateEvent e ) throws Exception {
+    final InetAddress source = (InetAddress) ctx.getAttachment( );
+    if ( source != null ) {
+      final AtomicInteger count = connectionsBySource.get( source );
+      if ( count != null && count.decrementAndGet( ) <= 0 ) {
+        connectionsBySource.remove( source, count );
       }
-      final DataOutputStream outStream = new DataOutputStream(socket.getOutputStream());
-      outStream.writeShort(response.length);
-      outStream.write(response);
-      outStream.flush();
-    } catch ( UncheckedTimeoutException e ) {
-      LOG.debug( "Timeout reading request." );
-    } catch(Exception ex) {
-      LOG.error(ex);
     }
+    super.channelClosed( ctx, e );
+  }
+
+  @Override
+  public void channelIdle( final ChannelHandlerContext ctx, final IdleStateEvent e ) throws Exception {
+    LOG.trace( "Closing idle dns tcp connection " + e.getChannel( ) );
+    e.getChannel( ).close( );
+  }
+
+  @Override
+  public void exceptionCaught( final ChannelHandlerContext ctx, final ExceptionEvent e ) throws Exception {
+    LOG.debug( "Error handling dns tcp connection " + e.getChannel( ), e.getCause( ) );
+    e.getChannel( ).close( );
   }
 }
@@ -29,6 +29,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.AuthenticationProperties;
+import com.eucalyptus.auth.principal.PrincipalBundles;
 import com.eucalyptus.auth.principal.UserPrincipal;
 import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.Parameters;
@@ -101,8 +102,9 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     final Cache<PrincipalCacheKey,PrincipalCacheValue> cache = cache( );
     try {
       principalValue = cache.get( key, loader.callable( null ) );
-      if ( principalValue.updated + AuthenticationProperties.getAuthorizationExpiry( ) < System.currentTimeMillis( ) ) {
-        cache.invalidate( key ); // invalidate expired and refresh
+      if ( principalValue.updated + AuthenticationProperties.getAuthorizationExpiry( ) < System.currentTimeMillis( ) ||
+          !PrincipalBundles.isCurrent( principalValue.version ) ) {
+        cache.invalidate( key ); // invalidate expired or modified and refresh
         principalValue =  cache.get( key, loader.callable( principalValue.principal ) );
       }
       return principalValue.principal;
@@ -153,7 +155,8 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
       return new Callable<PrincipalCacheValue>( ) {
         @Override
         public PrincipalCacheValue call( ) throws AuthException {
-          return new PrincipalCacheValue( load( cached ) );
+          final long version = PrincipalBundles.version( );
+          return new PrincipalCacheValue( load( cached ), version );
         }
       };
     }
@@ -162,12 +165,14 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
   private static final class PrincipalCacheValue {
              private final long created;
              private final long updated;
+             private final long version;
     @Nonnull private final UserPrincipal principal;
 
-    public PrincipalCacheValue( @Nonnull final UserPrincipal principal ) {
+    public PrincipalCacheValue( @Nonnull final UserPrincipal principal, final long version ) {
       Parameters.checkParam( "principal", principal, notNullValue( ) );
       this.created = System.currentTimeMillis( );
       this.updated = created;
+      this.version = version;
       this.principal = principal;
     }
 
@@ -175,6 +180,7 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
       Parameters.checkParam( "value", value, notNullValue( ) );
       this.created = value.created;
       this.updated = System.currentTimeMillis( );
+      this.version = value.version;
       this.principal = value.principal;
     }
   }
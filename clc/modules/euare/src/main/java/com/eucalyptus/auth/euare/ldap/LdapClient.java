@@ -62,12 +62,16 @@
 
 package com.eucalyptus.auth.euare.ldap;
 
+import java.io.IOException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
 import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 import org.apache.log4j.Logger;
 import com.eucalyptus.auth.LdapException;
 import com.eucalyptus.auth.euare.ldap.authentication.AuthenticationUtil;
@@ -82,6 +86,10 @@ public class LdapClient {
   private static Logger LOG = Logger.getLogger( LdapClient.class );
 
   private LdapContext context;
+
+  public interface SearchResultProcessor {
+    void processSearchResult( SearchResult result ) throws NamingException;
+  }
   
   private LdapClient( ) {
     // constructor not allowed
@@ -145,6 +153,59 @@ public class LdapClient {
     }
   }
   
+  /**
+   * Search using the paged results control, results are passed to the processor as each page is received.
+   *
+   * The paged results control is not critical, so servers that do not support paging return all results.
+   *
+   * @param pageSize The page size, zero to disable paging
+   */
+  public synchronized void search( String baseDn, String filter, String[] attrs, int pageSize, SearchResultProcessor processor ) throws LdapException {
+    if ( DEBUG ) { LOG.debug( "<search> " + baseDn + ": filter = " + filter + ", page size = " + pageSize ); }
+    SearchControls searchControls = new SearchControls( );
+    if ( attrs != null ) {
+      searchControls.setReturningAttributes( attrs );
+    }
+    searchControls.setDerefLinkFlag( true );
+    searchControls.setSearchScope( SearchControls.SUBTREE_SCOPE );
+    searchControls.setTimeLimit( TIMEOUT_IN_MILLIS );
+    searchControls.setCountLimit( 0 );
+    try {
+      byte[] cookie = null;
+      do {
+        if ( pageSize > 0 ) {
+          context.setRequestControls( new Control[]{ new PagedResultsControl( pageSize, cookie, Control.NONCRITICAL ) } );
+        }
+        final NamingEnumeration<SearchResult> results = context.search( baseDn, filter, searchControls );
+        try {
+          while ( results.hasMore( ) ) {
+            processor.processSearchResult( results.next( ) );
+          }
+        } finally {
+          results.close( );
+        }
+        cookie = null;
+        final Control[] controls = context.getResponseControls( );
+        if ( controls != null ) {
+          for ( final Control control : controls ) {
+            if ( control instanceof PagedResultsResponseControl ) {
+              cookie = ( (PagedResultsResponseControl) control ).getCookie( );
+            }
+          }
+        }
+      } while ( pageSize > 0 && cookie != null && cookie.length > 0 );
+    } catch ( NamingException | IOException e ) {
+      LOG.error( e, e );
+      throw new LdapException( "Searching " + baseDn + "failed using " + filter, e );
+    } finally {
+      if ( pageSize > 0 ) try {
+        context.setRequestControls( null );
+      } catch ( NamingException e ) {
+        LOG.debug( e, e );
+      }
+    }
+  }
+
   public synchronized NamingEnumeration<SearchResult> search( String baseDn, Attributes matchingAttrs, String[] attrs ) throws LdapException {
     if ( DEBUG ) { LOG.debug( "<search> " + baseDn + ": " + matchingAttrs ); }
     try {
@@ -86,6 +86,10 @@ public class LdapIntegrationConfiguration {
   private boolean autoSync;
   private long syncInterval;
   private boolean cleanDeletion;
+  private boolean incrementalSync;
+  private String changeAttribute = "modifyTimestamp";
+  private long fullSyncInterval = 86400000L;
+  private int pageSize = 1000;
   
   private boolean hasAccountingGroups;
   
@@ -132,6 +136,10 @@ public class LdapIntegrationConfiguration {
     sb.append( '\t' ).append( "auto:" ).append( this.autoSync ).append( '\n' );
     sb.append( '\t' ).append( "interval:" ).append( this.syncInterval ).append( '\n' );
     sb.append( '\t' ).append( "clean-deletion:" ).append( this.cleanDeletion ).append( '\n' );
+    sb.append( '\t' ).append( "incremental:" ).append( this.incrementalSync ).append( '\n' );
+    sb.append( '\t' ).append( "change-attribute:" ).append( this.changeAttribute ).append( '\n' );
+    sb.append( '\t' ).append( "full-sync-interval:" ).append( this.fullSyncInterval ).append( '\n' );
+    sb.append( '\t' ).append( "page-size:" ).append( this.pageSize ).append( '\n' );
     if ( this.hasAccountingGroups ) {
       sb.append( "accounting-groups:\n" );
       sb.append( '\t' ).append( "base-dn:" ).append( this.accountingGroupBaseDn ).append( '\n' );
@@ -379,6 +387,38 @@ public class LdapIntegrationConfiguration {
     return cleanDeletion;
   }
 
+  public void setIncrementalSync( boolean incrementalSync ) {
+    this.incrementalSync = incrementalSync;
+  }
+
+  public boolean isIncrementalSync( ) {
+    return incrementalSync;
+  }
+
+  public void setChangeAttribute( String changeAttribute ) {
+    this.changeAttribute = changeAttribute;
+  }
+
+  public String getChangeAttribute( ) {
+    return changeAttribute;
+  }
+
+  public void setFullSyncInterval( long fullSyncInterval ) {
+    this.fullSyncInterval = fullSyncInterval;
+  }
+
+  public long getFullSyncInterval( ) {
+    return fullSyncInterval;
+  }
+
+  public void setPageSize( int pageSize ) {
+    this.pageSize = pageSize;
+  }
+
+  public int getPageSize( ) {
+    return pageSize;
+  }
+
   public String getUserSaslIdAttribute() {
     return userSaslIdAttribute;
   }
@@ -90,6 +90,7 @@ import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.ListenerRegistry;
 import com.eucalyptus.event.SystemClock;
 import com.eucalyptus.system.Threads;
+import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -113,7 +114,8 @@ public class LdapSync {
 
   private static final LdapIntegrationConfiguration DEFAULT_LIC = new LdapIntegrationConfiguration( );
   
-  private static LdapIntegrationConfiguration lic = DEFAULT_LIC;
+  private static volatile LdapIntegrationConfiguration lic = DEFAULT_LIC;
+  private static volatile SyncState syncState;
   private static boolean inSync = false;
   private static long timeTillNextSync;
   
@@ -130,6 +132,102 @@ public class LdapSync {
     
   }
   
+  /**
+   * Directory state from the last sync, used for incremental syncs.
+   */
+  private static final class SyncState {
+    private final LdapIntegrationConfiguration lic;
+    private final long fullSyncTime;
+    private final String changeMarker;
+    private final Map<String, Set<String>> accountingGroups;
+    private final Map<String, Set<String>> groups;
+    private final Map<String, String> userDnToId;
+    private final Map<String, Map<String, String>> users;
+
+    private SyncState( final LdapIntegrationConfiguration lic,
+                       final long fullSyncTime,
+                       final String changeMarker,
+                       final Map<String, Set<String>> accountingGroups,
+                       final Map<String, Set<String>> groups,
+                       final Map<String, String> userDnToId,
+                       final Map<String, Map<String, String>> users ) {
+      this.lic = lic;
+      this.fullSyncTime = fullSyncTime;
+      this.changeMarker = changeMarker;
+      this.accountingGroups = accountingGroups;
+      this.groups = groups;
+      this.userDnToId = userDnToId;
+      this.users = users;
+    }
+  }
+
+  /**
+   * Tracks the high-water mark of the change attribute (e.g. modifyTimestamp or uSNChanged)
+   */
+  private static final class ChangeMarker {
+    private final String attribute;
+    private final String since;
+    private String value;
+
+    private ChangeMarker( final String attribute, final String since ) {
+      this.attribute = attribute;
+      this.since = since;
+      this.value = since;
+    }
+
+    private static ChangeMarker none( ) {
+      return new ChangeMarker( null, null );
+    }
+
+    private void addAttributeName( final Set<String> attrNames ) {
+      if ( attribute != null ) {
+        attrNames.add( attribute );
+      }
+    }
+
+    private void update( final Attributes attrs ) throws NamingException {
+      if ( attribute != null ) {
+        final Attribute attr = attrs.get( attribute );
+        if ( attr != null && attr.get( ) != null ) {
+          final String markerValue = String.valueOf( attr.get( ) );
+          if ( value == null || compare( markerValue, value ) > 0 ) {
+            value = markerValue;
+          }
+        }
+      }
+    }
+
+    /**
+     * @return true if the entry has changed since the initial marker, or if the marker is not in use
+     */
+    private boolean changed( final Attributes attrs ) throws NamingException {
+      if ( attribute == null || since == null ) {
+        return true;
+      }
+      final Attribute attr = attrs.get( attribute );
+      return attr == null || attr.get( ) == null || compare( String.valueOf( attr.get( ) ), since ) >= 0;
+    }
+
+    /**
+     * Restrict the given filter to entries changed since the initial marker, if any.
+     */
+    private String filter( final String filter ) {
+      if ( attribute == null || since == null ) {
+        return filter;
+      }
+      final String baseFilter = filter.trim( ).startsWith( "(" ) ? filter.trim( ) : "(" + filter.trim( ) + ")";
+      return "(&" + baseFilter + "(" + attribute + ">=" + since + "))";
+    }
+
+    private static int compare( final String value1, final String value2 ) {
+      try {
+        return Long.compare( Long.parseLong( value1 ), Long.parseLong( value2 ) );
+      } catch ( NumberFormatException e ) {
+        return value1.compareTo( value2 );
+      }
+    }
+  }
+
   public static synchronized boolean inSync( ) {
     return inSync;
   }
@@ -143,7 +241,7 @@ public class LdapSync {
     }
   }
   
-  public static synchronized LdapIntegrationConfiguration getLic( ) {
+  public static LdapIntegrationConfiguration getLic( ) {
     return lic;
   }
   
@@ -195,7 +293,8 @@ public class LdapSync {
    * @return
    * @throws LdapException
    */
-  public static synchronized void authenticate( EuareUser user, String password ) throws LdapException {
+  public static void authenticate( EuareUser user, String password ) throws LdapException {
+    final LdapIntegrationConfiguration lic = LdapSync.lic;
     if ( !lic.isSyncEnabled( ) ) {
       throw new LdapException( "LDAP sync is not enabled" );
     }
@@ -237,7 +336,7 @@ public class LdapSync {
   /**
    * @return true if LDAP sync is enabled.
    */
-  public static synchronized boolean enabled( ) {
+  public static boolean enabled( ) {
     return lic.isSyncEnabled( );
   }
   
@@ -277,20 +376,37 @@ public class LdapSync {
   }
   
   public static void sync( final LdapIntegrationConfiguration lic ) {
+    final SyncState state = syncState;
+    if ( lic.isIncrementalSync( ) &&
+        state != null &&
+        state.lic == lic &&
+        state.changeMarker != null &&
+        ( System.currentTimeMillis( ) - state.fullSyncTime ) < lic.getFullSyncInterval( ) &&
+        incrementalSync( lic, state ) ) {
+      return;
+    }
+    fullSync( lic );
+  }
+
+  private static void fullSync( final LdapIntegrationConfiguration lic ) {
+    final long startTime = System.currentTimeMillis( );
     // Get users/groups from LDAP
     Map<String, Set<String>> accountingGroups = Maps.newHashMap( );
     Map<String, String> groupDnToId = Maps.newHashMap( );
     Map<String, Set<String>> groups = Maps.newHashMap( );
     Map<String, String> userDnToId = Maps.newHashMap( );
     Map<String, Map<String, String>> users = Maps.newHashMap( );
+    ChangeMarker marker = lic.isIncrementalSync( ) ?
+        new ChangeMarker( lic.getChangeAttribute( ), null ) :
+        ChangeMarker.none( );
     LdapClient ldap = null;
     try {
       ldap = LdapClient.authenticateClient( lic );
       
-      loadLdapUsers( ldap, lic, userDnToId, users );
-      loadLdapGroups( ldap, lic, userDnToId, groupDnToId, groups );
+      loadLdapUsers( ldap, lic, marker, userDnToId, users );
+      loadLdapGroups( ldap, lic, marker, userDnToId, groupDnToId, groups );
       if ( lic.hasAccountingGroups( ) ) {
-        loadLdapAccountingGroups( ldap, lic, groupDnToId, accountingGroups );
+        loadLdapAccountingGroups( ldap, lic, marker, groupDnToId, accountingGroups );
       } else {
         accountingGroups = lic.getGroupsPartition( );
       }
@@ -311,6 +427,160 @@ public class LdapSync {
     
     checkConflictingIdentities( accountingGroups, groups, users );
     rebuildLocalAuthDatabase( lic, accountingGroups, groups, users );
+    syncState = lic.isIncrementalSync( ) ?
+        new SyncState( lic, startTime, marker.value, accountingGroups, groups, userDnToId, users ) :
+        null;
+    LOG.info( "LDAP full sync of " + users.size( ) + " users and " + groups.size( ) + " groups completed in " +
+        ( System.currentTimeMillis( ) - startTime ) + "ms" );
+  }
+
+  /**
+   * Sync users and groups changed since the last sync.
+   *
+   * Changes to accounting groups, and deletions, are not detected incrementally.
+   * Changes are applied per user and group as for a full sync, so there is no
+   * transaction for the sync as a whole.
+   *
+   * @return false if a full sync is required
+   */
+  private static boolean incrementalSync( final LdapIntegrationConfiguration lic, final SyncState state ) {
+    final long startTime = System.currentTimeMillis( );
+    final Map<String, Set<String>> changedAccountingGroups = Maps.newHashMap( );
+    final Map<String, String> groupDnToId = Maps.newHashMap( );
+    final Map<String, Set<String>> changedGroups = Maps.newHashMap( );
+    final Map<String, String> changedUserDnToId = Maps.newHashMap( );
+    final Map<String, Map<String, String>> changedUsers = Maps.newHashMap( );
+    final ChangeMarker marker = new ChangeMarker( lic.getChangeAttribute( ), state.changeMarker );
+    LdapClient ldap = null;
+    try {
+      ldap = LdapClient.authenticateClient( lic );
+
+      loadLdapUsers( ldap, lic, marker, changedUserDnToId, changedUsers );
+      final Map<String, String> userDnToId = Maps.newHashMap( state.userDnToId );
+      userDnToId.putAll( changedUserDnToId );
+      loadLdapGroups( ldap, lic, marker, userDnToId, groupDnToId, changedGroups );
+      if ( lic.hasAccountingGroups( ) ) {
+        loadLdapAccountingGroups( ldap, lic, marker, groupDnToId, changedAccountingGroups );
+        if ( !changedAccountingGroups.isEmpty( ) ) {
+          LOG.debug( "Accounting groups changed, performing full sync" );
+          return false;
+        }
+      }
+      state.userDnToId.putAll( changedUserDnToId );
+    } catch ( Exception e ) {
+      LOG.error( e, e );
+      LOG.error( "Failed incremental sync with LDAP, performing full sync", e );
+      return false;
+    } finally {
+      if ( ldap != null ) {
+        ldap.close( );
+      }
+    }
+    if ( VERBOSE ) {
+      LOG.debug( "Incremental sync remote groups: " + changedGroups );
+      LOG.debug( "Incremental sync remote users: " + changedUsers );
+    }
+
+    checkConflictingIdentities( changedAccountingGroups, changedGroups, changedUsers );
+    state.groups.putAll( changedGroups );
+    state.users.putAll( changedUsers );
+    int changes = 0;
+    final Map<String, Set<String>> changedAccounts =
+        getChangedAccountUsers( state.accountingGroups, state.groups, changedGroups.keySet( ), changedUsers.keySet( ) );
+    for ( final Map.Entry<String, Set<String>> accountEntry : changedAccounts.entrySet( ) ) {
+      changes += applyAccountChanges( accountEntry.getKey( ), accountEntry.getValue( ), changedUsers, state.users,
+          Maps.filterKeys( changedGroups, Predicates.in( state.accountingGroups.get( accountEntry.getKey( ) ) ) ) );
+    }
+    syncState = new SyncState( lic, state.fullSyncTime, marker.value,
+        state.accountingGroups, state.groups, state.userDnToId, state.users );
+    LOG.info( "LDAP incremental sync of " + changedUsers.size( ) + " users and " + changedGroups.size( ) +
+        " groups applied " + changes + " changes in " + ( System.currentTimeMillis( ) - startTime ) + "ms" );
+    return true;
+  }
+
+  /**
+   * Get the users to sync for each account affected by an incremental change.
+   *
+   * <p>An account is affected if any of its groups changed or if any user in
+   * the account changed. Members of changed groups are included so that users
+   * added to a group are added to the account.</p>
+   *
+   * @param accountingGroups The groups for each account
+   * @param groups The members of each group, including changes
+   * @param changedGroups The groups that changed
+   * @param changedUsers The users that changed
+   * @return The users to sync by account name, for affected accounts only
+   */
+  static Map<String, Set<String>> getChangedAccountUsers( final Map<String, Set<String>> accountingGroups,
+                                                          final Map<String, Set<String>> groups,
+                                                          final Set<String> changedGroups,
+                                                          final Set<String> changedUsers ) {
+    final Map<String, Set<String>> changedAccountUsers = Maps.newHashMap( );
+    for ( final Map.Entry<String, Set<String>> accountEntry : accountingGroups.entrySet( ) ) {
+      final Set<String> accountGroups = accountEntry.getValue( );
+      final Set<String> accountChangedGroups = Sets.intersection( accountGroups, changedGroups );
+      final Set<String> accountUsers = Sets.newHashSet( );
+      for ( final String group : accountChangedGroups ) {
+        final Set<String> members = groups.get( group );
+        if ( members != null ) {
+          accountUsers.addAll( members );
+        }
+      }
+      if ( !changedUsers.isEmpty( ) ) {
+        accountUsers.addAll( Sets.intersection( getAccountUserSet( accountGroups, groups ), changedUsers ) );
+      }
+      if ( !accountUsers.isEmpty( ) || !accountChangedGroups.isEmpty( ) ) {
+        changedAccountUsers.put( accountEntry.getKey( ), accountUsers );
+      }
+    }
+    return changedAccountUsers;
+  }
+
+  private static int applyAccountChanges( final String accountName,
+                                          final Set<String> changedAccountUsers,
+                                          final Map<String, Map<String, String>> changedUsers,
+                                          final Map<String, Map<String, String>> users,
+                                          final Map<String, Set<String>> changedAccountGroups ) {
+    int changes = 0;
+    try {
+      final EuareAccount account = Accounts.lookupAccountByName( accountName );
+      for ( final String user : changedAccountUsers ) {
+        try {
+          boolean exists;
+          try {
+            account.lookupUserByName( user );
+            exists = true;
+          } catch ( AuthException e ) {
+            exists = false;
+          }
+          if ( exists ) {
+            if ( changedUsers.containsKey( user ) ) {
+              updateUser( account, user, changedUsers.get( user ) );
+              changes++;
+            }
+          } else {
+            addNewUser( account, user, users.get( user ) );
+            changes++;
+          }
+        } catch ( AuthException e ) {
+          LOG.error( e, e );
+          LOG.warn( "Failed to sync user " + user + " in " + accountName, e );
+        }
+      }
+      final Set<String> localGroupSet = getLocalGroupSet( account );
+      for ( final Map.Entry<String, Set<String>> groupEntry : changedAccountGroups.entrySet( ) ) {
+        if ( localGroupSet.contains( groupEntry.getKey( ) ) ) {
+          updateGroup( account, groupEntry.getKey( ), groupEntry.getValue( ) );
+        } else {
+          addNewGroup( account, groupEntry.getKey( ), groupEntry.getValue( ) );
+        }
+        changes++;
+      }
+    } catch ( AuthException e ) {
+      LOG.error( e, e );
+      LOG.error( "Failed to sync account " + accountName, e );
+    }
+    return changes;
   }
   
   private static void checkConflictingIdentities( Map<String, Set<String>> accountingGroups, Map<String, Set<String>> groups, Map<String, Map<String, String>> users ) {
@@ -667,17 +937,17 @@ public class LdapSync {
     return members;
   }
 
-  private static void retrieveSelection( LdapClient ldap, String baseDn, Selection selection, String[] attrNames, LdapEntryProcessor processor ) throws LdapException {
+  private static void retrieveSelection( LdapClient ldap, LdapIntegrationConfiguration lic, String baseDn, Selection selection, ChangeMarker marker, String[] attrNames, final LdapEntryProcessor processor ) throws LdapException {
     if ( VERBOSE ) {
       LOG.debug( "Search users by: baseDn=" + baseDn + ", attributes=" + attrNames + ", selection=" + selection );
     }
-    try {
-      // Search by filter first.
-      NamingEnumeration<SearchResult> results = ldap.search( baseDn, selection.getSearchFilter( ), attrNames );
-      while ( results.hasMore( ) ) {
-        SearchResult res = results.next( );
+    final Set<String> notSelected = selection.getNotSelected( );
+    // Search by filter first.
+    ldap.search( baseDn, marker.filter( selection.getSearchFilter( ) ), attrNames, lic.getPageSize( ), new LdapClient.SearchResultProcessor( ) {
+      @Override
+      public void processSearchResult( final SearchResult res ) throws NamingException {
         try {
-          if ( !selection.getNotSelected( ).contains( res.getNameInNamespace( ) ) ) {
+          if ( !notSelected.contains( res.getNameInNamespace( ) ) ) {
             processor.processLdapEntry( res.getNameInNamespace( ).toLowerCase( ), res.getAttributes( ) );
           }
         } catch ( NamingException e ) {
@@ -685,24 +955,23 @@ public class LdapSync {
           LOG.error( e, e );
         }
       }
-      // Get one-off DNs
-      for ( String dn : selection.getSelected( ) ) {
-        Attributes attrs = null;
-        try {
-          attrs = ldap.getContext( ).getAttributes( dn, attrNames );
+    } );
+    // Get one-off DNs
+    for ( String dn : selection.getSelected( ) ) {
+      Attributes attrs = null;
+      try {
+        attrs = ldap.getContext( ).getAttributes( dn, attrNames );
+        if ( marker.changed( attrs ) ) {
           processor.processLdapEntry( dn.toLowerCase( ), attrs );
-        } catch ( NamingException e ) {
-          LOG.debug( "Failed to retrieve entry " + attrs );
-          LOG.error( e, e );
         }
+      } catch ( NamingException e ) {
+        LOG.debug( "Failed to retrieve entry " + attrs );
+        LOG.error( e, e );
       }
-    } catch ( NamingException e ) {
-      LOG.error( e, e );
-      throw new LdapException( e );
     }
   }
   
-  private static void loadLdapAccountingGroups( LdapClient ldap, final LdapIntegrationConfiguration lic, final Map<String, String> groupDnToId, final Map<String, Set<String>> accountingGroups ) throws LdapException {
+  private static void loadLdapAccountingGroups( LdapClient ldap, final LdapIntegrationConfiguration lic, final ChangeMarker marker, final Map<String, String> groupDnToId, final Map<String, Set<String>> accountingGroups ) throws LdapException {
     if ( VERBOSE ) {
       LOG.debug( "Loading accounting groups from LDAP/AD" );
     }
@@ -711,16 +980,18 @@ public class LdapSync {
     if ( !Strings.isNullOrEmpty( lic.getAccountingGroupIdAttribute( ) ) ) {
       attrNames.add( lic.getAccountingGroupIdAttribute( ) );
     }
+    marker.addAttributeName( attrNames );
     if ( VERBOSE ) {
       LOG.debug( "Attributes to load for accounting groups: " + attrNames );
     }
-    retrieveSelection( ldap, lic.getAccountingGroupBaseDn( ), lic.getAccountingGroupsSelection( ), attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
+    retrieveSelection( ldap, lic, lic.getAccountingGroupBaseDn( ), lic.getAccountingGroupsSelection( ), marker, attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
 
       @Override
       public void processLdapEntry( String dn, Attributes attrs ) throws NamingException {
         if ( VERBOSE ) {
           LOG.debug( "Retrieved accounting group: " + dn + " -> " + attrs );
         }
+        marker.update( attrs );
         accountingGroups.put( sanitizeAccountId( getId( dn, lic.getAccountingGroupIdAttribute( ), attrs ) ),
                               getMembers( lic.getGroupsAttribute( ), attrs, groupDnToId ) );
         
@@ -729,7 +1000,7 @@ public class LdapSync {
     } );    
   }
   
-  private static void loadLdapGroups( LdapClient ldap, final LdapIntegrationConfiguration lic, final Map<String, String> userDnToId, final Map<String, String> groupDnToId, final Map<String, Set<String>> groups ) throws LdapException {
+  private static void loadLdapGroups( LdapClient ldap, final LdapIntegrationConfiguration lic, final ChangeMarker marker, final Map<String, String> userDnToId, final Map<String, String> groupDnToId, final Map<String, Set<String>> groups ) throws LdapException {
     if ( VERBOSE ) {
       LOG.debug( "Loading groups from LDAP/AD" );
     }
@@ -738,16 +1009,18 @@ public class LdapSync {
     if ( !Strings.isNullOrEmpty( lic.getGroupIdAttribute( ) ) ) {
       attrNames.add( lic.getGroupIdAttribute( ) );
     }
+    marker.addAttributeName( attrNames );
     if ( VERBOSE ) {
       LOG.debug( "Attributes to load for groups: " + attrNames );
     }
-    retrieveSelection( ldap, lic.getGroupBaseDn( ), lic.getGroupsSelection( ), attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
+    retrieveSelection( ldap, lic, lic.getGroupBaseDn( ), lic.getGroupsSelection( ), marker, attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
 
       @Override
       public void processLdapEntry( String dn, Attributes attrs ) throws NamingException {
         if ( VERBOSE ) {
           LOG.debug( "Retrieved group: " + dn + " -> " + attrs );
         }
+        marker.update( attrs );
         String id = sanitizeUserGroupId( getId( dn, lic.getGroupIdAttribute( ), attrs ) ); 
         groupDnToId.put( dn, id );
         groups.put( id, getMembers( lic.getUsersAttribute( ), attrs, userDnToId ) );
@@ -756,7 +1029,7 @@ public class LdapSync {
     } );    
   }
   
-  private static void loadLdapUsers( LdapClient ldap, final LdapIntegrationConfiguration lic, final Map<String, String> userDnToId, final Map<String, Map<String, String>> users ) throws LdapException {
+  private static void loadLdapUsers( LdapClient ldap, final LdapIntegrationConfiguration lic, final ChangeMarker marker, final Map<String, String> userDnToId, final Map<String, Map<String, String>> users ) throws LdapException {
     if ( VERBOSE ) {
       LOG.debug( "Loading users from LDAP/AD" );
     }
@@ -769,17 +1042,19 @@ public class LdapSync {
     if ( !Strings.isNullOrEmpty( lic.getUserSaslIdAttribute( ) ) ) {
       attrNames.add( lic.getUserSaslIdAttribute( ) );
     }
+    marker.addAttributeName( attrNames );
     if ( VERBOSE ) {
       LOG.debug( "Attributes to load for users: " + attrNames );
     }
     // Retrieving from LDAP using a search
-    retrieveSelection( ldap, lic.getUserBaseDn( ), lic.getUsersSelection( ), attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
+    retrieveSelection( ldap, lic, lic.getUserBaseDn( ), lic.getUsersSelection( ), marker, attrNames.toArray( new String[0] ), new LdapEntryProcessor( ) {
 
       @Override
       public void processLdapEntry( String dn, Attributes attrs ) throws NamingException {
         if ( VERBOSE ) {
           LOG.debug( "Retrieved user: " + dn + " -> " + attrs );
         }
+        marker.update( attrs );
         String id = sanitizeUserGroupId( getId( dn, lic.getUserIdAttribute( ), attrs ) );
         userDnToId.put( dn, id );
         Map<String, String> infoMap = Maps.newHashMap( );
@@ -278,6 +278,27 @@ public class LicParser {
         throw new JSONException( "Invalid sync interval value" );
       }
       lic.setCleanDeletion( "true".equalsIgnoreCase( JsonUtils.getByType( String.class, sync, LicSpec.CLEAN_DELETION ) ) );
+      lic.setIncrementalSync( "true".equalsIgnoreCase( JsonUtils.getByType( String.class, sync, LicSpec.INCREMENTAL_SYNC ) ) );
+      String changeAttribute = JsonUtils.getByType( String.class, sync, LicSpec.CHANGE_ATTRIBUTE );
+      if ( !Strings.isNullOrEmpty( changeAttribute ) ) {
+        lic.setChangeAttribute( changeAttribute );
+      }
+      try {
+        String fullSyncInterval = JsonUtils.getByType( String.class, sync, LicSpec.FULL_SYNC_INTERVAL );
+        if ( !Strings.isNullOrEmpty( fullSyncInterval ) ) {
+          lic.setFullSyncInterval( Long.parseLong( fullSyncInterval ) );
+        }
+      } catch ( NumberFormatException e ) {
+        throw new JSONException( "Invalid full sync interval value" );
+      }
+      try {
+        String pageSize = JsonUtils.getByType( String.class, sync, LicSpec.PAGE_SIZE );
+        if ( !Strings.isNullOrEmpty( pageSize ) ) {
+          lic.setPageSize( Integer.parseInt( pageSize ) );
+        }
+      } catch ( NumberFormatException e ) {
+        throw new JSONException( "Invalid page size value" );
+      }
     }
   }
   
@@ -100,5 +100,9 @@ public class LicSpec {
   public static final String USER_AUTH_METHOD = "user-auth-method";
   public static final String CLEAN_DELETION = "clean-deletion";
   public static final String SASL_ID_ATTRIBUTE = "sasl-id-attribute";
+  public static final String INCREMENTAL_SYNC = "incremental";
+  public static final String CHANGE_ATTRIBUTE = "change-attribute";
+  public static final String FULL_SYNC_INTERVAL = "full-sync-interval";
+  public static final String PAGE_SIZE = "page-size";
 
 }
@@ -68,6 +68,7 @@ import java.util.Set;
 import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EntityTransaction;
 import javax.persistence.FetchType;
 import javax.persistence.OneToMany;
@@ -85,6 +86,7 @@ import com.eucalyptus.upgrade.Upgrades.EntityUpgrade;
 import com.eucalyptus.util.Exceptions;
 import org.apache.log4j.Logger;
 import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.CachedEntity;
 import com.google.common.base.Predicate;
 
 /**
@@ -92,8 +94,10 @@ import com.google.common.base.Predicate;
  */
 
 @Entity
+@EntityListeners( PrincipalInvalidationListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_account" )
+@CachedEntity
 public class AccountEntity extends AbstractPersistent implements Serializable {
 
   @Transient
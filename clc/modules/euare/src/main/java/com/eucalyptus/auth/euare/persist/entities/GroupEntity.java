@@ -70,6 +70,7 @@ import java.util.concurrent.Callable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -96,6 +97,7 @@ import groovy.sql.Sql;
  * Database group entity.
  */
 @Entity
+@EntityListeners( PrincipalInvalidationListener.class )
 @AuxiliaryDatabaseObjects({
     @AuxiliaryDatabaseObject(
         dialect = "org.hibernate.dialect.PostgreSQLDialect",
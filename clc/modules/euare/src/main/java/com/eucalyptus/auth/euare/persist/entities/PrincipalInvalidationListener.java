@@ -0,0 +1,61 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.euare.persist.entities;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.transaction.Synchronization;
+import org.apache.log4j.Logger;
+import com.eucalyptus.auth.principal.PrincipalBundles;
+import com.eucalyptus.entities.Entities;
+
+/**
+ * Entity listener that invalidates cached principals when IAM data changes.
+ *
+ * <p>Invalidation occurs when the change is flushed and again when the
+ * transaction completes, so principals loaded before the change is
+ * committed are not retained.</p>
+ */
+public class PrincipalInvalidationListener {
+
+  private static final Logger LOG = Logger.getLogger( PrincipalInvalidationListener.class );
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void invalidate( final Object entity ) {
+    PrincipalBundles.invalidate( );
+    try {
+      Entities.registerSynchronization( entity.getClass( ), new Synchronization( ) {
+        @Override
+        public void beforeCompletion( ) {
+        }
+
+        @Override
+        public void afterCompletion( final int status ) {
+          PrincipalBundles.invalidate( );
+        }
+      } );
+    } catch ( final RuntimeException e ) {
+      LOG.debug( "Unable to invalidate principals on completion for " + entity.getClass( ).getSimpleName( ), e );
+    }
+  }
+}
@@ -73,6 +73,7 @@ import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.ManyToMany;
@@ -98,6 +99,7 @@ import groovy.sql.Sql;
  * Database entity for a user.
  */
 @Entity
+@EntityListeners( PrincipalInvalidationListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_user", indexes = {
     @Index( name = "auth_user_name_idx", columnList = "auth_user_name" )
@@ -0,0 +1,84 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.euare.ldap
+
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for incremental LDAP sync change detection.
+ */
+class LdapSyncTest {
+
+  private static final Map<String,Set<String>> ACCOUNTING_GROUPS = [
+      'account1': [ 'group1', 'group2' ] as Set,
+      'account2': [ 'group3' ] as Set,
+  ]
+
+  @Test
+  void testNoChanges( ) {
+    assertEquals( 'Changed accounts', [:], LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups( ), [ ] as Set, [ ] as Set ) )
+  }
+
+  @Test
+  void testChangedUser( ) {
+    assertEquals( 'Changed accounts', [ 'account1': [ 'user2' ] as Set ],
+        LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups( ), [ ] as Set, [ 'user2' ] as Set ) )
+  }
+
+  @Test
+  void testChangedUserInMultipleAccounts( ) {
+    Map<String,Set<String>> groups = groups( )
+    groups[ 'group3' ] << 'user1'
+    assertEquals( 'Changed accounts', [ 'account1': [ 'user1' ] as Set, 'account2': [ 'user1' ] as Set ],
+        LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups, [ ] as Set, [ 'user1' ] as Set ) )
+  }
+
+  @Test
+  void testUserAddedToGroup( ) {
+    Map<String,Set<String>> groups = groups( )
+    groups[ 'group3' ] << 'user1'
+    assertEquals( 'Changed accounts', [ 'account2': [ 'user1', 'user4' ] as Set ],
+        LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups, [ 'group3' ] as Set, [ ] as Set ) )
+  }
+
+  @Test
+  void testEmptiedGroup( ) {
+    Map<String,Set<String>> groups = groups( )
+    groups[ 'group3' ] = [ ] as Set
+    assertEquals( 'Changed accounts', [ 'account2': [ ] as Set ],
+        LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups, [ 'group3' ] as Set, [ ] as Set ) )
+  }
+
+  @Test
+  void testChangedUserNotInAccount( ) {
+    assertEquals( 'Changed accounts', [:],
+        LdapSync.getChangedAccountUsers( ACCOUNTING_GROUPS, groups( ), [ ] as Set, [ 'user5' ] as Set ) )
+  }
+
+  private static Map<String,Set<String>> groups( ) {
+    [
+        'group1': [ 'user1', 'user2' ] as Set,
+        'group2': [ 'user3' ] as Set,
+        'group3': [ 'user4' ] as Set,
+    ]
+  }
+}
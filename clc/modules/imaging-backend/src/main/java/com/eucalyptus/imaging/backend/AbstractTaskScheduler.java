@@ -23,6 +23,8 @@ import java.net.URI;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.eucalyptus.auth.principal.AccountIdentifiers;
 import com.eucalyptus.resources.client.EuareClient;
@@ -59,8 +61,9 @@ import com.google.common.collect.Lists;
  */
 public abstract class AbstractTaskScheduler {
   private static Logger LOG = Logger.getLogger( AbstractTaskScheduler.class );
-  private PublicKey imagingServiceKey = null;
-  private String imagingServiceCertArn = null;
+  private static final long IMAGING_SERVICE_KEY_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+  private static final int MAX_CLAIM_ATTEMPTS = 10;
+  private static final AtomicReference<ImagingServiceKey> imagingServiceKey = new AtomicReference<>( );
   
   public enum WorkerTaskType { import_volume, convert_image }
   
@@ -101,9 +104,28 @@ public abstract class AbstractTaskScheduler {
     }
   }
 
+  private static final class ImagingServiceKey {
+    private final PublicKey key;
+    private final String certArn;
+    private final long loaded;
+
+    private ImagingServiceKey(final PublicKey key, final String certArn){
+      this.key = key;
+      this.certArn = certArn;
+      this.loaded = System.currentTimeMillis();
+    }
+
+    private boolean isExpired(){
+      return System.currentTimeMillis() - loaded > IMAGING_SERVICE_KEY_REFRESH_MILLIS;
+    }
+  }
+
+  /**
+   * Select the next task for the zone, the task is claimed by the caller.
+   */
   protected abstract ImagingTask getNext(String availabilityZone);
   
-  private void loadImagingServiceKey() throws Exception{
+  private static ImagingServiceKey loadImagingServiceKey() throws Exception{
     try{
       final ServerCertificateType cert = 
           EuareClient.getInstance().getServerCertificate(
@@ -111,30 +133,56 @@ public abstract class AbstractTaskScheduler {
               ImagingServiceLaunchers.SERVER_CERTIFICATE_NAME);
       final String certBody = cert.getCertificateBody();
       final X509Certificate x509 = PEMFiles.toCertificate(B64.url.encString(certBody));
-      this.imagingServiceKey = x509.getPublicKey();
-      this.imagingServiceCertArn = cert.getServerCertificateMetadata().getArn();
+      return new ImagingServiceKey(x509.getPublicKey(), cert.getServerCertificateMetadata().getArn());
     }catch(final Exception ex){
       throw new Exception("Failed to load public key of the imaging service", ex);
     }
   }
 
-  private static Object taskLock = new Object();
-  public WorkerTask getTask(final String availabilityZone) throws Exception{
-    ImagingTask nextTask = null;
-    synchronized(taskLock){
-      nextTask = this.getNext(availabilityZone);
-      if(nextTask!=null) {
-        ImagingTasks.transitState(nextTask, ImportTaskState.PENDING, ImportTaskState.CONVERTING, "");
+  /**
+   * Get the cached imaging service key, reloading if expired.
+   */
+  private static ImagingServiceKey getImagingServiceKey() throws Exception{
+    final ImagingServiceKey cached = imagingServiceKey.get();
+    if(cached!=null && !cached.isExpired())
+      return cached;
+    final ImagingServiceKey loaded = loadImagingServiceKey();
+    if(loaded.key==null || loaded.certArn==null)
+      throw new Exception("Failed to load public key of the imaging service");
+    imagingServiceKey.compareAndSet(cached, loaded);
+    return loaded;
+  }
+
+  /**
+   * Discard the cached imaging service key, call when the certificate is rotated.
+   */
+  public static void resetImagingServiceKey(){
+    imagingServiceKey.set(null);
+  }
+
+  private ImagingTask claimNext(final String availabilityZone){
+    for(int i=0; i<MAX_CLAIM_ATTEMPTS; i++){
+      final ImagingTask candidate = this.getNext(availabilityZone);
+      if(candidate==null)
+        return null;
+      if(ImagingTasks.claimTask(candidate))
+        return candidate;
+      try{
+        // modified since queued, requeue if still ready
+        ImagingTaskQueues.getInstance().update(ImagingTasks.lookup(candidate.getDisplayName()));
+      }catch(final Exception ex){
+        LOG.debug("Unable to requeue task "+candidate.getDisplayName());
       }
     }
+    return null;
+  }
+
+  public WorkerTask getTask(final String availabilityZone) throws Exception{
+    final ImagingTask nextTask = claimNext(availabilityZone);
     if(nextTask==null)
       return null;
  
-    this.imagingServiceKey = null;
-    this.imagingServiceCertArn = null;
-    loadImagingServiceKey();
-    if(this.imagingServiceKey==null || this.imagingServiceCertArn==null)
-      throw new Exception("Failed to load public key of the imaging service");
+    getImagingServiceKey();
 
     WorkerTask newTask = null;
 
@@ -210,13 +258,7 @@ public abstract class AbstractTaskScheduler {
       throw new Exception("failed to prepare worker task", ex);
     }
 
-    if(newTask!=null){
-      try{
-        ImagingTasks.transitState(nextTask, ImportTaskState.PENDING, ImportTaskState.CONVERTING, "");
-      }catch(final Exception ex){
-        ;
-      }
-    }else{
+    if(newTask==null){
       ImagingTasks.setState(nextTask, ImportTaskState.FAILED, ImportTaskState.STATE_MSG_FAILED_UNEXPECTED);
     }
 
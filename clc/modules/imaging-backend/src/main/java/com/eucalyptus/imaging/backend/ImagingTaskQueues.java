@@ -0,0 +1,196 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.imaging.backend;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.compute.common.ImportInstanceVolumeDetail;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Per availability zone queues of imaging tasks that are ready for a worker.
+ *
+ * Queues are ordered by task creation time and are rebuilt from the database
+ * on first use. State changes made via ImagingTasks add tasks to the queues
+ * for their zones. Entries are only hints, a task is re-checked when polled
+ * and must still be claimed in the database.
+ */
+public class ImagingTaskQueues {
+  private static Logger LOG = Logger.getLogger( ImagingTaskQueues.class );
+  private static final ImagingTaskQueues instance = new ImagingTaskQueues( );
+
+  private final ConcurrentMap<String,NavigableSet<QueuedTask>> queuesByZone = Maps.newConcurrentMap( );
+  private volatile boolean loaded = false;
+
+  public static ImagingTaskQueues getInstance( ) {
+    return instance;
+  }
+
+  /**
+   * Poll the oldest task that is ready for a worker in the given zone.
+   *
+   * The returned task is not claimed.
+   */
+  public ImagingTask poll( final String availabilityZone ) {
+    load( );
+    final NavigableSet<QueuedTask> queue = queue( availabilityZone );
+    QueuedTask queued;
+    while ( ( queued = queue.pollFirst( ) ) != null ) {
+      final ImagingTask task;
+      try {
+        task = ImagingTasks.lookup( queued.taskId );
+      } catch ( final NoSuchElementException ex ) {
+        continue;
+      } catch ( final Exception ex ) {
+        LOG.warn( "Failed to lookup queued imaging task " + queued.taskId, ex );
+        continue;
+      }
+      if ( readyZones( task ).contains( availabilityZone ) ) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Queue the task for any zones where it is ready for a worker.
+   */
+  public void update( final ImagingTask task ) {
+    if ( loaded ) {
+      offer( task );
+    }
+  }
+
+  /**
+   * Discard queued tasks and reload from the database.
+   */
+  public synchronized void rebuild( ) {
+    queuesByZone.clear( );
+    int count = 0;
+    for ( final ImagingTask task : ImagingTasks.getImagingTasks( ImportTaskState.PENDING ) ) {
+      count += offer( task );
+    }
+    for ( final ImagingTask task : ImagingTasks.getImagingTasks( ImportTaskState.CONVERTING ) ) {
+      count += offer( task );
+    }
+    loaded = true;
+    LOG.debug( "Loaded " + count + " queued imaging task(s)" );
+  }
+
+  private void load( ) {
+    if ( !loaded ) {
+      synchronized ( this ) {
+        if ( !loaded ) {
+          rebuild( );
+        }
+      }
+    }
+  }
+
+  private int offer( final ImagingTask task ) {
+    final Set<String> zones = readyZones( task );
+    for ( final String zone : zones ) {
+      queue( zone ).add( new QueuedTask( task ) );
+    }
+    return zones.size( );
+  }
+
+  private NavigableSet<QueuedTask> queue( final String availabilityZone ) {
+    NavigableSet<QueuedTask> queue = queuesByZone.get( availabilityZone );
+    if ( queue == null ) {
+      final NavigableSet<QueuedTask> newQueue = new ConcurrentSkipListSet<>( );
+      queue = queuesByZone.putIfAbsent( availabilityZone, newQueue );
+      if ( queue == null ) {
+        queue = newQueue;
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Zones in which the task has work for an imaging worker.
+   *
+   * An import volume task is ready when pending, an import instance task is
+   * ready while pending or converting for each volume that is not yet
+   * converted.
+   */
+  static Set<String> readyZones( final ImagingTask task ) {
+    if ( task instanceof ImportVolumeImagingTask ) {
+      if ( ImportTaskState.PENDING.equals( task.getState( ) ) ) {
+        final String zone = ( (ImportVolumeImagingTask) task ).getAvailabilityZone( );
+        if ( zone != null ) {
+          return Collections.singleton( zone );
+        }
+      }
+    } else if ( task instanceof ImportInstanceImagingTask &&
+        ( ImportTaskState.PENDING.equals( task.getState( ) ) ||
+          ImportTaskState.CONVERTING.equals( task.getState( ) ) ) ) {
+      final ImportInstanceImagingTask instanceTask = (ImportInstanceImagingTask) task;
+      final Set<String> zones = Sets.newHashSet( );
+      final List<ImportInstanceVolumeDetail> volumes = instanceTask.getVolumes( );
+      if ( volumes != null ) for ( final ImportInstanceVolumeDetail volume : volumes ) {
+        if ( volume.getAvailabilityZone( ) != null &&
+            !instanceTask.hasDownloadManifestUrl( volume.getImage( ).getImportManifestUrl( ) ) ) {
+          zones.add( volume.getAvailabilityZone( ) );
+        }
+      }
+      return zones;
+    }
+    return Collections.emptySet( );
+  }
+
+  private static final class QueuedTask implements Comparable<QueuedTask> {
+    private final String taskId;
+    private final long created;
+
+    private QueuedTask( final ImagingTask task ) {
+      this.taskId = task.getDisplayName( );
+      this.created = task.getCreationTimestamp( ) == null ? 0 : task.getCreationTimestamp( ).getTime( );
+    }
+
+    @Override
+    public int compareTo( final QueuedTask other ) {
+      final int result = Long.compare( created, other.created );
+      return result != 0 ? result : taskId.compareTo( other.taskId );
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final QueuedTask that = (QueuedTask) o;
+      return created == that.created && taskId.equals( that.taskId );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return 31 * taskId.hashCode( ) + (int) ( created ^ ( created >>> 32 ) );
+    }
+  }
+}
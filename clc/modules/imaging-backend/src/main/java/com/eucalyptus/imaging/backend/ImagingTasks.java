@@ -370,6 +370,45 @@ public class ImagingTasks {
     }
   }
 
+  public static List<ImagingTask> getImagingTasks(final ImportTaskState state){
+    try ( final TransactionResource db =
+        Entities.transactionFor( ImagingTask.class ) ) {
+      return Entities.query(ImagingTask.named(state), true);
+    }
+  }
+
+  /**
+   * Claim a task for a worker by moving it to the converting state.
+   *
+   * The claim fails if the task was modified since it was loaded, so
+   * concurrent claims for a task are resolved by the database rather than
+   * a lock.
+   *
+   * @return true if the task was claimed
+   */
+  public static boolean claimTask(final ImagingTask task){
+    try ( final TransactionResource db =
+        Entities.transactionFor( ImagingTask.class ) ) {
+      final ImagingTask entity = Entities.uniqueResult(ImagingTask.named(task.getDisplayName()));
+      if(!entity.getVersion().equals(task.getVersion()))
+        return false;
+      if(!(ImportTaskState.PENDING.equals(entity.getState()) ||
+          (ImportTaskState.CONVERTING.equals(entity.getState()) && entity instanceof ImportInstanceImagingTask)))
+        return false;
+      entity.setState(ImportTaskState.CONVERTING);
+      entity.setTaskState(ImportTaskState.CONVERTING.getExternalTaskStateName());
+      entity.serializeTaskToJSON();
+      entity.updateTimeStamps();
+      db.commit();
+      return true;
+    }catch(final NoSuchElementException | TransactionException ex){
+      return false;
+    }catch(final RuntimeException ex){
+      LOG.debug("Failed to claim task "+task.getDisplayName()+": "+ex.getMessage());
+      return false;
+    }
+  }
+
   public static ImagingTask lookup(final String taskId) 
       throws NoSuchElementException {
     synchronized(lock){
@@ -425,6 +464,7 @@ public class ImagingTasks {
           task.updateTimeStamps();
           Entities.persist(task);
           db.commit();
+          ImagingTaskQueues.getInstance().update(task);
         }catch(final TransactionException ex){
           throw Exceptions.toUndeclared(ex);
         }
@@ -452,6 +492,7 @@ public class ImagingTasks {
           entity.serializeTaskToJSON();
           entity.updateTimeStamps();
           db.commit();
+          ImagingTaskQueues.getInstance().update(entity);
         }catch(final TransactionException ex){
           throw Exceptions.toUndeclared(ex);
         }
@@ -508,6 +549,7 @@ public class ImagingTasks {
           }
           Entities.persist(entity);
           db.commit();
+          ImagingTaskQueues.getInstance().update(entity);
         }catch(final Exception ex){
           throw Exceptions.toUndeclared(ex);
         }
@@ -516,7 +558,7 @@ public class ImagingTasks {
   }
   
   public static ImagingTask getConvertingTaskByWorkerId(final String workerId){
-    final List<ImagingTask> tasks = getImagingTasks();
+    final List<ImagingTask> tasks = getImagingTasks(ImportTaskState.CONVERTING);
     for(final ImagingTask task : tasks){
       if(ImportTaskState.CONVERTING.equals(task.getState()) && workerId.equals(task.getWorkerId())){
         return task;
@@ -602,6 +644,7 @@ public class ImagingTasks {
           final VolumeImagingTask entity = Entities.uniqueResult(task);
           entity.addDownloadManifestUrl(importManifestUrl, downloadManifestUrl);
           db.commit();
+          ImagingTaskQueues.getInstance().update(entity);
         }catch(final TransactionException ex){
           throw Exceptions.toUndeclared(ex);
         }
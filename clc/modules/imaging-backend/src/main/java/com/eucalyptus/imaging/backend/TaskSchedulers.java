@@ -19,14 +19,8 @@
  ************************************************************************/
 package com.eucalyptus.imaging.backend;
 
-import java.util.Date;
-import java.util.List;
-
 import org.apache.log4j.Logger;
 
-import com.eucalyptus.compute.common.ImportInstanceVolumeDetail;
-import com.google.common.collect.Lists;
-
 /**
  * @author Sang-Min Park
  *
@@ -35,58 +29,12 @@ public class TaskSchedulers {
   private static Logger LOG = Logger.getLogger(TaskSchedulers.class);
 
   // first-come, first-served order, but give higher priority for import-image (partition to disk conversion) task
+  // disk imaging tasks are not dispatched to workers by this scheduler so this is currently the same as FCFS
   public static class ImportImageFirstTaskScheduler extends AbstractTaskScheduler {
     @Override
     protected ImagingTask getNext(final String availabilityZone) {
-      List<ImagingTask> allTasks = null;
-      List<ImagingTask> imagePendingTasks = Lists.newArrayList();
-      List<ImagingTask> pendingTasks = Lists.newArrayList();
-      // pick a pending task whose timestamp is the oldest
       try{
-        allTasks = ImagingTasks.getImagingTasks();
-        for(final ImagingTask t : allTasks){
-          if(ImportTaskState.PENDING.equals(t.getState()))
-            pendingTasks.add(t);
-          else if (ImportTaskState.CONVERTING.equals(t.getState()) && 
-              (t instanceof ImportInstanceImagingTask))
-            pendingTasks.add(t); // more than one volumes should be processed by worker
-        }
-
-        ImagingTask oldestTask = null;
-        Date oldest = new Date(Long.MAX_VALUE) ;
-        for(final ImagingTask task : imagePendingTasks){
-          if (oldest.after(task.getCreationTimestamp())){
-            oldest = task.getCreationTimestamp();
-            oldestTask = task;
-          }
-        }
-        if(oldestTask!=null)
-          return oldestTask;
-        
-        for(final ImagingTask task : pendingTasks){
-          if(task instanceof ImportVolumeImagingTask){
-            if(! availabilityZone.equals(((ImportVolumeImagingTask)task).getAvailabilityZone()))
-              continue;
-          }else if(task instanceof ImportInstanceImagingTask){
-            boolean clusterFound = false;
-            for(final ImportInstanceVolumeDetail volume : ((ImportInstanceImagingTask)task).getVolumes()){
-              final String importManifestUrl = volume.getImage().getImportManifestUrl();
-              /// this volume is not yet converted and the zone matches
-              if(! ((ImportInstanceImagingTask)task).hasDownloadManifestUrl(importManifestUrl) &&
-                  availabilityZone.equals(volume.getAvailabilityZone())){
-                clusterFound = true;
-                break;
-              }
-            }   
-            if(!clusterFound)
-              continue;
-          }
-          if (oldest.after(task.getCreationTimestamp())){
-            oldest = task.getCreationTimestamp();
-            oldestTask = task;
-          }
-        }
-        return oldestTask;
+        return ImagingTaskQueues.getInstance().poll(availabilityZone);
       }catch(final Exception ex){
         LOG.error("failed to schedule the task to imaging worker", ex);
         return null;
@@ -97,45 +45,9 @@ public class TaskSchedulers {
   public static class FCFSTaskScheduler extends AbstractTaskScheduler {
     @Override
     public ImagingTask getNext(final String availabilityZone) {
-      List<ImagingTask> allTasks = null;
-      List<ImagingTask> pendingTasks = Lists.newArrayList();
       // pick a pending task whose timestamp is the oldest
       try{
-        allTasks = ImagingTasks.getImagingTasks();
-        for(final ImagingTask t : allTasks){
-          if(ImportTaskState.PENDING.equals(t.getState()))
-            pendingTasks.add(t);
-          else if (ImportTaskState.CONVERTING.equals(t.getState()) && t instanceof ImportInstanceImagingTask)
-            pendingTasks.add(t); // more than one volumes should be processed by worker
-        }
-
-        ImagingTask oldestTask = null;
-        Date oldest = new Date(Long.MAX_VALUE) ;
-        for(final ImagingTask task : pendingTasks){
-          if(task instanceof ImportVolumeImagingTask){
-            if(! availabilityZone.equals(((ImportVolumeImagingTask)task).getAvailabilityZone()))
-              continue;
-          }else if(task instanceof ImportInstanceImagingTask){
-            boolean clusterFound = false;
-            for(final ImportInstanceVolumeDetail volume : ((ImportInstanceImagingTask)task).getVolumes()){
-              final String importManifestUrl = volume.getImage().getImportManifestUrl();
-              /// this volume is not yet converted and the zone matches
-              if(! ((ImportInstanceImagingTask)task).hasDownloadManifestUrl(importManifestUrl) &&
-                  availabilityZone.equals(volume.getAvailabilityZone())){
-                clusterFound = true;
-                break;
-              }
-            }   
-            if(!clusterFound)
-              continue;
-          }
-          
-          if (oldest.after(task.getCreationTimestamp())){
-            oldest = task.getCreationTimestamp();
-            oldestTask = task;
-          }
-        }
-        return oldestTask;
+        return ImagingTaskQueues.getInstance().poll(availabilityZone);
       }catch(final Exception ex){
         LOG.error("failed to schedule the task to imaging worker", ex);
         return null;
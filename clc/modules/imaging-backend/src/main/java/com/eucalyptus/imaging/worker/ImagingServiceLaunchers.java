@@ -46,6 +46,7 @@ import com.eucalyptus.configurable.PropertyChangeListener;
 import com.eucalyptus.crypto.Certs;
 import com.eucalyptus.crypto.util.PEMFiles;
 import com.eucalyptus.imaging.ImagingServiceProperties;
+import com.eucalyptus.imaging.backend.AbstractTaskScheduler;
 import com.eucalyptus.resources.client.CloudFormationClient;
 import com.eucalyptus.resources.client.Ec2Client;
 import com.eucalyptus.resources.client.EuareClient;
@@ -214,6 +215,7 @@ public class ImagingServiceLaunchers {
           SERVER_CERTIFICATE_NAME, DEFAULT_SERVER_CERT_PATH, certPem, pkPem,
           null);
       LOG.debug("Created new certificate " + res.getServerCertificateName());
+      AbstractTaskScheduler.resetImagingServiceKey();
     } catch (final Exception ex) {
       throw new EucalyptusCloudException("failed to upload server cert", ex);
     }
@@ -234,6 +236,7 @@ public class ImagingServiceLaunchers {
       EuareClient.getInstance().deleteServerCertificate(
           Accounts.lookupSystemAccountByAlias( AccountIdentifiers.IMAGING_SYSTEM_ACCOUNT ).getUserId( ),
           SERVER_CERTIFICATE_NAME);
+      AbstractTaskScheduler.resetImagingServiceKey();
     } catch (final Exception ex) {
       throw ex;
     } finally {
@@ -61,6 +61,7 @@
  ************************************************************************/
 
 import com.eucalyptus.component.id.Database
+import com.eucalyptus.entities.EntityCacheRegions
 import com.eucalyptus.entities.PersistenceContextConfiguration
 import com.eucalyptus.system.Threads
 import org.apache.log4j.Logger
@@ -107,6 +108,15 @@ PersistenceContexts.list( ).collect{ String context_name ->
         'hibernate.cache.use_query_cache'              : 'false',
     ])
 
+    // Enable the l2 cache for contexts with entities that opt in via @CachedEntity
+    if (EntityCacheRegions.isCaching(PersistenceContexts.listEntities(context_name))) {
+      LOG.info("Using second level cache for context ${context_name}");
+      hibernate_config.putAll([
+          'hibernate.cache.use_second_level_cache': 'true',
+          'hibernate.cache.region.factory_class'  : 'com.eucalyptus.entities.impl.EucalyptusRegionFactory',
+      ])
+    }
+
     LOG.info("Context name: = '" + context_name + "'");
     if (context_name in ["eucalyptus_cloudwatch", "eucalyptus_cloudwatch_backend", "eucalyptus_cloud"]) {
       LOG.info("Using batching for context ${context_name}");
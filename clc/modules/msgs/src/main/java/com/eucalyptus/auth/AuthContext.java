@@ -24,6 +24,7 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.eucalyptus.auth.principal.PolicyVersion;
+import com.eucalyptus.auth.principal.PrincipalBundle;
 import com.eucalyptus.auth.principal.User;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -57,6 +58,20 @@ public class AuthContext {
     this.policies = ImmutableList.copyOf( policies );
   }
 
+  AuthContext(
+      final PrincipalBundle principal,
+      final Map<String, String> evaluatedKeys
+  ) {
+    this.userId = principal.getUserId( );
+    this.systemAdmin = principal.isSystemAdmin( );
+    this.systemUser = principal.isSystemUser( );
+    this.accountAdmin = principal.isAccountAdmin( );
+    this.accountNumber = principal.getAccountNumber( );
+    this.user = principal.getUser( );
+    this.evaluatedKeys = evaluatedKeys;
+    this.policies = principal.getPolicies( );
+  }
+
   public String getUserId() {
     return userId;
   }
@@ -76,6 +76,7 @@ import com.eucalyptus.auth.policy.key.Keys;
 import com.eucalyptus.auth.principal.AccountFullName;
 import com.eucalyptus.auth.principal.AccountIdentifiers;
 import com.eucalyptus.auth.principal.PolicyVersion;
+import com.eucalyptus.auth.principal.PrincipalBundle;
 import com.eucalyptus.auth.principal.User;
 import com.eucalyptus.auth.principal.UserPrincipal;
 import com.eucalyptus.context.Contexts;
@@ -103,6 +104,16 @@ public class Permissions {
 		return new AuthContext( requestUser, requestUser.getPrincipalPolicies( ), evaluatedKeys );
 	}
 
+	/**
+	 * Create an authorization context using a shared principal bundle.
+	 */
+	public static AuthContext createAuthContext(
+			final PrincipalBundle requestPrincipal,
+			final Map<String, String> evaluatedKeys
+	) {
+		return new AuthContext( requestPrincipal, evaluatedKeys );
+	}
+
 	public static AuthContextSupplier createAuthContextSupplier(
 			final UserPrincipal requestUser,
 			final Map<String, String> evaluatedKeys
@@ -45,9 +45,12 @@ import com.eucalyptus.crypto.Hmac;
 import com.eucalyptus.crypto.util.SecurityHeader;
 import com.eucalyptus.crypto.util.SecurityParameter;
 import com.eucalyptus.crypto.util.Timestamps;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.ws.util.HmacUtils;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.io.BaseEncoding;
@@ -56,6 +59,16 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
   private static final Logger LOG = Logger.getLogger( Hmacv4LoginModule.class );
   private static final String V4_TERMINATOR = "aws4_request";
 
+  /**
+   * Signing keys by access key and credential scope. Access keys are cached
+   * with their principal so entries are released when the principal is
+   * reloaded.
+   */
+  private static final Cache<AccessKey,Pair<String,byte[]>> signingKeyCache = CacheBuilder
+      .newBuilder( )
+      .weakKeys( )
+      .build( );
+
   public Hmacv4LoginModule() {
     super(4);
   }
@@ -75,8 +88,7 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     final Date date = HmacUtils.getSignatureDate( EnumSet.of(HmacUtils.SignatureVersion.SignatureV4), headerLookup, parameterLookup );
     signatureCredential.verify( date, null, null, V4_TERMINATOR ); //TODO Do we want to validate region and service name?
     final UserPrincipal user = accessKey.getPrincipal( );
-    final String secretKey = accessKey.getSecretKey( );
-    final byte[] signatureKey = getSignatureKey( secretKey, signatureCredential );
+    final byte[] signatureKey = getSignatureKey( accessKey, signatureCredential );
     final CharSequence canonicalString = this.makeSubjectString( credentials, signatureCredential, authorizationParameters, date, false );
     final byte[] computedSig = this.getHmacSHA256( signatureKey, canonicalString );
     final byte[] providedSig = BaseEncoding.base16( ).lowerCase( ).decode( sig );
@@ -172,6 +184,18 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     }
   }
 
+  private byte[] getSignatureKey( final AccessKey accessKey,
+                                  final SignatureCredential credential ) throws Exception {
+    final String scope = credential.getCredentialScope( );
+    final Pair<String,byte[]> cachedKey = signingKeyCache.getIfPresent( accessKey );
+    if ( cachedKey != null && cachedKey.getLeft( ).equals( scope ) ) {
+      return cachedKey.getRight( );
+    }
+    final byte[] signatureKey = getSignatureKey( accessKey.getSecretKey( ), credential );
+    signingKeyCache.put( accessKey, Pair.pair( scope, signatureKey ) );
+    return signatureKey;
+  }
+
   private byte[] getSignatureKey( final String key,
                                   final SignatureCredential credential ) throws Exception {
     return getHmacSHA256(
@@ -130,6 +130,16 @@ public class PolicyEngineImpl implements PolicyEngine {
       .expireAfterWrite( 1, TimeUnit.HOURS )
       .build( );
 
+  /**
+   * Authorizations for principal policy lists, keyed by list identity so
+   * authorizations are shared by all requests for a principal version.
+   */
+  private static final Cache<List<PolicyVersion>,PrincipalAuthorizations> principalAuthorizationCache = CacheBuilder
+      .newBuilder( )
+      .weakKeys( )
+      .maximumSize( 10_000 )
+      .build( );
+
   @Nonnull
   private final Function<String,String> accountResolver;
 
@@ -730,17 +740,31 @@ public class PolicyEngineImpl implements PolicyEngine {
 
     public List<Authorization> lookupAuthorizations( ) throws AuthException {
       if ( authorizations == null ) {
-        final List<Pair<PolicyVersion,Authorization>> authorizations = authorizations( policies, false );
-        this.authorizations = ImmutableList.copyOf( Iterables.filter(
-            Iterables.transform( authorizations, Pair.<PolicyVersion,Authorization>right( ) ),
-            resourceType == null ?
-                AuthorizationPredicates.ALLOW_EFFECT :
-                Predicates.not( AuthorizationPredicates.LIMIT_EFFECT )
-        ) );
+        final PrincipalAuthorizations principalAuthorizations = principalAuthorizations( policies );
+        this.authorizations = resourceType == null ?
+            principalAuthorizations.allowAuthorizations :
+            principalAuthorizations.authorizations;
       }
       return authorizations;
     }
 
+    private static PrincipalAuthorizations principalAuthorizations( final List<PolicyVersion> policies ) throws AuthException {
+      try {
+        return principalAuthorizationCache.get( policies, new Callable<PrincipalAuthorizations>( ) {
+          @Override
+          public PrincipalAuthorizations call( ) throws AuthException {
+            return new PrincipalAuthorizations( authorizations( policies, false ) );
+          }
+        } );
+      } catch ( final ExecutionException e ) {
+        if ( e.getCause( ) instanceof AuthException ) {
+          throw (AuthException) e.getCause( );
+        } else {
+          throw new AuthException( e.getCause( ) );
+        }
+      }
+    }
+
     static List<Authorization> authorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
       try {
         return authorizationCache.get( policy.getPolicyHash( ), new Callable<ImmutableList<Authorization>>() {
@@ -764,15 +788,34 @@ public class PolicyEngineImpl implements PolicyEngine {
 
     public List<Pair<PolicyVersion,Authorization>> lookupQuotas( ) throws AuthException {
       if ( quotaAuthorizations == null ) {
-        this.quotaAuthorizations = ImmutableList.copyOf( Iterables.filter(
-            authorizations( policies, false ),
-            Predicates.compose( AuthorizationPredicates.LIMIT_EFFECT, Pair.<PolicyVersion,Authorization>right( ) )
-        ) );
+        this.quotaAuthorizations = principalAuthorizations( policies ).quotaAuthorizations;
       }
       return quotaAuthorizations;
     }
   }
 
+  /**
+   * Immutable authorizations for a list of principal policies.
+   */
+  private static final class PrincipalAuthorizations {
+    private final ImmutableList<Authorization> allowAuthorizations;
+    private final ImmutableList<Authorization> authorizations;
+    private final ImmutableList<Pair<PolicyVersion,Authorization>> quotaAuthorizations;
+
+    private PrincipalAuthorizations( final List<Pair<PolicyVersion,Authorization>> policyAuthorizations ) {
+      final Iterable<Authorization> authorizations =
+          Iterables.transform( policyAuthorizations, Pair.<PolicyVersion,Authorization>right( ) );
+      this.allowAuthorizations = ImmutableList.copyOf(
+          Iterables.filter( authorizations, AuthorizationPredicates.ALLOW_EFFECT ) );
+      this.authorizations = ImmutableList.copyOf(
+          Iterables.filter( authorizations, Predicates.not( AuthorizationPredicates.LIMIT_EFFECT ) ) );
+      this.quotaAuthorizations = ImmutableList.copyOf( Iterables.filter(
+          policyAuthorizations,
+          Predicates.compose( AuthorizationPredicates.LIMIT_EFFECT, Pair.<PolicyVersion,Authorization>right( ) )
+      ) );
+    }
+  }
+
   private enum AuthorizationPredicates implements Predicate<Authorization> {
     ALLOW_EFFECT {
       @Override
@@ -0,0 +1,124 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.principal;
+
+import static org.hamcrest.Matchers.notNullValue;
+import static com.eucalyptus.util.Parameters.checkParam;
+import javax.annotation.Nonnull;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Immutable view of a principal for use by request contexts.
+ *
+ * <p>A bundle is created once for each version of a principal and shared by
+ * all requests for that principal, so values derived from the principal are
+ * only computed once.</p>
+ *
+ * @see PrincipalBundles#bundle(UserPrincipal)
+ */
+public final class PrincipalBundle {
+  private final UserPrincipal user;
+  private final long version;
+  private final String userId;
+  private final String accountNumber;
+  private final boolean accountAdmin;
+  private final boolean systemAdmin;
+  private final boolean systemUser;
+  private final ImmutableList<PolicyVersion> policies;
+  private volatile UserFullName userFullName;
+  private volatile AccountFullName accountFullName;
+
+  PrincipalBundle( @Nonnull final UserPrincipal user, final long version ) {
+    this.user = checkParam( "user", user, notNullValue( ) );
+    this.version = version;
+    this.userId = user.getUserId( );
+    this.accountNumber = user.getAccountNumber( );
+    this.accountAdmin = user.isAccountAdmin( );
+    this.systemAdmin = user.isSystemAdmin( );
+    this.systemUser = user.isSystemUser( );
+    this.policies = ImmutableList.copyOf( user.getPrincipalPolicies( ) );
+  }
+
+  @Nonnull
+  public UserPrincipal getUser( ) {
+    return user;
+  }
+
+  /**
+   * The authorization version the bundle was created at.
+   *
+   * @see PrincipalBundles#version()
+   */
+  public long getVersion( ) {
+    return version;
+  }
+
+  public String getUserId( ) {
+    return userId;
+  }
+
+  public String getAccountNumber( ) {
+    return accountNumber;
+  }
+
+  public boolean isAccountAdmin( ) {
+    return accountAdmin;
+  }
+
+  public boolean isSystemAdmin( ) {
+    return systemAdmin;
+  }
+
+  public boolean isSystemUser( ) {
+    return systemUser;
+  }
+
+  /**
+   * The principals policies, the same list instance is returned for all
+   * requests using this bundle.
+   */
+  @Nonnull
+  public ImmutableList<PolicyVersion> getPolicies( ) {
+    return policies;
+  }
+
+  @Nonnull
+  public UserFullName getUserFullName( ) {
+    UserFullName fullName = this.userFullName;
+    if ( fullName == null ) {
+      this.userFullName = fullName = UserFullName.getInstance( user );
+    }
+    return fullName;
+  }
+
+  @Nonnull
+  public AccountFullName getAccountFullName( ) {
+    AccountFullName fullName = this.accountFullName;
+    if ( fullName == null ) {
+      this.accountFullName = fullName = AccountFullName.getInstance( accountNumber );
+    }
+    return fullName;
+  }
+
+  @Override
+  public String toString( ) {
+    return "PrincipalBundle:" + userId + ":" + version;
+  }
+}
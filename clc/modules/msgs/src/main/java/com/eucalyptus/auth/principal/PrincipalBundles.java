@@ -0,0 +1,103 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.principal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import org.apache.log4j.Logger;
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Shared principal bundles and the authorization version.
+ *
+ * <p>Principal providers return the same principal instance until the
+ * principal is reloaded, so the instance identifies the version of the
+ * principal. Bundles are cached by principal identity and released when the
+ * principal is no longer referenced.</p>
+ *
+ * <p>The authorization version changes whenever IAM data is modified. Caches
+ * of principals or authorization data should record the version before
+ * loading and discard any entry that is not {@link #isCurrent(long) current}.</p>
+ */
+public class PrincipalBundles {
+
+  private static final Logger LOG = Logger.getLogger( PrincipalBundles.class );
+
+  private static final AtomicLong version = new AtomicLong( );
+
+  private static final LoadingCache<UserPrincipal,PrincipalBundle> bundles = CacheBuilder
+      .newBuilder( )
+      .weakKeys( )
+      .build( CacheLoader.from( BundleFunction.INSTANCE ) );
+
+  /**
+   * Get the shared bundle for the given principal.
+   *
+   * @param user The principal
+   * @return The bundle, which may be shared with other requests
+   */
+  @Nonnull
+  public static PrincipalBundle bundle( @Nonnull final UserPrincipal user ) {
+    PrincipalBundle bundle = bundles.getUnchecked( user );
+    if ( !isCurrent( bundle ) ) { // loaded concurrently with an invalidation
+      bundles.invalidate( user );
+      bundle = bundles.getUnchecked( user );
+    }
+    return bundle;
+  }
+
+  /**
+   * The current authorization version.
+   */
+  public static long version( ) {
+    return version.get( );
+  }
+
+  public static boolean isCurrent( final long version ) {
+    return PrincipalBundles.version.get( ) == version;
+  }
+
+  public static boolean isCurrent( @Nonnull final PrincipalBundle bundle ) {
+    return isCurrent( bundle.getVersion( ) );
+  }
+
+  /**
+   * Invalidate cached principal information following an IAM change.
+   */
+  public static void invalidate( ) {
+    final long invalidatedVersion = version.incrementAndGet( );
+    bundles.invalidateAll( );
+    if ( LOG.isTraceEnabled( ) ) {
+      LOG.trace( "Invalidated principal bundles, authorization version " + invalidatedVersion );
+    }
+  }
+
+  private enum BundleFunction implements Function<UserPrincipal,PrincipalBundle> {
+    INSTANCE;
+
+    @Override
+    public PrincipalBundle apply( final UserPrincipal user ) {
+      return new PrincipalBundle( user, version( ) );
+    }
+  }
+}
@@ -71,6 +71,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.soap.SOAPConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.apache.axiom.om.OMElement;
@@ -123,6 +125,11 @@ public class Binding {
     return this.elementToClassMap.get( elementName );
   }
   
+  @Nullable
+  public String getElementName( final Class type ) {
+    return this.classToElementMap.get( type.getName( ) );
+  }
+
   public IBindingFactory seed( final Class seed ) throws BindingException {
     final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader( );
     try {
@@ -166,6 +173,20 @@ public class Binding {
   }
 
   public String toStream( final OutputStream outputStream, final Object param, final String altNs ) throws BindingException {
+    HoldMe.canHas.lock( );
+    try {
+      return toStream( HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( outputStream, null ), param, altNs );
+    } catch ( XMLStreamException e ) {
+      throw new BindingException( this.name + " failed to create writer caused by: " + e.getMessage( ), e );
+    } finally {
+      HoldMe.canHas.unlock( );
+    }
+  }
+
+  /**
+   * Marshal to the given writer, the writer is flushed but not closed.
+   */
+  public String toStream( final XMLStreamWriter writer, final Object param, final String altNs ) throws BindingException {
     if ( param == null ) {
       throw new BindingException( "Cannot bind null value" );
     } else if ( !( param instanceof IMarshallable ) ) {
@@ -189,7 +210,7 @@ public class Binding {
     try {
       final IMarshallingContext mctx = this.bindingFactory.createMarshallingContext( );
       final XMLStreamWriter wrtr = new NamespaceMappingXMLStreamWriter(
-          HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( outputStream, null ),
+          writer,
           Collections.singletonMap( origNs, useNs ) );
       final StAXWriter staxWriter = new StAXWriter( this.bindingFactory.getNamespaces( ), wrtr );
       mctx.setXmlWriter( staxWriter );
@@ -228,11 +249,18 @@ public class Binding {
   }
   
   public UnmarshallingContext getNewUnmarshalContext( final OMElement param ) throws JiBXException {
+    return getNewUnmarshalContext( param, true );
+  }
+
+  private UnmarshallingContext getNewUnmarshalContext( final OMElement param, final boolean cache ) throws JiBXException {
     if ( this.bindingFactory == null ) {
       throw new RuntimeException( "Binding bootstrap failed to construct the binding factory for " + this.name );
     }
     final UnmarshallingContext ctx = ( UnmarshallingContext ) this.bindingFactory.createUnmarshallingContext( );
-    final IXMLReader reader = new StAXReaderWrapper( param.getXMLStreamReader( ), "SOAP-message", true );
+    final IXMLReader reader = new StAXReaderWrapper(
+        cache ? param.getXMLStreamReader( ) : param.getXMLStreamReaderWithoutCaching( ),
+        "SOAP-message",
+        true );
     ctx.setDocument( reader );
     ctx.toTag( );
     return ctx;
@@ -273,6 +301,27 @@ public class Binding {
     }
   }
   
+  /**
+   * Unmarshal directly from the parser for any part of the element that is not
+   * yet built, the element must not be used afterwards unless it was complete.
+   *
+   * @param param The element to unmarshal
+   * @param type The expected type or null for any bound type
+   * @return The unmarshalled object
+   * @see OMElement#isComplete()
+   */
+  public Object fromStreamingOM( final OMElement param, @Nullable final Class type ) throws WebServicesException {
+    try {
+      final UnmarshallingContext ctx = this.getNewUnmarshalContext( param, param.isComplete( ) );
+      return type == null ?
+          ctx.unmarshalElement( ) :
+          ctx.unmarshalElement( type );
+    } catch ( final Exception e ) {
+      LOG.warn( e, e );
+      throw new WebServicesException( e.getMessage( ) );
+    }
+  }
+
   public Object fromOM( final OMElement param ) throws WebServicesException {
     try {
       final UnmarshallingContext ctx = this.getNewUnmarshalContext( param );
@@ -316,6 +365,15 @@ public class Binding {
                               .append( "</RequestID></Response>" ).toString( );
   }
   
+  public static SOAPEnvelope createEnvelope( final OMElement body ) {
+    final SOAPFactory factory = HoldMe.getOMSOAP11Factory( );
+    final SOAPEnvelope soapEnvelope = factory.createSOAPEnvelope( factory.createOMNamespace( SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, "" ) );
+    factory.createSOAPHeader( soapEnvelope );
+    factory.createSOAPBody( soapEnvelope );
+    soapEnvelope.getBody( ).addChild( body );
+    return soapEnvelope;
+  }
+
   public static SOAPEnvelope createFault( String faultCode, String faultReason, String faultDetails ) {
     SOAPFactory soapFactory = HoldMe.getOMSOAP11Factory( );
     
@@ -89,9 +89,13 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 import javax.persistence.Transient;
 import org.apache.bcel.util.ClassPath;
@@ -115,21 +119,30 @@ import com.eucalyptus.bootstrap.BillOfMaterials;
 import com.eucalyptus.bootstrap.ServiceJarDiscovery;
 import com.eucalyptus.component.annotation.ComponentMessage;
 import com.eucalyptus.crypto.Digest;
+import com.eucalyptus.empyrean.Empyrean;
 import com.eucalyptus.records.EventRecord;
 import com.eucalyptus.records.EventType;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.system.Ats;
 import com.eucalyptus.system.BaseDirectory;
 import com.eucalyptus.system.SubDirectory;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Exceptions;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteSource;
@@ -149,14 +162,15 @@ public class BindingCache {
     private static final String                 BINDING_EMPTY                = "<binding>\n</binding>";
     private static final Boolean                BINDING_DEBUG                = System.getProperty( "euca.binding.debug" ) != null;
     private static final Boolean                BINDING_DEBUG_EXTREME        = System.getProperty( "euca.binding.debug.extreme" ) != null;
-    private static List<URI>                    BINDING_LIST                 = Lists.newArrayList( );
+    private static List<URI>                    BINDING_LIST                 = Collections.synchronizedList( Lists.<URI>newArrayList( ) );
     private static ConcurrentMap<String, Class> BINDING_CLASS_MAP            = Maps.newConcurrentMap( );
     /**
      * We need to track the default computed element name assignments per class in order to
      * determine multiple assignments during binnding time so we can do conflict resolution.
      */
-    private static Multimap<String, Class>      BINDING_CLASS_ELEMENT_MAP    = HashMultimap.create( );
+    private static Multimap<String, Class>      BINDING_CLASS_ELEMENT_MAP    = Multimaps.synchronizedMultimap( HashMultimap.<String, Class>create( ) );
     private static final String                 BINDING_CACHE_JAR_PREFIX     = "jar.";
+    private static final String                 BINDING_CACHE_MESSAGES_PREFIX = "messages.";
     private static final String                 BINDING_CACHE_BINDING_PREFIX = "binding.";
     private static final String                 BINDING_CACHE_DIGEST_LIST    = "classcache.properties";
     private static final File                   CACHE_LIST                   = SubDirectory.CLASSCACHE.getChildFile( BINDING_CACHE_DIGEST_LIST );
@@ -164,6 +178,14 @@ public class BindingCache {
     private final Class<?>                      MSG_DATA_CLASS;
     private static final String                 FILE_PATTERN                 = System.getProperty( "euca.binding.pattern", ".*\\-binding.xml" );
     private static final Properties             CURRENT_PROPS                = new Properties( );
+    private static final Properties             PREVIOUS_PROPS               = new Properties( );
+    private static final Pattern                BINDING_CLASS_PATTERN        = Pattern.compile( "\\b(?:class|type|item-type)\\s*=\\s*\"([\\w.$]+)\"" );
+    /**
+     * Class entries for classes referenced by bindings, these are rewritten by
+     * the binding compiler so their content affects the class cache.
+     */
+    private static final Set<String>            BINDING_CLASS_ENTRIES        = Sets.newConcurrentHashSet( );
+    private static final ConcurrentMap<String, List<JarEntry>> JAR_ENTRIES   = Maps.newConcurrentMap( );
     
     private BindingFileSearch( ) {
       try {
@@ -175,24 +197,29 @@ public class BindingCache {
       }
     }
     
-    public boolean check( ) {
-      final Properties oldProps = new Properties( );
+    private static void loadPrevious( ) {
+      PREVIOUS_PROPS.clear( );
       if ( BindingFileSearch.CACHE_LIST.exists( ) ) {
         try {
           try ( final Reader propIn = Files.newReader( BindingFileSearch.CACHE_LIST, Charset.defaultCharset( ) ) ) {
-            oldProps.load( propIn );
+            PREVIOUS_PROPS.load( propIn );
           }
         } catch ( Exception ex ) {
           LOG.debug( ex, ex );
         }
       }
-      Map<String, String> oldBindings = Maps.fromProperties( oldProps );
+    }
+
+    public boolean check( ) {
+      Map<String, String> oldBindings = Maps.fromProperties( PREVIOUS_PROPS );
       Map<String, String> newBindings = Maps.fromProperties( BindingFileSearch.CURRENT_PROPS );
       if ( oldBindings.equals( newBindings ) ) {
         LOG.info( "Found up-to-date binding class cache: skipping message binding." );
         return true;
       } else {
-        LOG.info( "Binding class cache expired, rebuilding." );
+        final MapDifference<String, String> difference = Maps.difference( oldBindings, newBindings );
+        LOG.info( "Binding class cache expired, rebuilding. Changed " + difference.entriesDiffering( ).keySet( )
+            + " added " + difference.entriesOnlyOnRight( ).keySet( ) + " removed " + difference.entriesOnlyOnLeft( ).keySet( ) );
         DeleteRecursively.PREDICATE.apply( SubDirectory.CLASSCACHE.getFile( ) );
         if ( !SubDirectory.CLASSCACHE.getFile( ).mkdirs( ) && !SubDirectory.CLASSCACHE.getFile( ).exists( ) ) {
           LOG.error( "Error creating class cache directory: " + SubDirectory.CLASSCACHE.getFile( ).getAbsolutePath( ) );
@@ -274,11 +301,9 @@ public class BindingCache {
           this.addCurrentBinding( bindingBytes, ff.getName( ), "file:" + ff.getAbsolutePath( ) );
         }
       } else {
-        byte[] digestBytes = Files.hash( f, Hashing.md5() ).asBytes( );
-        String digest = BaseEncoding.base16( ).lowerCase( ).encode( digestBytes );
-        CURRENT_PROPS.put( BINDING_CACHE_JAR_PREFIX + f.getName( ), digest );
         final JarFile jar = new JarFile( f );
         final List<JarEntry> jarList = Collections.list( jar.entries( ) );
+        final Set<String> messageEntries = Sets.newTreeSet( );
         final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader( );
         for ( final JarEntry j : jarList ) {
           try {
@@ -303,6 +328,7 @@ public class BindingCache {
                 }
                 BINDING_CLASS_MAP.putIfAbsent( classGuess, candidate );
                 BINDING_CLASS_ELEMENT_MAP.put( candidate.getSimpleName( ), candidate );
+                messageEntries.add( j.getName( ) );
               }
             }
           } catch ( RuntimeException ex ) {
@@ -312,12 +338,68 @@ public class BindingCache {
           }
         }
         jar.close( );
+        // message classes are only known when processing, otherwise use those found last time
+        final String messagesKey = BINDING_CACHE_MESSAGES_PREFIX + f.getName( );
+        final String messages = FileProcessingMode.Process == mode ?
+            Joiner.on( ',' ).join( messageEntries ) :
+            PREVIOUS_PROPS.getProperty( messagesKey, "" );
+        CURRENT_PROPS.put( messagesKey, messages );
+        JAR_ENTRIES.put( f.getName( ), jarList );
+      }
+    }
+
+    /**
+     * Add digests for processed jars, bindings in any jar can reference classes
+     * in any other jar so this must follow processing of all bindings.
+     */
+    private static void addJarDigests( ) {
+      for ( final Entry<String, List<JarEntry>> jarEntries : JAR_ENTRIES.entrySet( ) ) {
+        final Set<String> contentEntries = Sets.newHashSet( BINDING_CLASS_ENTRIES );
+        Iterables.addAll( contentEntries, Splitter.on( ',' ).omitEmptyStrings( ).split(
+            CURRENT_PROPS.getProperty( BINDING_CACHE_MESSAGES_PREFIX + jarEntries.getKey( ), "" ) ) );
+        CURRENT_PROPS.put( BINDING_CACHE_JAR_PREFIX + jarEntries.getKey( ), digest( jarEntries.getValue( ), contentEntries ) );
+      }
+    }
+
+    /**
+     * Class entries for the classes referenced by the given binding.
+     */
+    static Set<String> bindingClassEntries( final String binding ) {
+      final Set<String> entries = Sets.newTreeSet( );
+      final Matcher matcher = BINDING_CLASS_PATTERN.matcher( binding );
+      while ( matcher.find( ) ) {
+        entries.add( matcher.group( 1 ).replace( '.', '/' ) + ".class" );
       }
+      return entries;
+    }
+
+    /**
+     * Digest for the parts of a jar that affect bindings: the content of binding
+     * files, message classes and classes referenced by bindings, and the names of
+     * all classes. Other changes to the jar do not require bindings to be
+     * recompiled.
+     */
+    static String digest( final List<JarEntry> entries, final Set<String> contentEntries ) {
+      final Map<String, Long> crcs = Maps.newTreeMap( );
+      for ( final JarEntry entry : entries ) {
+        crcs.put( entry.getName( ), entry.getCrc( ) );
+      }
+      final Hasher hasher = Hashing.md5( ).newHasher( );
+      for ( final Entry<String, Long> entry : crcs.entrySet( ) ) {
+        final String name = entry.getKey( );
+        if ( name.matches( FILE_PATTERN ) || contentEntries.contains( name ) ) {
+          hasher.putString( name, Charsets.UTF_8 ).putLong( entry.getValue( ) ).putByte( (byte) 0 );
+        } else if ( name.matches( ".*\\.class.{0,1}" ) ) {
+          hasher.putString( name, Charsets.UTF_8 ).putByte( (byte) 0 );
+        }
+      }
+      return BaseEncoding.base16( ).lowerCase( ).encode( hasher.hash( ).asBytes( ) );
     }
     
-    private void addCurrentBinding( byte[] bindingBytes, String bindingName, String bindingFullPath ) {
+    private synchronized void addCurrentBinding( byte[] bindingBytes, String bindingName, String bindingFullPath ) {
       LOG.debug( "Binding cache: loading binding from: " + bindingFullPath );
       BINDING_LIST.add( URI.create( bindingFullPath ) );
+      BINDING_CLASS_ENTRIES.addAll( bindingClassEntries( new String( bindingBytes, Charsets.UTF_8 ) ) );
       String digest = BaseEncoding.base16( ).lowerCase( ).encode( Hashing.md5( ).hashBytes( bindingBytes ).asBytes( ) );
       String entryName = BINDING_CACHE_BINDING_PREFIX + bindingName;
       if ( !CURRENT_PROPS.containsKey( entryName ) ) {
@@ -381,13 +463,17 @@ public class BindingCache {
     }
     
     public static void compile( ) {
+      long phase = System.currentTimeMillis( );
       LOG.info( "Binding cache: scanning message and binding files." );
+      loadPrevious( );
       processFiles( FileProcessingMode.Scan );
+      phase = phaseCompleted( "scan", phase );
       if ( BindingFileSearch.INSTANCE.check( ) ) {
         LOG.info( "Binding cache: nothing to do." );
       } else {
         LOG.info( "Binding cache: processing message and binding files." );
         processFiles( FileProcessingMode.Process );
+        phase = phaseCompleted( "process", phase );
         LOG.info( "Binding cache: regenerating cache." );
         try {
           LOG.info( "Binding cache: generating internal bindings." );
@@ -402,6 +488,7 @@ public class BindingCache {
           byte[] digestBytes = Files.hash( gen.getOutFile( ), Hashing.md5() ).asBytes( );
           String digest = BaseEncoding.base16( ).lowerCase( ).encode( digestBytes );
           CURRENT_PROPS.put( BINDING_CACHE_BINDING_PREFIX + gen.getOutFile( ).getName( ), digest );
+          phase = phaseCompleted( "generate", phase );
           LOG.info( "Binding cache: populating cache from transitive closure of bindings." );
           // load *-binding.xml, populate cache w/ all referenced files
           BindingFileSearch.reset( Utility.getClassPaths( ) );
@@ -417,6 +504,7 @@ public class BindingCache {
             bindingDefs.put( binding, def );
             def.print( );
           }
+          phase = phaseCompleted( "load", phase );
           LOG.info( "Binding cache: compiling bindings." );
           for ( Entry<URI, BindingDefinition> def : bindingDefs.entrySet( ) ) {
             try {
@@ -434,6 +522,7 @@ public class BindingCache {
             def.addClassList( lists[0], lists[1] );
           }
           MungedClass.writeChanges( );
+          phaseCompleted( "compile", phase );
           LOG.info( "Binding cache: wrote " + lists[0].length + " files" );
           LOG.info( "Binding cache: kept " + lists[1].length + " files unchanged:" );
           LOG.info( "Binding cache: deleted " + lists[2].length + " files:" );
@@ -447,18 +536,53 @@ public class BindingCache {
       }
     }
 
+    private static long phaseCompleted( final String phase, final long start ) {
+      final long now = System.currentTimeMillis( );
+      LOG.info( "Binding cache: " + phase + " completed in " + ( now - start ) + "ms" );
+      return now;
+    }
+
+    /**
+     * Process service jars and class path directories. When processing, jars are
+     * loaded in parallel.
+     */
     public static void processFiles( final FileProcessingMode mode ) {
       BindingFileSearch.CURRENT_PROPS.clear( );
+      BINDING_CLASS_ENTRIES.clear( );
+      JAR_ENTRIES.clear( );
       final File libDir = new File( BaseDirectory.LIB.toString( ) );
+      final List<Callable<Void>> jarTasks = Lists.newArrayList( );
       for ( final File f : libDir.listFiles( ) ) {
         if ( f.getName( ).startsWith( "eucalyptus" ) && f.getName( ).endsWith( ".jar" )
              && !f.getName( ).matches( ".*-ext-.*" ) ) {
           EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_SERVICE_JAR, f.getName( ) ).info( );
-          try {
-            BindingFileSearch.INSTANCE.process( mode, f );
-          } catch ( final Throwable e ) {
-            LOG.error( e.getMessage( ) );
-          }
+          jarTasks.add( new Callable<Void>( ) {
+            @Override
+            public Void call( ) {
+              try {
+                BindingFileSearch.INSTANCE.process( mode, f );
+              } catch ( final Throwable e ) {
+                LOG.error( e.getMessage( ) );
+              }
+              return null;
+            }
+          } );
+        }
+      }
+      if ( FileProcessingMode.Process == mode ) {
+        final ExecutorService executor =
+            Threads.lookup( Empyrean.class, BindingCache.class ).limitTo( Runtime.getRuntime( ).availableProcessors( ) );
+        try {
+          executor.invokeAll( jarTasks );
+        } catch ( final InterruptedException e ) {
+          Thread.currentThread( ).interrupt( );
+          throw Exceptions.toUndeclared( e );
+        }
+      } else for ( final Callable<Void> jarTask : jarTasks ) {
+        try {
+          jarTask.call( );
+        } catch ( final Exception e ) {
+          LOG.error( e.getMessage( ) );
         }
       }
       for ( String pathName : ClassPath.getClassPath( ).split( File.pathSeparator ) ) {
@@ -471,6 +595,7 @@ public class BindingCache {
           }
         }
       }
+      addJarDigests( );
     }
     
     public static String[] reset( String[] paths ) {
@@ -0,0 +1,106 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.binding;
+
+import java.io.OutputStream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.axiom.om.OMElement;
+
+/**
+ * A message paired with the binding that will marshal it.
+ *
+ * <p>Marshalling is deferred so that the message can be streamed directly to
+ * its destination, the object model is only built if requested.</p>
+ */
+public class BoundElement {
+  private final Binding binding;
+  private final Object message;
+  private final String namespace;
+
+  private BoundElement( @Nonnull  final Binding binding,
+                        @Nonnull  final Object message,
+                        @Nullable final String namespace ) {
+    this.binding = binding;
+    this.message = message;
+    this.namespace = namespace;
+  }
+
+  public static BoundElement of( @Nonnull  final Binding binding,
+                                 @Nonnull  final Object message,
+                                 @Nullable final String namespace ) {
+    return new BoundElement( binding, message, namespace );
+  }
+
+  public Object getMessage( ) {
+    return message;
+  }
+
+  /**
+   * Get the element name for the message, falling back to the default binding.
+   */
+  public String getElementName( ) throws BindingException {
+    String elementName = binding.getElementName( message.getClass( ) );
+    if ( elementName == null ) {
+      elementName = BindingManager.getDefaultBinding( ).getElementName( message.getClass( ) );
+    }
+    if ( elementName == null ) {
+      throw new BindingException( "No element mapping for " + message.getClass( ) );
+    }
+    return elementName;
+  }
+
+  /**
+   * Marshal to an object model, falling back to the default binding.
+   */
+  public OMElement toOM( ) throws BindingException {
+    try {
+      return binding.toOM( message, namespace );
+    } catch ( BindingException ex ) {
+      return BindingManager.getDefaultBinding( ).toOM( message );
+    }
+  }
+
+  /**
+   * Marshal to the given stream without an XML declaration.
+   *
+   * <p>On failure output may have been partially written, callers can retry
+   * using the default binding.</p>
+   *
+   * @see #withDefaultBinding()
+   */
+  public void toStream( final OutputStream out ) throws BindingException {
+    binding.toStream( out, message, namespace );
+  }
+
+  /**
+   * Marshal to the given writer.
+   *
+   * @see #toStream(OutputStream)
+   */
+  public void toStream( final XMLStreamWriter writer ) throws BindingException {
+    binding.toStream( writer, message, namespace );
+  }
+
+  public BoundElement withDefaultBinding( ) {
+    return new BoundElement( BindingManager.getDefaultBinding( ), message, null );
+  }
+}
@@ -172,7 +172,8 @@ public class Bootstrap {
    * <li><b>start()</b> {@link SystemBootstrapper#start()}</li>
    * </ol>
    * Each phase consists of iterating through each {@link Bootstrap.Stage} and executing the
-   * associated bootstrappers accordingly.
+   * associated bootstrappers accordingly. Bootstrappers within a stage are executed concurrently
+   * where their dependencies allow, see {@link BootstrapStageExecutor}.
    * 
    * NOTE: It is worth noting that the {@link #start()}-phase is <b>NOT</b> executed for the
    * {@link EmpyreanService.Stage.PrivilegedConfiguration} stage. Since
@@ -300,37 +301,13 @@ public class Bootstrap {
     public void load( ) {
       this.updateBootstrapDependencies( );
       this.printAgenda( );
-      for ( Bootstrapper b : this.bootstrappers ) {
-        try {
-          EventRecord.here( Bootstrap.class, EventType.BOOTSTRAPPER_LOAD, this.name( ), b.getClass( ).getCanonicalName( ) ).info( );
-          boolean result = b.load( );
-          if ( !result ) {
-            throw BootstrapException.throwFatal( b.getClass( ).getSimpleName( ) + " returned 'false' from load( ): terminating bootstrap." );
-          }
-        } catch ( Exception e ) {
-          EventRecord.here( Bootstrap.class, EventType.BOOTSTRAPPER_ERROR, this.name( ), b.getClass( ).getCanonicalName( ) ).info( );
-          throw BootstrapException.throwFatal( b.getClass( ).getSimpleName( ) + " threw an error in load( ): "
-                                               + e.getMessage( ), e );
-        }
-      }
+      BootstrapStageExecutor.get( ).execute( this, BootstrapStageExecutor.Phase.load, Lists.newArrayList( this.bootstrappers ) );
     }
     
     public void start( ) {
       this.updateBootstrapDependencies( );
       this.printAgenda( );
-      for ( Bootstrapper b : this.bootstrappers ) {
-        try {
-          EventRecord.here( Bootstrap.class, EventType.BOOTSTRAPPER_START, this.name( ), b.getClass( ).getCanonicalName( ) ).info( );
-          boolean result = b.start( );
-          if ( !result ) {
-            throw BootstrapException.throwFatal( b.getClass( ).getSimpleName( ) + " returned 'false' from start( ): terminating bootstrap." );
-          }
-        } catch ( Exception e ) {
-          EventRecord.here( Bootstrap.class, EventType.BOOTSTRAPPER_ERROR, this.name( ), b.getClass( ).getCanonicalName( ) ).info( );
-          throw BootstrapException.throwFatal( b.getClass( ).getSimpleName( ) + " threw an error in start( ): "
-                                               + e.getMessage( ), e );
-        }
-      }
+      BootstrapStageExecutor.get( ).execute( this, BootstrapStageExecutor.Phase.start, Lists.newArrayList( this.bootstrappers ) );
     }
     
     public String describe( ) {
@@ -0,0 +1,544 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.log4j.Logger;
+import com.eucalyptus.component.ComponentId;
+import com.eucalyptus.empyrean.Empyrean;
+import com.eucalyptus.records.EventRecord;
+import com.eucalyptus.records.EventType;
+import com.eucalyptus.system.Ats;
+import com.eucalyptus.system.BaseDirectory;
+import com.eucalyptus.system.Threads;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Executes the bootstrappers for a stage as a dependency graph.
+ *
+ * <p>A bootstrapper runs after any bootstrappers in the same stage that it
+ * must {@link RunAfter} and after any that {@link Provides} a component it
+ * {@link DependsLocal depends} on. Bootstrappers run sequentially unless the
+ * <code>euca.bootstrap.threads</code> system property is set, since not all
+ * ordering requirements within a stage are declared. When enabled, independent
+ * bootstrappers run concurrently on a bounded pool, when there are more ready
+ * bootstrappers than threads the one with the longest remaining path is
+ * started first. Path lengths use the durations from the previous startup
+ * timeline where available.</p>
+ *
+ * <p>Failures are reported as for sequential execution in dependency then
+ * name order. Once a bootstrapper fails no bootstrapper that is later in that
+ * order is started and the earliest failure is reported after all running
+ * bootstrappers complete.</p>
+ *
+ * <p>The startup timeline is written in Chrome trace format to the run
+ * directory after each stage.</p>
+ */
+class BootstrapStageExecutor {
+  private static final Logger LOG = Logger.getLogger( BootstrapStageExecutor.class );
+  private static final int THREADS = Integer.getInteger( "euca.bootstrap.threads", 1 );
+  private static final String TIMELINE_FILE = "bootstrap-timeline.json";
+  private static final Supplier<BootstrapStageExecutor> instance = Suppliers.memoize( new Supplier<BootstrapStageExecutor>( ) {
+    @Override
+    public BootstrapStageExecutor get( ) {
+      final File timelineFile = BaseDirectory.RUN.getChildFile( TIMELINE_FILE );
+      return new BootstrapStageExecutor(
+          THREADS,
+          new Supplier<ExecutorService>( ) {
+            @Override
+            public ExecutorService get( ) {
+              return Threads.lookup( Empyrean.class, BootstrapStageExecutor.class ).limitTo( THREADS );
+            }
+          },
+          Functions.forMap( Timeline.durations( timelineFile ), null ),
+          timelineFile );
+    }
+  } );
+
+  enum Phase {
+    load( EventType.BOOTSTRAPPER_LOAD ) {
+      @Override
+      boolean invoke( final Bootstrapper bootstrapper ) throws Exception {
+        return bootstrapper.load( );
+      }
+    },
+    start( EventType.BOOTSTRAPPER_START ) {
+      @Override
+      boolean invoke( final Bootstrapper bootstrapper ) throws Exception {
+        return bootstrapper.start( );
+      }
+    };
+
+    private final EventType event;
+
+    Phase( final EventType event ) {
+      this.event = event;
+    }
+
+    abstract boolean invoke( Bootstrapper bootstrapper ) throws Exception;
+  }
+
+  private final int threads;
+  private final Supplier<ExecutorService> executor;
+  private final Function<String, Long> estimates;
+  private final Timeline timeline = new Timeline( );
+  @Nullable
+  private final File timelineFile;
+
+  /**
+   * @param threads The maximum number of bootstrappers to run concurrently
+   * @param executor Supplier for an executor with at least the given number of threads
+   * @param estimates Estimated duration in milliseconds by phase and bootstrapper, null if not known
+   * @param timelineFile The file for the startup timeline, null to not write a timeline
+   */
+  BootstrapStageExecutor( final int threads,
+                          final Supplier<ExecutorService> executor,
+                          final Function<String, Long> estimates,
+                          @Nullable final File timelineFile ) {
+    this.threads = threads;
+    this.executor = Suppliers.memoize( executor );
+    this.estimates = estimates;
+    this.timelineFile = timelineFile;
+  }
+
+  static BootstrapStageExecutor get( ) {
+    return instance.get( );
+  }
+
+  Timeline getTimeline( ) {
+    return timeline;
+  }
+
+  /**
+   * Execute the phase for the given bootstrappers.
+   *
+   * @param stage The stage being executed
+   * @param phase The phase being executed
+   * @param bootstrappers The bootstrappers in name order
+   * @throws BootstrapException for the earliest failed bootstrapper
+   */
+  void execute( final Bootstrap.Stage stage, final Phase phase, final Collection<Bootstrapper> bootstrappers ) {
+    final List<Node> nodes = graph( phase, bootstrappers );
+    final long start = System.nanoTime( );
+    final Outcome failure;
+    try {
+      failure = threads > 1 && nodes.size( ) > 1 ?
+          executeParallel( stage, phase, nodes ) :
+          executeSequential( stage, phase, nodes );
+    } finally {
+      final long end = System.nanoTime( );
+      if ( !nodes.isEmpty( ) ) {
+        timeline.complete( stage.name( ) + "." + phase, "stage", start, end, ImmutableMap.<String, Object>of( ) );
+        LOG.info( String.format( "Bootstrap stage %s.%s( ) completed in %dms (total %dms, critical path %dms, %d bootstrappers)",
+            stage.name( ), phase, TimeUnit.NANOSECONDS.toMillis( end - start ), totalMillis( nodes ), criticalPathMillis( nodes ), nodes.size( ) ) );
+        writeTimeline( );
+      }
+    }
+    if ( failure != null ) {
+      final String name = failure.node.bootstrapper.getClass( ).getSimpleName( );
+      if ( failure.error == null ) {
+        throw BootstrapException.throwFatal( name + " returned 'false' from " + phase + "( ): terminating bootstrap." );
+      } else {
+        throw BootstrapException.throwFatal( name + " threw an error in " + phase + "( ): " + failure.error.getMessage( ), failure.error );
+      }
+    }
+  }
+
+  @Nullable
+  private Outcome executeSequential( final Bootstrap.Stage stage, final Phase phase, final List<Node> nodes ) {
+    for ( final Node node : nodes ) {
+      final Outcome outcome = run( stage, phase, node );
+      if ( outcome.failed( ) ) {
+        return outcome;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private Outcome executeParallel( final Bootstrap.Stage stage, final Phase phase, final List<Node> nodes ) {
+    final CompletionService<Outcome> completionService = new ExecutorCompletionService<>( executor.get( ) );
+    final PriorityQueue<Node> ready = new PriorityQueue<>( nodes.size( ), Node.CRITICAL_PATH_ORDER );
+    final Map<Node, Integer> remaining = Maps.newHashMap( );
+    for ( final Node node : nodes ) {
+      remaining.put( node, node.dependencies.size( ) );
+      if ( node.dependencies.isEmpty( ) ) {
+        ready.add( node );
+      }
+    }
+    Outcome failure = null;
+    int running = 0;
+    while ( true ) {
+      while ( running < threads && !ready.isEmpty( ) ) {
+        final Node node = ready.poll( );
+        if ( failure == null || node.index < failure.node.index ) {
+          completionService.submit( new Callable<Outcome>( ) {
+            @Override
+            public Outcome call( ) {
+              return run( stage, phase, node );
+            }
+          } );
+          running++;
+        }
+      }
+      if ( running == 0 ) {
+        break;
+      }
+      final Outcome outcome;
+      try {
+        outcome = completionService.take( ).get( );
+        running--;
+      } catch ( final InterruptedException e ) {
+        Thread.currentThread( ).interrupt( );
+        throw BootstrapException.throwFatal( "Interrupted waiting for bootstrappers in " + stage.name( ) + "." + phase + "( )", e );
+      } catch ( final ExecutionException e ) {
+        throw Throwables.propagate( e.getCause( ) );
+      }
+      if ( outcome.failed( ) ) {
+        if ( failure == null || outcome.node.index < failure.node.index ) {
+          failure = outcome;
+        }
+      } else {
+        for ( final Node dependent : outcome.node.dependents ) {
+          final int dependencies = remaining.get( dependent ) - 1;
+          remaining.put( dependent, dependencies );
+          if ( dependencies == 0 ) {
+            ready.add( dependent );
+          }
+        }
+      }
+    }
+    return failure;
+  }
+
+  private Outcome run( final Bootstrap.Stage stage, final Phase phase, final Node node ) {
+    final Bootstrapper bootstrapper = node.bootstrapper;
+    final long start = System.nanoTime( );
+    boolean result = false;
+    Exception error = null;
+    try {
+      EventRecord.here( Bootstrap.class, phase.event, stage.name( ), bootstrapper.getClass( ).getCanonicalName( ) ).info( );
+      result = phase.invoke( bootstrapper );
+    } catch ( final Exception e ) {
+      EventRecord.here( Bootstrap.class, EventType.BOOTSTRAPPER_ERROR, stage.name( ), bootstrapper.getClass( ).getCanonicalName( ) ).info( );
+      error = e;
+    }
+    final long end = System.nanoTime( );
+    node.millis = TimeUnit.NANOSECONDS.toMillis( end - start );
+    timeline.complete( bootstrapper.getClass( ).getSimpleName( ), phase.name( ), start, end, ImmutableMap.<String, Object>of(
+        "stage", stage.name( ),
+        "bootstrapper", bootstrapper.getClass( ).getName( ),
+        "result", error != null ? "error" : String.valueOf( result ) ) );
+    return new Outcome( node, result, error );
+  }
+
+  private void writeTimeline( ) {
+    if ( timelineFile != null ) {
+      try {
+        timeline.write( timelineFile );
+      } catch ( final IOException e ) {
+        LOG.warn( "Error writing bootstrap timeline " + timelineFile + ": " + e.getMessage( ) );
+      }
+    }
+  }
+
+  private static long totalMillis( final List<Node> nodes ) {
+    long total = 0;
+    for ( final Node node : nodes ) {
+      total += node.millis;
+    }
+    return total;
+  }
+
+  private static long criticalPathMillis( final List<Node> nodes ) {
+    final Map<Node, Long> paths = Maps.newHashMap( );
+    long critical = 0;
+    for ( final Node node : nodes ) {
+      long path = 0;
+      for ( final Node dependency : node.dependencies ) {
+        path = Math.max( path, paths.get( dependency ) );
+      }
+      path += node.millis;
+      paths.put( node, path );
+      critical = Math.max( critical, path );
+    }
+    return critical;
+  }
+
+  /**
+   * Build the dependency graph for the given bootstrappers.
+   *
+   * @return The nodes in dependency then name order
+   */
+  private List<Node> graph( final Phase phase, final Collection<Bootstrapper> bootstrappers ) {
+    final List<Node> nodes = Lists.newArrayList( );
+    final Map<Class<?>, Node> nodesByClass = Maps.newHashMap( );
+    final Map<Class<?>, List<Node>> nodesByProvides = Maps.newHashMap( );
+    for ( final Bootstrapper bootstrapper : bootstrappers ) {
+      final Node node = new Node( nodes.size( ), bootstrapper );
+      nodes.add( node );
+      nodesByClass.put( bootstrapper.getClass( ), node );
+      final Class<?> provides = bootstrapper.getProvides( );
+      if ( !Empyrean.class.equals( provides ) && !ComponentId.class.equals( provides ) ) {
+        if ( !nodesByProvides.containsKey( provides ) ) {
+          nodesByProvides.put( provides, Lists.<Node>newArrayList( ) );
+        }
+        nodesByProvides.get( provides ).add( node );
+      }
+    }
+
+    for ( final Node node : nodes ) {
+      final Set<Node> dependencies = Sets.newLinkedHashSet( );
+      if ( Ats.from( node.bootstrapper.getClass( ) ).has( RunAfter.class ) ) {
+        for ( final Class<?> after : Ats.from( node.bootstrapper.getClass( ) ).get( RunAfter.class ).value( ) ) {
+          // bootstrappers that are disabled or in other stages impose no ordering
+          if ( nodesByClass.containsKey( after ) ) {
+            dependencies.add( nodesByClass.get( after ) );
+          }
+        }
+      }
+      for ( final ComponentId componentId : Iterables.concat( node.bootstrapper.getDependsLocal( ), node.bootstrapper.getDependsRemote( ) ) ) {
+        if ( nodesByProvides.containsKey( componentId.getClass( ) ) ) {
+          dependencies.addAll( nodesByProvides.get( componentId.getClass( ) ) );
+        }
+      }
+      dependencies.remove( node );
+      for ( final Node dependency : dependencies ) {
+        node.dependencies.add( dependency );
+        dependency.dependents.add( node );
+      }
+    }
+
+    // order by dependencies then by name
+    final List<Node> ordered = Lists.newArrayListWithCapacity( nodes.size( ) );
+    final Map<Node, Integer> remaining = Maps.newHashMap( );
+    final PriorityQueue<Node> ready = new PriorityQueue<>( Math.max( 1, nodes.size( ) ), Node.INDEX_ORDER );
+    for ( final Node node : nodes ) {
+      remaining.put( node, node.dependencies.size( ) );
+      if ( node.dependencies.isEmpty( ) ) {
+        ready.add( node );
+      }
+    }
+    while ( !ready.isEmpty( ) ) {
+      final Node node = ready.poll( );
+      ordered.add( node );
+      for ( final Node dependent : node.dependents ) {
+        final int dependencies = remaining.get( dependent ) - 1;
+        remaining.put( dependent, dependencies );
+        if ( dependencies == 0 ) {
+          ready.add( dependent );
+        }
+      }
+    }
+    if ( ordered.size( ) != nodes.size( ) ) {
+      final List<String> cyclic = Lists.newArrayList( );
+      for ( final Node node : nodes ) {
+        if ( !ordered.contains( node ) ) {
+          cyclic.add( node.bootstrapper.getClass( ).getSimpleName( ) );
+        }
+      }
+      throw BootstrapException.throwFatal( "Bootstrapper dependency cycle between: " + cyclic );
+    }
+    for ( int i = 0; i < ordered.size( ); i++ ) {
+      ordered.get( i ).index = i;
+    }
+
+    // longest remaining path, using 1ms where no estimate is available
+    for ( final Node node : Lists.reverse( ordered ) ) {
+      final Long estimate = estimates.apply( phase + ":" + node.bootstrapper.getClass( ).getName( ) );
+      long path = 0;
+      for ( final Node dependent : node.dependents ) {
+        path = Math.max( path, dependent.priority );
+      }
+      node.priority = path + Math.max( 1, estimate == null ? 0 : estimate );
+    }
+
+    return ordered;
+  }
+
+  private static final class Node {
+    private static final Comparator<Node> INDEX_ORDER = new Comparator<Node>( ) {
+      @Override
+      public int compare( final Node o1, final Node o2 ) {
+        return Integer.compare( o1.index, o2.index );
+      }
+    };
+    private static final Comparator<Node> CRITICAL_PATH_ORDER = new Comparator<Node>( ) {
+      @Override
+      public int compare( final Node o1, final Node o2 ) {
+        final int result = Long.compare( o2.priority, o1.priority );
+        return result != 0 ? result : INDEX_ORDER.compare( o1, o2 );
+      }
+    };
+
+    private final Bootstrapper bootstrapper;
+    private final List<Node> dependencies = Lists.newArrayList( );
+    private final List<Node> dependents = Lists.newArrayList( );
+    private int index;
+    private long priority;
+    private volatile long millis;
+
+    private Node( final int index, final Bootstrapper bootstrapper ) {
+      this.index = index;
+      this.bootstrapper = bootstrapper;
+    }
+  }
+
+  private static final class Outcome {
+    private final Node node;
+    private final boolean result;
+    @Nullable
+    private final Exception error;
+
+    private Outcome( final Node node, final boolean result, @Nullable final Exception error ) {
+      this.node = node;
+      this.result = result;
+      this.error = error;
+    }
+
+    private boolean failed( ) {
+      return error != null || !result;
+    }
+  }
+
+  /**
+   * Startup timeline in Chrome trace event format.
+   */
+  static final class Timeline {
+    private final long origin = System.nanoTime( );
+    private final List<JSONObject> events = Collections.synchronizedList( Lists.<JSONObject>newArrayList( ) );
+    private final ConcurrentMap<String, Integer> threadIds = Maps.newConcurrentMap( );
+    private final AtomicInteger nextThreadId = new AtomicInteger( 1 );
+
+    void complete( final String name,
+                   final String category,
+                   final long startNanos,
+                   final long endNanos,
+                   final Map<String, Object> args ) {
+      final JSONObject event = new JSONObject( );
+      event.put( "name", name );
+      event.put( "cat", category );
+      event.put( "ph", "X" );
+      event.put( "ts", TimeUnit.NANOSECONDS.toMicros( startNanos - origin ) );
+      event.put( "dur", TimeUnit.NANOSECONDS.toMicros( endNanos - startNanos ) );
+      event.put( "pid", 1 );
+      event.put( "tid", threadId( Thread.currentThread( ).getName( ) ) );
+      event.put( "args", JSONObject.fromObject( args ) );
+      events.add( event );
+    }
+
+    List<JSONObject> getEvents( ) {
+      synchronized ( events ) {
+        return ImmutableList.copyOf( events );
+      }
+    }
+
+    String toJson( ) {
+      final JSONArray traceEvents = new JSONArray( );
+      for ( final Map.Entry<String, Integer> entry : threadIds.entrySet( ) ) {
+        final JSONObject event = new JSONObject( );
+        event.put( "name", "thread_name" );
+        event.put( "ph", "M" );
+        event.put( "pid", 1 );
+        event.put( "tid", entry.getValue( ) );
+        event.put( "args", JSONObject.fromObject( ImmutableMap.of( "name", entry.getKey( ) ) ) );
+        traceEvents.add( event );
+      }
+      traceEvents.addAll( getEvents( ) );
+      final JSONObject trace = new JSONObject( );
+      trace.put( "traceEvents", traceEvents );
+      trace.put( "displayTimeUnit", "ms" );
+      return trace.toString( );
+    }
+
+    void write( final File file ) throws IOException {
+      Files.createParentDirs( file );
+      final File temp = new File( file.getPath( ) + ".tmp" );
+      Files.write( toJson( ), temp, Charsets.UTF_8 );
+      Files.move( temp, file );
+    }
+
+    /**
+     * Durations in milliseconds by phase and bootstrapper from a timeline file.
+     */
+    static Map<String, Long> durations( final File file ) {
+      final Map<String, Long> durations = Maps.newHashMap( );
+      if ( file.isFile( ) ) {
+        try {
+          final JSONArray traceEvents = JSONObject.fromObject( Files.toString( file, Charsets.UTF_8 ) ).getJSONArray( "traceEvents" );
+          for ( int i = 0; i < traceEvents.size( ); i++ ) {
+            final JSONObject event = traceEvents.getJSONObject( i );
+            final JSONObject args = event.optJSONObject( "args" );
+            if ( "X".equals( event.optString( "ph" ) ) && args != null && args.has( "bootstrapper" ) ) {
+              durations.put(
+                  event.getString( "cat" ) + ":" + args.getString( "bootstrapper" ),
+                  TimeUnit.MICROSECONDS.toMillis( event.getLong( "dur" ) ) );
+            }
+          }
+        } catch ( final IOException | JSONException e ) {
+          LOG.warn( "Error reading bootstrap timeline " + file + ": " + e.getMessage( ) );
+        }
+      }
+      return durations;
+    }
+
+    private int threadId( final String threadName ) {
+      final Integer id = threadIds.get( threadName );
+      if ( id == null ) {
+        threadIds.putIfAbsent( threadName, nextThreadId.getAndIncrement( ) );
+        return threadIds.get( threadName );
+      }
+      return id;
+    }
+  }
+}
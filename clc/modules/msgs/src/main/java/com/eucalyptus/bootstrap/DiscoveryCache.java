@@ -0,0 +1,159 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import com.eucalyptus.system.SubDirectory;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+
+/**
+ * Persistent cache of discovery results for service jars.
+ *
+ * <p>Results are stored by the digest of the jar content and record the
+ * classes from the jar that are of interest to discovery, along with a
+ * fingerprint for the discovery implementations that produced them. When a
+ * jar is unchanged only the recorded classes need to be loaded.</p>
+ */
+class DiscoveryCache {
+  private static final Logger LOG = Logger.getLogger( DiscoveryCache.class );
+  private static final boolean ENABLED = Boolean.valueOf( System.getProperty( "euca.discovery.cache", "true" ) );
+  private static final String PROPERTY_FINGERPRINT = "fingerprint";
+  private static final String PROPERTY_CLASSES = "classes";
+  private static final ConcurrentMap<String, String> digests = Maps.newConcurrentMap( );
+
+  private final File directory;
+
+  DiscoveryCache( final File directory ) {
+    this.directory = directory;
+  }
+
+  static DiscoveryCache get( ) {
+    return new DiscoveryCache( SubDirectory.DISCOVERYCACHE.getFile( ) );
+  }
+
+  static boolean isEnabled( ) {
+    return ENABLED;
+  }
+
+  /**
+   * Digest of the jar content, jars are hashed once unless modified.
+   */
+  static String digest( final File jar ) throws IOException {
+    final String key = jar.getAbsolutePath( ) + ":" + jar.length( ) + ":" + jar.lastModified( );
+    String digest = digests.get( key );
+    if ( digest == null ) {
+      digest = BaseEncoding.base16( ).lowerCase( ).encode( Files.hash( jar, Hashing.md5( ) ).asBytes( ) );
+      digests.put( key, digest );
+    }
+    return digest;
+  }
+
+  /**
+   * Fingerprint for a set of discovery implementations.
+   *
+   * @param discoveries Identifiers for the discovery implementations, e.g. class name and jar digest
+   */
+  static String fingerprint( final Collection<String> discoveries ) {
+    return Hashing.md5( ).hashString( Joiner.on( '\n' ).join( ImmutableSortedSet.copyOf( discoveries ) ), Charsets.UTF_8 ).toString( );
+  }
+
+  /**
+   * Lookup the classes of interest for the jar with the given digest.
+   *
+   * @return The cached result or null if not cached
+   */
+  @Nullable
+  Result lookup( final String digest ) {
+    final File file = file( digest );
+    if ( ENABLED && file.isFile( ) ) {
+      final Properties properties = new Properties( );
+      try ( final Reader in = Files.newReader( file, Charsets.UTF_8 ) ) {
+        properties.load( in );
+        return new Result(
+            properties.getProperty( PROPERTY_FINGERPRINT, "" ),
+            ImmutableSortedSet.copyOf( Splitter.on( ',' ).omitEmptyStrings( ).split( properties.getProperty( PROPERTY_CLASSES, "" ) ) ) );
+      } catch ( final IOException | IllegalArgumentException e ) {
+        LOG.warn( "Error reading discovery cache " + file + ": " + e.getMessage( ) );
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Store the classes of interest for the jar with the given digest.
+   */
+  void store( final String digest, final String fingerprint, final Collection<String> classNames ) {
+    if ( ENABLED ) {
+      final File file = file( digest );
+      final Properties properties = new Properties( );
+      properties.setProperty( PROPERTY_FINGERPRINT, fingerprint );
+      properties.setProperty( PROPERTY_CLASSES, Joiner.on( ',' ).join( ImmutableSortedSet.copyOf( classNames ) ) );
+      try {
+        Files.createParentDirs( file );
+        final File temp = new File( file.getPath( ) + ".tmp" );
+        try ( final Writer out = Files.newWriter( temp, Charsets.UTF_8 ) ) {
+          properties.store( out, "Discovery cache" );
+        }
+        Files.move( temp, file );
+      } catch ( final IOException e ) {
+        LOG.warn( "Error writing discovery cache " + file + ": " + e.getMessage( ) );
+      }
+    }
+  }
+
+  private File file( final String digest ) {
+    return new File( directory, digest + ".properties" );
+  }
+
+  static final class Result {
+    private final String fingerprint;
+    private final Set<String> classNames;
+
+    private Result( final String fingerprint, final Set<String> classNames ) {
+      this.fingerprint = fingerprint;
+      this.classNames = Collections.unmodifiableSet( classNames );
+    }
+
+    String getFingerprint( ) {
+      return fingerprint;
+    }
+
+    Set<String> getClassNames( ) {
+      return classNames;
+    }
+  }
+}
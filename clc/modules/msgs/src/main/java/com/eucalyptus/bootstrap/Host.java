@@ -65,10 +65,13 @@ package com.eucalyptus.bootstrap;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.log4j.Logger;
 import org.jgroups.Address;
 import com.eucalyptus.component.Topology;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
+import com.eucalyptus.entities.EntityCacheRegions;
 import com.eucalyptus.util.Internets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
@@ -85,6 +88,8 @@ public class Host implements Serializable, Comparable<Host> {
   private final AtomicLong                 timestamp        = new AtomicLong( System.currentTimeMillis( ) );
   private final Long                       startedTime;
   private final Integer                    epoch;
+  private final Long                       configurationVersion;
+  private final Map<String, Long>          entityCacheVersions;
 
   Host( final String displayName,
         final Address groupsId,
@@ -93,7 +98,9 @@ public class Host implements Serializable, Comparable<Host> {
         final Boolean hasDatabase,
         final Boolean hasBootstrapped,
         final Long startedTime,
-        final Integer epoch  ) {
+        final Integer epoch,
+        final Long configurationVersion,
+        final Map<String, Long> entityCacheVersions ) {
     this.displayName = displayName;
     this.groupsId = groupsId;
     this.bindAddress = bindAddress;
@@ -102,6 +109,8 @@ public class Host implements Serializable, Comparable<Host> {
     this.hasBootstrapped = hasBootstrapped;
     this.startedTime = startedTime;
     this.epoch = epoch;
+    this.configurationVersion = configurationVersion;
+    this.entityCacheVersions = entityCacheVersions;
   }
 
   Host( ) {
@@ -113,7 +122,9 @@ public class Host implements Serializable, Comparable<Host> {
         BootstrapArgs.isCloudController( ),
         Bootstrap.isFinished( ),
         Hosts.getStartTime( ),
-        Topology.epoch( )
+        Topology.epoch( ),
+        ConfigurationSnapshots.getVersion( ),
+        EntityCacheRegions.getVersions( )
     );
   }
   
@@ -183,6 +194,20 @@ public class Host implements Serializable, Comparable<Host> {
   public Integer getEpoch( ) {
     return this.epoch;
   }
+
+  /**
+   * Version of configuration changes made on the host, null for older hosts.
+   */
+  public Long getConfigurationVersion( ) {
+    return this.configurationVersion;
+  }
+
+  /**
+   * Versions of entity cache regions changed on the host, null for older hosts.
+   */
+  public Map<String, Long> getEntityCacheVersions( ) {
+    return this.entityCacheVersions;
+  }
   
   @Override
   public String toString( ) {
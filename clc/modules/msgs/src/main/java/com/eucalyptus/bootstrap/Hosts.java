@@ -72,6 +72,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -95,7 +96,9 @@ import com.eucalyptus.component.Topology;
 import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.empyrean.Empyrean;
+import com.eucalyptus.entities.EntityCacheRegions;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.scripting.Groovyness;
 import com.eucalyptus.system.Threads;
@@ -127,6 +130,7 @@ public class Hosts {
   public static final Long                       STATE_INITIALIZE_TIMEOUT   = 120000L;
   public static final long                       SERVICE_INITIALIZE_TIMEOUT = 10000L;
   private static ReplicatedHashMap<String, Host> hostMap;
+  private static final AtomicBoolean             localHostUpdatePending     = new AtomicBoolean( false );
 
   public static Predicate<ServiceConfiguration> nonLocalAddressMatch( final InetAddress addr ) {
     return new Predicate<ServiceConfiguration>( ) {
@@ -445,6 +449,10 @@ public class Hosts {
     private static void updateHostEntry( final Host host ) {
       try {
         final String hostKey = host.getDisplayName( );
+        if ( !host.isLocalHost( ) ) {
+          ConfigurationSnapshots.observe( hostKey, host.getConfigurationVersion( ) );
+          EntityCacheRegions.observe( hostKey, host.getEntityCacheVersions( ) );
+        }
         if ( host.isLocalHost( ) && host.hasDatabase( ) && Bootstrap.isLoaded( ) ) {
           dbActivation.submit( new Runnable( ) {
 
@@ -696,6 +704,10 @@ public class Hosts {
           return true;
         } else if ( that.getEpoch( ) > input.getEpoch( ) ) {
           return true;
+        } else if ( !Objects.equals( that.getConfigurationVersion( ), input.getConfigurationVersion( ) ) ) {
+          return true;
+        } else if ( !Objects.equals( that.getEntityCacheVersions( ), input.getEntityCacheVersions( ) ) ) {
+          return true;
         } else if ( !that.getHostAddresses( ).equals( input.getHostAddresses( ) ) ) {
           return true;
         } else {
@@ -1114,6 +1126,28 @@ public class Hosts {
     }
   }
 
+  /**
+   * Publish the local host entry if it has changed, without waiting for the
+   * periodic update.
+   *
+   * <p>The update is asynchronous, requests made while an update is pending
+   * are coalesced.</p>
+   */
+  public static void requestLocalHostUpdate( ) {
+    if ( hostMap != null && localHostUpdatePending.compareAndSet( false, true ) ) {
+      Threads.enqueue( Empyrean.class, Hosts.class, 1, new Callable<Void>( ) {
+        @Override
+        public Void call( ) {
+          localHostUpdatePending.set( false );
+          if ( UpdateEntry.INSTANCE.apply( Hosts.localHost( ) ) ) {
+            Logs.extreme( ).debug( "Published changed local host entry: " + Hosts.localHost( ) );
+          }
+          return null;
+        }
+      } );
+    }
+  }
+
   enum ModifiedTimeTransform implements Function<Host, Long> {
     INSTANCE;
     @Override
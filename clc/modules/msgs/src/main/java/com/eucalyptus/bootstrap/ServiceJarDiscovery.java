@@ -71,6 +71,7 @@ import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
@@ -90,6 +91,7 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
@@ -100,6 +102,9 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
   private static Logger                         LOG       = Logger.getLogger( ServiceJarDiscovery.class );
   private static SortedSet<ServiceJarDiscovery> discovery = Sets.newTreeSet( );
   private static Multimap<Class, String>        classList = ArrayListMultimap.create( );
+  private static Set<Class>                     discoveryClasses = Sets.newHashSet( );
+  private static Set<Class>                     accepted  = Sets.newHashSet( );
+  private static Set<File>                      scanned   = Sets.newLinkedHashSet( );
   
   enum JarFilePass {
     CLASSES {
@@ -112,7 +117,7 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
         for ( final JarEntry j : jarList ) {
           try {
             if ( j.getName( ).matches( ".*\\.class.{0,1}" ) ) {
-              handleClassFile( f, j );
+              handleClassFile( f, j.getName( ).replaceAll( "/", "." ).replaceAll( "\\.class.{0,1}", "" ) );
             }
           } catch ( RuntimeException ex ) {
             LOG.error( ex, ex );
@@ -122,12 +127,26 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
         }
         jar.close( );
       }
+
+      @Override
+      public void process( final File f, final Set<String> classNames ) throws Exception {
+        LOG.trace( "-> Trying to load cached component info for " + f.getAbsolutePath( ) );
+        for ( final String className : classNames ) {
+          handleClassFile( f, className );
+        }
+      }
       
-      private void handleClassFile( final File f, final JarEntry j ) throws IOException, RuntimeException {
-        final String classGuess = j.getName( ).replaceAll( "/", "." ).replaceAll( "\\.class.{0,1}", "" );
+      private void handleClassFile( final File f, final String classGuess ) throws RuntimeException {
         try {
           final Class candidate = ClassLoader.getSystemClassLoader( ).loadClass( classGuess );
+          if ( classList.containsEntry( candidate, f.getAbsolutePath( ) ) ) {
+            return;
+          }
           classList.put( candidate, f.getAbsolutePath( ) );
+          if ( ( ServiceJarDiscovery.class.isAssignableFrom( candidate ) || Ats.from( candidate ).has( Bootstrap.Discovery.class ) ) &&
+              !discoveryClasses.add( candidate ) ) {
+            return;
+          }
           if ( ServiceJarDiscovery.class.isAssignableFrom( candidate ) && !ServiceJarDiscovery.class.equals( candidate ) && !candidate.isAnonymousClass( ) ) {
             try {
               final ServiceJarDiscovery discover = ( ServiceJarDiscovery ) candidate.newInstance( );
@@ -184,6 +203,11 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
     JarFilePass( ) {}
     
     public abstract void process( final File f ) throws Exception;
+
+    /**
+     * Process only the given classes from the jar.
+     */
+    public abstract void process( final File f, final Set<String> classNames ) throws Exception;
   }
   
   private static void doDiscovery( ) {
@@ -232,16 +256,21 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
   }
   
   public static void runDiscovery( ) {
+    final long start = System.currentTimeMillis( );
     for ( final ServiceJarDiscovery s : discovery ) {
       EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_DISCOVERY, s.getClass( ).getCanonicalName( ) ).trace( );
     }
     for ( final ServiceJarDiscovery s : discovery ) {
       runDiscovery( s );
     }
+    LOG.info( "Ran " + discovery.size( ) + " discovery implementations over " + classList.keySet( ).size( ) + " classes in "
+        + ( System.currentTimeMillis( ) - start ) + "ms" );
+    storeDiscoveryCache( DiscoveryCache.get( ) );
   }
   
   public static void runDiscovery( final ServiceJarDiscovery s ) {
     LOG.info( LogUtil.subheader( s.getClass( ).getSimpleName( ) ) );
+    final long start = System.currentTimeMillis( );
     for ( final Class c : classList.keySet( ) ) {
       try {
         s.checkClass( c );
@@ -249,11 +278,47 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
         LOG.debug( t, t );
       }
     }
+    LOG.debug( s.getClass( ).getSimpleName( ) + " discovery completed in " + ( System.currentTimeMillis( ) - start ) + "ms" );
+  }
+
+  /**
+   * Fingerprint for the discovery implementations and the jars they were loaded from.
+   */
+  private static String discoveryFingerprint( ) throws IOException {
+    final List<String> discoveries = Lists.newArrayList( );
+    for ( final Class discoveryClass : discoveryClasses ) {
+      for ( final String path : classList.get( discoveryClass ) ) {
+        discoveries.add( discoveryClass.getName( ) + "@" + DiscoveryCache.digest( new File( path ) ) );
+      }
+    }
+    return DiscoveryCache.fingerprint( discoveries );
+  }
+
+  /**
+   * Cache the discovery classes and accepted classes for each fully scanned jar.
+   */
+  static void storeDiscoveryCache( final DiscoveryCache cache ) {
+    if ( DiscoveryCache.isEnabled( ) && !scanned.isEmpty( ) ) try {
+      final String fingerprint = discoveryFingerprint( );
+      for ( final File f : scanned ) {
+        final Set<String> classNames = Sets.newTreeSet( );
+        for ( final Class c : Iterables.concat( discoveryClasses, accepted ) ) {
+          if ( classList.containsEntry( c, f.getAbsolutePath( ) ) ) {
+            classNames.add( c.getName( ) );
+          }
+        }
+        cache.store( DiscoveryCache.digest( f ), fingerprint, classNames );
+      }
+      scanned.clear( );
+    } catch ( final IOException e ) {
+      LOG.warn( "Error updating discovery cache: " + e.getMessage( ) );
+    }
   }
   
   private void checkClass( final Class candidate ) {
     try {
       if ( this.processClass( candidate ) ) {
+        accepted.add( candidate );
         ServiceJarDiscovery.checkUniqueness( candidate );
         EventRecord.here( ServiceJarDiscovery.class, EventType.DISCOVERY_LOADED_ENTRY, this.getClass( ).getSimpleName( ), candidate.getName( ) ).trace( );
       }
@@ -286,20 +351,71 @@ public abstract class ServiceJarDiscovery implements Comparable<ServiceJarDiscov
     return this.getDistinctPriority( ).compareTo( that.getDistinctPriority( ) );
   }
   
+  /**
+   * Process service jars, loading only previously discovered classes for
+   * unchanged jars when the discovery cache is enabled.
+   *
+   * <p>Jars are rescanned if the discovery implementations have changed since
+   * their results were cached.</p>
+   */
   public static void processLibraries( ) {
+    final List<File> jars = Lists.newArrayList( );
     final File libDir = new File( BaseDirectory.LIB.toString( ) );
     for ( final File f : libDir.listFiles( ) ) {
       if ( f.getName( ).startsWith( "eucalyptus" ) && f.getName( ).endsWith( ".jar" )
            && !f.getName( ).matches( ".*-ext-.*" ) ) {
-        EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_SERVICE_JAR, f.getName( ) ).info( );
-        try {
+        jars.add( f );
+      }
+    }
+    processLibraries( DiscoveryCache.get( ), jars );
+  }
+
+  /**
+   * Process the given service jars using the discovery cache.
+   *
+   * @return The jars that were scanned in full
+   */
+  static Set<File> processLibraries( final DiscoveryCache cache, final List<File> jars ) {
+    final long start = System.currentTimeMillis( );
+    final Map<File, DiscoveryCache.Result> cached = Maps.newLinkedHashMap( );
+    final Set<File> jarsScanned = Sets.newLinkedHashSet( );
+    for ( final File f : jars ) {
+      EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_SERVICE_JAR, f.getName( ) ).info( );
+      try {
+        final DiscoveryCache.Result result = DiscoveryCache.isEnabled( ) ?
+            cache.lookup( DiscoveryCache.digest( f ) ) :
+            null;
+        if ( result != null ) {
+          ServiceJarDiscovery.JarFilePass.CLASSES.process( f, result.getClassNames( ) );
+          cached.put( f, result );
+        } else {
           ServiceJarDiscovery.JarFilePass.CLASSES.process( f );
-        } catch ( final Throwable e ) {
-          Bootstrap.LOG.error( e.getMessage( ) );
-          continue;
+          jarsScanned.add( f );
+        }
+      } catch ( final Throwable e ) {
+        Bootstrap.LOG.error( e.getMessage( ) );
+      }
+    }
+    if ( !cached.isEmpty( ) ) try {
+      final String fingerprint = discoveryFingerprint( );
+      for ( final Map.Entry<File, DiscoveryCache.Result> entry : cached.entrySet( ) ) {
+        if ( !fingerprint.equals( entry.getValue( ).getFingerprint( ) ) ) {
+          LOG.debug( "Discovery changed, rescanning " + entry.getKey( ).getName( ) );
+          try {
+            ServiceJarDiscovery.JarFilePass.CLASSES.process( entry.getKey( ) );
+            jarsScanned.add( entry.getKey( ) );
+          } catch ( final Throwable e ) {
+            Bootstrap.LOG.error( e.getMessage( ) );
+          }
         }
       }
+    } catch ( final IOException e ) {
+      Bootstrap.LOG.error( e.getMessage( ) );
     }
+    scanned.addAll( jarsScanned );
+    LOG.info( "Processed " + jars.size( ) + " service jars (" + ( jars.size( ) - jarsScanned.size( ) ) + " from discovery cache) in "
+        + ( System.currentTimeMillis( ) - start ) + "ms" );
+    return jarsScanned;
   }
   
   public static URLClassLoader makeClassLoader( final File libDir ) {
@@ -91,6 +91,7 @@ import com.eucalyptus.component.annotation.ComponentPart;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableIdentifier;
 import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.CachedEntity;
 import com.eucalyptus.system.Ats;
 import com.eucalyptus.auth.principal.FullName;
 import com.eucalyptus.util.Internets;
@@ -101,6 +102,7 @@ import com.eucalyptus.util.fsm.StateMachine;
 @Table( name = "config_component_base" )
 @Inheritance( strategy = InheritanceType.SINGLE_TABLE )
 @DiscriminatorColumn(length = 255)
+@CachedEntity
 public class ComponentConfiguration extends AbstractPersistent implements ServiceConfiguration {
   @Transient
   private static final long serialVersionUID = 1L;
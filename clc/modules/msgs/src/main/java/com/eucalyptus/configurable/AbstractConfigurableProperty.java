@@ -77,6 +77,7 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.util.Exceptions;
+import com.google.common.base.Supplier;
 
 public abstract class AbstractConfigurableProperty implements ConfigurableProperty {
   
@@ -186,16 +187,33 @@ public abstract class AbstractConfigurableProperty implements ConfigurableProper
     return this.defaultValue;
   }
   
+  /**
+   * Identifier for the entity snapshot used when reading values.
+   */
+  protected String getSnapshotIdentifier( ) {
+    return "";
+  }
+
   public String getValue( ) {	  
-    try ( final TransactionResource trans = Entities.transactionFor( this.getDefiningClass( ) ) ) {
-    	//Unique result gets first found value if multiple exist, should work if all are kept in sync
-        Object o = Entities.uniqueResult( this.getQueryObject( ) );
-        Object prop = this.getter.invoke( o );
-        String result = prop != null
-          ? prop.toString( )
-          : "";
-        trans.commit( );
-        return result;
+    try {
+      final Object o = ConfigurationSnapshots.get( this.getDefiningClass( ), this.getSnapshotIdentifier( ), new Supplier<Object>( ) {
+        @Override
+        public Object get( ) {
+          try ( final TransactionResource trans = Entities.transactionFor( getDefiningClass( ) ) ) {
+            //Unique result gets first found value if multiple exist, should work if all are kept in sync
+            final Object o = Entities.uniqueResult( getQueryObject( ) );
+            trans.commit( );
+            return o;
+          } catch ( Exception e ) {
+            throw Exceptions.toUndeclared( e );
+          }
+        }
+      } );
+      Object prop = this.getter.invoke( o );
+      String result = prop != null
+        ? prop.toString( )
+        : "";
+      return result;
     } catch (Exception e) {
       Logs.exhaust().error(e, e);
          return "";
@@ -219,6 +237,7 @@ public abstract class AbstractConfigurableProperty implements ConfigurableProper
         this.setter.invoke( obj, prop );
       }
       trans.commit( );
+      ConfigurationSnapshots.changed( this.getDefiningClass( ) );
       return s;
     } catch ( Exception e ) {
       Logs.exhaust( ).error( e, e );
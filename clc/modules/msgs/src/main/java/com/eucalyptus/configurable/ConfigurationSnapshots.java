@@ -0,0 +1,178 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.configurable;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import com.eucalyptus.bootstrap.Hosts;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+
+/**
+ * In memory snapshots of configuration entities.
+ *
+ * <p>Snapshots are tagged with the generation in which they were loaded. The
+ * generation advances when configuration is modified via a configurable
+ * property on this host or when another host reports (via its membership
+ * entry) that it modified configuration. Snapshots are also reloaded
+ * periodically as a safety check for changes made other ways.</p>
+ *
+ * <p>Snapshots are shared and must not be modified by callers.</p>
+ */
+@ConfigurableClass( root = "bootstrap.configuration",
+                    description = "Parameters controlling configuration caching." )
+public class ConfigurationSnapshots {
+  private static final Logger LOG = Logger.getLogger( ConfigurationSnapshots.class );
+
+  @ConfigurableField( description = "Maximum age (in seconds) of cached configuration before it is reloaded.",
+                      initial = "300" )
+  public static volatile Integer SNAPSHOT_MAX_AGE_SECS = 300;
+
+  private static final AtomicLong localVersion = new AtomicLong( 0 );
+  private static final AtomicLong generation = new AtomicLong( 0 );
+  private static final ConcurrentMap<String, Long> remoteVersions = Maps.newConcurrentMap( );
+  private static final ConcurrentMap<SnapshotKey, Holder> snapshots = Maps.newConcurrentMap( );
+
+  /**
+   * Get the snapshot for the given type and identifier, loading if necessary.
+   *
+   * <p>A null value from the loader is not cached.</p>
+   */
+  @Nullable
+  public static <T> T get( final Class<T> type,
+                           final String identifier,
+                           final Supplier<? extends T> loader ) {
+    final SnapshotKey key = new SnapshotKey( type, identifier );
+    Holder holder = snapshots.get( key );
+    if ( holder == null ) {
+      final Holder newHolder = new Holder( );
+      holder = Objects.firstNonNull( snapshots.putIfAbsent( key, newHolder ), newHolder );
+    }
+    return type.cast( holder.get( loader ) );
+  }
+
+  /**
+   * Record a configuration change made on this host.
+   *
+   * <p>Invalidates all local snapshots and publishes the new version in this
+   * host's membership entry so that other hosts are invalidated.</p>
+   */
+  public static void changed( final Class<?> type ) {
+    final long version = localVersion.incrementAndGet( );
+    generation.incrementAndGet( );
+    LOG.debug( "Configuration changed for " + type.getSimpleName( ) + ", version " + version );
+    Hosts.requestLocalHostUpdate( );
+  }
+
+  /**
+   * Observe the configuration version published by a remote host.
+   */
+  public static void observe( final String host, @Nullable final Long version ) {
+    final Long remoteVersion = version == null ? 0L : version;
+    final Long previous = remoteVersions.put( host, remoteVersion );
+    if ( !remoteVersion.equals( previous ) ) {
+      generation.incrementAndGet( );
+      if ( previous != null ) {
+        LOG.debug( "Configuration changed on " + host + ", version " + remoteVersion );
+      }
+    }
+  }
+
+  /**
+   * Count of configuration changes made on this host.
+   */
+  public static long getVersion( ) {
+    return localVersion.get( );
+  }
+
+  static long getGeneration( ) {
+    return generation.get( );
+  }
+
+  static void clear( ) {
+    snapshots.clear( );
+  }
+
+  private static final class Snapshot {
+    private final Object value;
+    private final long generation;
+    private final long loaded;
+
+    private Snapshot( final Object value, final long generation, final long loaded ) {
+      this.value = value;
+      this.generation = generation;
+      this.loaded = loaded;
+    }
+
+    private boolean isValid( final long currentGeneration, final long now ) {
+      return this.generation == currentGeneration &&
+          now - this.loaded < TimeUnit.SECONDS.toMillis( SNAPSHOT_MAX_AGE_SECS );
+    }
+  }
+
+  private static final class Holder {
+    private volatile Snapshot snapshot;
+
+    private Object get( final Supplier<?> loader ) {
+      Snapshot current = this.snapshot;
+      if ( current == null || !current.isValid( generation.get( ), System.currentTimeMillis( ) ) ) {
+        synchronized ( this ) {
+          current = this.snapshot;
+          final long loadGeneration = generation.get( );
+          if ( current == null || !current.isValid( loadGeneration, System.currentTimeMillis( ) ) ) {
+            final Object value = loader.get( );
+            if ( value == null ) {
+              return null;
+            }
+            this.snapshot = current = new Snapshot( value, loadGeneration, System.currentTimeMillis( ) );
+          }
+        }
+      }
+      return current.value;
+    }
+  }
+
+  private static final class SnapshotKey {
+    private final Class<?> type;
+    private final String identifier;
+
+    private SnapshotKey( final Class<?> type, final String identifier ) {
+      this.type = type;
+      this.identifier = String.valueOf( identifier );
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final SnapshotKey that = (SnapshotKey) o;
+      return type.equals( that.type ) && identifier.equals( that.identifier );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return 31 * type.hashCode( ) + identifier.hashCode( );
+    }
+  }
+}
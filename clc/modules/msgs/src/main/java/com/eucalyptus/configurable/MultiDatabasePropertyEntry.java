@@ -116,6 +116,11 @@ public class MultiDatabasePropertyEntry extends AbstractConfigurableProperty imp
     return queryObject;
   }
   
+  @Override
+  protected String getSnapshotIdentifier( ) {
+    return String.valueOf( identifierValue );
+  }
+
   public static class DatabasePropertyBuilder implements ConfigurablePropertyBuilder {
     
     @Override
@@ -68,6 +68,8 @@ import com.eucalyptus.auth.AuthContextSupplier;
 import static com.google.common.collect.Maps.newHashMap;
 
 import com.eucalyptus.auth.principal.AccountFullName;
+import com.eucalyptus.auth.principal.PrincipalBundle;
+import com.eucalyptus.auth.principal.PrincipalBundles;
 import com.eucalyptus.auth.principal.UserPrincipal;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.ws.server.MessageStatistics;
@@ -91,6 +93,7 @@ import com.eucalyptus.auth.Contract;
 import com.eucalyptus.auth.Permissions;
 import com.eucalyptus.auth.principal.Principals;
 import com.eucalyptus.auth.principal.UserFullName;
+import com.eucalyptus.entities.RequestEntityCache;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.records.EventRecord;
 import com.eucalyptus.records.EventType;
@@ -108,11 +111,10 @@ public class Context {
   private final MappingHttpRequest     httpRequest;
   private final Channel                channel;
   private final boolean                channelManaged;
-  private UserPrincipal                user      = null;
+  private PrincipalBundle              principal = null;
   private Subject                      subject   = null;
   private Map<Contract.Type, Contract> contracts = null;
-  private Boolean isSystemAdmin;
-  private Boolean isSystemUser;
+  private volatile RequestEntityCache entityCache;
 
   Context( ) {
     this.correlationId = null;
@@ -132,8 +134,10 @@ public class Context {
     };
     this.channel = new DefaultLocalClientChannelFactory( ).newChannel( Channels.pipeline( ) );
     this.channelManaged = true;
-    this.user = Principals.systemUser( );
-    EventRecord.caller( Context.class, EventType.CONTEXT_CREATE, this.correlationId, this.channel.toString( ) ).debug( );
+    this.principal = PrincipalBundles.bundle( Principals.systemUser( ) );
+    if ( EventRecord.isDebugEnabled( Context.class ) ) {
+      EventRecord.caller( Context.class, EventType.CONTEXT_CREATE, this.correlationId, this.channel.toString( ) ).debug( );
+    }
   }
   
   protected Context( MappingHttpRequest httpRequest, Channel channel ) {
@@ -144,7 +148,9 @@ public class Context {
     this.httpRequest = httpRequest;
     this.channel = channel;
     this.channelManaged = false;
-    EventRecord.caller( Context.class, EventType.CONTEXT_CREATE, this.correlationId, this.channel.toString( ) ).debug( );
+    if ( EventRecord.isDebugEnabled( Context.class ) ) {
+      EventRecord.caller( Context.class, EventType.CONTEXT_CREATE, this.correlationId, this.channel.toString( ) ).debug( );
+    }
   }
 
   public Channel getChannel( ) {
@@ -183,13 +189,18 @@ public class Context {
   
   public void setUser( UserPrincipal user ) {
     if ( user != null ) {
-      EventRecord.caller( Context.class, EventType.CONTEXT_USER, this.correlationId, user.getUserId( ) ).debug( );
-      this.user = user;
+      if ( EventRecord.isDebugEnabled( Context.class ) ) {
+        EventRecord.caller( Context.class, EventType.CONTEXT_USER, this.correlationId, user.getUserId( ) ).debug( );
+      }
+      this.principal = PrincipalBundles.bundle( user );
     }
   }
 
   public UserFullName getUserFullName( ) {
-    return UserFullName.getInstance( this.getUser( ) );
+    final PrincipalBundle principal = this.principal;
+    return principal == null ?
+        UserFullName.getInstance( this.getUser( ) ) :
+        principal.getUserFullName( );
   }
 
   /**
@@ -203,10 +214,7 @@ public class Context {
    * Context is privileged to perform any operation.
    */
   public boolean hasAdministrativePrivileges( ) {
-    if ( isSystemAdmin == null ) {
-      isSystemAdmin = this.getUser( ).isSystemAdmin( );
-    }
-    return isSystemAdmin;
+    return this.getPrincipal( ).isSystemAdmin( );
   }
 
   /**
@@ -215,10 +223,7 @@ public class Context {
    * Policy should be evaluated to determine actual permissions.
    */
   public boolean isAdministrator( ) {
-    if ( isSystemUser == null ) {
-      isSystemUser = this.getUser( ).isSystemUser();
-    }
-    return isSystemUser;
+    return this.getPrincipal( ).isSystemUser( );
   }
 
   /**
@@ -243,14 +248,22 @@ public class Context {
   }
 
   public UserPrincipal getUser( ) {
-    return check( this.user );
+    final PrincipalBundle principal = check( this.principal );
+    return principal == null ? null : principal.getUser( );
+  }
+
+  /**
+   * The shared principal bundle for the user.
+   */
+  PrincipalBundle getPrincipal( ) {
+    return check( this.principal );
   }
 
   public AuthContextSupplier getAuthContext( ) {
     return new AuthContextSupplier( ){
       @Override
       public AuthContext get( ) throws AuthException {
-        return Permissions.createAuthContext( getUser( ), Collections.<String,String>emptyMap() );
+        return Permissions.createAuthContext( getPrincipal( ), Collections.<String,String>emptyMap() );
       }
     };
   }
@@ -266,13 +279,45 @@ public class Context {
     }
   }
   
+  /**
+   * Entity lookup cache and statement counts for the request.
+   */
+  public RequestEntityCache getEntityCache( ) {
+    RequestEntityCache cache = this.entityCache;
+    if ( cache == null ) {
+      synchronized ( this ) {
+        if ( ( cache = this.entityCache ) == null ) {
+          this.entityCache = cache = new RequestEntityCache( );
+        }
+      }
+    }
+    return cache;
+  }
+
   void clear( ) {
     if ( this.channelManaged ) {
       this.channel.close( );
     }
+    final RequestEntityCache cache = this.entityCache;
+    if ( cache != null ) {
+      final String action = this.lookupAction( );
+      if ( action != null ) {
+        cache.complete( action );
+      }
+      this.entityCache = null;
+    }
     this.contracts = null;
   }
 
+  /**
+   * The action for the request, if known.
+   */
+  @Nullable
+  String lookupAction( ) {
+    this.initRequest( );
+    return this.request == null ? null : this.request.getClass( ).getSimpleName( );
+  }
+
   private void initRequest() {
     if ( this.request == null && this.httpRequest != null && this.httpRequest.getMessage( ) != null ) {
       this.request = ( BaseMessage ) this.httpRequest.getMessage( );
@@ -301,7 +346,7 @@ public class Context {
   }
 
   public String getAccountNumber( ) {
-    return getUser( ).getAccountNumber( );
+    return getPrincipal( ).getAccountNumber( );
   }
 
   public String getAccountAlias( ) {
@@ -309,7 +354,7 @@ public class Context {
   }
 
   public AccountFullName getAccount( ) {
-    return AccountFullName.getInstance( getAccountNumber() );
+    return getPrincipal( ).getAccountFullName( );
   }
   
   static Context maybeImpersonating( Context ctx ) {
@@ -348,9 +393,8 @@ public class Context {
   }
 
   private static Context createImpersona( final Context ctx, final UserPrincipal user ) {
+    final PrincipalBundle principal = PrincipalBundles.bundle( user );
     return new DelegatingContextSupport( ctx ) {
-      private Boolean isSystemAdmin;
-      private Boolean isSystemUser;
       private Subject subject = new Subject( );
       private Map<String,String> evaluatedKeys;
 
@@ -358,10 +402,15 @@ public class Context {
       public UserPrincipal getUser( ) {
         return user;
       }
-      
+
+      @Override
+      PrincipalBundle getPrincipal( ) {
+        return principal;
+      }
+
       @Override
       public AccountFullName getAccount( ) {
-        return AccountFullName.getInstance( getAccountNumber( ) );
+        return principal.getAccountFullName( );
       }
 
       @Override
@@ -371,12 +420,12 @@ public class Context {
 
       @Override
       public String getAccountNumber() {
-        return getUser( ).getAccountNumber( );
+        return principal.getAccountNumber( );
       }
 
       @Override
       public UserFullName getUserFullName( ) {
-        return UserFullName.getInstance( user );
+        return principal.getUserFullName( );
       }
 
       @Override
@@ -386,18 +435,12 @@ public class Context {
 
       @Override
       public boolean isAdministrator( ) {
-        if ( isSystemUser == null ) {
-          isSystemUser = this.getUser( ).isSystemUser( );
-        }
-        return isSystemUser;
+        return principal.isSystemUser( );
       }
 
       @Override
       public boolean hasAdministrativePrivileges( ) {
-        if ( isSystemAdmin == null ) {
-          isSystemAdmin = user.isSystemAdmin( );
-        }
-        return isSystemAdmin;
+        return principal.isSystemAdmin( );
       }
 
       @Override
@@ -437,7 +480,7 @@ public class Context {
         return new AuthContextSupplier( ){
           @Override
           public AuthContext get( ) throws AuthException {
-            return Permissions.createAuthContext( getUser( ), evaluateKeys( ) );
+            return Permissions.createAuthContext( principal, evaluateKeys( ) );
           }
         };
       }
@@ -70,6 +70,7 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.Channels;
 
 import com.eucalyptus.BaseException;
+import com.eucalyptus.entities.RequestEntityCache;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.records.EventRecord;
 import com.eucalyptus.records.EventType;
@@ -179,6 +180,15 @@ public class Contexts {
     tlContext.remove( );
   }
 
+  /**
+   * Entity cache for the request handled by the current thread, if any.
+   */
+  @Nullable
+  public static RequestEntityCache lookupEntityCache( ) {
+    final Context ctx = threadLocal( );
+    return ctx == null ? null : ctx.getEntityCache( );
+  }
+
   public static <T> Consumer<T> consumerWithCurrentContext( final Consumer<T> consumer ) {
     return consumerWithContext( consumer, Contexts.lookup() );
   }
@@ -243,6 +253,18 @@ public class Contexts {
     return Optional.absent( );
   }
 
+  /**
+   * Action for the request handled by the current thread, if any.
+   */
+  @Nonnull
+  public static Optional<String> lookupAction( ) {
+    Context ctx;
+    if ( ( ctx = threadLocal( ) ) != null ) {
+      return Optional.fromNullable( ctx.lookupAction( ) );
+    }
+    return Optional.absent( );
+  }
+
   public static void clear( String corrId ) {
     checkParam( "BUG: correlationId is null.", corrId, notNullValue() );
     uuidImpContexts.remove( corrId );
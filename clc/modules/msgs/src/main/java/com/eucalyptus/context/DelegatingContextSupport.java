@@ -27,8 +27,10 @@ import com.eucalyptus.auth.AuthContextSupplier;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.Contract;
 import com.eucalyptus.auth.principal.AccountFullName;
+import com.eucalyptus.auth.principal.PrincipalBundle;
 import com.eucalyptus.auth.principal.UserFullName;
 import com.eucalyptus.auth.principal.UserPrincipal;
+import com.eucalyptus.entities.RequestEntityCache;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.util.Wrapper;
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
@@ -48,6 +50,11 @@ abstract class DelegatingContextSupport extends Context implements Wrapper<Conte
     return this.delegate.getUser();
   }
 
+  @Override
+  PrincipalBundle getPrincipal( ) {
+    return this.delegate.getPrincipal( );
+  }
+
   @Override
   public String getAccountAlias( ) {
     return delegate.getAccountAlias( );
@@ -166,4 +173,9 @@ abstract class DelegatingContextSupport extends Context implements Wrapper<Conte
   public AuthContextSupplier getAuthContext( ) {
     return this.delegate.getAuthContext();
   }
+
+  @Override
+  public RequestEntityCache getEntityCache( ) {
+    return this.delegate.getEntityCache( );
+  }
 }
@@ -0,0 +1,454 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.crypto.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+
+/**
+ * XMLStreamWriter that outputs exclusive XML canonicalization (without
+ * comments) of the written element.
+ *
+ * <p>Namespace declarations are rendered where visibly utilized so any
+ * declarations written are only used to resolve unqualified elements. As
+ * canonical XML is well formed the output can be used directly in a message
+ * as well as for signing.</p>
+ *
+ * @see <a href="http://www.w3.org/TR/xml-exc-c14n/">Exclusive XML Canonicalization</a>
+ */
+public class CanonicalXMLStreamWriter implements XMLStreamWriter {
+
+  private static final Comparator<Attribute> ATTRIBUTE_ORDER = new Comparator<Attribute>( ) {
+    @Override
+    public int compare( final Attribute a1, final Attribute a2 ) {
+      final int result = a1.namespaceURI.compareTo( a2.namespaceURI );
+      return result != 0 ? result : a1.localName.compareTo( a2.localName );
+    }
+  };
+
+  private final Writer out;
+  private final Deque<Element> elements = new ArrayDeque<>( );
+  private Element pending;
+
+  public CanonicalXMLStreamWriter( final OutputStream out ) {
+    this.out = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+  }
+
+  @Override
+  public void writeStartElement( final String localName ) throws XMLStreamException {
+    start( XMLConstants.DEFAULT_NS_PREFIX, localName, null );
+  }
+
+  @Override
+  public void writeStartElement( final String namespaceURI, final String localName ) throws XMLStreamException {
+    start( prefix( namespaceURI ), localName, namespaceURI );
+  }
+
+  @Override
+  public void writeStartElement( final String prefix, final String localName, final String namespaceURI ) throws XMLStreamException {
+    start( Strings.nullToEmpty( prefix ), localName, Strings.nullToEmpty( namespaceURI ) );
+  }
+
+  @Override
+  public void writeEmptyElement( final String namespaceURI, final String localName ) throws XMLStreamException {
+    writeStartElement( namespaceURI, localName );
+    pending.empty = true;
+  }
+
+  @Override
+  public void writeEmptyElement( final String prefix, final String localName, final String namespaceURI ) throws XMLStreamException {
+    writeStartElement( prefix, localName, namespaceURI );
+    pending.empty = true;
+  }
+
+  @Override
+  public void writeEmptyElement( final String localName ) throws XMLStreamException {
+    writeStartElement( localName );
+    pending.empty = true;
+  }
+
+  @Override
+  public void writeEndElement( ) throws XMLStreamException {
+    flushPending( );
+    final Element element = elements.pop( );
+    write( "</" );
+    write( element.qualifiedName( ) );
+    write( ">" );
+  }
+
+  /**
+   * Elements are not closed as the writer may be used for part of a document.
+   */
+  @Override
+  public void writeEndDocument( ) throws XMLStreamException {
+    flushPending( );
+  }
+
+  @Override
+  public void close( ) throws XMLStreamException {
+    flush( );
+  }
+
+  @Override
+  public void flush( ) throws XMLStreamException {
+    try {
+      out.flush( );
+    } catch ( IOException e ) {
+      throw new XMLStreamException( e );
+    }
+  }
+
+  @Override
+  public void writeAttribute( final String localName, final String value ) throws XMLStreamException {
+    pending( ).attributes.add( new Attribute( XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI, localName, value ) );
+  }
+
+  @Override
+  public void writeAttribute( final String prefix, final String namespaceURI, final String localName, final String value ) throws XMLStreamException {
+    pending( ).attributes.add( new Attribute( Strings.nullToEmpty( prefix ), Strings.nullToEmpty( namespaceURI ), localName, value ) );
+  }
+
+  @Override
+  public void writeAttribute( final String namespaceURI, final String localName, final String value ) throws XMLStreamException {
+    writeAttribute( prefix( namespaceURI ), namespaceURI, localName, value );
+  }
+
+  @Override
+  public void writeNamespace( final String prefix, final String namespaceURI ) throws XMLStreamException {
+    if ( Strings.isNullOrEmpty( prefix ) || XMLConstants.XMLNS_ATTRIBUTE.equals( prefix ) ) {
+      writeDefaultNamespace( namespaceURI );
+    } else {
+      pending( ).declared.put( prefix, Strings.nullToEmpty( namespaceURI ) );
+    }
+  }
+
+  @Override
+  public void writeDefaultNamespace( final String namespaceURI ) throws XMLStreamException {
+    pending( ).declared.put( XMLConstants.DEFAULT_NS_PREFIX, Strings.nullToEmpty( namespaceURI ) );
+  }
+
+  @Override
+  public void writeComment( final String data ) throws XMLStreamException {
+    flushPending( );
+  }
+
+  @Override
+  public void writeProcessingInstruction( final String target ) throws XMLStreamException {
+    writeProcessingInstruction( target, null );
+  }
+
+  @Override
+  public void writeProcessingInstruction( final String target, final String data ) throws XMLStreamException {
+    flushPending( );
+    write( "<?" );
+    write( target );
+    if ( !Strings.isNullOrEmpty( data ) ) {
+      write( " " );
+      escape( data, false, true );
+    }
+    write( "?>" );
+  }
+
+  @Override
+  public void writeCData( final String data ) throws XMLStreamException {
+    writeCharacters( data );
+  }
+
+  @Override
+  public void writeDTD( final String dtd ) throws XMLStreamException {
+    throw new XMLStreamException( "DTD not supported" );
+  }
+
+  @Override
+  public void writeEntityRef( final String name ) throws XMLStreamException {
+    throw new XMLStreamException( "Entity references not supported" );
+  }
+
+  @Override
+  public void writeStartDocument( ) throws XMLStreamException {
+  }
+
+  @Override
+  public void writeStartDocument( final String version ) throws XMLStreamException {
+  }
+
+  @Override
+  public void writeStartDocument( final String encoding, final String version ) throws XMLStreamException {
+  }
+
+  @Override
+  public void writeCharacters( final String text ) throws XMLStreamException {
+    flushPending( );
+    escape( text, false, false );
+  }
+
+  @Override
+  public void writeCharacters( final char[] text, final int start, final int len ) throws XMLStreamException {
+    writeCharacters( new String( text, start, len ) );
+  }
+
+  @Override
+  public String getPrefix( final String uri ) throws XMLStreamException {
+    final Element scope = pending != null ? pending : elements.peek( );
+    for ( Element element = scope; element != null; element = element.parent ) {
+      for ( final Map.Entry<String,String> entry : element.declared.entrySet( ) ) {
+        if ( entry.getValue( ).equals( uri ) && uri.equals( scope.namespaceURI( entry.getKey( ) ) ) ) {
+          return entry.getKey( );
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void setPrefix( final String prefix, final String uri ) throws XMLStreamException {
+    final Element scope = pending != null ? pending : elements.peek( );
+    if ( scope != null ) {
+      scope.declared.put( Strings.nullToEmpty( prefix ), Strings.nullToEmpty( uri ) );
+    }
+  }
+
+  @Override
+  public void setDefaultNamespace( final String uri ) throws XMLStreamException {
+    setPrefix( XMLConstants.DEFAULT_NS_PREFIX, uri );
+  }
+
+  @Override
+  public void setNamespaceContext( final NamespaceContext context ) throws XMLStreamException {
+    throw new UnsupportedOperationException( );
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext( ) {
+    return new NamespaceContext( ) {
+      @Override
+      public String getNamespaceURI( final String prefix ) {
+        final Element element = pending != null ? pending : elements.peek( );
+        return element == null ? null : element.namespaceURI( prefix );
+      }
+
+      @Override
+      public String getPrefix( final String namespaceURI ) {
+        try {
+          return CanonicalXMLStreamWriter.this.getPrefix( namespaceURI );
+        } catch ( XMLStreamException e ) {
+          return null;
+        }
+      }
+
+      @Override
+      public Iterator getPrefixes( final String namespaceURI ) {
+        final String prefix = getPrefix( namespaceURI );
+        return prefix == null ?
+            Collections.emptyIterator( ) :
+            Collections.singleton( prefix ).iterator( );
+      }
+    };
+  }
+
+  @Override
+  public Object getProperty( final String name ) throws IllegalArgumentException {
+    throw new IllegalArgumentException( name );
+  }
+
+  private String prefix( final String namespaceURI ) throws XMLStreamException {
+    final String prefix = getPrefix( namespaceURI );
+    if ( prefix == null ) {
+      throw new XMLStreamException( "No prefix for namespace " + namespaceURI );
+    }
+    return prefix;
+  }
+
+  private Element pending( ) throws XMLStreamException {
+    if ( pending == null ) {
+      throw new XMLStreamException( "No start element" );
+    }
+    return pending;
+  }
+
+  private void start( final String prefix, final String localName, final String namespaceURI ) throws XMLStreamException {
+    flushPending( );
+    pending = new Element( elements.peek( ), prefix, localName, namespaceURI );
+  }
+
+  private void flushPending( ) throws XMLStreamException {
+    if ( pending != null ) {
+      final boolean empty = pending.empty;
+      flushStart( );
+      if ( empty ) {
+        writeEndElement( );
+      }
+    }
+  }
+
+  /**
+   * Render the start tag with visibly utilized namespaces not rendered by an
+   * ancestor and with namespaces and attributes in canonical order.
+   */
+  private void flushStart( ) throws XMLStreamException {
+    final Element element = pending;
+    pending = null;
+    if ( element.namespaceURI == null ) {
+      element.namespaceURI = Objects.firstNonNull( element.namespaceURI( XMLConstants.DEFAULT_NS_PREFIX ), XMLConstants.NULL_NS_URI );
+    }
+    final Element parent = element.parent;
+    final Map<String,String> render = new TreeMap<>( );
+    render.put( element.prefix, element.namespaceURI );
+    for ( final Attribute attribute : element.attributes ) {
+      if ( !attribute.prefix.isEmpty( ) && !XMLConstants.XML_NS_PREFIX.equals( attribute.prefix ) ) {
+        render.put( attribute.prefix, attribute.namespaceURI );
+      }
+    }
+    element.rendered = parent == null ? new HashMap<String,String>( ) : new HashMap<>( parent.rendered );
+    write( "<" );
+    write( element.qualifiedName( ) );
+    for ( final Map.Entry<String,String> namespace : render.entrySet( ) ) {
+      final String renderedURI = Objects.firstNonNull( element.rendered.get( namespace.getKey( ) ), XMLConstants.NULL_NS_URI );
+      if ( !renderedURI.equals( namespace.getValue( ) ) ) {
+        element.rendered.put( namespace.getKey( ), namespace.getValue( ) );
+        write( namespace.getKey( ).isEmpty( ) ? " xmlns" : " xmlns:" );
+        write( namespace.getKey( ) );
+        write( "=\"" );
+        escape( namespace.getValue( ), true, false );
+        write( "\"" );
+      }
+    }
+    Collections.sort( element.attributes, ATTRIBUTE_ORDER );
+    for ( final Attribute attribute : element.attributes ) {
+      write( " " );
+      if ( !attribute.prefix.isEmpty( ) ) {
+        write( attribute.prefix );
+        write( ":" );
+      }
+      write( attribute.localName );
+      write( "=\"" );
+      escape( attribute.value, true, false );
+      write( "\"" );
+    }
+    write( ">" );
+    elements.push( element );
+  }
+
+  private void write( final String text ) throws XMLStreamException {
+    try {
+      out.write( text );
+    } catch ( IOException e ) {
+      throw new XMLStreamException( e );
+    }
+  }
+
+  private void escape( final String text, final boolean attribute, final boolean instruction ) throws XMLStreamException {
+    try {
+      int last = 0;
+      for ( int i = 0; i < text.length( ); i++ ) {
+        final String replacement;
+        switch ( text.charAt( i ) ) {
+          case '&':  replacement = instruction ? null : "&amp;"; break;
+          case '<':  replacement = instruction ? null : "&lt;"; break;
+          case '>':  replacement = instruction || attribute ? null : "&gt;"; break;
+          case '"':  replacement = attribute ? "&quot;" : null; break;
+          case '\t': replacement = attribute ? "&#x9;" : null; break;
+          case '\n': replacement = attribute ? "&#xA;" : null; break;
+          case '\r': replacement = "&#xD;"; break;
+          default:   replacement = null;
+        }
+        if ( replacement != null ) {
+          out.write( text, last, i - last );
+          out.write( replacement );
+          last = i + 1;
+        }
+      }
+      out.write( text, last, text.length( ) - last );
+    } catch ( IOException e ) {
+      throw new XMLStreamException( e );
+    }
+  }
+
+  private static final class Element {
+    private final Element parent;
+    private final String prefix;
+    private final String localName;
+    private String namespaceURI;
+    private final Map<String,String> declared = new HashMap<>( 4 );
+    private final List<Attribute> attributes = new ArrayList<>( 4 );
+    private Map<String,String> rendered;
+    private boolean empty;
+
+    private Element( final Element parent,
+                     final String prefix,
+                     final String localName,
+                     final String namespaceURI ) {
+      this.parent = parent;
+      this.prefix = prefix;
+      this.localName = localName;
+      this.namespaceURI = namespaceURI;
+    }
+
+    private String namespaceURI( final String prefix ) {
+      for ( Element element = this; element != null; element = element.parent ) {
+        final String namespaceURI = element.declared.get( prefix );
+        if ( namespaceURI != null ) {
+          return namespaceURI;
+        }
+      }
+      return null;
+    }
+
+    private String qualifiedName( ) {
+      return prefix.isEmpty( ) ? localName : prefix + ":" + localName;
+    }
+  }
+
+  private static final class Attribute {
+    private final String prefix;
+    private final String namespaceURI;
+    private final String localName;
+    private final String value;
+
+    private Attribute( final String prefix,
+                       final String namespaceURI,
+                       final String localName,
+                       final String value ) {
+      this.prefix = prefix;
+      this.namespaceURI = namespaceURI;
+      this.localName = localName;
+      this.value = value;
+    }
+  }
+}
@@ -72,6 +72,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.axiom.soap.SOAPEnvelope;
@@ -165,6 +166,33 @@ public class WSSecurity {
       return cert;
   }
   
+  /**
+   * Verify the signature for the message, using streaming verification where
+   * supported.
+   *
+   * @param message The message text
+   * @param envelope The envelope for the message
+   * @return The signing certificate
+   * @see WSSecurityVerifier
+   */
+  public static X509Certificate verifyWSSec( final String message, final SOAPEnvelope envelope ) throws Exception {
+    final X509Certificate cert = message == null ? null : WSSecurityVerifier.verify( message );
+    return cert != null ? cert : verifyWSSec( envelope );
+  }
+
+  public static X509Certificate getCertificate( final byte[] encoded ) throws CertificateException {
+    try {
+      return cache.get( new CertificateKey( encoded ), new Callable<X509Certificate>( ) {
+        @Override
+        public X509Certificate call( ) throws Exception {
+          return ( X509Certificate ) getCertificateFactory( ).generateCertificate( new ByteArrayInputStream( encoded ) );
+        }
+      } );
+    } catch ( ExecutionException e ) {
+      throw new CertificateException( e.getCause( ) );
+    }
+  }
+
   public static X509Certificate verifySignature( final Element securityNode, final XMLSignature sig ) 
   	throws WSSecurityException, XMLSignatureException, XMLSecurityException {
     final SecurityTokenReference secRef = WSSecurity.getSecurityTokenReference( sig.getKeyInfo( ) );
@@ -183,14 +211,7 @@ public class WSSecurity {
         cert = PEMFiles.getCert( certStr.getBytes( ) );
       } else {
         final X509Security x509 = new X509Security( bstDirect );
-        final byte[] bstToken = x509.getToken( );
-        cert = cache.get( new CertificateKey( bstToken ), new Callable<X509Certificate>( ) {
-          @Override
-          public X509Certificate call( ) throws Exception {
-            CertificateFactory factory = getCertificateFactory( );
-            return ( X509Certificate ) factory.generateCertificate( new ByteArrayInputStream( bstToken ) );
-          }
-        } );
+        cert = getCertificate( x509.getToken( ) );
       }
     } catch ( Exception e ) {
       LOG.error( e, e );
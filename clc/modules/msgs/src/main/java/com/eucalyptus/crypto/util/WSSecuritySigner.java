@@ -0,0 +1,362 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.crypto.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import org.apache.ws.security.WSConstants;
+import org.apache.ws.security.WSEncryptionPart;
+import org.apache.ws.security.WSSecurityException;
+import org.apache.ws.security.components.crypto.Crypto;
+import org.apache.ws.security.components.crypto.CryptoType;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import com.eucalyptus.binding.BindingException;
+import com.eucalyptus.binding.BoundElement;
+import com.eucalyptus.util.UnsafeByteArrayOutputStream;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Streaming WS-Security signer for SOAP 1.1 messages.
+ *
+ * <p>Supports the fixed profile used for internal messages, an X.509 binary
+ * security token with direct reference, RSA-SHA1 signature, SHA1 digests and
+ * exclusive canonicalization. Signed parts are written in canonical form so
+ * digests are calculated as the message is written, without a DOM.</p>
+ *
+ * <p>The signer is thread safe, the certificate and key are retained until
+ * the credentials change.</p>
+ */
+public class WSSecuritySigner {
+
+  static final String SOAP_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+  static final String SOAP_PREFIX = "soapenv";
+  static final String WSSE_PREFIX = "wsse";
+  static final String WSU_PREFIX = "wsu";
+  static final String DS_PREFIX = "ds";
+  static final String ID = "Id";
+  static final String RSA_SHA1 = "http://www.w3.org/2000/09/xmldsig#rsa-sha1";
+  static final String SHA1 = "http://www.w3.org/2000/09/xmldsig#sha1";
+  static final String X509_V3_TYPE = "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-x509-token-profile-1.0#X509v3";
+  static final String BASE64_ENCODING = "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-soap-message-security-1.0#Base64Binary";
+  static final QName BODY = new QName( SOAP_NS, "Body" );
+  static final QName TIMESTAMP = new QName( WSConstants.WSU_NS, WSConstants.TIMESTAMP_TOKEN_LN );
+
+  private static final byte[] ENVELOPE_START = ( "<?xml version='1.0' encoding='utf-8'?>" +
+      "<" + SOAP_PREFIX + ":Envelope xmlns:" + SOAP_PREFIX + "=\"" + SOAP_NS + "\">" +
+      "<" + SOAP_PREFIX + ":Header>" ).getBytes( StandardCharsets.UTF_8 );
+  private static final byte[] HEADER_END =
+      ( "</" + SOAP_PREFIX + ":Header>" ).getBytes( StandardCharsets.UTF_8 );
+  private static final byte[] ENVELOPE_END =
+      ( "</" + SOAP_PREFIX + ":Envelope>" ).getBytes( StandardCharsets.UTF_8 );
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern( "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" ).withZone( ZoneOffset.UTC );
+  private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>( ) {
+    @Override
+    protected MessageDigest initialValue( ) {
+      try {
+        return MessageDigest.getInstance( "SHA-1" );
+      } catch ( GeneralSecurityException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+  };
+  private static final ThreadLocal<Signature> signatures = new ThreadLocal<Signature>( ) {
+    @Override
+    protected Signature initialValue( ) {
+      try {
+        return Signature.getInstance( "SHA1withRSA" );
+      } catch ( GeneralSecurityException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+  };
+
+  private final Crypto credentials;
+  private final List<QName> signedParts;
+  private final boolean timestamp;
+  private final long timeToLive;
+  private volatile Credential credential;
+
+  /**
+   * Create a signer for the given parts.
+   *
+   * @param credentials The signing credentials
+   * @param parts The parts to sign, must include the body
+   * @param timestamp True to include a timestamp
+   */
+  public WSSecuritySigner( @Nonnull final Crypto credentials,
+                           @Nonnull final Iterable<WSEncryptionPart> parts,
+                           final boolean timestamp ) {
+    this.credentials = credentials;
+    this.signedParts = Lists.newArrayList( );
+    for ( final WSEncryptionPart part : parts ) {
+      this.signedParts.add( new QName( part.getNamespace( ), part.getName( ) ) );
+    }
+    this.timestamp = timestamp;
+    this.timeToLive = TimeUnit.SECONDS.toMillis( 300 );
+  }
+
+  /**
+   * Can a message with the given headers be signed.
+   *
+   * @param headers The text header blocks for the message
+   * @return True if all signed parts are available
+   */
+  public boolean canSign( final Map<QName,String> headers ) {
+    if ( !signedParts.contains( BODY ) ) {
+      return false;
+    }
+    for ( final QName part : signedParts ) {
+      if ( !BODY.equals( part ) && !( timestamp && TIMESTAMP.equals( part ) ) && !headers.containsKey( part ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Write the signed envelope.
+   *
+   * @param headers The text header blocks for the message
+   * @param body The message for the body
+   * @param sizeHint The expected size of the body
+   * @return The buffer for the signed envelope
+   * @see #canSign(Map)
+   */
+  public ChannelBuffer sign( final Map<QName,String> headers,
+                             final BoundElement body,
+                             final int sizeHint ) throws BindingException, GeneralSecurityException, XMLStreamException {
+    final Credential credential = credential( );
+    final MessageDigest digest = digests.get( );
+    final String idSuffix = Long.toHexString( ThreadLocalRandom.current( ).nextLong( ) );
+    final String bodyId = "Body-" + idSuffix;
+
+    // body first, the signature in the header requires the digest
+    final ChannelBuffer bodyBuffer = ChannelBuffers.dynamicBuffer( sizeHint );
+    try {
+      writeBody( bodyBuffer, digest, body, bodyId );
+    } catch ( BindingException e ) {
+      bodyBuffer.clear( );
+      digest.reset( );
+      writeBody( bodyBuffer, digest, body.withDefaultBinding( ), bodyId );
+    }
+    final byte[] bodyDigest = digest.digest( );
+
+    final UnsafeByteArrayOutputStream timestampOut = new UnsafeByteArrayOutputStream( 256 );
+    final String timestampId = "TS-" + idSuffix;
+    if ( timestamp ) {
+      final long now = System.currentTimeMillis( );
+      final CanonicalXMLStreamWriter writer = writer( timestampOut, digest );
+      writer.writeStartElement( WSU_PREFIX, WSConstants.TIMESTAMP_TOKEN_LN, WSConstants.WSU_NS );
+      writer.writeAttribute( WSU_PREFIX, WSConstants.WSU_NS, ID, timestampId );
+      writeTextElement( writer, new QName( WSConstants.WSU_NS, "Created", WSU_PREFIX ),
+          TIMESTAMP_FORMAT.format( Instant.ofEpochMilli( now ) ) );
+      writeTextElement( writer, new QName( WSConstants.WSU_NS, "Expires", WSU_PREFIX ),
+          TIMESTAMP_FORMAT.format( Instant.ofEpochMilli( now + timeToLive ) ) );
+      writer.writeEndElement( );
+      writer.flush( );
+    }
+    final byte[] timestampDigest = timestamp ? digest.digest( ) : null;
+
+    final UnsafeByteArrayOutputStream headersOut = new UnsafeByteArrayOutputStream( 512 );
+    final Map<QName,String> headerIds = Maps.newHashMap( );
+    final Map<String,byte[]> headerDigests = Maps.newHashMap( );
+    for ( final Map.Entry<QName,String> header : headers.entrySet( ) ) {
+      final String id = signedParts.contains( header.getKey( ) ) ?
+          "id-" + ( headerIds.size( ) + 1 ) + "-" + idSuffix :
+          null;
+      final CanonicalXMLStreamWriter writer = writer( headersOut, digest );
+      writer.writeStartElement( prefix( header.getKey( ) ), header.getKey( ).getLocalPart( ), header.getKey( ).getNamespaceURI( ) );
+      if ( id != null ) {
+        writer.writeAttribute( WSU_PREFIX, WSConstants.WSU_NS, ID, id );
+      }
+      writer.writeCharacters( header.getValue( ) );
+      writer.writeEndElement( );
+      writer.flush( );
+      final byte[] headerDigest = digest.digest( );
+      if ( id != null ) {
+        headerIds.put( header.getKey( ), id );
+        headerDigests.put( id, headerDigest );
+      }
+    }
+
+    // references in signed part order
+    final Map<String,byte[]> references = Maps.newLinkedHashMap( );
+    for ( final QName part : signedParts ) {
+      if ( BODY.equals( part ) ) {
+        references.put( bodyId, bodyDigest );
+      } else if ( TIMESTAMP.equals( part ) ) {
+        if ( timestamp ) {
+          references.put( timestampId, timestampDigest );
+        }
+      } else if ( headerIds.containsKey( part ) ) {
+        references.put( headerIds.get( part ), headerDigests.get( headerIds.get( part ) ) );
+      }
+    }
+
+    final UnsafeByteArrayOutputStream signedInfoOut = new UnsafeByteArrayOutputStream( 1024 );
+    final CanonicalXMLStreamWriter signedInfoWriter = new CanonicalXMLStreamWriter( signedInfoOut );
+    signedInfoWriter.writeStartElement( DS_PREFIX, "SignedInfo", WSConstants.SIG_NS );
+    writeAlgorithmElement( signedInfoWriter, "CanonicalizationMethod", WSConstants.C14N_EXCL_OMIT_COMMENTS );
+    writeAlgorithmElement( signedInfoWriter, "SignatureMethod", RSA_SHA1 );
+    for ( final Map.Entry<String,byte[]> reference : references.entrySet( ) ) {
+      signedInfoWriter.writeStartElement( DS_PREFIX, "Reference", WSConstants.SIG_NS );
+      signedInfoWriter.writeAttribute( "URI", "#" + reference.getKey( ) );
+      signedInfoWriter.writeStartElement( DS_PREFIX, "Transforms", WSConstants.SIG_NS );
+      writeAlgorithmElement( signedInfoWriter, "Transform", WSConstants.C14N_EXCL_OMIT_COMMENTS );
+      signedInfoWriter.writeEndElement( );
+      writeAlgorithmElement( signedInfoWriter, "DigestMethod", SHA1 );
+      writeTextElement( signedInfoWriter, new QName( WSConstants.SIG_NS, "DigestValue", DS_PREFIX ),
+          B64.standard.encString( reference.getValue( ) ) );
+      signedInfoWriter.writeEndElement( );
+    }
+    signedInfoWriter.writeEndElement( );
+    signedInfoWriter.flush( );
+
+    final Signature signature = signatures.get( );
+    signature.initSign( credential.privateKey );
+    signature.update( signedInfoOut.getBuffer( ), 0, signedInfoOut.getCount( ) );
+    final String signatureValue = B64.standard.encString( signature.sign( ) );
+
+    final ChannelBuffer headBuffer = ChannelBuffers.dynamicBuffer(
+        1024 + credential.token.length( ) + timestampOut.getCount( ) + headersOut.getCount( ) + signedInfoOut.getCount( ) );
+    try ( final ChannelBufferOutputStream out = new ChannelBufferOutputStream( headBuffer ) ) {
+      out.write( ENVELOPE_START );
+      write( out, "<" + WSSE_PREFIX + ":Security xmlns:" + WSSE_PREFIX + "=\"" + WSConstants.WSSE_NS + "\" xmlns:" + WSU_PREFIX + "=\"" + WSConstants.WSU_NS + "\">" );
+      out.write( timestampOut.getBuffer( ), 0, timestampOut.getCount( ) );
+      write( out, "<" + WSSE_PREFIX + ":BinarySecurityToken EncodingType=\"" + BASE64_ENCODING + "\" ValueType=\"" + X509_V3_TYPE + "\" " +
+          WSU_PREFIX + ":Id=\"X509-" + idSuffix + "\">" + credential.token + "</" + WSSE_PREFIX + ":BinarySecurityToken>" );
+      write( out, "<" + DS_PREFIX + ":Signature xmlns:" + DS_PREFIX + "=\"" + WSConstants.SIG_NS + "\" Id=\"SIG-" + idSuffix + "\">" );
+      out.write( signedInfoOut.getBuffer( ), 0, signedInfoOut.getCount( ) );
+      write( out, "<" + DS_PREFIX + ":SignatureValue>" + signatureValue + "</" + DS_PREFIX + ":SignatureValue>" );
+      write( out, "<" + DS_PREFIX + ":KeyInfo Id=\"KI-" + idSuffix + "\">" +
+          "<" + WSSE_PREFIX + ":SecurityTokenReference " + WSU_PREFIX + ":Id=\"STR-" + idSuffix + "\">" +
+          "<" + WSSE_PREFIX + ":Reference URI=\"#X509-" + idSuffix + "\" ValueType=\"" + X509_V3_TYPE + "\"/>" +
+          "</" + WSSE_PREFIX + ":SecurityTokenReference></" + DS_PREFIX + ":KeyInfo>" );
+      write( out, "</" + DS_PREFIX + ":Signature></" + WSSE_PREFIX + ":Security>" );
+      out.write( headersOut.getBuffer( ), 0, headersOut.getCount( ) );
+      out.write( HEADER_END );
+    } catch ( IOException e ) {
+      throw new XMLStreamException( e );
+    }
+
+    return ChannelBuffers.wrappedBuffer( headBuffer, bodyBuffer, ChannelBuffers.wrappedBuffer( ENVELOPE_END ) );
+  }
+
+  private Credential credential( ) throws GeneralSecurityException {
+    final X509Certificate[] certificates;
+    try {
+      certificates = credentials.getX509Certificates( new CryptoType( CryptoType.TYPE.ALIAS ) );
+    } catch ( WSSecurityException e ) {
+      throw new GeneralSecurityException( e.getMessage( ), e );
+    }
+    if ( certificates == null || certificates.length == 0 ) {
+      throw new GeneralSecurityException( "Certificate not found" );
+    }
+    Credential credential = this.credential;
+    if ( credential == null || !credential.certificate.equals( certificates[ 0 ] ) ) {
+      final PrivateKey privateKey;
+      try {
+        privateKey = credentials.getPrivateKey( certificates[ 0 ], null );
+      } catch ( WSSecurityException e ) {
+        throw new GeneralSecurityException( e.getMessage( ), e );
+      }
+      this.credential = credential = new Credential(
+          certificates[ 0 ],
+          privateKey,
+          B64.standard.encString( certificates[ 0 ].getEncoded( ) ) );
+    }
+    return credential;
+  }
+
+  private static void writeBody( final ChannelBuffer buffer,
+                                 final MessageDigest digest,
+                                 final BoundElement body,
+                                 final String id ) throws BindingException, XMLStreamException {
+    final CanonicalXMLStreamWriter writer = writer( new ChannelBufferOutputStream( buffer ), digest );
+    writer.writeStartElement( SOAP_PREFIX, BODY.getLocalPart( ), SOAP_NS );
+    writer.writeAttribute( WSU_PREFIX, WSConstants.WSU_NS, ID, id );
+    body.toStream( writer );
+    writer.writeEndElement( );
+    writer.flush( );
+  }
+
+  private static CanonicalXMLStreamWriter writer( final OutputStream out, final MessageDigest digest ) {
+    return new CanonicalXMLStreamWriter( new DigestOutputStream( out, digest ) );
+  }
+
+  private static String prefix( final QName name ) {
+    return name.getPrefix( ).isEmpty( ) ? "ns" : name.getPrefix( );
+  }
+
+  private static void writeAlgorithmElement( final CanonicalXMLStreamWriter writer,
+                                             final String localName,
+                                             final String algorithm ) throws XMLStreamException {
+    writer.writeStartElement( DS_PREFIX, localName, WSConstants.SIG_NS );
+    writer.writeAttribute( "Algorithm", algorithm );
+    writer.writeEndElement( );
+  }
+
+  private static void writeTextElement( final CanonicalXMLStreamWriter writer,
+                                        final QName name,
+                                        final String text ) throws XMLStreamException {
+    writer.writeStartElement( name.getPrefix( ), name.getLocalPart( ), name.getNamespaceURI( ) );
+    writer.writeCharacters( text );
+    writer.writeEndElement( );
+  }
+
+  private static void write( final OutputStream out, final String text ) throws IOException {
+    out.write( text.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static final class Credential {
+    private final X509Certificate certificate;
+    private final PrivateKey privateKey;
+    private final String token;
+
+    private Credential( final X509Certificate certificate,
+                        final PrivateKey privateKey,
+                        final String token ) {
+      this.certificate = certificate;
+      this.privateKey = privateKey;
+      this.token = token;
+    }
+  }
+}
@@ -0,0 +1,432 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.crypto.util;
+
+import static com.eucalyptus.crypto.util.WSSecuritySigner.*;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.log4j.Logger;
+import org.apache.ws.security.WSConstants;
+import org.apache.ws.security.WSSConfig;
+import com.eucalyptus.auth.login.SecurityContext;
+import com.eucalyptus.binding.HoldMe;
+import com.eucalyptus.util.UnsafeByteArrayOutputStream;
+import com.eucalyptus.ws.StackConfiguration;
+import com.eucalyptus.ws.WebServicesException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Streaming WS-Security verification for SOAP 1.1 messages.
+ *
+ * <p>Verifies messages using the profile supported by WSSecuritySigner in a
+ * single pass over the message text. Referenced elements are canonicalized
+ * and digested as they are parsed.</p>
+ *
+ * @see WSSecuritySigner
+ */
+public class WSSecurityVerifier {
+  private static final Logger LOG = Logger.getLogger( WSSecurityVerifier.class );
+
+  /**
+   * Verify the signature for the given message.
+   *
+   * @param message The SOAP message text
+   * @return The signing certificate or null if the message does not use the supported profile
+   * @throws WebServicesException If verification fails
+   */
+  @Nullable
+  public static X509Certificate verify( final String message ) throws WebServicesException {
+    final SignedMessage signed;
+    try {
+      signed = parse( message );
+    } catch ( XMLStreamException | GeneralSecurityException e ) {
+      throw new WebServicesException( "Authentication failed: " + e.getMessage( ), e );
+    }
+    if ( signed == null || !signed.isSupported( ) ) {
+      return null;
+    }
+    try {
+      return signed.verify( );
+    } catch ( Exception e ) {
+      throw new WebServicesException( "Authentication failed: " + e.getMessage( ), e );
+    }
+  }
+
+  @Nullable
+  private static SignedMessage parse( final String message ) throws XMLStreamException, GeneralSecurityException {
+    final XMLStreamReader reader = HoldMe.getXMLStreamReader( message );
+    try {
+      final SignedMessage signed = new SignedMessage( );
+      final List<Canonicalization> active = Lists.newArrayList( );
+      final List<String> path = Lists.newArrayList( );
+      final StringBuilder text = new StringBuilder( );
+      while ( reader.hasNext( ) ) {
+        switch ( reader.next( ) ) {
+          case XMLStreamConstants.START_ELEMENT:
+            text.setLength( 0 );
+            final int depth = path.size( ) + 1;
+            final String name = reader.getNamespaceURI( ) + "#" + reader.getLocalName( );
+            if ( depth == 1 && !( SOAP_NS + "#Envelope" ).equals( name ) ) {
+              return null;
+            }
+            path.add( name );
+            final String id = id( reader );
+            if ( id != null ) {
+              if ( signed.digests.containsKey( id ) || signed.pending.contains( id ) ) {
+                throw new GeneralSecurityException( "Duplicate identifier " + id );
+              }
+              signed.pending.add( id );
+              active.add( new Canonicalization( id, depth, false ) );
+            }
+            if ( depth == 5 && signed.inSignedInfo( path ) && signed.signedInfo == null ) {
+              active.add( new Canonicalization( null, depth, true ) );
+            }
+            signed.start( path, reader, id );
+            for ( final Canonicalization canonicalization : active ) {
+              canonicalization.start( reader );
+            }
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            text.append( reader.getTextCharacters( ), reader.getTextStart( ), reader.getTextLength( ) );
+            for ( final Canonicalization canonicalization : active ) {
+              canonicalization.writer.writeCharacters( reader.getTextCharacters( ), reader.getTextStart( ), reader.getTextLength( ) );
+            }
+            break;
+          case XMLStreamConstants.PROCESSING_INSTRUCTION:
+            signed.supported &= active.isEmpty( );
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            signed.end( path, text.toString( ) );
+            text.setLength( 0 );
+            for ( int i = active.size( ) - 1; i >= 0; i-- ) {
+              final Canonicalization canonicalization = active.get( i );
+              canonicalization.writer.writeEndElement( );
+              if ( canonicalization.depth == path.size( ) ) {
+                active.remove( i );
+                canonicalization.writer.flush( );
+                if ( canonicalization.signedInfo ) {
+                  signed.signedInfo = canonicalization.out;
+                } else {
+                  signed.pending.remove( canonicalization.id );
+                  signed.digests.put( canonicalization.id, canonicalization.digest.digest( ) );
+                }
+              }
+            }
+            path.remove( path.size( ) - 1 );
+            break;
+        }
+      }
+      return signed;
+    } finally {
+      reader.close( );
+    }
+  }
+
+  @Nullable
+  private static String id( final XMLStreamReader reader ) {
+    for ( int i = 0; i < reader.getAttributeCount( ); i++ ) {
+      final String namespace = reader.getAttributeNamespace( i );
+      final String localName = reader.getAttributeLocalName( i );
+      if ( ( WSConstants.WSU_NS.equals( namespace ) && ID.equals( localName ) ) ||
+          ( ( namespace == null || namespace.isEmpty( ) ) && ( ID.equals( localName ) || "ID".equals( localName ) ) ) ) {
+        return reader.getAttributeValue( i );
+      }
+    }
+    return null;
+  }
+
+  private static final class Canonicalization {
+    private final String id;
+    private final int depth;
+    private final boolean signedInfo;
+    private final UnsafeByteArrayOutputStream out;
+    private final MessageDigest digest;
+    private final CanonicalXMLStreamWriter writer;
+
+    private Canonicalization( final String id, final int depth, final boolean signedInfo ) throws GeneralSecurityException {
+      this.id = id;
+      this.depth = depth;
+      this.signedInfo = signedInfo;
+      if ( signedInfo ) {
+        this.out = new UnsafeByteArrayOutputStream( 1024 );
+        this.digest = null;
+        this.writer = new CanonicalXMLStreamWriter( out );
+      } else {
+        this.out = null;
+        this.digest = MessageDigest.getInstance( "SHA-1" );
+        this.writer = new CanonicalXMLStreamWriter( new DigestOutputStream( ByteStreams.nullOutputStream( ), digest ) );
+      }
+    }
+
+    private void start( final XMLStreamReader reader ) throws XMLStreamException {
+      writer.writeStartElement( reader.getPrefix( ), reader.getLocalName( ), reader.getNamespaceURI( ) );
+      for ( int i = 0; i < reader.getAttributeCount( ); i++ ) {
+        writer.writeAttribute(
+            reader.getAttributePrefix( i ),
+            reader.getAttributeNamespace( i ),
+            reader.getAttributeLocalName( i ),
+            reader.getAttributeValue( i ) );
+      }
+    }
+  }
+
+  private static final class Reference {
+    private final String uri;
+    private final List<String> transforms = Lists.newArrayList( );
+    private String digestMethod;
+    private String digestValue;
+
+    private Reference( final String uri ) {
+      this.uri = uri;
+    }
+  }
+
+  /**
+   * Signature information collected while parsing.
+   */
+  private static final class SignedMessage {
+    private final Map<String,byte[]> digests = Maps.newHashMap( );
+    private final List<String> pending = Lists.newArrayList( );
+    private final List<Reference> references = Lists.newArrayList( );
+    private final Map<String,String> tokens = Maps.newHashMap( );
+    private final Map<String,String> tokenTypes = Maps.newHashMap( );
+    private UnsafeByteArrayOutputStream signedInfo;
+    private boolean supported = true;
+    private boolean security;
+    private boolean signature;
+    private String canonicalizationMethod;
+    private String signatureMethod;
+    private String signatureValue;
+    private String token;
+    private String tokenReference;
+    private String timestampId;
+    private String created;
+    private String expires;
+    private String bodyId;
+    private boolean body;
+
+    private static boolean is( final List<String> path, final int index, final String namespace, final String localName ) {
+      return path.size( ) > index && path.get( index ).equals( namespace + "#" + localName );
+    }
+
+    private boolean inSecurity( final List<String> path ) {
+      return is( path, 1, SOAP_NS, "Header" ) && is( path, 2, WSConstants.WSSE_NS, WSConstants.WSSE_LN );
+    }
+
+    private boolean inSignature( final List<String> path ) {
+      return inSecurity( path ) && is( path, 3, WSConstants.SIG_NS, WSConstants.SIG_LN );
+    }
+
+    private boolean inSignedInfo( final List<String> path ) {
+      return inSignature( path ) && is( path, 4, WSConstants.SIG_NS, "SignedInfo" );
+    }
+
+    private void start( final List<String> path, final XMLStreamReader reader, final String id ) {
+      final int depth = path.size( );
+      final String name = path.get( depth - 1 );
+      final String algorithm = reader.getAttributeValue( null, "Algorithm" );
+      if ( depth == 2 && name.equals( SOAP_NS + "#Body" ) ) {
+        if ( !body ) {
+          body = true;
+          bodyId = id;
+        }
+      } else if ( depth == 3 && inSecurity( path ) ) {
+        supported &= !security; // multiple security headers
+        security = true;
+      } else if ( depth == 4 && inSecurity( path ) ) {
+        if ( name.equals( WSConstants.SIG_NS + "#" + WSConstants.SIG_LN ) ) {
+          supported &= !signature; // multiple signatures
+          signature = true;
+        } else if ( name.equals( WSConstants.WSU_NS + "#" + WSConstants.TIMESTAMP_TOKEN_LN ) ) {
+          supported &= timestampId == null && id != null;
+          timestampId = id;
+        } else if ( name.equals( WSConstants.WSSE_NS + "#BinarySecurityToken" ) && id != null ) {
+          token = id;
+          tokenTypes.put( id, reader.getAttributeValue( null, "ValueType" ) );
+        }
+      } else if ( depth == 6 && inSignedInfo( path ) ) {
+        if ( name.equals( WSConstants.SIG_NS + "#CanonicalizationMethod" ) ) {
+          canonicalizationMethod = algorithm;
+        } else if ( name.equals( WSConstants.SIG_NS + "#SignatureMethod" ) ) {
+          signatureMethod = algorithm;
+        } else if ( name.equals( WSConstants.SIG_NS + "#Reference" ) ) {
+          references.add( new Reference( reader.getAttributeValue( null, "URI" ) ) );
+        } else {
+          supported = false;
+        }
+      } else if ( depth == 7 && inSignedInfo( path ) ) {
+        if ( !is( path, 5, WSConstants.SIG_NS, "Reference" ) ) {
+          supported = false; // e.g. inclusive namespaces prefix list
+        } else if ( name.equals( WSConstants.SIG_NS + "#DigestMethod" ) ) {
+          current( ).digestMethod = algorithm;
+        } else if ( !name.equals( WSConstants.SIG_NS + "#Transforms" ) && !name.equals( WSConstants.SIG_NS + "#DigestValue" ) ) {
+          supported = false;
+        }
+      } else if ( depth == 8 && inSignedInfo( path ) && is( path, 6, WSConstants.SIG_NS, "Transforms" ) &&
+          name.equals( WSConstants.SIG_NS + "#Transform" ) ) {
+        current( ).transforms.add( algorithm );
+      } else if ( depth > 7 && inSignedInfo( path ) ) {
+        supported = false;
+      } else if ( depth == 7 && inSignature( path ) && is( path, 4, WSConstants.SIG_NS, "KeyInfo" ) &&
+          is( path, 5, WSConstants.WSSE_NS, "SecurityTokenReference" ) && name.equals( WSConstants.WSSE_NS + "#Reference" ) ) {
+        tokenReference = reader.getAttributeValue( null, "URI" );
+      }
+    }
+
+    private void end( final List<String> path, final String text ) {
+      final int depth = path.size( );
+      final String name = path.get( depth - 1 );
+      if ( depth == 4 && inSecurity( path ) && name.equals( WSConstants.WSSE_NS + "#BinarySecurityToken" ) && token != null ) {
+        tokens.put( token, text );
+        token = null;
+      } else if ( depth == 5 && inSecurity( path ) && is( path, 3, WSConstants.WSU_NS, WSConstants.TIMESTAMP_TOKEN_LN ) ) {
+        if ( name.equals( WSConstants.WSU_NS + "#Created" ) ) {
+          created = text.trim( );
+        } else if ( name.equals( WSConstants.WSU_NS + "#Expires" ) ) {
+          expires = text.trim( );
+        }
+      } else if ( depth == 5 && inSignature( path ) && name.equals( WSConstants.SIG_NS + "#SignatureValue" ) ) {
+        signatureValue = text;
+      } else if ( depth == 7 && inSignedInfo( path ) && name.equals( WSConstants.SIG_NS + "#DigestValue" ) ) {
+        current( ).digestValue = text;
+      }
+    }
+
+    private Reference current( ) {
+      return references.get( references.size( ) - 1 );
+    }
+
+    private boolean isSupported( ) {
+      if ( !supported || !signature || signedInfo == null ) {
+        return false;
+      }
+      if ( !WSConstants.C14N_EXCL_OMIT_COMMENTS.equals( canonicalizationMethod ) || !RSA_SHA1.equals( signatureMethod ) ) {
+        return false;
+      }
+      if ( references.isEmpty( ) ) {
+        return false;
+      }
+      for ( final Reference reference : references ) {
+        if ( reference.uri == null || !reference.uri.startsWith( "#" ) ||
+            !SHA1.equals( reference.digestMethod ) ||
+            reference.transforms.size( ) != 1 ||
+            !WSConstants.C14N_EXCL_OMIT_COMMENTS.equals( reference.transforms.get( 0 ) ) ) {
+          return false;
+        }
+      }
+      return tokenReference != null && tokenReference.startsWith( "#" ) &&
+          X509_V3_TYPE.equals( tokenTypes.get( tokenReference.substring( 1 ) ) );
+    }
+
+    private X509Certificate verify( ) throws Exception {
+      final byte[] signatureBytes = B64.standard.dec( signatureValue );
+      SecurityContext.enqueueSignature( new String( signatureBytes ) );
+
+      final X509Certificate certificate = WSSecurity.getCertificate( B64.standard.dec( tokens.get( tokenReference.substring( 1 ) ) ) );
+      final Signature verifier = Signature.getInstance( "SHA1withRSA" );
+      verifier.initVerify( certificate.getPublicKey( ) );
+      verifier.update( signedInfo.getBuffer( ), 0, signedInfo.getCount( ) );
+      if ( !verifier.verify( signatureBytes ) ) {
+        throw new GeneralSecurityException( "Signature verification failed" );
+      }
+
+      boolean timestampSigned = false;
+      boolean bodySigned = false;
+      for ( final Reference reference : references ) {
+        final String id = reference.uri.substring( 1 );
+        final byte[] digest = digests.get( id );
+        if ( digest == null ) {
+          throw new GeneralSecurityException( "Error resolving reference: " + reference.uri );
+        }
+        if ( !MessageDigest.isEqual( digest, B64.standard.dec( reference.digestValue ) ) ) {
+          throw new GeneralSecurityException( "Digest verification failed for " + reference.uri );
+        }
+        timestampSigned |= id.equals( timestampId );
+        bodySigned |= id.equals( bodyId );
+      }
+      if ( !timestampSigned ) {
+        throw new GeneralSecurityException( "Required element not signed " + WSConstants.TIMESTAMP_TOKEN_LN );
+      }
+      if ( !bodySigned ) {
+        throw new GeneralSecurityException( "Required element not signed " + WSConstants.ELEM_BODY );
+      }
+      verifyTimestamp( );
+      return certificate;
+    }
+
+    /**
+     * Timestamp checks as per the WSS4J TimestampProcessor/TimestampValidator
+     * used when verifying via the object model.
+     */
+    private void verifyTimestamp( ) throws GeneralSecurityException {
+      if ( created == null ) {
+        throw new GeneralSecurityException( "Timestamp missing Created" );
+      }
+      if ( expires == null ) {
+        throw new GeneralSecurityException( "Timestamp missing Expires" );
+      }
+      final Date createdDate;
+      final Date expiresDate;
+      try {
+        createdDate = Date.from( Instant.parse( created ) );
+        expiresDate = Date.from( Instant.parse( expires ) );
+      } catch ( DateTimeParseException e ) {
+        throw new GeneralSecurityException( "Invalid timestamp", e );
+      }
+      final WSSConfig config = WSSConfig.getNewInstance( );
+      final long now = System.currentTimeMillis( );
+      if ( expiresDate.getTime( ) < now ) {
+        throw new GeneralSecurityException( "The message has expired" );
+      }
+      if ( createdDate.getTime( ) + TimeUnit.SECONDS.toMillis( config.getTimeStampTTL( ) ) < now ) {
+        throw new GeneralSecurityException( "The message timestamp is stale" );
+      }
+      if ( createdDate.getTime( ) > now + TimeUnit.SECONDS.toMillis( config.getTimeStampFutureTTL( ) ) ) {
+        throw new GeneralSecurityException( "Timestamp was created in the future" );
+      }
+      if ( !SecurityContext.validateTimestampPeriod( expiresDate ) ) {
+        LOG.warn( "[security] ]Timestamp expiration is further in the future than replay cache expiration" );
+      }
+      final Calendar skewed = Calendar.getInstance( );
+      skewed.add( Calendar.SECOND, StackConfiguration.CLOCK_SKEW_SEC );
+      if ( skewed.getTime( ).before( createdDate ) ) {
+        throw new GeneralSecurityException( "Timestamp was created in the future: make sure you clocks are synchronized" );
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opt-in second level caching for a root entity class.
+ *
+ * <p>Cached entities are held in a bounded region local to the host. Changes
+ * made on a host evict from the local region and are published to other
+ * hosts via membership so that their regions are also evicted.</p>
+ *
+ * @see EntityCacheRegions
+ */
+@Target( ElementType.TYPE )
+@Retention( RetentionPolicy.RUNTIME )
+public @interface CachedEntity {
+
+  /**
+   * The caching strategy for the entity.
+   */
+  Usage value( ) default Usage.NONSTRICT_READ_WRITE;
+
+  /**
+   * Maximum number of entities to cache.
+   */
+  int maxEntries( ) default 1000;
+
+  /**
+   * Maximum time to cache an entity, bounds staleness for changes not made
+   * via hibernate.
+   */
+  int expirySeconds( ) default 300;
+
+  enum Usage {
+    /**
+     * Entities that are created and deleted but never modified.
+     */
+    READ_ONLY( "read-only" ),
+
+    /**
+     * Entities that are rarely modified, modification evicts the cached entity.
+     */
+    NONSTRICT_READ_WRITE( "nonstrict-read-write" ),
+    ;
+
+    private final String strategy;
+
+    Usage( final String strategy ) {
+      this.strategy = strategy;
+    }
+
+    /**
+     * The hibernate cache concurrency strategy name.
+     */
+    public String getStrategy( ) {
+      return strategy;
+    }
+  }
+}
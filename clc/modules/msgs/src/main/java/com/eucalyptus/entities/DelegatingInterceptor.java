@@ -83,18 +83,22 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public boolean onLoad( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    TransactionProfiler.loaded( );
     return this.interceptor.onLoad( entity, id, state, propertyNames, types );
   }
   
   public boolean onFlushDirty( Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types ) throws CallbackException {
+    RequestEntityCache.invalidate( entity.getClass( ) );
     return this.interceptor.onFlushDirty( entity, id, currentState, previousState, propertyNames, types );
   }
   
   public boolean onSave( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    RequestEntityCache.invalidate( entity.getClass( ) );
     return this.interceptor.onSave( entity, id, state, propertyNames, types );
   }
   
   public void onDelete( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    RequestEntityCache.invalidate( entity.getClass( ) );
     this.interceptor.onDelete( entity, id, state, propertyNames, types );
   }
   
@@ -151,6 +155,8 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public String onPrepareStatement( String sql ) {
+    RequestEntityCache.statement( );
+    TransactionProfiler.statement( sql );
     return this.interceptor.onPrepareStatement( sql );
   }
   
@@ -533,15 +533,22 @@ public class Entities {
   @SuppressWarnings( { "unchecked", "cast" } )
   @Deprecated
   public static <T> List<T> query( final T example, final boolean readOnly ) {
+    final Session session = getTransaction( example ).getTxState( ).getSession( );
+    final RequestEntityCache.Key key = readOnly ? null : RequestEntityCache.exampleKey( session, example, false );
+    final List<?> cached = RequestEntityCache.lookup( session, key );
+    if ( cached != null ) {
+      return Lists.newArrayList( ( List<T> ) cached );
+    }
     final Example qbe = Example.create( example );
-    final List<T> resultList = ( List<T> ) getTransaction( example ).getTxState( ).getSession( )
-                                                                    .createCriteria( example.getClass( ) )
-                                                                    .setReadOnly( readOnly )
-                                                                    .setResultTransformer( Criteria.DISTINCT_ROOT_ENTITY )
-                                                                    .setCacheable( true )
-                                                                    .add( qbe )
-                                                                    .list( );
-    return Lists.newArrayList( Sets.newHashSet( resultList ) );
+    final List<T> resultList = ( List<T> ) session.createCriteria( example.getClass( ) )
+                                                  .setReadOnly( readOnly )
+                                                  .setResultTransformer( Criteria.DISTINCT_ROOT_ENTITY )
+                                                  .setCacheable( true )
+                                                  .add( qbe )
+                                                  .list( );
+    final List<T> results = Lists.newArrayList( Sets.newHashSet( resultList ) );
+    RequestEntityCache.store( session, key, results );
+    return results;
   }
 
   /**
@@ -798,36 +805,48 @@ public class Entities {
   }
 
   private static <T> T maybeDefinitelyExample( final T example ) throws HibernateException, NoSuchElementException {
+    final Session session = Entities.getTransaction( example ).getTxState( ).getSession( );
+    final RequestEntityCache.Key key = RequestEntityCache.exampleKey( session, example, true );
+    final List<?> cached = RequestEntityCache.lookup( session, key );
+    if ( cached != null ) {
+      @SuppressWarnings( "unchecked" )
+      final T ret = ( T ) cached.get( 0 );
+      return ret;
+    }
     @SuppressWarnings( "unchecked" )
-    final T ret = ( T ) Entities.getTransaction( example )
-                                .getTxState( )
-                                .getSession( )
-                                .createCriteria( example.getClass( ) )
-                                .add( Example.create( example ) )
-                                .setCacheable( true )
-                                .setMaxResults( 1 )
-                                .setFetchSize( 1 )
-                                .setFirstResult( 0 )
-                                .uniqueResult( );
+    final T ret = ( T ) session.createCriteria( example.getClass( ) )
+                               .add( Example.create( example ) )
+                               .setCacheable( true )
+                               .setMaxResults( 1 )
+                               .setFetchSize( 1 )
+                               .setFirstResult( 0 )
+                               .uniqueResult( );
     if ( ret == null ) {
       throw new NoSuchElementException( "example: " + LogUtil.dumpObject( example ) );
     }
+    RequestEntityCache.store( session, key, Collections.singleton( ret ) );
     return ret;
   }
   
   private static <T> T maybeNaturalId( final T example ) throws HibernateException, NoSuchElementException {
     final String natId = ( ( HasNaturalId ) example ).getNaturalId( );
+    final Session session = Entities.getTransaction( example ).getTxState( ).getSession( );
+    final RequestEntityCache.Key key = RequestEntityCache.naturalIdKey( session, example.getClass( ), natId );
+    final List<?> cached = RequestEntityCache.lookup( session, key );
+    if ( cached != null ) {
+      @SuppressWarnings( "unchecked" )
+      final T ret = ( T ) cached.get( 0 );
+      return ret;
+    }
     @SuppressWarnings( "unchecked" )
-    final T ret = ( T ) Entities.getTransaction( example )
-                                .getTxState( )
-                                .getSession( )
-                                .createCriteria( example.getClass( ) )
-                                .add( Restrictions.eq( "naturalId", natId ) )
-                                .setCacheable( true )         
-                                .uniqueResult( );
+    final T ret = ( T ) session.createCriteria( example.getClass( ) )
+                               .add( Restrictions.eq( "naturalId", natId ) )
+                               .setCacheable( true )         
+                               .uniqueResult( );
     if ( ret == null ) {
       throw new NoSuchElementException( "NaturalId: " + natId );
     }
+    RequestEntityCache.store( session, key, Collections.singleton( ret ) );
     return ret;
   }
   
@@ -1101,6 +1120,7 @@ public class Entities {
       for ( final Entry<String,?> entry : parameters.entrySet() ) {
         query.setParameter( entry.getKey(), entry.getValue() );
       }
+      RequestEntityCache.invalidate( deleteClass );
       return query.executeUpdate();
     } catch ( Exception e ) {
       LOG.error( deleteClass, e );
@@ -1108,6 +1128,35 @@ public class Entities {
     }
   }
 
+  /**
+   * Bulk update matching entities for the given class.
+   *
+   * <p>The update bypasses the session so it does not check or increment
+   * entity versions, it is intended for counters and similar columns.</p>
+   *
+   * @param <T> The entity type
+   * @param updateClass The entity class
+   * @param assignmentsAndCondition The SET clause and optional WHERE clause
+   * @param parameters The query parameters
+   * @return The number of updated entities
+   */
+  public static <T> int updateAllMatching( final Class<T> updateClass,
+                                           final String assignmentsAndCondition,
+                                           final Map<String,?> parameters ) {
+    try {
+      final Query query = getTransaction( updateClass ).getTxState().getEntityManager()
+          .createQuery( "UPDATE " + updateClass.getName() + " " + assignmentsAndCondition );
+      for ( final Entry<String,?> entry : parameters.entrySet() ) {
+        query.setParameter( entry.getKey(), entry.getValue() );
+      }
+      RequestEntityCache.invalidate( updateClass );
+      return query.executeUpdate();
+    } catch ( Exception e ) {
+      LOG.error( updateClass, e );
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
   /**
    * Count the matching entities for the given example.
    * 
@@ -1171,6 +1220,7 @@ public class Entities {
    */
   private static class CascadingTx implements EntityTransaction {
     private final TxRecord record;
+    private final TransactionProfiler.Profile profile;
     private TxState        txState;
     
     /**
@@ -1184,8 +1234,10 @@ public class Entities {
     CascadingTx( final String ctx ) throws RecoverablePersistenceException {
       final String uuid = UUID.randomUUID( ).toString( );
       this.record = new TxRecord( ctx, uuid );
+      this.profile = TransactionProfiler.begin( ctx );
       try {
         this.txState = new TxState( ctx );
+        TransactionProfiler.attach( this.profile, this.txState.getSession( ) );
       } catch ( final RuntimeException ex ) {
         Logs.extreme( ).error( ex, ex );
         this.rollback( );
@@ -1251,16 +1303,20 @@ public class Entities {
     @Override
     public void rollback( ) throws RecoverablePersistenceException {
       removeTransaction( this );
-      if ( ( this.txState != null ) && this.txState.isActive( ) ) {
-        try {
-          this.txState.rollback( );
-          this.txState = null;
-        } catch ( final RuntimeException ex ) {
-          Logs.extreme( ).error( ex );
-//          throw PersistenceExceptions.throwFiltered( ex );
+      try {
+        if ( ( this.txState != null ) && this.txState.isActive( ) ) {
+          try {
+            this.txState.rollback( );
+            this.txState = null;
+          } catch ( final RuntimeException ex ) {
+            Logs.extreme( ).error( ex );
+//            throw PersistenceExceptions.throwFiltered( ex );
+          }
+        } else {
+          Logs.extreme( ).debug( "Duplicate call to rollback( )" );
         }
-      } else {
-        Logs.extreme( ).debug( "Duplicate call to rollback( )" );
+      } finally {
+        TransactionProfiler.end( this.profile, false );
       }
     }
     
@@ -1271,14 +1327,20 @@ public class Entities {
     @Override
     public void commit( ) throws RecoverablePersistenceException {
       removeTransaction( this );
-      if ( ( this.txState != null ) && this.txState.isActive( ) ) {
-        try {
-          this.txState.commit( );
-        } catch ( final RuntimeException ex ) {
-          throw PersistenceExceptions.throwFiltered( ex );
+      boolean committed = false;
+      try {
+        if ( ( this.txState != null ) && this.txState.isActive( ) ) {
+          try {
+            this.txState.commit( );
+            committed = true;
+          } catch ( final RuntimeException ex ) {
+            throw PersistenceExceptions.throwFiltered( ex );
+          }
+        } else if ( Logs.isExtrrreeeme( ) ) {
+          Logs.extreme( ).error( "Duplicate call to commit( ): " + Threads.currentStackString( ) );
         }
-      } else if ( Logs.isExtrrreeeme( ) ) {
-        Logs.extreme( ).error( "Duplicate call to commit( ): " + Threads.currentStackString( ) );
+      } finally {
+        TransactionProfiler.end( this.profile, committed );
       }
     }
     
@@ -3087,6 +3149,7 @@ public class Entities {
      * @return The count of entities deleted.
      */
     public int delete( ) {
+      RequestEntityCache.invalidate( context.entityClass );
       return context.em.createQuery( context.delete ).executeUpdate( );
     }
   }
@@ -21,10 +21,13 @@ package com.eucalyptus.entities;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.criterion.Criterion;
@@ -34,6 +37,7 @@ import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -41,17 +45,34 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
 /**
+ * Cache of immutable views of entities, refreshed on each call to get.
  *
+ * In the default mode each refresh loads the id/version projection for all
+ * matching entities to find changes. In incremental mode a refresh loads
+ * only entities updated since the last refresh (by last update timestamp,
+ * with an overlap window to allow for in-flight transactions) and only
+ * loads the id projection when the entity count shows that entities were
+ * removed. A full refresh is still performed periodically.
+ *
+ * The sorted view returned by get is only rebuilt when the cache content
+ * changes.
  */
 public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>> implements Supplier<Iterable<TE>> {
 
   private static final int batchSize = 500;
+  private static final long incrementalOverlapMillis = TimeUnit.MINUTES.toMillis( 2 );
+  private static final long fullRefreshIntervalMillis = TimeUnit.MINUTES.toMillis( 10 );
   private final E example;
   private final Criterion criterion;
   private final Set<String> eagerAssociationPaths;
   private final Set<String> lazyAssociationPaths;
   private final Function<? super E,TE> transformFunction;
-  private final ConcurrentMap<Pair<String,Integer>,TE> cache = Maps.newConcurrentMap( );
+  private final boolean incremental;
+  private final ConcurrentMap<String,Pair<Integer,TE>> cache = Maps.newConcurrentMap( );
+  private final Object refreshLock = new Object( );
+  private volatile ImmutableList<TE> sorted = ImmutableList.of( );
+  private long lastFullRefresh = 0L;
+  private long lastUpdateWatermark = 0L;
 
   /**
    * Create an entity cache for the given example.
@@ -83,67 +104,153 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
                       final Set<String> eagerAssociationPaths,
                       final Set<String> lazyAssociationPaths,
                       final Function<? super E,TE> transformFunction ) {
+    this( example, criterion, eagerAssociationPaths, lazyAssociationPaths, transformFunction, false );
+  }
+
+  /**
+   * Create an entity cache for the given example.
+   *
+   * @param example The example object
+   * @param criterion Additional criterion
+   * @param eagerAssociationPaths Paths to be eagerly loaded
+   * @param lazyAssociationPaths Paths to be lazily (or not) loaded
+   * @param transformFunction Function to transform to immutable cache format
+   * @param incremental True to refresh using entity update timestamps
+   */
+  public EntityCache( final E example,
+                      final Criterion criterion,
+                      final Set<String> eagerAssociationPaths,
+                      final Set<String> lazyAssociationPaths,
+                      final Function<? super E,TE> transformFunction,
+                      final boolean incremental ) {
     this.example = example;
     this.criterion = criterion;
     this.eagerAssociationPaths = eagerAssociationPaths;
     this.lazyAssociationPaths = lazyAssociationPaths;
     this.transformFunction = transformFunction;
+    this.incremental = incremental;
+  }
+
+  private Criteria criteria( ) {
+    return Entities.createCriteria( example.getClass( ) )
+        .add( Example.create( example ) )
+        .add( criterion );
   }
 
   @SuppressWarnings( "unchecked" )
-  private Collection<Pair<String,Integer>> loadVersionMap( ) {
+  private Map<String,Integer> loadVersionMap( final Date updatedSince ) {
     try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ){
-      final Criteria criteria = Entities.createCriteria( example.getClass( ) )
-          .add( Example.create( example ) )
-          .add( criterion )
+      final Criteria criteria = criteria( )
           .setProjection( Projections.projectionList( )
               .add( Projections.property( "id" ) )
-              .add( Projections.property( "version" ) ) );
+              .add( Projections.property( "version" ) )
+              .add( Projections.property( "lastUpdateTimestamp" ) ) );
+      if ( updatedSince != null ) {
+        criteria.add( Restrictions.ge( "lastUpdateTimestamp", updatedSince ) );
+      }
       final List<Object[]> idVersionList = (List<Object[]>) criteria.list( );
-      final Set<Pair<String,Integer>> results = Sets.newLinkedHashSetWithExpectedSize( idVersionList.size( ) );
-      Iterables.addAll( results, Iterables.transform( idVersionList, ObjectArrayToStringIntPair.INSTANCE ) );
+      final Map<String,Integer> results = Maps.newLinkedHashMap( );
+      for ( final Object[] idVersion : idVersionList ) {
+        results.put( String.valueOf( idVersion[ 0 ] ), ( (Number) idVersion[ 1 ] ).intValue( ) );
+        if ( idVersion[ 2 ] != null ) {
+          lastUpdateWatermark = Math.max( lastUpdateWatermark, ( (Date) idVersion[ 2 ] ).getTime( ) );
+        }
+      }
       return results;
     }
   }
 
+  @SuppressWarnings( "unchecked" )
+  private Set<String> loadIds( ) {
+    try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ){
+      final List<Object> idList = (List<Object>) criteria( )
+          .setProjection( Projections.property( "id" ) )
+          .list( );
+      final Set<String> results = Sets.newHashSetWithExpectedSize( idList.size( ) );
+      for ( final Object id : idList ) {
+        results.add( String.valueOf( id ) );
+      }
+      return results;
+    }
+  }
+
+  private long count( ) {
+    try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ){
+      return ( (Number) criteria( ).setProjection( Projections.rowCount( ) ).uniqueResult( ) ).longValue( );
+    }
+  }
+
+  /**
+   * Load any changed entities.
+   *
+   * @param currentVersions The current versions for (at least) all changed entities
+   * @return True if any entities were loaded
+   */
   @SuppressWarnings( { "unchecked", "ConstantConditions" } )
-  private void refresh( ) {
-    final Collection<Pair<String,Integer>> currentKeys = loadVersionMap( );
-    cache.keySet( ).retainAll( currentKeys );
-    currentKeys.removeAll( cache.keySet( ) );
-    for ( final List<Pair<String,Integer>> keyBatch : Iterables.partition( currentKeys, batchSize ) ) {
+  private boolean load( final Map<String,Integer> currentVersions ) {
+    final List<String> changedIds = Lists.newArrayList( );
+    for ( final Map.Entry<String,Integer> idVersion : currentVersions.entrySet( ) ) {
+      final Pair<Integer,TE> cached = cache.get( idVersion.getKey( ) );
+      if ( cached == null || !cached.getLeft( ).equals( idVersion.getValue( ) ) ) {
+        changedIds.add( idVersion.getKey( ) );
+      }
+    }
+    for ( final List<String> idBatch : Iterables.partition( changedIds, batchSize ) ) {
       try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
-        final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
-            .add( Example.create( example ) )
-            .add( criterion )
+        final Criteria criteria = criteria( )
             .setFetchSize( batchSize )
-            .add( Restrictions.in( "id", Lists.newArrayList( Iterables.transform( keyBatch, Pair.<String, Integer>left( ) ) ) ) );
+            .add( Restrictions.in( "id", idBatch ) );
         for ( final String path : eagerAssociationPaths ) criteria.setFetchMode( path, FetchMode.JOIN );
         for ( final String path : lazyAssociationPaths ) criteria.setFetchMode( path, FetchMode.SELECT );
         final List<E> entities = (List<E> ) criteria.list( );
         for ( final E entity : entities ) {
-          cache.put( Pair.pair( getId( entity ), entity.getVersion( ) ), transformFunction.apply( entity ) );
+          cache.put( getId( entity ), Pair.pair( entity.getVersion( ), transformFunction.apply( entity ) ) );
         }
       }
     }
+    return !changedIds.isEmpty( );
+  }
+
+  private boolean fullRefresh( ) {
+    final Map<String,Integer> currentVersions = loadVersionMap( null );
+    final boolean removed = cache.keySet( ).retainAll( currentVersions.keySet( ) );
+    return load( currentVersions ) || removed;
+  }
+
+  private boolean incrementalRefresh( ) {
+    final Map<String,Integer> changedVersions =
+        loadVersionMap( new Date( lastUpdateWatermark - incrementalOverlapMillis ) );
+    boolean changed = load( changedVersions );
+    if ( count( ) != cache.size( ) ) {
+      changed = cache.keySet( ).retainAll( loadIds( ) ) || changed;
+    }
+    return changed;
+  }
+
+  private void refresh( ) {
+    synchronized ( refreshLock ) {
+      final long now = System.currentTimeMillis( );
+      final boolean changed;
+      if ( !incremental || ( now - lastFullRefresh ) > fullRefreshIntervalMillis ) {
+        changed = fullRefresh( );
+        lastFullRefresh = now;
+      } else {
+        changed = incrementalRefresh( );
+      }
+      if ( changed ) {
+        sorted = Ordering.natural( ).immutableSortedCopy(
+            Iterables.transform( cache.values( ), Pair.<Integer,TE>right( ) ) );
+      }
+    }
   }
 
   @Override
   public Iterable<TE> get( ) {
     refresh( );
-    return Ordering.natural( ).sortedCopy( cache.values( ) );
+    return sorted;
   }
 
   private String getId( final E entity ) {
     return Objects.toString( Entities.resolvePrimaryKey( entity ) );
   }
-
-  private enum ObjectArrayToStringIntPair implements Function<Object[],Pair<String,Integer>> {
-    INSTANCE;
-
-    @Override
-    public Pair<String, Integer> apply( final Object[] objects ) {
-      return Pair.pair( String.valueOf( objects[ 0 ] ), ( (Number) objects[ 1 ] ).intValue() );
-    }
-  }
 }
@@ -0,0 +1,368 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import com.eucalyptus.bootstrap.Hosts;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Local second level cache regions for entities annotated with {@link CachedEntity}.
+ *
+ * <p>Regions are bounded and local to the host. Changes to cached entities
+ * are recorded as a per-region version that is published in this host's
+ * membership entry. When a remote host publishes a new version for a region
+ * the local region is invalidated.</p>
+ *
+ * <p>Loads that started before the last invalidation of a region are not
+ * cached, so an entity loaded concurrently with a change is read from the
+ * database again on next use.</p>
+ */
+public class EntityCacheRegions {
+  private static final Logger LOG = Logger.getLogger( EntityCacheRegions.class );
+  private static final long STATISTICS_INTERVAL = TimeUnit.MINUTES.toMillis( 5 );
+
+  private static final ConcurrentMap<String, CachedEntity> configurations = Maps.newConcurrentMap( );
+  private static final ConcurrentMap<String, CacheRegion> regions = Maps.newConcurrentMap( );
+  private static final AtomicLong version = new AtomicLong( 0 );
+  private static final ConcurrentMap<String, Long> localVersions = Maps.newConcurrentMap( );
+  private static final ConcurrentMap<String, Map<String, Long>> remoteVersions = Maps.newConcurrentMap( );
+
+  /**
+   * Is the given class configured for caching.
+   *
+   * <p>The annotation is not inherited, only root entity classes can be cached.</p>
+   */
+  public static boolean isCached( final Class<?> entityClass ) {
+    return entityClass.isAnnotationPresent( CachedEntity.class );
+  }
+
+  /**
+   * Are any of the given classes configured for caching.
+   */
+  public static boolean isCaching( final Iterable<Class<?>> entityClasses ) {
+    for ( final Class<?> entityClass : entityClasses ) {
+      if ( isCached( entityClass ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Register a cached entity class, returns the caching configuration.
+   */
+  public static CachedEntity register( final Class<?> entityClass ) {
+    final CachedEntity cachedEntity = entityClass.getAnnotation( CachedEntity.class );
+    if ( cachedEntity == null ) {
+      throw new IllegalArgumentException( "Entity not configured for caching: " + entityClass.getName( ) );
+    }
+    configurations.put( entityClass.getName( ), cachedEntity );
+    return cachedEntity;
+  }
+
+  /**
+   * Get the region with the given name, null if not configured for caching.
+   */
+  @Nullable
+  public static CacheRegion region( final String name ) {
+    CacheRegion region = regions.get( name );
+    if ( region == null ) {
+      final CachedEntity cachedEntity = configurations.get( name );
+      if ( cachedEntity != null ) {
+        final CacheRegion newRegion = new CacheRegion( name, cachedEntity, Ticker.systemTicker( ) );
+        region = Objects.firstNonNull( regions.putIfAbsent( name, newRegion ), newRegion );
+      }
+    }
+    return region;
+  }
+
+  /**
+   * Discard the given region.
+   */
+  public static void destroy( final CacheRegion region ) {
+    region.evictAll( );
+    regions.remove( region.getName( ), region );
+  }
+
+  /**
+   * Observe the region versions published by a remote host.
+   *
+   * <p>The first versions observed for a host invalidate each region listed,
+   * as changes may have been made before the host was observed.</p>
+   */
+  public static void observe( final String host, @Nullable final Map<String, Long> versions ) {
+    if ( versions == null ) {
+      return;
+    }
+    final Map<String, Long> previous = remoteVersions.put( host, versions );
+    for ( final Map.Entry<String, Long> entry : versions.entrySet( ) ) {
+      if ( previous == null || !entry.getValue( ).equals( previous.get( entry.getKey( ) ) ) ) {
+        final CacheRegion region = regions.get( entry.getKey( ) );
+        if ( region != null ) {
+          region.invalidateRemote( );
+          LOG.debug( "Entity cache region " + entry.getKey( ) + " invalidated by " + host );
+        }
+      }
+    }
+  }
+
+  /**
+   * Versions of regions with changes made on this host.
+   */
+  public static Map<String, Long> getVersions( ) {
+    return ImmutableMap.copyOf( localVersions );
+  }
+
+  /**
+   * Statistics for all regions, by region name.
+   */
+  public static Map<String, Statistics> getStatistics( ) {
+    final ImmutableSortedMap.Builder<String, Statistics> statistics = ImmutableSortedMap.naturalOrder( );
+    for ( final CacheRegion region : regions.values( ) ) {
+      statistics.put( region.getName( ), region.getStatistics( ) );
+    }
+    return statistics.build( );
+  }
+
+  private static void changed( final CacheRegion region ) {
+    localVersions.put( region.getName( ), version.incrementAndGet( ) );
+    Hosts.requestLocalHostUpdate( );
+  }
+
+  /**
+   * A bounded, local cache region.
+   */
+  public static final class CacheRegion {
+    private final String name;
+    private final CachedEntity.Usage usage;
+    private final Cache<Object, Object> cache;
+    private final AtomicLong invalidations = new AtomicLong( 0 );
+    private final AtomicLong remoteInvalidations = new AtomicLong( 0 );
+    private volatile long invalidated;
+
+    CacheRegion( final String name,
+                 final CachedEntity cachedEntity,
+                 final Ticker ticker ) {
+      this.name = name;
+      this.usage = cachedEntity.value( );
+      this.cache = CacheBuilder.newBuilder( )
+          .maximumSize( cachedEntity.maxEntries( ) )
+          .expireAfterWrite( cachedEntity.expirySeconds( ), TimeUnit.SECONDS )
+          .ticker( ticker )
+          .recordStats( )
+          .build( );
+      this.invalidated = now( );
+    }
+
+    public String getName( ) {
+      return name;
+    }
+
+    public CachedEntity.Usage getUsage( ) {
+      return usage;
+    }
+
+    @Nullable
+    public Object get( final Object key ) {
+      return cache.getIfPresent( key );
+    }
+
+    public boolean contains( final Object key ) {
+      return cache.asMap( ).containsKey( key );
+    }
+
+    /**
+     * Cache a value loaded from the database.
+     *
+     * @param key The cache key
+     * @param value The value to cache
+     * @param timestamp The timestamp (millis) when the load started
+     * @param minimalPut True to skip caching if a value is present
+     * @return True if the value was cached
+     */
+    public boolean put( final Object key, final Object value, final long timestamp, final boolean minimalPut ) {
+      if ( timestamp <= invalidated ) {
+        return false;
+      } else if ( minimalPut && contains( key ) ) {
+        return false;
+      } else {
+        cache.put( key, value );
+        return true;
+      }
+    }
+
+    /**
+     * Evict a value without publishing a change.
+     */
+    public void evict( final Object key ) {
+      cache.invalidate( key );
+    }
+
+    /**
+     * Evict all values without publishing a change.
+     */
+    public void evictAll( ) {
+      cache.invalidateAll( );
+    }
+
+    /**
+     * Invalidate a value that was changed on this host.
+     */
+    public void invalidate( final Object key ) {
+      invalidated = now( );
+      cache.invalidate( key );
+      invalidations.incrementAndGet( );
+      changed( this );
+    }
+
+    /**
+     * Invalidate all values due to a change on this host.
+     */
+    public void invalidateAll( ) {
+      invalidated = now( );
+      cache.invalidateAll( );
+      invalidations.incrementAndGet( );
+      changed( this );
+    }
+
+    void invalidateRemote( ) {
+      invalidated = now( );
+      cache.invalidateAll( );
+      remoteInvalidations.incrementAndGet( );
+    }
+
+    public long size( ) {
+      return cache.size( );
+    }
+
+    public Map<Object, Object> asMap( ) {
+      return ImmutableMap.copyOf( cache.asMap( ) );
+    }
+
+    public Statistics getStatistics( ) {
+      return new Statistics( cache.stats( ), cache.size( ), invalidations.get( ), remoteInvalidations.get( ) );
+    }
+
+    private static long now( ) {
+      return System.currentTimeMillis( );
+    }
+  }
+
+  public static final class Statistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+    private final long invalidations;
+    private final long remoteInvalidations;
+
+    private Statistics( final CacheStats stats,
+                        final long size,
+                        final long invalidations,
+                        final long remoteInvalidations ) {
+      this.hits = stats.hitCount( );
+      this.misses = stats.missCount( );
+      this.evictions = stats.evictionCount( );
+      this.size = size;
+      this.invalidations = invalidations;
+      this.remoteInvalidations = remoteInvalidations;
+    }
+
+    public long getHits( ) {
+      return hits;
+    }
+
+    public long getMisses( ) {
+      return misses;
+    }
+
+    /**
+     * Entities evicted due to the size or expiry bounds.
+     */
+    public long getEvictions( ) {
+      return evictions;
+    }
+
+    public long getSize( ) {
+      return size;
+    }
+
+    /**
+     * Invalidations due to changes on this host.
+     */
+    public long getInvalidations( ) {
+      return invalidations;
+    }
+
+    /**
+     * Invalidations due to changes on other hosts.
+     */
+    public long getRemoteInvalidations( ) {
+      return remoteInvalidations;
+    }
+
+    @Override
+    public String toString( ) {
+      return Objects.toStringHelper( this )
+          .add( "hits", hits )
+          .add( "misses", misses )
+          .add( "evictions", evictions )
+          .add( "size", size )
+          .add( "invalidations", invalidations )
+          .add( "remoteInvalidations", remoteInvalidations )
+          .toString( );
+    }
+  }
+
+  public static class EntityCacheStatisticsEventListener implements EventListener<ClockTick> {
+    private static final AtomicLong lastLogged = new AtomicLong( System.currentTimeMillis( ) );
+
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new EntityCacheStatisticsEventListener( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      final long now = System.currentTimeMillis( );
+      final long last = lastLogged.get( );
+      if ( LOG.isDebugEnabled( ) && last + STATISTICS_INTERVAL < now && lastLogged.compareAndSet( last, now ) ) {
+        for ( final Map.Entry<String, Statistics> entry : getStatistics( ).entrySet( ) ) {
+          LOG.debug( "Entity cache region " + entry.getKey( ) + " " + entry.getValue( ) );
+        }
+      }
+    }
+  }
+}
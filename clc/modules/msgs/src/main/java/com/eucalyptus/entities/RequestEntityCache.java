@@ -0,0 +1,419 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.Type;
+import com.eucalyptus.context.Contexts;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Request scoped cache for lookups of entities annotated with
+ * {@link RequestCachedEntity}.
+ *
+ * <p>The identifiers of the entities found by a unique example or natural id
+ * lookup are retained for the request. Repeating the lookup in a later
+ * transaction loads the entity by identifier, and the result is only used if
+ * the entity still matches the lookup, so changes made while handling the
+ * request are visible. Writes to an entity type while handling the request
+ * discard lookups for the type so that new matches are found. Example
+ * lookups listing all matches are only retained for second level cached
+ * entities, as otherwise each entity would be loaded with a statement.</p>
+ *
+ * <p>Retained lookups are not used when the session has unflushed changes,
+ * the lookup is then performed as a query so that pending changes are
+ * flushed and matched.</p>
+ *
+ * <p>Statements executed while handling a request are counted and recorded by
+ * operation when the request completes.</p>
+ *
+ * @see Contexts#lookupEntityCache()
+ */
+public class RequestEntityCache {
+  private static final Logger LOG = Logger.getLogger( RequestEntityCache.class );
+  private static final long STATISTICS_INTERVAL = TimeUnit.MINUTES.toMillis( 5 );
+  private static final String NATURAL_ID = "naturalId";
+  private static final ConcurrentMap<String, Counters> operations = Maps.newConcurrentMap( );
+
+  private final ConcurrentMap<Key, List<Serializable>> lookups = Maps.newConcurrentMap( );
+  private final AtomicInteger statements = new AtomicInteger( );
+  private final AtomicInteger hits = new AtomicInteger( );
+  private final AtomicInteger misses = new AtomicInteger( );
+
+  /**
+   * Is the given class configured for request caching.
+   */
+  public static boolean isCached( final Class<?> entityClass ) {
+    return entityClass.isAnnotationPresent( RequestCachedEntity.class );
+  }
+
+  /**
+   * Get the key for an example lookup.
+   *
+   * <p>As for an example query, null valued, version and association
+   * properties are not part of the key. Examples with component values are
+   * not cached.</p>
+   *
+   * <p>A unique lookup retains only the first match so unique and list
+   * lookups for the same example have distinct keys. List lookups are only
+   * cached for second level cached entities.</p>
+   *
+   * @param unique True for a unique result lookup, false to list all matches
+   * @return The key or null if the lookup is not cached
+   */
+  @Nullable
+  static Key exampleKey( final Session session, final Object example, final boolean unique ) {
+    final ClassMetadata metadata = metadata( session, example.getClass( ) );
+    if ( metadata == null || ( !unique && !isSecondLevelCached( session, example.getClass( ) ) ) ) {
+      return null;
+    }
+    final String[] names = metadata.getPropertyNames( );
+    final Type[] types = metadata.getPropertyTypes( );
+    final ImmutableList.Builder<String> keyNames = ImmutableList.builder( );
+    final ImmutableList.Builder<Object> keyValues = ImmutableList.builder( );
+    for ( int i = 0; i < names.length; i++ ) {
+      if ( i == metadata.getVersionProperty( ) || types[ i ].isAssociationType( ) ) {
+        continue;
+      }
+      final Object value = metadata.getPropertyValue( example, names[ i ] );
+      if ( value != null ) {
+        if ( types[ i ].isComponentType( ) ) {
+          return null;
+        }
+        keyNames.add( names[ i ] );
+        keyValues.add( value );
+      }
+    }
+    return new Key( example.getClass( ), unique, keyNames.build( ), keyValues.build( ) );
+  }
+
+  /**
+   * Get the key for a natural id lookup.
+   *
+   * @return The key or null if the lookup is not cached
+   */
+  @Nullable
+  static Key naturalIdKey( final Session session, final Class<?> entityClass, final String naturalId ) {
+    final ClassMetadata metadata = metadata( session, entityClass );
+    if ( metadata == null || !Arrays.asList( metadata.getPropertyNames( ) ).contains( NATURAL_ID ) ) {
+      return null;
+    }
+    return new Key( entityClass, true, ImmutableList.of( NATURAL_ID ), ImmutableList.<Object>of( naturalId ) );
+  }
+
+  /**
+   * Lookup entities for the key in the given session.
+   *
+   * @param session The session for the current transaction
+   * @param key The lookup key
+   * @return The entities or null if not cached or the session has unflushed changes
+   */
+  @Nullable
+  static List<Object> lookup( final Session session, @Nullable final Key key ) {
+    final RequestEntityCache cache = key == null ? null : current( );
+    if ( cache == null ) {
+      return null;
+    }
+    final List<Serializable> identifiers = cache.lookups.get( key );
+    if ( identifiers != null && !session.isDirty( ) ) {
+      final ClassMetadata metadata = session.getSessionFactory( ).getClassMetadata( key.entityClass );
+      final List<Object> entities = Lists.newArrayListWithCapacity( identifiers.size( ) );
+      for ( final Serializable identifier : identifiers ) {
+        final Object entity = session.get( key.entityClass, identifier );
+        if ( entity == null || !key.matches( metadata, entity ) ) {
+          cache.lookups.remove( key, identifiers );
+          break;
+        }
+        entities.add( entity );
+      }
+      if ( entities.size( ) == identifiers.size( ) ) {
+        cache.hits.incrementAndGet( );
+        return entities;
+      }
+    }
+    cache.misses.incrementAndGet( );
+    return null;
+  }
+
+  /**
+   * Store the result of a lookup, empty results are not stored.
+   *
+   * @param session The session the entities were loaded with
+   * @param key The lookup key
+   * @param entities The entities found
+   */
+  static void store( final Session session, @Nullable final Key key, final Collection<?> entities ) {
+    final RequestEntityCache cache = key == null ? null : current( );
+    if ( cache != null && !entities.isEmpty( ) ) {
+      final ImmutableList.Builder<Serializable> identifiers = ImmutableList.builder( );
+      for ( final Object entity : entities ) {
+        identifiers.add( session.getIdentifier( entity ) );
+      }
+      cache.lookups.put( key, identifiers.build( ) );
+    }
+  }
+
+  /**
+   * Discard lookups affected by a write to the given entity type.
+   */
+  static void invalidate( final Class<?> entityClass ) {
+    final RequestEntityCache cache = current( );
+    if ( cache != null && !cache.lookups.isEmpty( ) ) {
+      for ( final Key key : cache.lookups.keySet( ) ) {
+        if ( key.entityClass.isAssignableFrom( entityClass ) || entityClass.isAssignableFrom( key.entityClass ) ) {
+          cache.lookups.remove( key );
+        }
+      }
+    }
+  }
+
+  /**
+   * Count a statement for the current request.
+   */
+  static void statement( ) {
+    final RequestEntityCache cache = current( );
+    if ( cache != null ) {
+      cache.statements.incrementAndGet( );
+    }
+  }
+
+  public int getStatements( ) {
+    return statements.get( );
+  }
+
+  public int getHits( ) {
+    return hits.get( );
+  }
+
+  public int getMisses( ) {
+    return misses.get( );
+  }
+
+  /**
+   * Record statistics for the completed request.
+   *
+   * @param operation The operation for the request
+   */
+  public void complete( final String operation ) {
+    Counters counters = operations.get( operation );
+    if ( counters == null ) {
+      final Counters newCounters = new Counters( );
+      counters = Objects.firstNonNull( operations.putIfAbsent( operation, newCounters ), newCounters );
+    }
+    counters.record( this );
+    lookups.clear( );
+    if ( LOG.isTraceEnabled( ) ) {
+      LOG.trace( operation + " statements " + getStatements( ) + " lookup hits " + getHits( ) + " misses " + getMisses( ) );
+    }
+  }
+
+  /**
+   * Statistics for all operations, by operation name.
+   */
+  public static Map<String, Statistics> getStatistics( ) {
+    final ImmutableSortedMap.Builder<String, Statistics> statistics = ImmutableSortedMap.naturalOrder( );
+    for ( final Map.Entry<String, Counters> entry : operations.entrySet( ) ) {
+      statistics.put( entry.getKey( ), entry.getValue( ).snapshot( ) );
+    }
+    return statistics.build( );
+  }
+
+  @Nullable
+  private static RequestEntityCache current( ) {
+    return Contexts.lookupEntityCache( );
+  }
+
+  private static boolean isSecondLevelCached( final Session session, final Class<?> entityClass ) {
+    return session instanceof SessionImplementor &&
+        ( (SessionImplementor) session ).getFactory( ).getEntityPersister( entityClass.getName( ) ).hasCache( );
+  }
+
+  @Nullable
+  private static ClassMetadata metadata( final Session session, final Class<?> entityClass ) {
+    return isCached( entityClass ) && current( ) != null ?
+        session.getSessionFactory( ).getClassMetadata( entityClass ) :
+        null;
+  }
+
+  static final class Key {
+    private final Class<?> entityClass;
+    private final boolean unique;
+    private final List<String> names;
+    private final List<Object> values;
+
+    private Key( final Class<?> entityClass, final boolean unique, final List<String> names, final List<Object> values ) {
+      this.entityClass = entityClass;
+      this.unique = unique;
+      this.names = names;
+      this.values = values;
+    }
+
+    private boolean matches( final ClassMetadata metadata, final Object entity ) {
+      final Object implementation = entity instanceof HibernateProxy ?
+          ( ( HibernateProxy ) entity ).getHibernateLazyInitializer( ).getImplementation( ) :
+          entity;
+      try {
+        for ( int i = 0; i < names.size( ); i++ ) {
+          if ( !values.get( i ).equals( metadata.getPropertyValue( implementation, names.get( i ) ) ) ) {
+            return false;
+          }
+        }
+        return true;
+      } catch ( final HibernateException e ) {
+        return false;
+      }
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final Key key = (Key) o;
+      return unique == key.unique &&
+          entityClass.equals( key.entityClass ) && names.equals( key.names ) && values.equals( key.values );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( entityClass, unique, names, values );
+    }
+  }
+
+  private static final class Counters {
+    private final LongAdder requests = new LongAdder( );
+    private final LongAdder statements = new LongAdder( );
+    private final LongAccumulator maxStatements = new LongAccumulator( Math::max, 0 );
+    private final LongAdder hits = new LongAdder( );
+    private final LongAdder misses = new LongAdder( );
+
+    private void record( final RequestEntityCache cache ) {
+      requests.increment( );
+      statements.add( cache.getStatements( ) );
+      maxStatements.accumulate( cache.getStatements( ) );
+      hits.add( cache.getHits( ) );
+      misses.add( cache.getMisses( ) );
+    }
+
+    private Statistics snapshot( ) {
+      return new Statistics( requests.sum( ), statements.sum( ), maxStatements.get( ), hits.sum( ), misses.sum( ) );
+    }
+  }
+
+  public static final class Statistics {
+    private final long requests;
+    private final long statements;
+    private final long maxStatements;
+    private final long hits;
+    private final long misses;
+
+    private Statistics( final long requests,
+                        final long statements,
+                        final long maxStatements,
+                        final long hits,
+                        final long misses ) {
+      this.requests = requests;
+      this.statements = statements;
+      this.maxStatements = maxStatements;
+      this.hits = hits;
+      this.misses = misses;
+    }
+
+    public long getRequests( ) {
+      return requests;
+    }
+
+    public long getStatements( ) {
+      return statements;
+    }
+
+    public long getMaxStatements( ) {
+      return maxStatements;
+    }
+
+    public double getStatementsPerRequest( ) {
+      return requests == 0 ? 0 : (double) statements / requests;
+    }
+
+    /**
+     * Lookups served from the request cache.
+     */
+    public long getHits( ) {
+      return hits;
+    }
+
+    public long getMisses( ) {
+      return misses;
+    }
+
+    @Override
+    public String toString( ) {
+      return Objects.toStringHelper( this )
+          .add( "requests", requests )
+          .add( "statementsPerRequest", String.format( "%.1f", getStatementsPerRequest( ) ) )
+          .add( "maxStatements", maxStatements )
+          .add( "hits", hits )
+          .add( "misses", misses )
+          .toString( );
+    }
+  }
+
+  public static class RequestStatisticsEventListener implements EventListener<ClockTick> {
+    private static final AtomicLong lastLogged = new AtomicLong( System.currentTimeMillis( ) );
+
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new RequestStatisticsEventListener( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      final long now = System.currentTimeMillis( );
+      final long last = lastLogged.get( );
+      if ( LOG.isDebugEnabled( ) && last + STATISTICS_INTERVAL < now && lastLogged.compareAndSet( last, now ) ) {
+        for ( final Map.Entry<String, Statistics> entry : getStatistics( ).entrySet( ) ) {
+          LOG.debug( "Request statements for " + entry.getKey( ) + " " + entry.getValue( ) );
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,557 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
+import com.eucalyptus.context.Contexts;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Profiler for database transactions.
+ *
+ * <p>When enabled, each transaction is attributed to the action for the
+ * request being handled or, for background work, to the name of the thread.
+ * Transaction counts, durations, connection wait and statement execution
+ * time, statement counts and rows loaded are recorded by attribution, and
+ * transactions exceeding the slow transaction threshold are sampled with
+ * their statements.</p>
+ *
+ * <p>Statements and loads are reported by the session interceptor and apply
+ * to the innermost transaction active on the current thread.</p>
+ */
+@ConfigurableClass( root = "bootstrap.tx",
+                    description = "Parameters controlling transaction profiling." )
+public class TransactionProfiler {
+  private static final Logger LOG = Logger.getLogger( TransactionProfiler.class );
+  private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+  private static final int MAX_ACTIVE = 32;
+  private static final int MAX_STATEMENTS_SAMPLED = 50;
+  private static final int MAX_SLOW_SAMPLES = 25;
+  private static final Pattern THREAD_NUMBERING = Pattern.compile( "[-#.:]?[0-9]+" );
+  private static final ConcurrentMap<String, Attribution> attributions = Maps.newConcurrentMap( );
+  private static final ConcurrentLinkedDeque<SlowTransaction> slowTransactions = new ConcurrentLinkedDeque<>( );
+  private static final ThreadLocal<Deque<Profile>> active = new ThreadLocal<Deque<Profile>>( ) {
+    @Override
+    protected Deque<Profile> initialValue( ) {
+      return new ArrayDeque<>( );
+    }
+  };
+
+  @ConfigurableField( description = "Enable profiling of database transactions by operation.",
+                      initial = "false",
+                      changeListener = PropertyChangeListeners.IsBoolean.class )
+  public static volatile Boolean PROFILING_ENABLED = false;
+
+  @ConfigurableField( description = "Duration in milliseconds after which a profiled transaction is sampled as slow.",
+                      initial = "1000",
+                      changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer SLOW_TRANSACTION_THRESHOLD = 1000;
+
+  /**
+   * Start profiling a transaction.
+   *
+   * @param persistenceContext The persistence context for the transaction
+   * @return The profile or null if profiling is not enabled
+   */
+  @Nullable
+  static Profile begin( final String persistenceContext ) {
+    if ( !PROFILING_ENABLED ) {
+      return null;
+    }
+    final Profile profile = new Profile( persistenceContext, attribution( Contexts.lookupAction( ), Thread.currentThread( ).getName( ) ) );
+    final Deque<Profile> profiles = active.get( );
+    if ( profiles.size( ) >= MAX_ACTIVE ) {
+      profiles.removeFirst( );
+    }
+    profiles.addLast( profile );
+    return profile;
+  }
+
+  /**
+   * Attach the profile to the session for the transaction.
+   */
+  static void attach( @Nullable final Profile profile, @Nullable final Session session ) {
+    if ( profile != null && session != null ) {
+      session.addEventListeners( profile );
+    }
+  }
+
+  /**
+   * Complete profiling of a transaction, later calls have no effect.
+   *
+   * @param profile The profile, may be null
+   * @param committed True if the transaction was committed
+   */
+  static void end( @Nullable final Profile profile, final boolean committed ) {
+    if ( profile != null && !profile.ended ) {
+      profile.ended = true;
+      active.get( ).remove( profile );
+      final long nanos = System.nanoTime( ) - profile.startNanos;
+      Attribution attribution = attributions.get( profile.key );
+      if ( attribution == null ) {
+        final Attribution newAttribution = new Attribution( );
+        attribution = Objects.firstNonNull( attributions.putIfAbsent( profile.key, newAttribution ), newAttribution );
+      }
+      attribution.record( profile, committed, nanos );
+      final long millis = TimeUnit.NANOSECONDS.toMillis( nanos );
+      if ( millis >= SLOW_TRANSACTION_THRESHOLD ) {
+        attribution.slow.increment( );
+        final SlowTransaction slowTransaction = new SlowTransaction( profile, committed, millis );
+        slowTransactions.addFirst( slowTransaction );
+        while ( slowTransactions.size( ) > MAX_SLOW_SAMPLES ) {
+          slowTransactions.pollLast( );
+        }
+        if ( LOG.isDebugEnabled( ) ) {
+          LOG.debug( "Slow transaction " + slowTransaction );
+        }
+      }
+    }
+  }
+
+  /**
+   * Record a statement for the current transaction.
+   */
+  static void statement( final String sql ) {
+    if ( PROFILING_ENABLED ) {
+      final Profile profile = active.get( ).peekLast( );
+      if ( profile != null ) {
+        profile.statements++;
+        if ( profile.sql.size( ) < MAX_STATEMENTS_SAMPLED ) {
+          profile.sql.add( sql );
+        }
+      }
+    }
+  }
+
+  /**
+   * Record an entity loaded by the current transaction.
+   */
+  static void loaded( ) {
+    if ( PROFILING_ENABLED ) {
+      final Profile profile = active.get( ).peekLast( );
+      if ( profile != null ) {
+        profile.rows++;
+      }
+    }
+  }
+
+  /**
+   * Key for transactions by the given action or thread.
+   *
+   * <p>Numbering is removed from thread names so that the threads of a pool
+   * share a key.</p>
+   */
+  static String attribution( final Optional<String> action, final String threadName ) {
+    return action.isPresent( ) ?
+        action.get( ) :
+        "Thread." + THREAD_NUMBERING.matcher( threadName ).replaceAll( "" );
+  }
+
+  /**
+   * Statistics for all attributions, by attribution.
+   */
+  public static Map<String, Statistics> getStatistics( ) {
+    final ImmutableSortedMap.Builder<String, Statistics> statistics = ImmutableSortedMap.naturalOrder( );
+    for ( final Map.Entry<String, Attribution> entry : attributions.entrySet( ) ) {
+      statistics.put( entry.getKey( ), entry.getValue( ).snapshot( ) );
+    }
+    return statistics.build( );
+  }
+
+  /**
+   * Recent slow transactions, most recent first.
+   */
+  public static List<SlowTransaction> getSlowTransactions( ) {
+    return ImmutableList.copyOf( slowTransactions );
+  }
+
+  public static void reset( ) {
+    attributions.clear( );
+    slowTransactions.clear( );
+  }
+
+  /**
+   * Profile for a single transaction, accessed by the owning thread only.
+   */
+  static final class Profile extends BaseSessionEventListener {
+    private static final long serialVersionUID = 1L;
+    private final String persistenceContext;
+    private final String key;
+    private final long startNanos = System.nanoTime( );
+    private final List<String> sql = Lists.newArrayList( );
+    private long connectionWaitNanos;
+    private long statementNanos;
+    private long statements;
+    private long rows;
+    private long mark;
+    private boolean ended;
+
+    private Profile( final String persistenceContext, final String key ) {
+      this.persistenceContext = persistenceContext;
+      this.key = key;
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionStart( ) {
+      mark = System.nanoTime( );
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd( ) {
+      connectionWaitNanos += System.nanoTime( ) - mark;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart( ) {
+      mark = System.nanoTime( );
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd( ) {
+      statementNanos += System.nanoTime( ) - mark;
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart( ) {
+      mark = System.nanoTime( );
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd( ) {
+      statementNanos += System.nanoTime( ) - mark;
+    }
+  }
+
+  private static final class Attribution {
+    private final LongAdder transactions = new LongAdder( );
+    private final LongAdder rollbacks = new LongAdder( );
+    private final LongAdder slow = new LongAdder( );
+    private final LongAdder nanos = new LongAdder( );
+    private final LongAccumulator maxNanos = new LongAccumulator( Math::max, 0 );
+    private final LongAdder connectionWaitNanos = new LongAdder( );
+    private final LongAdder statementNanos = new LongAdder( );
+    private final LongAdder statements = new LongAdder( );
+    private final LongAdder rows = new LongAdder( );
+    private volatile Window current = new Window( System.currentTimeMillis( ) );
+    private volatile Window previous = current;
+
+    private void record( final Profile profile, final boolean committed, final long nanos ) {
+      transactions.increment( );
+      if ( !committed ) rollbacks.increment( );
+      this.nanos.add( nanos );
+      maxNanos.accumulate( nanos );
+      connectionWaitNanos.add( profile.connectionWaitNanos );
+      statementNanos.add( profile.statementNanos );
+      statements.add( profile.statements );
+      rows.add( profile.rows );
+      window( ).histogram.record( TimeUnit.NANOSECONDS.toMillis( nanos ) );
+    }
+
+    /**
+     * Current window, rolled over when older than the window length.
+     */
+    private Window window( ) {
+      final long now = System.currentTimeMillis( );
+      Window window = current;
+      if ( now - window.start > WINDOW_MILLIS ) {
+        synchronized ( this ) {
+          window = current;
+          if ( now - window.start > WINDOW_MILLIS ) {
+            previous = window;
+            current = window = new Window( now );
+          }
+        }
+      }
+      return window;
+    }
+
+    private Statistics snapshot( ) {
+      final Window window = window( );
+      final long[] histogram = window.histogram.snapshot( );
+      if ( previous != window ) {
+        final long[] previousHistogram = previous.histogram.snapshot( );
+        for ( int i = 0; i < histogram.length; i++ ) {
+          histogram[ i ] += previousHistogram[ i ];
+        }
+      }
+      return new Statistics(
+          transactions.sum( ),
+          rollbacks.sum( ),
+          slow.sum( ),
+          TimeUnit.NANOSECONDS.toMillis( nanos.sum( ) ),
+          TimeUnit.NANOSECONDS.toMillis( maxNanos.get( ) ),
+          TimeUnit.NANOSECONDS.toMillis( connectionWaitNanos.sum( ) ),
+          TimeUnit.NANOSECONDS.toMillis( statementNanos.sum( ) ),
+          statements.sum( ),
+          rows.sum( ),
+          histogram );
+    }
+  }
+
+  private static final class Window {
+    private final long start;
+    private final Histogram histogram = new Histogram( );
+
+    private Window( final long start ) {
+      this.start = start;
+    }
+  }
+
+  /**
+   * Counts of millisecond values in power of two buckets, the last bucket is unbounded.
+   */
+  static final class Histogram {
+    static final int BUCKETS = 20;
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+    void record( final long millis ) {
+      final int bucket = millis <= 0 ? 0 : Math.min( BUCKETS - 1, 64 - Long.numberOfLeadingZeros( millis ) );
+      this.counts.incrementAndGet( bucket );
+    }
+
+    long[] snapshot( ) {
+      final long[] snapshot = new long[ BUCKETS ];
+      for ( int i = 0; i < BUCKETS; i++ ) {
+        snapshot[ i ] = this.counts.get( i );
+      }
+      return snapshot;
+    }
+
+    /**
+     * Upper bound (exclusive) in milliseconds for values in the given bucket
+     */
+    static long bucketLimit( final int bucket ) {
+      return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    static long percentile( final long[] counts, final double percentile ) {
+      long total = 0;
+      for ( final long count : counts ) total += count;
+      final long target = (long) Math.ceil( total * percentile );
+      long seen = 0;
+      for ( int i = 0; i < counts.length; i++ ) {
+        seen += counts[ i ];
+        if ( seen >= target && seen > 0 ) return bucketLimit( i );
+      }
+      return 0;
+    }
+  }
+
+  public static final class Statistics {
+    private final long transactions;
+    private final long rollbacks;
+    private final long slowTransactions;
+    private final long millis;
+    private final long maxMillis;
+    private final long connectionWaitMillis;
+    private final long statementMillis;
+    private final long statements;
+    private final long rows;
+    private final long[] recentMillis;
+
+    private Statistics( final long transactions,
+                        final long rollbacks,
+                        final long slowTransactions,
+                        final long millis,
+                        final long maxMillis,
+                        final long connectionWaitMillis,
+                        final long statementMillis,
+                        final long statements,
+                        final long rows,
+                        final long[] recentMillis ) {
+      this.transactions = transactions;
+      this.rollbacks = rollbacks;
+      this.slowTransactions = slowTransactions;
+      this.millis = millis;
+      this.maxMillis = maxMillis;
+      this.connectionWaitMillis = connectionWaitMillis;
+      this.statementMillis = statementMillis;
+      this.statements = statements;
+      this.rows = rows;
+      this.recentMillis = recentMillis;
+    }
+
+    public long getTransactions( ) {
+      return transactions;
+    }
+
+    public long getRollbacks( ) {
+      return rollbacks;
+    }
+
+    public long getSlowTransactions( ) {
+      return slowTransactions;
+    }
+
+    /**
+     * Total transaction time in milliseconds.
+     */
+    public long getMillis( ) {
+      return millis;
+    }
+
+    public long getMaxMillis( ) {
+      return maxMillis;
+    }
+
+    /**
+     * Time waiting to obtain a database connection in milliseconds.
+     */
+    public long getConnectionWaitMillis( ) {
+      return connectionWaitMillis;
+    }
+
+    /**
+     * Time executing statements in milliseconds, including waiting for locks.
+     */
+    public long getStatementMillis( ) {
+      return statementMillis;
+    }
+
+    public long getStatements( ) {
+      return statements;
+    }
+
+    /**
+     * Entities loaded.
+     */
+    public long getRows( ) {
+      return rows;
+    }
+
+    /**
+     * Upper bound for the given percentile of recent transaction durations.
+     *
+     * @param percentile The percentile, e.g. 0.99
+     * @return The duration in milliseconds
+     */
+    public long getRecentMillisPercentile( final double percentile ) {
+      return Histogram.percentile( recentMillis, percentile );
+    }
+
+    @Override
+    public String toString( ) {
+      return Objects.toStringHelper( this )
+          .add( "transactions", transactions )
+          .add( "rollbacks", rollbacks )
+          .add( "slow", slowTransactions )
+          .add( "millis", millis )
+          .add( "maxMillis", maxMillis )
+          .add( "connectionWaitMillis", connectionWaitMillis )
+          .add( "statementMillis", statementMillis )
+          .add( "statements", statements )
+          .add( "rows", rows )
+          .add( "recentP50Millis", getRecentMillisPercentile( 0.5 ) )
+          .add( "recentP99Millis", getRecentMillisPercentile( 0.99 ) )
+          .toString( );
+    }
+  }
+
+  public static final class SlowTransaction {
+    private final long timestamp = System.currentTimeMillis( );
+    private final String attribution;
+    private final String persistenceContext;
+    private final boolean committed;
+    private final long millis;
+    private final long statements;
+    private final long rows;
+    private final List<String> sql;
+
+    private SlowTransaction( final Profile profile, final boolean committed, final long millis ) {
+      this.attribution = profile.key;
+      this.persistenceContext = profile.persistenceContext;
+      this.committed = committed;
+      this.millis = millis;
+      this.statements = profile.statements;
+      this.rows = profile.rows;
+      this.sql = ImmutableList.copyOf( profile.sql );
+    }
+
+    public long getTimestamp( ) {
+      return timestamp;
+    }
+
+    public String getAttribution( ) {
+      return attribution;
+    }
+
+    public String getPersistenceContext( ) {
+      return persistenceContext;
+    }
+
+    public boolean isCommitted( ) {
+      return committed;
+    }
+
+    public long getMillis( ) {
+      return millis;
+    }
+
+    public long getStatements( ) {
+      return statements;
+    }
+
+    public long getRows( ) {
+      return rows;
+    }
+
+    /**
+     * Statements executed by the transaction, limited to the first 50.
+     */
+    public List<String> getSql( ) {
+      return sql;
+    }
+
+    @Override
+    public String toString( ) {
+      return Objects.toStringHelper( this )
+          .add( "attribution", attribution )
+          .add( "persistenceContext", persistenceContext )
+          .add( "committed", committed )
+          .add( "millis", millis )
+          .add( "statements", statements )
+          .add( "rows", rows )
+          .add( "sql", sql )
+          .toString( );
+    }
+  }
+}
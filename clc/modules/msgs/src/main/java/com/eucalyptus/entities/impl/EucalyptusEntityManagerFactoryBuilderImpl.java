@@ -21,12 +21,15 @@ package com.eucalyptus.entities.impl;
 
 import java.util.HashSet;
 import java.util.Map;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.spi.PersistenceUnitDescriptor;
 import org.hibernate.mapping.SimpleAuxiliaryDatabaseObject;
 import org.hibernate.service.ServiceRegistry;
 import com.eucalyptus.entities.AuxiliaryDatabaseObject;
+import com.eucalyptus.entities.CachedEntity;
+import com.eucalyptus.entities.EntityCacheRegions;
 import com.eucalyptus.entities.PersistenceContextConfiguration;
 import com.eucalyptus.entities.PersistenceContexts;
 import com.google.common.collect.Sets;
@@ -58,6 +61,14 @@ public class EucalyptusEntityManagerFactoryBuilderImpl extends EntityManagerFact
             new SimpleAuxiliaryDatabaseObject( ado.create( ) , ado.drop( ), Sets.newHashSet( ado.dialect( ) ) )
         );
       }
+      if ( Boolean.valueOf( persistenceContextConfiguration.getProperties( ).get( AvailableSettings.USE_SECOND_LEVEL_CACHE ) ) ) {
+        for ( final Class<?> entityClass : persistenceContextConfiguration.getEntityClasses( ) ) {
+          if ( EntityCacheRegions.isCached( entityClass ) ) {
+            final CachedEntity cachedEntity = EntityCacheRegions.register( entityClass );
+            configuration.setCacheConcurrencyStrategy( entityClass.getName( ), cachedEntity.value( ).getStrategy( ) );
+          }
+        }
+      }
     }
     return configuration;
   }
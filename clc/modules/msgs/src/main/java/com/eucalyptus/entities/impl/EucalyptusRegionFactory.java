@@ -0,0 +1,475 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.TransactionalDataRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cfg.Settings;
+import com.eucalyptus.entities.CachedEntity;
+import com.eucalyptus.entities.EntityCacheRegions;
+import com.eucalyptus.entities.EntityCacheRegions.CacheRegion;
+
+/**
+ * Hibernate region factory for local entity cache regions.
+ *
+ * <p>Only entities annotated with {@link CachedEntity} are cached, regions
+ * for other entities or collections (e.g. for hibernate cache annotations)
+ * are pass-through. Natural identifier and query caching are not
+ * supported.</p>
+ *
+ * @see EntityCacheRegions
+ */
+public class EucalyptusRegionFactory implements RegionFactory {
+  private static final long serialVersionUID = 1L;
+  private static final Logger LOG = Logger.getLogger( EucalyptusRegionFactory.class );
+  private static final int TIMEOUT = (int) TimeUnit.MINUTES.toMillis( 1 );
+
+  public EucalyptusRegionFactory( ) {
+  }
+
+  public EucalyptusRegionFactory( final Properties properties ) {
+  }
+
+  @Override
+  public void start( final Settings settings, final Properties properties ) throws CacheException {
+  }
+
+  @Override
+  public void stop( ) {
+  }
+
+  @Override
+  public boolean isMinimalPutsEnabledByDefault( ) {
+    return false;
+  }
+
+  @Override
+  public AccessType getDefaultAccessType( ) {
+    return AccessType.NONSTRICT_READ_WRITE;
+  }
+
+  @Override
+  public long nextTimestamp( ) {
+    return System.currentTimeMillis( );
+  }
+
+  @Override
+  public EntityRegion buildEntityRegion(
+      final String regionName,
+      final Properties properties,
+      final CacheDataDescription metadata
+  ) throws CacheException {
+    final CacheRegion region = EntityCacheRegions.region( regionName );
+    if ( region == null ) {
+      LOG.debug( "Entity not configured for caching, using pass-through region: " + regionName );
+    }
+    return new LocalEntityRegion( regionName, metadata, region );
+  }
+
+  @Override
+  public NaturalIdRegion buildNaturalIdRegion(
+      final String regionName,
+      final Properties properties,
+      final CacheDataDescription metadata
+  ) throws CacheException {
+    throw new CacheException( "Natural identifier caching not supported: " + regionName );
+  }
+
+  @Override
+  public CollectionRegion buildCollectionRegion(
+      final String regionName,
+      final Properties properties,
+      final CacheDataDescription metadata
+  ) throws CacheException {
+    return new LocalCollectionRegion( regionName, metadata );
+  }
+
+  @Override
+  public QueryResultsRegion buildQueryResultsRegion(
+      final String regionName,
+      final Properties properties
+  ) throws CacheException {
+    throw new CacheException( "Query caching not supported: " + regionName );
+  }
+
+  @Override
+  public TimestampsRegion buildTimestampsRegion(
+      final String regionName,
+      final Properties properties
+  ) throws CacheException {
+    throw new CacheException( "Query caching not supported: " + regionName );
+  }
+
+  private static abstract class LocalRegion implements TransactionalDataRegion {
+    private final String name;
+    private final CacheDataDescription metadata;
+    @Nullable
+    final CacheRegion region;
+
+    LocalRegion( final String name,
+                 final CacheDataDescription metadata,
+                 @Nullable final CacheRegion region ) {
+      this.name = name;
+      this.metadata = metadata;
+      this.region = region;
+    }
+
+    @Override
+    public String getName( ) {
+      return name;
+    }
+
+    @Override
+    public void destroy( ) throws CacheException {
+      if ( region != null ) {
+        EntityCacheRegions.destroy( region );
+      }
+    }
+
+    @Override
+    public boolean contains( final Object key ) {
+      return region != null && region.contains( key );
+    }
+
+    @Override
+    public long getSizeInMemory( ) {
+      return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory( ) {
+      return region == null ? 0 : region.size( );
+    }
+
+    @Override
+    public long getElementCountOnDisk( ) {
+      return 0;
+    }
+
+    @Override
+    public Map toMap( ) {
+      return region == null ? Collections.emptyMap( ) : region.asMap( );
+    }
+
+    @Override
+    public long nextTimestamp( ) {
+      return System.currentTimeMillis( );
+    }
+
+    @Override
+    public int getTimeout( ) {
+      return TIMEOUT;
+    }
+
+    @Override
+    public boolean isTransactionAware( ) {
+      return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription( ) {
+      return metadata;
+    }
+  }
+
+  private static final class LocalEntityRegion extends LocalRegion implements EntityRegion {
+
+    LocalEntityRegion( final String name,
+                       final CacheDataDescription metadata,
+                       @Nullable final CacheRegion region ) {
+      super( name, metadata, region );
+    }
+
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy( final AccessType accessType ) throws CacheException {
+      if ( region == null ) {
+        return new PassThroughEntityRegionAccessStrategy( this );
+      } else {
+        return new LocalEntityRegionAccessStrategy( this, region );
+      }
+    }
+  }
+
+  private static final class LocalCollectionRegion extends LocalRegion implements CollectionRegion {
+
+    LocalCollectionRegion( final String name,
+                           final CacheDataDescription metadata ) {
+      super( name, metadata, null );
+    }
+
+    @Override
+    public CollectionRegionAccessStrategy buildAccessStrategy( final AccessType accessType ) throws CacheException {
+      return new PassThroughCollectionRegionAccessStrategy( this );
+    }
+  }
+
+  /**
+   * Access strategy for entities configured for caching.
+   *
+   * <p>Changes invalidate rather than update cached entities. Invalidation
+   * occurs both when the change is made and after the transaction completes
+   * so entities loaded by concurrent transactions are not retained.</p>
+   */
+  private static final class LocalEntityRegionAccessStrategy implements EntityRegionAccessStrategy {
+    private final EntityRegion entityRegion;
+    private final CacheRegion region;
+
+    LocalEntityRegionAccessStrategy( final EntityRegion entityRegion,
+                                     final CacheRegion region ) {
+      this.entityRegion = entityRegion;
+      this.region = region;
+    }
+
+    @Override
+    public EntityRegion getRegion( ) {
+      return entityRegion;
+    }
+
+    @Override
+    public Object get( final Object key, final long txTimestamp ) throws CacheException {
+      return region.get( key );
+    }
+
+    @Override
+    public boolean putFromLoad(
+        final Object key,
+        final Object value,
+        final long txTimestamp,
+        final Object version
+    ) throws CacheException {
+      return putFromLoad( key, value, txTimestamp, version, false );
+    }
+
+    @Override
+    public boolean putFromLoad(
+        final Object key,
+        final Object value,
+        final long txTimestamp,
+        final Object version,
+        final boolean minimalPutOverride
+    ) throws CacheException {
+      return region.put( key, value, txTimestamp, minimalPutOverride );
+    }
+
+    @Override
+    public SoftLock lockItem( final Object key, final Object version ) throws CacheException {
+      return null;
+    }
+
+    @Override
+    public SoftLock lockRegion( ) throws CacheException {
+      return null;
+    }
+
+    @Override
+    public void unlockItem( final Object key, final SoftLock lock ) throws CacheException {
+      region.invalidate( key );
+    }
+
+    @Override
+    public void unlockRegion( final SoftLock lock ) throws CacheException {
+      region.invalidateAll( );
+    }
+
+    @Override
+    public boolean insert( final Object key, final Object value, final Object version ) throws CacheException {
+      return false;
+    }
+
+    @Override
+    public boolean afterInsert( final Object key, final Object value, final Object version ) throws CacheException {
+      return false;
+    }
+
+    @Override
+    public boolean update(
+        final Object key,
+        final Object value,
+        final Object currentVersion,
+        final Object previousVersion
+    ) throws CacheException {
+      if ( region.getUsage( ) == CachedEntity.Usage.READ_ONLY ) {
+        throw new UnsupportedOperationException( "Can't write to a readonly object: " + region.getName( ) );
+      }
+      region.invalidate( key );
+      return false;
+    }
+
+    @Override
+    public boolean afterUpdate(
+        final Object key,
+        final Object value,
+        final Object currentVersion,
+        final Object previousVersion,
+        final SoftLock lock
+    ) throws CacheException {
+      region.invalidate( key );
+      return false;
+    }
+
+    @Override
+    public void remove( final Object key ) throws CacheException {
+      region.invalidate( key );
+    }
+
+    @Override
+    public void removeAll( ) throws CacheException {
+      region.invalidateAll( );
+    }
+
+    @Override
+    public void evict( final Object key ) throws CacheException {
+      region.evict( key );
+    }
+
+    @Override
+    public void evictAll( ) throws CacheException {
+      region.evictAll( );
+    }
+  }
+
+  private static abstract class PassThroughRegionAccessStrategy {
+
+    public Object get( final Object key, final long txTimestamp ) throws CacheException {
+      return null;
+    }
+
+    public boolean putFromLoad(
+        final Object key,
+        final Object value,
+        final long txTimestamp,
+        final Object version
+    ) throws CacheException {
+      return false;
+    }
+
+    public boolean putFromLoad(
+        final Object key,
+        final Object value,
+        final long txTimestamp,
+        final Object version,
+        final boolean minimalPutOverride
+    ) throws CacheException {
+      return false;
+    }
+
+    public SoftLock lockItem( final Object key, final Object version ) throws CacheException {
+      return null;
+    }
+
+    public SoftLock lockRegion( ) throws CacheException {
+      return null;
+    }
+
+    public void unlockItem( final Object key, final SoftLock lock ) throws CacheException {
+    }
+
+    public void unlockRegion( final SoftLock lock ) throws CacheException {
+    }
+
+    public void remove( final Object key ) throws CacheException {
+    }
+
+    public void removeAll( ) throws CacheException {
+    }
+
+    public void evict( final Object key ) throws CacheException {
+    }
+
+    public void evictAll( ) throws CacheException {
+    }
+  }
+
+  private static final class PassThroughEntityRegionAccessStrategy extends PassThroughRegionAccessStrategy
+      implements EntityRegionAccessStrategy {
+    private final EntityRegion entityRegion;
+
+    PassThroughEntityRegionAccessStrategy( final EntityRegion entityRegion ) {
+      this.entityRegion = entityRegion;
+    }
+
+    @Override
+    public EntityRegion getRegion( ) {
+      return entityRegion;
+    }
+
+    @Override
+    public boolean insert( final Object key, final Object value, final Object version ) throws CacheException {
+      return false;
+    }
+
+    @Override
+    public boolean afterInsert( final Object key, final Object value, final Object version ) throws CacheException {
+      return false;
+    }
+
+    @Override
+    public boolean update(
+        final Object key,
+        final Object value,
+        final Object currentVersion,
+        final Object previousVersion
+    ) throws CacheException {
+      return false;
+    }
+
+    @Override
+    public boolean afterUpdate(
+        final Object key,
+        final Object value,
+        final Object currentVersion,
+        final Object previousVersion,
+        final SoftLock lock
+    ) throws CacheException {
+      return false;
+    }
+  }
+
+  private static final class PassThroughCollectionRegionAccessStrategy extends PassThroughRegionAccessStrategy
+      implements CollectionRegionAccessStrategy {
+    private final CollectionRegion collectionRegion;
+
+    PassThroughCollectionRegionAccessStrategy( final CollectionRegion collectionRegion ) {
+      this.collectionRegion = collectionRegion;
+    }
+
+    @Override
+    public CollectionRegion getRegion( ) {
+      return collectionRegion;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * Parsing for form encoded (application/x-www-form-urlencoded) parameters.
+ *
+ * <p>Parameters are parsed in a single pass directly from the query string or
+ * content buffer. Names and values are URL decoded as UTF-8, a name or value
+ * that is not validly encoded is used as is.</p>
+ */
+public class HttpParameters {
+
+  private static final byte AMPERSAND = '&';
+  private static final byte EQUALS = '=';
+  private static final byte PERCENT = '%';
+  private static final byte PLUS = '+';
+
+  /**
+   * Parse parameters from a query string.
+   *
+   * <p>Non-ASCII characters in the query string are not valid and are parsed
+   * as '?'.</p>
+   *
+   * @param query The query string
+   * @param raw Map for parameters without URL decoding, may be null
+   * @param decoded Map for parameters with URL decoding
+   * @param keys Set for decoded parameter names, may be null
+   */
+  public static void parse( final CharSequence query,
+                            @Nullable final Map<String, String> raw,
+                            final Map<String, String> decoded,
+                            @Nullable final Set<String> keys ) {
+    parse( new CharSequenceSource( query ), raw, decoded, keys );
+  }
+
+  /**
+   * Parse parameters from content. The buffer indexes are not modified.
+   *
+   * @param content The form encoded content
+   * @param decoded Map for parameters with URL decoding
+   * @param keys Set for decoded parameter names, may be null
+   */
+  public static void parse( final ChannelBuffer content,
+                            final Map<String, String> decoded,
+                            @Nullable final Set<String> keys ) {
+    parse( new ChannelBufferSource( content ), null, decoded, keys );
+  }
+
+  private static void parse( final Source source,
+                             @Nullable final Map<String, String> raw,
+                             final Map<String, String> decoded,
+                             @Nullable final Set<String> keys ) {
+    final int length = source.length( );
+    final Decoder decoder = new Decoder( );
+    int start = 0;
+    while ( start < length ) {
+      int end = indexOf( source, AMPERSAND, start, length );
+      if ( end < 0 ) {
+        end = length;
+      }
+      if ( end > start ) {
+        final int equals = indexOf( source, EQUALS, start, end );
+        final int nameEnd = equals < 0 ? end : equals;
+        if ( raw != null ) {
+          raw.put( source.string( start, nameEnd ), equals < 0 ? null : source.string( equals + 1, end ) );
+        }
+        final String name = decoder.decode( source, start, nameEnd );
+        decoded.put( name, equals < 0 ? null : decoder.decode( source, equals + 1, end ) );
+        if ( keys != null ) {
+          keys.add( name );
+        }
+      }
+      start = end + 1;
+    }
+  }
+
+  private static int indexOf( final Source source, final byte value, final int start, final int end ) {
+    for ( int i = start; i < end; i++ ) {
+      if ( source.get( i ) == value ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int hex( final byte value ) {
+    if ( value >= '0' && value <= '9' ) {
+      return value - '0';
+    } else if ( value >= 'a' && value <= 'f' ) {
+      return value - 'a' + 10;
+    } else if ( value >= 'A' && value <= 'F' ) {
+      return value - 'A' + 10;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * URL decoder with a reusable buffer.
+   */
+  private static final class Decoder {
+    private byte[] bytes = new byte[ 128 ];
+
+    String decode( final Source source, final int start, final int end ) {
+      final int length = end - start;
+      if ( bytes.length < length ) {
+        bytes = new byte[ Math.max( length, bytes.length * 2 ) ];
+      }
+      int count = 0;
+      for ( int i = start; i < end; i++ ) {
+        final byte value = source.get( i );
+        if ( value == PLUS ) {
+          bytes[ count++ ] = ' ';
+        } else if ( value == PERCENT ) {
+          final int high = i + 2 < end ? hex( source.get( i + 1 ) ) : -1;
+          final int low = i + 2 < end ? hex( source.get( i + 2 ) ) : -1;
+          if ( high < 0 || low < 0 ) {
+            return source.string( start, end );
+          }
+          bytes[ count++ ] = ( byte ) ( ( high << 4 ) + low );
+          i += 2;
+        } else {
+          bytes[ count++ ] = value;
+        }
+      }
+      return new String( bytes, 0, count, StandardCharsets.UTF_8 );
+    }
+  }
+
+  private interface Source {
+    int length( );
+
+    byte get( int index );
+
+    String string( int start, int end );
+  }
+
+  private static final class CharSequenceSource implements Source {
+    private final CharSequence chars;
+
+    CharSequenceSource( final CharSequence chars ) {
+      this.chars = chars;
+    }
+
+    @Override
+    public int length( ) {
+      return chars.length( );
+    }
+
+    @Override
+    public byte get( final int index ) {
+      final char value = chars.charAt( index );
+      return value < 0x80 ? ( byte ) value : ( byte ) '?';
+    }
+
+    @Override
+    public String string( final int start, final int end ) {
+      return chars.subSequence( start, end ).toString( );
+    }
+  }
+
+  private static final class ChannelBufferSource implements Source {
+    private final ChannelBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    ChannelBufferSource( final ChannelBuffer buffer ) {
+      this.buffer = buffer;
+      this.offset = buffer.readerIndex( );
+      this.length = buffer.readableBytes( );
+    }
+
+    @Override
+    public int length( ) {
+      return length;
+    }
+
+    @Override
+    public byte get( final int index ) {
+      return buffer.getByte( offset + index );
+    }
+
+    @Override
+    public String string( final int start, final int end ) {
+      return buffer.toString( offset + start, end - start, StandardCharsets.UTF_8 );
+    }
+  }
+}
@@ -62,8 +62,14 @@
 
 package com.eucalyptus.http;
 
+import java.util.Collections;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNamespace;
 import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPHeader;
 import org.apache.log4j.Logger;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.MessageEvent;
@@ -71,6 +77,13 @@ import org.jboss.netty.handler.codec.http.DefaultHttpMessage;
 import org.jboss.netty.handler.codec.http.HttpMessage;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import com.eucalyptus.auth.principal.User;
+import com.eucalyptus.binding.Binding;
+import com.eucalyptus.binding.BindingException;
+import com.eucalyptus.binding.BoundElement;
+import com.eucalyptus.binding.HoldMe;
+import com.eucalyptus.crypto.util.WSSecuritySigner;
+import com.eucalyptus.util.Exceptions;
+import com.google.common.collect.Maps;
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 
 public abstract class MappingHttpMessage extends DefaultHttpMessage implements HttpMessage {
@@ -79,6 +92,9 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
   private String       messageString;
   private SOAPEnvelope soapEnvelope;
   private OMElement    omMessage;
+  private BoundElement boundMessage;
+  private Map<QName,String> soapHeaders = Collections.emptyMap( );
+  private WSSecuritySigner signer;
   protected Object       message;
   private User         user;
   private Boolean      keepAlive = Boolean.TRUE;
@@ -89,19 +105,92 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
   }
 
   public SOAPEnvelope getSoapEnvelope( ) {
+    if ( soapEnvelope == null && boundMessage != null ) {
+      soapEnvelope = Binding.createEnvelope( getOmMessage( ) );
+      for ( final Map.Entry<QName,String> soapHeader : soapHeaders.entrySet( ) ) {
+        addHeaderBlock( soapEnvelope, soapHeader.getKey( ), soapHeader.getValue( ) );
+      }
+      soapHeaders = Collections.emptyMap( );
+    }
     return soapEnvelope;
   }
 
+  /**
+   * Add a text header block to the envelope.
+   *
+   * <p>For a streaming message the header is retained until the envelope is
+   * built or streamed.</p>
+   */
+  public void addSoapHeader( final QName name, final String text ) {
+    if ( getStreamingMessage( ) != null ) {
+      if ( soapHeaders.isEmpty( ) ) {
+        soapHeaders = Maps.newLinkedHashMap( );
+      }
+      soapHeaders.put( name, text );
+    } else {
+      addHeaderBlock( getSoapEnvelope( ), name, text );
+    }
+  }
+
+  /**
+   * Get the header blocks for a streaming message.
+   */
+  public Map<QName,String> getSoapHeaders( ) {
+    return Collections.unmodifiableMap( soapHeaders );
+  }
+
   public void setSoapEnvelope( SOAPEnvelope soapEnvelope ) {
     this.soapEnvelope = soapEnvelope;
   }
 
   public OMElement getOmMessage( ) {
+    if ( omMessage == null && boundMessage != null ) {
+      try {
+        omMessage = boundMessage.toOM( );
+      } catch ( BindingException e ) {
+        throw Exceptions.toUndeclared( e );
+      }
+    }
     return omMessage;
   }
 
   public void setOmMessage( OMElement omMessage ) {
     this.omMessage = omMessage;
+    this.boundMessage = null;
+  }
+
+  /**
+   * Get the bound message if it can be streamed.
+   *
+   * <p>A bound message is only streamable if neither the object model for the
+   * message or the envelope have been requested.</p>
+   *
+   * @return The bound message or null
+   */
+  @Nullable
+  public BoundElement getStreamingMessage( ) {
+    return soapEnvelope == null && omMessage == null ? boundMessage : null;
+  }
+
+  /**
+   * Set the bound message, the object model is built from the message on
+   * demand.
+   */
+  public void setBoundMessage( BoundElement boundMessage ) {
+    this.omMessage = null;
+    this.boundMessage = boundMessage;
+  }
+
+  @Nullable
+  public WSSecuritySigner getSigner( ) {
+    return signer;
+  }
+
+  /**
+   * Set the signer to use when streaming the message.
+   */
+  public void setSigner( WSSecuritySigner signer ) {
+    this.signer = signer;
   }
 
   public Object getMessage( ) {
@@ -123,6 +212,14 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
     this.messageString = messageString;
   }
 
+  private static void addHeaderBlock( final SOAPEnvelope envelope, final QName name, final String text ) {
+    final SOAPHeader header = envelope == null ? null : envelope.getHeader( );
+    if ( header != null ) {
+      final OMNamespace namespace = HoldMe.getOMFactory( ).createOMNamespace( name.getNamespaceURI( ), name.getPrefix( ) );
+      header.addHeaderBlock( name.getLocalPart( ), namespace ).setText( text );
+    }
+  }
+
   public User getUser( ) {
     return user;
   }
@@ -115,20 +115,7 @@ public class MappingHttpRequest extends MappingHttpMessage implements HttpReques
   
   private void populateParameters( ) {
     if ( this.query != null && !"".equals( this.query ) ) {
-      for ( String p : this.query.split( "&" ) ) {
-        //split with limit = 2 to account for "="s in the value itself
-        String[] splitParam = p.split( "=", 2 );
-        String lhs = splitParam[0];
-        String rhs = splitParam.length == 2 ? splitParam[1] : null;
-        this.rawParameters.put(lhs, rhs);
-        try {
-          if ( lhs != null ) lhs = new URLCodec( ).decode( lhs );
-        } catch ( DecoderException e ) {}
-        try {
-          if ( rhs != null ) rhs = new URLCodec( ).decode( rhs );
-        } catch ( DecoderException e ) {}
-        this.parameters.put( lhs, rhs );
-      }
+      HttpParameters.parse( this.query, this.rawParameters, this.parameters, null );
     }
   }
 
@@ -110,6 +110,7 @@ public enum SubDirectory {
     }
   },
   CLASSCACHE( BaseDirectory.RUN, "/classcache" ),
+  DISCOVERYCACHE( BaseDirectory.RUN, "/discoverycache" ),
   KEYS( BaseDirectory.STATE, "keys" ) {
     @Override
     protected void assertPermissions( ) {
@@ -197,6 +197,10 @@ public class StackConfiguration extends AbstractPersistent {
                       initial = "102400")
   public static Integer       HTTP_MAX_CHUNK_BYTES              = 10 * 10 * 1024;
 
+  @ConfigurableField( description = "Use pooled direct buffers for HTTP request content.",
+                      changeListener = WebServices.CheckBooleanPropertyChangeListener.class )
+  public static Boolean       HTTP_POOLED_BUFFERS               = Boolean.FALSE;
+
   @ConfigurableField( description = "Maximum Query Pipeline http chunk size (bytes).",
                       initial = "102400")
   public static Integer       PIPELINE_MAX_QUERY_REQUEST_SIZE    = 10 * 10 * 1024;
@@ -73,6 +73,7 @@ import org.jboss.netty.channel.MessageEvent;
 import com.eucalyptus.binding.Binding;
 import com.eucalyptus.binding.BindingException;
 import com.eucalyptus.binding.BindingManager;
+import com.eucalyptus.binding.BoundElement;
 import com.eucalyptus.component.ComponentId;
 import com.eucalyptus.context.Context;
 import com.eucalyptus.context.Contexts;
@@ -235,18 +236,21 @@ public class BindingHandler extends MessageStackHandler {
                                           + e1.getMessage( ), e1 );
         }
       }
+      // unless already built (e.g. for signature verification) the message is
+      // bound from the parser and the object model is not usable afterwards
+      final boolean streamed = !httpMessage.getOmMessage( ).isComplete( );
       try {
         if ( httpMessage instanceof MappingHttpRequest ) {
-          if ( msgType != null ) {
-            msg = ( BaseMessage ) this.context.getBinding( ).fromOM( httpMessage.getOmMessage( ), msgType );
-          } else {
-            msg = ( BaseMessage ) this.context.getBinding( ).fromOM( httpMessage.getOmMessage( ) );
-          }
+          msg = ( BaseMessage ) this.context.getBinding( ).fromStreamingOM( httpMessage.getOmMessage( ), msgType );
         } else {
-          msg = ( BaseMessage ) this.context.getBinding( ).fromOM( httpMessage.getOmMessage( ) );
+          msg = ( BaseMessage ) this.context.getBinding( ).fromStreamingOM( httpMessage.getOmMessage( ), null );
         }
       } catch ( Exception e1 ) {
         try {
+          if ( streamed ) {
+            httpMessage.setSoapEnvelope( SoapMarshallingHandler.parseEnvelope( httpMessage.getMessageString( ) ) );
+            httpMessage.setOmMessage( httpMessage.getSoapEnvelope( ).getBody( ).getFirstElement( ) );
+          }
           msg = ( BaseMessage ) this.context.getBinding( ).fromOM( httpMessage.getOmMessage( ), this.context.getNamespace( ) );
         } catch ( Exception ex ) {
           LOG.warn( "FAILED TO PARSE:\n" + httpMessage.getMessageString( ) );
@@ -291,14 +295,12 @@ public class BindingHandler extends MessageStackHandler {
           ( ( MappingHttpResponse ) httpMessage ).setStatus( msg.getHttpStatus( ) );
         }
       } else {
-        try {
-          omElem = this.context.getBinding( ).toOM( httpMessage.getMessage( ), this.context.getNamespace( ) );
-        } catch ( BindingException ex ) {
-          omElem = BindingManager.getDefaultBinding( ).toOM( httpMessage.getMessage( ) );
-        } catch ( Exception ex ) {
-          Logs.exhaust( ).debug( ex, ex );
-          throw ex;
-        }
+        // marshalled on demand, or streamed if no handler requires the object model
+        httpMessage.setBoundMessage( BoundElement.of(
+            this.context.getBinding( ),
+            httpMessage.getMessage( ),
+            this.context.getNamespace( ) ) );
+        return;
       }
       httpMessage.setOmMessage( omElem );
     }
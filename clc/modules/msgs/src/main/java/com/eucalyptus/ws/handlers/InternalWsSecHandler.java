@@ -110,7 +110,7 @@ public class InternalWsSecHandler extends WsSecHandler {
       final MappingHttpMessage httpRequest = ( MappingHttpMessage ) o;
       final SOAPEnvelope envelope = httpRequest.getSoapEnvelope( );
       
-      X509Certificate cert = WSSecurity.verifyWSSec( envelope );
+      X509Certificate cert = WSSecurity.verifyWSSec( httpRequest.getMessageString( ), envelope );
       if ( cert == null || !cert.equals( SystemCredentials.lookup( Eucalyptus.class ).getCertificate( ) ) ) {
     	  throw new WebServicesException( "Authentication failed: The following certificate is not trusted:\n " + cert );
       }
@@ -116,7 +116,7 @@ public class NodeWsSecHandler extends WsSecHandler {
       final MappingHttpMessage httpRequest = ( MappingHttpMessage ) o;
       final SOAPEnvelope envelope = httpRequest.getSoapEnvelope( );
       
-      X509Certificate cert = WSSecurity.verifyWSSec( envelope );
+      X509Certificate cert = WSSecurity.verifyWSSec( httpRequest.getMessageString( ), envelope );
       
       if ( cert == null) {
       	throw new WebServicesException( "Authentication failed: Certificate is null");
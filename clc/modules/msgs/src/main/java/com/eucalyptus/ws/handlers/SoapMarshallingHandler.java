@@ -63,8 +63,13 @@
 package com.eucalyptus.ws.handlers;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.apache.axiom.soap.SOAP11Constants;
 import org.apache.axiom.soap.SOAP12Constants;
 import org.apache.axiom.soap.SOAPEnvelope;
@@ -81,7 +86,11 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import com.eucalyptus.binding.Binding;
+import com.eucalyptus.binding.BindingException;
+import com.eucalyptus.binding.BoundElement;
 import com.eucalyptus.binding.HoldMe;
+import com.eucalyptus.crypto.util.CanonicalXMLStreamWriter;
+import com.eucalyptus.crypto.util.WSSecuritySigner;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.records.Logs;
@@ -93,6 +102,15 @@ import com.google.common.collect.ImmutableMap;
 public class SoapMarshallingHandler extends MessageStackHandler implements ExceptionMarshallerHandler {
   private static Logger LOG = Logger.getLogger( SoapMarshallingHandler.class );
 
+  private static final byte[] ENVELOPE_HEAD = ( "<?xml version='1.0' encoding='utf-8'?>" +
+      "<soapenv:Envelope xmlns:soapenv=\"" + SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI + "\">" +
+      "<soapenv:Header>" ).getBytes( StandardCharsets.UTF_8 );
+  private static final byte[] HEADER_TAIL =
+      "</soapenv:Header><soapenv:Body>".getBytes( StandardCharsets.UTF_8 );
+  private static final byte[] ENVELOPE_TAIL =
+      "</soapenv:Body></soapenv:Envelope>".getBytes( StandardCharsets.UTF_8 );
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+
   @Override
   public void incomingMessage( final MessageEvent event ) throws Exception {
     if ( event.getMessage( ) instanceof MappingHttpMessage ) {
@@ -101,26 +119,7 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
           ( (MappingHttpRequest) httpMessage ).getContentAsString( ) :
           httpMessage.getContent( ).toString( StandardCharsets.UTF_8 );
       httpMessage.setMessageString( content );
-      HoldMe.canHas.lock( );
-      SOAPEnvelope env = null;
-      try {
-        StAXSOAPModelBuilder soapBuilder = null;
-        try {
-          SOAPFactory factory = HoldMe.getOMSOAP11Factory( );
-          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI );
-        } catch ( Exception e ) {
-          SOAPFactory factory = HoldMe.getOMSOAP12Factory( );
-          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI );
-        }
-        env = ( SOAPEnvelope ) soapBuilder.getDocumentElement( );
-      } catch( Exception ex ) {
-        LOG.error( "Failed to marshall response: " + content );
-        LOG.error( ex, ex );
-        throw new WebServicesException( "Failed to marshall response: " + content, ex );
-      } finally {
-        HoldMe.canHas.unlock( );
-      }
-      httpMessage.setSoapEnvelope( env );
+      httpMessage.setSoapEnvelope( parseEnvelope( content ) );
     }
   }
 
@@ -128,12 +127,35 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
   public void outgoingMessage( final ChannelHandlerContext ctx, final MessageEvent event ) throws Exception {
     if ( event.getMessage( ) instanceof MappingHttpMessage ) {
       final MappingHttpMessage httpMessage = ( MappingHttpMessage ) event.getMessage( );
-      final ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( 4096 );
-      HoldMe.canHas.lock( );
-      try ( final ChannelBufferOutputStream out = new ChannelBufferOutputStream( buffer ) ) {
-        httpMessage.getSoapEnvelope( ).serialize( out );//HACK: does this need fixing for xml brokeness?
-      } finally {
-        HoldMe.canHas.unlock( );
+      final BoundElement streamingMessage = httpMessage.getStreamingMessage( );
+      final WSSecuritySigner signer = httpMessage.getSigner( );
+      final ChannelBuffer buffer;
+      if ( streamingMessage != null && signer != null ) {
+        buffer = signer.sign( httpMessage.getSoapHeaders( ), streamingMessage, INITIAL_BUFFER_SIZE );
+      } else {
+        buffer = ChannelBuffers.dynamicBuffer( INITIAL_BUFFER_SIZE );
+        try ( final ChannelBufferOutputStream out = new ChannelBufferOutputStream( buffer ) ) {
+          if ( streamingMessage != null ) {
+            out.write( ENVELOPE_HEAD );
+            writeHeaders( out, httpMessage.getSoapHeaders( ) );
+            out.write( HEADER_TAIL );
+            final int bodyIndex = buffer.writerIndex( );
+            try {
+              streamingMessage.toStream( out );
+            } catch ( BindingException e ) {
+              buffer.writerIndex( bodyIndex );
+              streamingMessage.withDefaultBinding( ).toStream( out );
+            }
+            out.write( ENVELOPE_TAIL );
+          } else {
+            HoldMe.canHas.lock( );
+            try {
+              httpMessage.getSoapEnvelope( ).serialize( out );//HACK: does this need fixing for xml brokeness?
+            } finally {
+              HoldMe.canHas.unlock( );
+            }
+          }
+        }
       }
       httpMessage.addHeader( HttpHeaders.Names.CONTENT_LENGTH, String.valueOf( buffer.readableBytes( ) ) );
       httpMessage.addHeader( HttpHeaders.Names.CONTENT_TYPE, "text/xml; charset=UTF-8" );
@@ -142,6 +164,39 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
     }
   }
 
+  private static void writeHeaders( final OutputStream out, final Map<QName,String> headers ) throws XMLStreamException {
+    if ( !headers.isEmpty( ) ) {
+      final XMLStreamWriter writer = new CanonicalXMLStreamWriter( out );
+      for ( final Map.Entry<QName,String> header : headers.entrySet( ) ) {
+        writer.writeStartElement( header.getKey( ).getPrefix( ), header.getKey( ).getLocalPart( ), header.getKey( ).getNamespaceURI( ) );
+        writer.writeCharacters( header.getValue( ) );
+        writer.writeEndElement( );
+      }
+      writer.flush( );
+    }
+  }
+
+  static SOAPEnvelope parseEnvelope( final String content ) throws WebServicesException {
+    HoldMe.canHas.lock( );
+    try {
+      StAXSOAPModelBuilder soapBuilder = null;
+      try {
+        SOAPFactory factory = HoldMe.getOMSOAP11Factory( );
+        soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI );
+      } catch ( Exception e ) {
+        SOAPFactory factory = HoldMe.getOMSOAP12Factory( );
+        soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI );
+      }
+      return ( SOAPEnvelope ) soapBuilder.getDocumentElement( );
+    } catch( Exception ex ) {
+      LOG.error( "Failed to marshall response: " + content );
+      LOG.error( ex, ex );
+      throw new WebServicesException( "Failed to marshall response: " + content, ex );
+    } finally {
+      HoldMe.canHas.unlock( );
+    }
+  }
+
   @Nonnull
   @Override
   public ExceptionResponse marshallException( @Nonnull ChannelEvent event,
@@ -86,14 +86,23 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import com.eucalyptus.binding.HoldMe;
 import com.eucalyptus.crypto.util.WSSecurity;
+import com.eucalyptus.crypto.util.WSSecuritySigner;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.ws.util.CredentialProxy;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 
 @ChannelHandler.Sharable
 public abstract class WsSecHandler extends MessageStackHandler {
   private static Logger         LOG    = Logger.getLogger( WsSecHandler.class );
   private final CredentialProxy credentials;
+  private final Supplier<WSSecuritySigner> signer = Suppliers.memoize( new Supplier<WSSecuritySigner>( ) {
+    @Override
+    public WSSecuritySigner get( ) {
+      return new WSSecuritySigner( credentials, getSignatureParts( ), shouldTimeStamp( ) );
+    }
+  } );
 
   static {
     WSSecurity.init();
@@ -109,6 +118,10 @@ public abstract class WsSecHandler extends MessageStackHandler {
     if ( o instanceof MappingHttpMessage ) {
       try {
         final MappingHttpMessage httpRequest = ( MappingHttpMessage ) o;
+        if ( httpRequest.getStreamingMessage( ) != null && signer.get( ).canSign( httpRequest.getSoapHeaders( ) ) ) {
+          httpRequest.setSigner( signer.get( ) ); // signed when serialized
+          return;
+        }
         OMElement elem = null;
         Document doc = null;
         SOAPEnvelope env = httpRequest.getSoapEnvelope( );
@@ -0,0 +1,73 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.ws.handlers.http;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import com.eucalyptus.ws.StackConfiguration;
+
+/**
+ * Buffers for decoded HTTP content.
+ *
+ * <p>When pooling is enabled content is copied into slices of preallocated
+ * direct buffers rather than into a new heap buffer for each request or
+ * chunk. A preallocated buffer is freed once all slices of it are
+ * unreachable, so content must not be retained beyond the request.</p>
+ *
+ * @see StackConfiguration#HTTP_POOLED_BUFFERS
+ */
+public class HttpBuffers {
+
+  private static final ChannelBufferFactory pooledFactory = DirectChannelBufferFactory.getInstance( );
+  private static final ChannelBufferFactory heapFactory = HeapChannelBufferFactory.getInstance( );
+
+  public static ChannelBufferFactory factory( ) {
+    return factory( StackConfiguration.HTTP_POOLED_BUFFERS );
+  }
+
+  static ChannelBufferFactory factory( final boolean pooled ) {
+    return pooled ? pooledFactory : heapFactory;
+  }
+
+  /**
+   * Read content from the given buffer.
+   *
+   * <p>The content is always copied as the source buffer may be reused by
+   * the decoder once the bytes are read.</p>
+   *
+   * @param buffer The buffer to read from
+   * @param length The number of bytes to read
+   * @return A buffer containing the content
+   */
+  public static ChannelBuffer read( final ChannelBuffer buffer, final int length ) {
+    return read( factory( ), buffer, length );
+  }
+
+  static ChannelBuffer read( final ChannelBufferFactory factory, final ChannelBuffer buffer, final int length ) {
+    // slice first so a replaying decoder fails before any allocation
+    final ChannelBuffer source = buffer.readSlice( length );
+    final ChannelBuffer content = factory.getBuffer( length );
+    content.writeBytes( source );
+    return content;
+  }
+}
@@ -220,7 +220,7 @@ public class NioHttpDecoder extends ReplayingDecoder<NioHttpDecoder.State> {
       case READ_VARIABLE_LENGTH_CONTENT_AS_CHUNKS: {
         // Keep reading data as a chunk until the end of connection is reached.
         int chunkSize = Math.min( maxChunkSize, buffer.readableBytes( ) );
-        HttpChunk chunk = new DefaultHttpChunk( buffer.readBytes( chunkSize ) );
+        HttpChunk chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, chunkSize ) );
 
         if ( !buffer.readable( ) ) {
           // Reached to the end of the connection.
@@ -241,11 +241,11 @@ public class NioHttpDecoder extends ReplayingDecoder<NioHttpDecoder.State> {
         long chunkSize = this.chunkSize;
         HttpChunk chunk;
         if ( chunkSize > maxChunkSize ) {
-          chunk = new DefaultHttpChunk( buffer.readBytes( maxChunkSize ) );
+          chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, maxChunkSize ) );
           chunkSize -= maxChunkSize;
         } else {
           assert chunkSize <= Integer.MAX_VALUE;
-          chunk = new DefaultHttpChunk( buffer.readBytes( ( int ) chunkSize ) );
+          chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, ( int ) chunkSize ) );
           chunkSize = 0;
         }
         this.chunkSize = chunkSize;
@@ -281,7 +281,7 @@ public class NioHttpDecoder extends ReplayingDecoder<NioHttpDecoder.State> {
       }
       case READ_CHUNKED_CONTENT: {
         assert chunkSize <= Integer.MAX_VALUE;
-        HttpChunk chunk = new DefaultHttpChunk( buffer.readBytes( ( int ) chunkSize ) );
+        HttpChunk chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, ( int ) chunkSize ) );
         checkpoint( State.READ_CHUNK_DELIMITER );
         return chunk;
       }
@@ -289,11 +289,11 @@ public class NioHttpDecoder extends ReplayingDecoder<NioHttpDecoder.State> {
         long chunkSize = this.chunkSize;
         HttpChunk chunk;
         if ( chunkSize > maxChunkSize ) {
-          chunk = new DefaultHttpChunk( buffer.readBytes( maxChunkSize ) );
+          chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, maxChunkSize ) );
           chunkSize -= maxChunkSize;
         } else {
           assert chunkSize <= Integer.MAX_VALUE;
-          chunk = new DefaultHttpChunk( buffer.readBytes( ( int ) chunkSize ) );
+          chunk = new DefaultHttpChunk( HttpBuffers.read( buffer, ( int ) chunkSize ) );
           chunkSize = 0;
         }
         this.chunkSize = chunkSize;
@@ -406,9 +406,9 @@ public class NioHttpDecoder extends ReplayingDecoder<NioHttpDecoder.State> {
     assert length <= Integer.MAX_VALUE;
 
     if ( content == null ) {
-      content = buffer.readBytes( ( int ) length );
+      content = HttpBuffers.read( buffer, ( int ) length );
     } else {
-      content.writeBytes( buffer.readBytes( ( int ) length ) );
+      content.writeBytes( buffer.readSlice( ( int ) length ) );
     }
   }
 
@@ -63,14 +63,12 @@
 package com.eucalyptus.ws.protocol;
 
 import java.util.UUID;
-import org.apache.axiom.om.OMNamespace;
-import org.apache.axiom.soap.SOAPHeader;
-import org.apache.axiom.soap.SOAPHeaderBlock;
+import javax.xml.namespace.QName;
 import org.apache.log4j.Logger;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
-import com.eucalyptus.binding.HoldMe;
+import com.eucalyptus.binding.BoundElement;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.ws.handlers.MessageStackHandler;
 
@@ -106,20 +104,17 @@ public class AddressingHandler extends MessageStackHandler {
       final MappingHttpRequest httpMessage = ( MappingHttpRequest ) event.getMessage( );
       
       // :: set action :://
-      final String action = prefix + httpMessage.getOmMessage( ).getLocalName( );
+      final BoundElement streamingMessage = httpMessage.getStreamingMessage( );
+      final String action = prefix + ( streamingMessage != null ?
+          streamingMessage.getElementName( ) :
+          httpMessage.getOmMessage( ).getLocalName( ) );
       httpMessage.addHeader( "SOAPAction", action );
-      final SOAPHeader header = httpMessage.getSoapEnvelope( ).getHeader( );
-      
+
       // :: set soap addressing info :://
-      final OMNamespace wsaNs = HoldMe.getOMFactory( ).createOMNamespace( WSA_NAMESPACE, WSA_NAMESPACE_PREFIX );
-      if ( header != null ) {
-        final SOAPHeaderBlock wsaToHeader = header.addHeaderBlock( WSA_TO, wsaNs );
-        wsaToHeader.setText( httpMessage.getUri( ) );
-        final SOAPHeaderBlock wsaActionHeader = header.addHeaderBlock( WSA_ACTION, wsaNs );
-        wsaActionHeader.setText( action );
-        final SOAPHeaderBlock wsaMsgId = header.addHeaderBlock( WSA_MESSAGE_ID, wsaNs );
-        wsaMsgId.setText( "urn:uuid:" + UUID.randomUUID( ).toString( ).replaceAll( "-", "" ).toUpperCase( ) );
-      }
+      httpMessage.addSoapHeader( new QName( WSA_NAMESPACE, WSA_TO, WSA_NAMESPACE_PREFIX ), httpMessage.getUri( ) );
+      httpMessage.addSoapHeader( new QName( WSA_NAMESPACE, WSA_ACTION, WSA_NAMESPACE_PREFIX ), action );
+      httpMessage.addSoapHeader( new QName( WSA_NAMESPACE, WSA_MESSAGE_ID, WSA_NAMESPACE_PREFIX ),
+          "urn:uuid:" + UUID.randomUUID( ).toString( ).replaceAll( "-", "" ).toUpperCase( ) );
     }
   }
 }
@@ -65,10 +65,8 @@ package com.eucalyptus.ws.protocol;
 import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
-import javax.xml.soap.SOAPConstants;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.soap.SOAPEnvelope;
-import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axiom.soap.SOAPFault;
 import org.apache.axiom.soap.SOAPHeader;
 import org.apache.axiom.soap.SOAPHeaderBlock;
@@ -78,7 +76,6 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import com.eucalyptus.binding.Binding;
-import com.eucalyptus.binding.HoldMe;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.http.MappingHttpResponse;
 import com.eucalyptus.records.Logs;
@@ -155,14 +152,9 @@ public class SoapHandler extends MessageStackHandler {
         if ( httpMessage instanceof MappingHttpResponse ) {
           ( ( MappingHttpResponse ) httpMessage ).setStatus( errMsg.getHttpStatus( ) );
         }
-      } else {
-        final SOAPFactory factory = HoldMe.getOMSOAP11Factory( );
-        final SOAPEnvelope soapEnvelope = factory.createSOAPEnvelope( factory.createOMNamespace( SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, "" ) );
-        factory.createSOAPHeader( soapEnvelope );
-        factory.createSOAPBody( soapEnvelope );
-        httpMessage.setSoapEnvelope( soapEnvelope );
-        httpMessage.getSoapEnvelope( ).getBody( ).addChild( httpMessage.getOmMessage() );
-      }
+      } else if ( httpMessage.getStreamingMessage( ) == null ) {
+        httpMessage.setSoapEnvelope( Binding.createEnvelope( httpMessage.getOmMessage( ) ) );
+      } // else envelope is built on demand or the message is streamed when marshalled
     }
   }
 
@@ -68,8 +68,6 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.net.URLCodec;
 import org.apache.log4j.Logger;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelPipeline;
@@ -89,6 +87,7 @@ import com.eucalyptus.component.annotation.AwsServiceName;
 import com.eucalyptus.component.annotation.ComponentPart;
 import com.eucalyptus.component.annotation.PublicService;
 import com.eucalyptus.empyrean.Empyrean;
+import com.eucalyptus.http.HttpParameters;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.records.EventRecord;
@@ -313,22 +312,7 @@ public class Pipelines {
         if ( httpRequest.getMethod( ).equals( HttpMethod.POST ) && !message.getHeaderNames().contains( "SOAPAction" ) ) {
           final Map<String, String> parameters = new HashMap<>( httpRequest.getParameters( ) );
           final Set<String> nonQueryParameters = Sets.newHashSet( );
-          final String query = httpRequest.getContentAsString( );
-          for ( final String p : query.split( "&" ) ) {
-            final String[] splitParam = p.split( "=" );
-            String lhs = splitParam[0];
-            String rhs = splitParam.length == 2
-              ? splitParam[1]
-              : null;
-            try {
-              if ( lhs != null ) lhs = new URLCodec( ).decode( lhs );
-            } catch ( final DecoderException e ) {}
-            try {
-              if ( rhs != null ) rhs = new URLCodec( ).decode( rhs );
-            } catch ( final DecoderException e ) {}
-            parameters.put( lhs, rhs );
-            nonQueryParameters.add( lhs );
-          }
+          HttpParameters.parse( httpRequest.getContent( ), parameters, nonQueryParameters );
           for ( final RequiredQueryParams p : RequiredQueryParams.values( ) ) {
             if ( !parameters.containsKey( p.toString( ) ) ) {
               return false;
@@ -32,6 +32,7 @@ import com.eucalyptus.crypto.util.B64
 import com.eucalyptus.util.Strings
 import com.google.common.base.Suppliers
 import com.google.common.base.Supplier
+import com.google.common.collect.ImmutableList
 import net.sf.json.JSONException
 import org.junit.Before
 import org.junit.BeforeClass
@@ -39,6 +40,9 @@ import org.junit.BeforeClass
 import java.nio.charset.StandardCharsets
 
 import static com.eucalyptus.auth.api.PolicyEngine.AuthorizationMatch.All
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotSame
+import static org.junit.Assert.assertSame
 
 import com.eucalyptus.auth.principal.Authorization
 import com.eucalyptus.auth.principal.Condition
@@ -292,6 +296,45 @@ class PolicyEngineTest {
     """.stripIndent(), "iam:user", "iam:ListUsers", "123456789012", "/admin" )
   }
 
+  @Test
+  void testPrincipalAuthorizationsShared( ) {
+    List<PolicyVersion> policies = ImmutableList.of( policyVersion( """\
+      {
+        "Statement":[ {
+          "Effect": "Allow",
+          "Action": "ec2:*",
+          "Resource": "*"
+        }, {
+          "Effect": "Deny",
+          "Action": "ec2:TerminateInstances",
+          "Resource": "*"
+        } ]
+      }
+    """.stripIndent( ) ) )
+    List<Authorization> authorizations = authorizations( 'ec2:instance', policies )
+    assertEquals( 'Authorization count', 2, authorizations.size( ) )
+    assertSame( 'Authorizations shared for policies', authorizations, authorizations( 'ec2:instance', policies ) )
+    assertEquals( 'Allow authorization count', 1, authorizations( null, policies ).size( ) )
+
+    List<Authorization> reloaded = authorizations( 'ec2:instance', ImmutableList.copyOf( new ArrayList<PolicyVersion>( policies ) ) )
+    assertNotSame( 'Authorizations for reloaded policies', authorizations, reloaded )
+    assertEquals( 'Reloaded authorization count', 2, reloaded.size( ) )
+  }
+
+  private List<Authorization> authorizations( String resourceType, List<PolicyVersion> policies ) {
+    new PolicyEngineImpl.AuthEvaluationContextImpl( resourceType, 'RunInstances', user( ), [:] as Map<String,String>, policies ).lookupAuthorizations( )
+  }
+
+  private PolicyVersion policyVersion( String policy ) {
+    new PolicyVersion( ){
+      @Override String getPolicyVersionId( ) { '1234567890' }
+      @Override String getPolicyName( ) { 'test' }
+      @Override PolicyScope getPolicyScope() { PolicyScope.User }
+      @Override String getPolicy( ) { policy }
+      @Override String getPolicyHash() { B64.standard.encString( Digest.SHA256.digestBinary( getPolicy( ).getBytes( StandardCharsets.UTF_8 ) ) ) }
+    }
+  }
+
   private void evaluateAuthorization( String policy,
                                       String resourceType,
                                       String requestAction,
@@ -0,0 +1,80 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.binding
+
+import org.junit.Test
+
+import java.util.jar.JarEntry
+
+import static org.junit.Assert.*
+
+class BindingCacheTest {
+
+  @Test
+  void testJarDigest( ) {
+    Closure<List<JarEntry>> entries = { Map<String,Long> crcs ->
+      crcs.collect { String name, Long crc ->
+        JarEntry entry = new JarEntry( name )
+        entry.crc = crc
+        entry
+      }
+    }
+    Map<String,Long> jar = [
+        'com/eucalyptus/compute/RunInstancesType.class': 1L,
+        'com/eucalyptus/compute/ComputeService.class': 2L,
+        'compute-binding.xml': 3L,
+        'META-INF/MANIFEST.MF': 4L,
+    ]
+    Set<String> messages = [ 'com/eucalyptus/compute/RunInstancesType.class' ] as Set
+    String digest = BindingCache.BindingFileSearch.digest( entries( jar ), messages )
+
+    assertEquals( 'Digest for reordered entries', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar ).reverse( ), messages ) )
+    assertEquals( 'Digest for changed service class', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'com/eucalyptus/compute/ComputeService.class': 5L ] ), messages ) )
+    assertEquals( 'Digest for changed manifest', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'META-INF/MANIFEST.MF': 5L ] ), messages ) )
+    assertNotEquals( 'Digest for changed message class', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'com/eucalyptus/compute/RunInstancesType.class': 5L ] ), messages ) )
+    assertNotEquals( 'Digest for changed binding', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'compute-binding.xml': 5L ] ), messages ) )
+    assertNotEquals( 'Digest for added class', digest,
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'com/eucalyptus/compute/TerminateInstancesType.class': 5L ] ), messages ) )
+    Set<String> bound = messages + [ 'com/eucalyptus/compute/ComputeService.class' ]
+    assertNotEquals( 'Digest for changed bound class', BindingCache.BindingFileSearch.digest( entries( jar ), bound ),
+        BindingCache.BindingFileSearch.digest( entries( jar + [ 'com/eucalyptus/compute/ComputeService.class': 5L ] ), bound ) )
+  }
+
+  @Test
+  void testBindingClassEntries( ) {
+    String binding = '''<binding>
+      <mapping name="action" class="com.eucalyptus.reporting.export.ReportedAction">
+        <value name="type" field="type" usage="optional"/>
+        <structure name="details" field="details" type="com.eucalyptus.reporting.export.ReportedDetails"/>
+        <collection name="items" field="items" item-type="com.eucalyptus.reporting.export.ReportedItem$Entry"/>
+      </mapping>
+    </binding>'''
+    assertEquals( 'Class entries', [
+        'com/eucalyptus/reporting/export/ReportedAction.class',
+        'com/eucalyptus/reporting/export/ReportedDetails.class',
+        'com/eucalyptus/reporting/export/ReportedItem$Entry.class',
+    ] as Set, BindingCache.BindingFileSearch.bindingClassEntries( binding ) )
+  }
+}
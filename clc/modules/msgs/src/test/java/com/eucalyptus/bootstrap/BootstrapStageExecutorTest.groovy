@@ -0,0 +1,295 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.bootstrap
+
+import com.eucalyptus.empyrean.Empyrean
+import com.google.common.base.Function
+import com.google.common.base.Supplier
+import com.google.common.io.Files
+import net.sf.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.junit.Assert.*
+
+/**
+ * Harness for stage execution using stub bootstrappers that sleep for a
+ * configured duration.
+ */
+class BootstrapStageExecutorTest {
+
+  private ExecutorService pool
+  private File directory
+
+  @Before
+  void setUp( ) {
+    pool = Executors.newFixedThreadPool( 4 )
+    directory = Files.createTempDir( )
+    StubBootstrapper.reset( )
+  }
+
+  @After
+  void tearDown( ) {
+    pool.shutdownNow( )
+    directory.deleteDir( )
+  }
+
+  @Test
+  void testSequentialOrder( ) {
+    StubBootstrapper.configure( [ (DatabaseStub): 10, (PersistenceStub): 10, (BindingStub): 10, (ServiceStub): 10 ] )
+    executor( 1 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load,
+        [ new BindingStub( ), new DatabaseStub( ), new PersistenceStub( ), new ServiceStub( ) ] )
+    assertEquals( 'Execution order', [
+        'start:BindingStub', 'end:BindingStub',
+        'start:DatabaseStub', 'end:DatabaseStub',
+        'start:PersistenceStub', 'end:PersistenceStub',
+        'start:ServiceStub', 'end:ServiceStub',
+    ], StubBootstrapper.snapshot( ) )
+  }
+
+  @Test
+  void testDependencyBeforeName( ) {
+    StubBootstrapper.configure( [ (AfterZStub): 10, (ZStub): 10 ] )
+    executor( 1 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, [ new AfterZStub( ), new ZStub( ) ] )
+    assertEquals( 'Execution order', [ 'start:ZStub', 'end:ZStub', 'start:AfterZStub', 'end:AfterZStub' ], StubBootstrapper.snapshot( ) )
+  }
+
+  @Test
+  void testParallelRespectsDependencies( ) {
+    StubBootstrapper.configure( [ (BindingStub): 50, (DatabaseStub): 20, (PersistenceStub): 20, (ServiceStub): 20, (PipelineStub): 20, (DirectoryStub): 20 ] )
+    executor( 4 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, stubs( ) )
+    List<String> events = StubBootstrapper.snapshot( )
+
+    assertEquals( 'Events', 12, events.size( ) )
+    assertTrue( "Concurrent bootstrappers ${StubBootstrapper.maxRunning}", StubBootstrapper.maxRunning > 1 )
+    assertTrue( "Concurrent bootstrappers ${StubBootstrapper.maxRunning}", StubBootstrapper.maxRunning <= 4 )
+    assertBefore( events, 'end:DatabaseStub', 'start:PersistenceStub' )
+    assertBefore( events, 'end:PersistenceStub', 'start:ServiceStub' )
+    assertBefore( events, 'end:BindingStub', 'start:ServiceStub' )
+  }
+
+  @Test
+  void testSingleThreadSequential( ) {
+    StubBootstrapper.configure( [ (BindingStub): 10, (DatabaseStub): 10, (PersistenceStub): 10, (ServiceStub): 10, (PipelineStub): 10, (DirectoryStub): 10 ] )
+    executor( 1 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, stubs( ) )
+
+    assertEquals( 'Events', 12, StubBootstrapper.snapshot( ).size( ) )
+    assertEquals( 'Concurrent bootstrappers', 1, StubBootstrapper.maxRunning )
+  }
+
+  /**
+   * With two threads the chain should start first even though the
+   * independent bootstrappers are earlier by name.
+   */
+  @Test
+  void testCriticalPathFirst( ) {
+    Map<Class<?>,Integer> durations = [
+        (DirectoryStub): 100,
+        (PipelineStub): 100,
+        (BindingStub): 100,
+        (ZStub): 100,
+        (AfterZStub): 100,
+    ]
+    StubBootstrapper.configure( durations )
+    Map<String,Long> estimates = durations.collectEntries{ Class<?> type, Integer millis -> [ "load:${type.name}" as String, millis as Long ] }
+    BootstrapStageExecutor executor = new BootstrapStageExecutor( 2, { pool } as Supplier<ExecutorService>, { String key -> estimates[ key ] } as Function<String,Long>, null )
+    executor.execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load,
+        [ new AfterZStub( ), new BindingStub( ), new DirectoryStub( ), new PipelineStub( ), new ZStub( ) ] )
+    List<String> starts = StubBootstrapper.snapshot( ).findAll{ String event -> event.startsWith( 'start:' ) }
+    assertTrue( "ZStub started first: ${starts}", starts.take( 2 ).contains( 'start:ZStub' ) )
+  }
+
+  @Test
+  void testDeterministicFailure( ) {
+    ( 1..5 ).each {
+      StubBootstrapper.configure( [ (BindingStub): 200, (DatabaseStub): 10, (PersistenceStub): 10, (ServiceStub): 10, (PipelineStub): 10, (DirectoryStub): 10 ] )
+      StubBootstrapper.errors << BindingStub
+      StubBootstrapper.failures << DatabaseStub
+      try {
+        executor( 4 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, stubs( ) )
+        fail( 'Expected failure' )
+      } catch ( BootstrapException e ) {
+        assertTrue( e.message, e.message.contains( "BindingStub threw an error in load( ): ${BindingStub.simpleName} failed" ) )
+      }
+      List<String> events = StubBootstrapper.snapshot( )
+      assertFalse( "PersistenceStub after failed dependency: ${events}", events.contains( 'start:PersistenceStub' ) )
+      assertFalse( "ServiceStub after failed dependency: ${events}", events.contains( 'start:ServiceStub' ) )
+      assertEquals( "All started completed: ${events}",
+          events.count{ String event -> event.startsWith( 'start:' ) },
+          events.count{ String event -> event.startsWith( 'end:' ) } )
+    }
+  }
+
+  @Test
+  void testFalseResult( ) {
+    StubBootstrapper.configure( [ (DatabaseStub): 10, (PersistenceStub): 10 ] )
+    StubBootstrapper.failures << DatabaseStub
+    try {
+      executor( 4 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.start, [ new DatabaseStub( ), new PersistenceStub( ) ] )
+      fail( 'Expected failure' )
+    } catch ( BootstrapException e ) {
+      assertTrue( e.message, e.message.contains( "DatabaseStub returned 'false' from start( ): terminating bootstrap." ) )
+    }
+    assertEquals( 'Events', [ 'start:DatabaseStub', 'end:DatabaseStub' ], StubBootstrapper.snapshot( ) )
+  }
+
+  @Test( expected = BootstrapException )
+  void testCycle( ) {
+    executor( 4 ).execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, [ new CycleAStub( ), new CycleBStub( ) ] )
+  }
+
+  @Test
+  void testTimeline( ) {
+    StubBootstrapper.configure( [ (BindingStub): 50, (DatabaseStub): 20, (PersistenceStub): 20, (ServiceStub): 20, (PipelineStub): 20, (DirectoryStub): 20 ] )
+    File file = new File( directory, 'bootstrap-timeline.json' )
+    BootstrapStageExecutor executor = new BootstrapStageExecutor( 4, { pool } as Supplier<ExecutorService>, { null } as Function<String,Long>, file )
+    executor.execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.load, stubs( ) )
+    executor.execute( Bootstrap.Stage.DatabaseInit, BootstrapStageExecutor.Phase.start, stubs( ) )
+
+    JSONObject trace = JSONObject.fromObject( file.getText( 'UTF-8' ) )
+    List<Map> events = trace.getJSONArray( 'traceEvents' ).collect{ it as Map }
+    assertEquals( 'Bootstrapper events', 12, events.count{ Map event -> event.ph == 'X' && event.cat in [ 'load', 'start' ] } )
+    assertEquals( 'Stage events', 2, events.count{ Map event -> event.ph == 'X' && event.cat == 'stage' } )
+    assertTrue( 'Thread names', events.any{ Map event -> event.ph == 'M' && event.name == 'thread_name' } )
+
+    Map<String,Long> durations = BootstrapStageExecutor.Timeline.durations( file )
+    assertEquals( 'Durations', 12, durations.size( ) )
+    assertTrue( 'Binding load duration', durations[ "load:${BindingStub.name}" as String ] >= 50 )
+  }
+
+  private BootstrapStageExecutor executor( int threads ) {
+    new BootstrapStageExecutor( threads, { pool } as Supplier<ExecutorService>, { null } as Function<String,Long>, null )
+  }
+
+  private static List<Bootstrapper> stubs( ) {
+    [ new BindingStub( ), new DatabaseStub( ), new DirectoryStub( ), new PersistenceStub( ), new PipelineStub( ), new ServiceStub( ) ]
+  }
+
+  private static void assertBefore( List<String> events, String first, String second ) {
+    assertTrue( "${first} before ${second}: ${events}", events.indexOf( first ) >= 0 && events.indexOf( first ) < events.indexOf( second ) )
+  }
+
+  static abstract class StubBootstrapper extends Bootstrapper.Simple {
+    static final Map<Class<?>,Integer> durations = [:]
+    static final Set<Class<?>> failures = [ ] as Set
+    static final Set<Class<?>> errors = [ ] as Set
+    static final List<String> events = Collections.synchronizedList( [ ] )
+    static final AtomicInteger running = new AtomicInteger( )
+    static volatile int maxRunning = 0
+
+    static void reset( ) {
+      durations.clear( )
+      failures.clear( )
+      errors.clear( )
+      events.clear( )
+      running.set( 0 )
+      maxRunning = 0
+    }
+
+    static void configure( Map<Class<?>,Integer> durations ) {
+      reset( )
+      StubBootstrapper.durations.putAll( durations )
+    }
+
+    static List<String> snapshot( ) {
+      synchronized ( events ) {
+        new ArrayList<String>( events )
+      }
+    }
+
+    @Override
+    boolean load( ) {
+      simulate( )
+    }
+
+    @Override
+    boolean start( ) {
+      simulate( )
+    }
+
+    protected boolean simulate( ) {
+      events << "start:${getClass( ).simpleName}".toString( )
+      int current = running.incrementAndGet( )
+      synchronized ( running ) {
+        maxRunning = Math.max( maxRunning, current )
+      }
+      try {
+        Thread.sleep( durations.get( getClass( ) ) ?: 0 )
+        if ( errors.contains( getClass( ) ) ) {
+          throw new IllegalStateException( "${getClass( ).simpleName} failed" )
+        }
+        !failures.contains( getClass( ) )
+      } finally {
+        running.decrementAndGet( )
+        events << "end:${getClass( ).simpleName}".toString( )
+      }
+    }
+  }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  static class BindingStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  static class DatabaseStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  static class DirectoryStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  @RunAfter( DatabaseStub )
+  static class PersistenceStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  static class PipelineStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  @RunAfter( [ PersistenceStub, BindingStub ] )
+  static class ServiceStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  static class ZStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  @RunAfter( ZStub )
+  static class AfterZStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  @RunAfter( CycleBStub )
+  static class CycleAStub extends StubBootstrapper { }
+
+  @Provides( Empyrean )
+  @RunDuring( Bootstrap.Stage.DatabaseInit )
+  @RunAfter( CycleAStub )
+  static class CycleBStub extends StubBootstrapper { }
+}
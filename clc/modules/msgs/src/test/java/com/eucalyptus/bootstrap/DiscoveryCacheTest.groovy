@@ -0,0 +1,154 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.bootstrap
+
+import com.google.common.io.Files
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+import static org.junit.Assert.*
+
+class DiscoveryCacheTest {
+
+  private File directory
+
+  @Before
+  void createDirectory( ) {
+    directory = Files.createTempDir( )
+  }
+
+  @After
+  void deleteDirectory( ) {
+    directory.deleteDir( )
+  }
+
+  @Test
+  void testStoreAndLookup( ) {
+    DiscoveryCache cache = new DiscoveryCache( new File( directory, 'cache' ) )
+    assertNull( 'Lookup before store', cache.lookup( 'abc' ) )
+    cache.store( 'abc', 'fingerprint', [ 'com.eucalyptus.B', 'com.eucalyptus.A' ] )
+    DiscoveryCache.Result result = cache.lookup( 'abc' )
+    assertNotNull( 'Lookup after store', result )
+    assertEquals( 'Fingerprint', 'fingerprint', result.fingerprint )
+    assertEquals( 'Classes', [ 'com.eucalyptus.A', 'com.eucalyptus.B' ] as Set, result.classNames )
+    cache.store( 'def', 'fingerprint', [ ] )
+    assertEquals( 'Empty classes', [ ] as Set, cache.lookup( 'def' ).classNames )
+  }
+
+  @Test
+  void testDigest( ) {
+    File jar = jar( 'eucalyptus-test.jar', 10, 0 )
+    String digest = DiscoveryCache.digest( jar )
+    assertEquals( 'Digest', digest, DiscoveryCache.digest( jar ) )
+    jar( 'eucalyptus-test.jar', 10, 1 )
+    jar.setLastModified( jar.lastModified( ) + 2000 )
+    assertNotEquals( 'Digest after change', digest, DiscoveryCache.digest( jar ) )
+  }
+
+  @Test
+  void testFingerprint( ) {
+    assertEquals( 'Fingerprint order independent',
+        DiscoveryCache.fingerprint( [ 'a@1', 'b@2' ] ),
+        DiscoveryCache.fingerprint( [ 'b@2', 'a@1' ] ) )
+    assertNotEquals( 'Fingerprint for changed jar',
+        DiscoveryCache.fingerprint( [ 'a@1', 'b@2' ] ),
+        DiscoveryCache.fingerprint( [ 'a@1', 'b@3' ] ) )
+  }
+
+  @Test
+  void testProcessLibraries( ) {
+    DiscoveryCache cache = new DiscoveryCache( new File( directory, 'cache' ) )
+    File discoveryJar = classJar( 'eucalyptus-discovery.jar', [ TestDiscovery ] )
+    File serviceJar = classJar( 'eucalyptus-service.jar', [ AcceptedType, OtherType ] )
+    List<File> jars = [ discoveryJar, serviceJar ]
+
+    assertEquals( 'Scanned when not cached', jars as Set, ServiceJarDiscovery.processLibraries( cache, jars ) )
+    ServiceJarDiscovery.runDiscovery( new TestDiscovery( ) )
+    ServiceJarDiscovery.storeDiscoveryCache( cache )
+    assertEquals( 'Cached discovery classes', [ TestDiscovery.name ] as Set,
+        cache.lookup( DiscoveryCache.digest( discoveryJar ) ).classNames )
+    assertEquals( 'Cached service classes', [ AcceptedType.name ] as Set,
+        cache.lookup( DiscoveryCache.digest( serviceJar ) ).classNames )
+
+    assertEquals( 'Scanned when cached', [ ] as Set, ServiceJarDiscovery.processLibraries( cache, jars ) )
+
+    classJar( 'eucalyptus-service.jar', [ AcceptedType, OtherType, DiscoveryCacheTest ] )
+    assertEquals( 'Scanned when service jar changed', [ serviceJar ] as Set, ServiceJarDiscovery.processLibraries( cache, jars ) )
+    ServiceJarDiscovery.storeDiscoveryCache( cache )
+    assertEquals( 'Scanned when cached after change', [ ] as Set, ServiceJarDiscovery.processLibraries( cache, jars ) )
+
+    classJar( 'eucalyptus-discovery.jar', [ TestDiscovery, DiscoveryCacheTest ] )
+    assertEquals( 'Scanned when discovery jar changed', jars as Set, ServiceJarDiscovery.processLibraries( cache, jars ) )
+  }
+
+  private File jar( final String name, final int classes, final int version ) {
+    File file = new File( directory, name )
+    Random random = new Random( name.hashCode( ) + version )
+    new JarOutputStream( new FileOutputStream( file ) ).withCloseable { JarOutputStream out ->
+      ( 0..<classes ).each { int index ->
+        out.putNextEntry( new JarEntry( "com/eucalyptus/test/${name - '.jar'}/Class${index}${index % 50 == 0 ? '0Bootstrapper' : 'Type'}.class" ) )
+        byte[] content = new byte[ 2048 ]
+        random.nextBytes( content )
+        out.write( content )
+        out.closeEntry( )
+      }
+    }
+    file
+  }
+
+  /**
+   * Jar with entries for the given classes, modification time is advanced so
+   * that the digest is recalculated when a jar is replaced.
+   */
+  private File classJar( final String name, final List<Class<?>> classes ) {
+    File file = new File( directory, name )
+    long lastModified = file.exists( ) ? file.lastModified( ) : 0
+    new JarOutputStream( new FileOutputStream( file ) ).withCloseable { JarOutputStream out ->
+      classes.each { Class<?> clazz ->
+        String entryName = clazz.name.replace( '.', '/' ) + '.class'
+        out.putNextEntry( new JarEntry( entryName ) )
+        out.write( DiscoveryCacheTest.getResourceAsStream( '/' + entryName ).bytes )
+        out.closeEntry( )
+      }
+    }
+    if ( lastModified > 0 ) file.setLastModified( lastModified + 2000 )
+    file
+  }
+
+  static class TestDiscovery extends ServiceJarDiscovery {
+    @Override
+    boolean processClass( final Class candidate ) throws Exception {
+      AcceptedType == candidate
+    }
+
+    @Override
+    Double getPriority( ) {
+      0.0d
+    }
+  }
+
+  static class AcceptedType { }
+
+  static class OtherType { }
+}
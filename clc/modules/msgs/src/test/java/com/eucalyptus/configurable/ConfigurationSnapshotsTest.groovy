@@ -0,0 +1,130 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.configurable
+
+import com.google.common.base.Supplier
+import org.junit.After
+import org.junit.Test
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+import static org.junit.Assert.*
+
+class ConfigurationSnapshotsTest {
+
+  /**
+   * Loader simulating a transaction to read a configuration entity
+   */
+  static class Loader implements Supplier<String> {
+    final AtomicInteger loads = new AtomicInteger( )
+    final AtomicReference<String> value
+
+    Loader( final String value ) {
+      this.value = new AtomicReference<>( value )
+    }
+
+    @Override
+    String get( ) {
+      loads.incrementAndGet( )
+      value.get( )
+    }
+  }
+
+  @After
+  void cleanup( ) {
+    ConfigurationSnapshots.SNAPSHOT_MAX_AGE_SECS = 300
+    ConfigurationSnapshots.clear( )
+  }
+
+  @Test
+  void testSnapshotRead( ) {
+    final Loader loader = new Loader( 'one' )
+    assertEquals( 'Value', 'one', ConfigurationSnapshots.get( String, 'read', loader ) )
+    loader.value.set( 'two' )
+    assertEquals( 'Cached value', 'one', ConfigurationSnapshots.get( String, 'read', loader ) )
+    assertEquals( 'Loads', 1, loader.loads.get( ) )
+    assertEquals( 'Other identifier', 'two', ConfigurationSnapshots.get( String, 'read-other', loader ) )
+  }
+
+  @Test
+  void testNullNotCached( ) {
+    final Loader loader = new Loader( null )
+    assertNull( 'Value', ConfigurationSnapshots.get( String, 'null', loader ) )
+    loader.value.set( 'value' )
+    assertEquals( 'Value', 'value', ConfigurationSnapshots.get( String, 'null', loader ) )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testLocalChange( ) {
+    final Loader loader = new Loader( 'one' )
+    final long version = ConfigurationSnapshots.getVersion( )
+    ConfigurationSnapshots.get( String, 'local', loader )
+    loader.value.set( 'two' )
+    ConfigurationSnapshots.changed( String )
+    assertEquals( 'Version', version + 1, ConfigurationSnapshots.getVersion( ) )
+    assertEquals( 'Value after change', 'two', ConfigurationSnapshots.get( String, 'local', loader ) )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testRemoteChange( ) {
+    final Loader loader = new Loader( 'one' )
+    ConfigurationSnapshots.observe( 'remote-host', 3 )
+    ConfigurationSnapshots.get( String, 'remote', loader )
+    ConfigurationSnapshots.observe( 'remote-host', 3 )
+    ConfigurationSnapshots.get( String, 'remote', loader )
+    assertEquals( 'Loads for unchanged version', 1, loader.loads.get( ) )
+    loader.value.set( 'two' )
+    ConfigurationSnapshots.observe( 'remote-host', 4 )
+    assertEquals( 'Value after remote change', 'two', ConfigurationSnapshots.get( String, 'remote', loader ) )
+    ConfigurationSnapshots.observe( 'remote-host', null )
+    ConfigurationSnapshots.get( String, 'remote', loader )
+    assertEquals( 'Loads', 3, loader.loads.get( ) )
+  }
+
+  @Test
+  void testMaxAge( ) {
+    final Loader loader = new Loader( 'one' )
+    ConfigurationSnapshots.SNAPSHOT_MAX_AGE_SECS = 0
+    3.times{ ConfigurationSnapshots.get( String, 'age', loader ) }
+    assertEquals( 'Loads', 3, loader.loads.get( ) )
+  }
+
+  /**
+   * Configuration lookups for a CreateVolume (StorageInfo and backend info)
+   * or PutObject (global configuration and provider configuration) request
+   * are served from snapshots after the first request.
+   */
+  @Test
+  void testRepeatedRequestsUseSnapshots( ) {
+    final int readsPerRequest = 4
+    final Loader loader = new Loader( 'value' )
+
+    1000.times {
+      for ( int j = 0; j < readsPerRequest; j++ ) {
+        assertEquals( 'Value', 'value', ConfigurationSnapshots.get( String, "requests-${j}" as String, loader ) )
+      }
+    }
+
+    assertEquals( 'Loads', readsPerRequest, loader.loads.get( ) )
+  }
+}
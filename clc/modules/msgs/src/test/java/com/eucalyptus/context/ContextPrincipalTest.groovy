@@ -0,0 +1,161 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.context
+
+import com.eucalyptus.auth.AuthContext
+import com.eucalyptus.auth.principal.AccessKey
+import com.eucalyptus.auth.principal.Certificate
+import com.eucalyptus.auth.principal.PolicyScope
+import com.eucalyptus.auth.principal.PolicyVersion
+import com.eucalyptus.auth.principal.PrincipalBundle
+import com.eucalyptus.auth.principal.PrincipalBundles
+import com.eucalyptus.auth.principal.UserPrincipal
+import com.google.common.collect.ImmutableList
+import org.junit.Test
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+import static org.junit.Assert.*
+
+/**
+ * Tests for shared principal bundles in request contexts.
+ */
+class ContextPrincipalTest {
+
+  @Test
+  void testPrincipalShared( ) {
+    UserPrincipal user = principal( 'test' )
+    Context first = new Context( )
+    Context second = new Context( )
+    first.setUser( user )
+    second.setUser( user )
+
+    assertSame( 'Bundle', first.getPrincipal( ), second.getPrincipal( ) )
+    assertSame( 'User', user, second.getUser( ) )
+    assertSame( 'User full name', first.getUserFullName( ), second.getUserFullName( ) )
+    assertSame( 'Account', first.getAccount( ), second.getAccount( ) )
+    assertEquals( 'Account number', '123456789012', second.getAccountNumber( ) )
+    assertFalse( 'System admin', second.hasAdministrativePrivileges( ) )
+
+    AuthContext firstAuth = first.getAuthContext( ).get( )
+    AuthContext secondAuth = second.getAuthContext( ).get( )
+    assertNotSame( 'Authorization context is per request', firstAuth, secondAuth )
+    assertSame( 'Policies', firstAuth.getPolicies( ), secondAuth.getPolicies( ) )
+    assertSame( 'Policies', user.getPrincipalPolicies( ), secondAuth.getPolicies( ) )
+  }
+
+  @Test
+  void testPrincipalVersion( ) {
+    UserPrincipal user = principal( 'test' )
+    UserPrincipal reloaded = principal( 'test', user.getUserId( ) )
+    PrincipalBundle bundle = PrincipalBundles.bundle( user )
+
+    assertSame( 'Same principal', bundle, PrincipalBundles.bundle( user ) )
+    assertNotSame( 'Reloaded principal', bundle, PrincipalBundles.bundle( reloaded ) )
+  }
+
+  @Test
+  void testInvalidation( ) {
+    UserPrincipal user = principal( 'test' )
+    Context context = new Context( )
+    context.setUser( user )
+    PrincipalBundle bundle = context.getPrincipal( )
+    long loadVersion = PrincipalBundles.version( ) // as recorded by a principal cache before loading
+    assertTrue( 'Bundle current', PrincipalBundles.isCurrent( bundle ) )
+
+    PrincipalBundles.invalidate( )
+
+    assertFalse( 'Bundle current after invalidation', PrincipalBundles.isCurrent( bundle ) )
+    assertFalse( 'Cached principal current after invalidation', PrincipalBundles.isCurrent( loadVersion ) )
+    assertSame( 'Existing context unchanged', bundle, context.getPrincipal( ) )
+
+    Context next = new Context( )
+    next.setUser( user )
+    assertNotSame( 'Bundle after invalidation', bundle, next.getPrincipal( ) )
+    assertTrue( 'Bundle after invalidation current', PrincipalBundles.isCurrent( next.getPrincipal( ) ) )
+  }
+
+  @Test
+  void testConcurrentInvalidation( ) {
+    UserPrincipal user = principal( 'test' )
+    int threads = 4
+    ExecutorService executor = Executors.newFixedThreadPool( threads )
+    AtomicBoolean running = new AtomicBoolean( true )
+    CountDownLatch started = new CountDownLatch( threads )
+    try {
+      List<Future<Integer>> readers = ( 1..threads ).collect {
+        executor.submit( {
+          int stale = 0
+          started.countDown( )
+          while ( running.get( ) ) {
+            long version = PrincipalBundles.version( )
+            if ( PrincipalBundles.bundle( user ).getVersion( ) < version ) stale++
+          }
+          stale
+        } as Callable<Integer> )
+      }
+      started.await( )
+      1000.times { PrincipalBundles.invalidate( ) }
+      running.set( false )
+      readers.each { Future<Integer> reader ->
+        assertEquals( 'Bundles older than the version at lookup', 0, reader.get( 10, TimeUnit.SECONDS ) )
+      }
+    } finally {
+      executor.shutdownNow( )
+    }
+    assertTrue( 'Bundle current', PrincipalBundles.isCurrent( PrincipalBundles.bundle( user ) ) )
+  }
+
+  private static UserPrincipal principal( String name, String id = 'AIDA' + UUID.randomUUID( ).toString( ).replace( '-', '' ).substring( 0, 17 ).toUpperCase( ) ) {
+    List<PolicyVersion> policies = ImmutableList.of( new PolicyVersion( ) {
+      @Override String getPolicyVersionId( ) { '1234567890' }
+      @Override String getPolicyName( ) { 'test' }
+      @Override PolicyScope getPolicyScope( ) { PolicyScope.User }
+      @Override String getPolicy( ) { '{"Statement":[{"Effect":"Allow","Action":"ec2:*","Resource":"*"}]}' }
+      @Override String getPolicyHash( ) { 'hash' }
+    } as PolicyVersion )
+    new UserPrincipal( ) {
+      @Override String getName( ) { name }
+      @Override String getPath( ) { '/' }
+      @Override String getUserId( ) { id }
+      @Override String getAuthenticatedId( ) { id }
+      @Override String getAccountAlias( ) { 'account' }
+      @Override String getAccountNumber( ) { '123456789012' }
+      @Override String getCanonicalId( ) { 'canonical' }
+      @Override boolean isEnabled( ) { true }
+      @Override boolean isAccountAdmin( ) { false }
+      @Override boolean isSystemAdmin( ) { false }
+      @Override boolean isSystemUser( ) { false }
+      @Override String getPassword( ) { null }
+      @Override Long getPasswordExpires( ) { null }
+      @Override List<AccessKey> getKeys( ) { [ ] }
+      @Override List<Certificate> getCertificates( ) { [ ] }
+      @Override List<PolicyVersion> getPrincipalPolicies( ) { policies }
+      @Override String getToken( ) { null }
+      @Override String getPTag( ) { null }
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.crypto.util
+
+import com.eucalyptus.binding.Binding
+import com.eucalyptus.binding.BindingException
+import com.eucalyptus.binding.BoundElement
+import com.eucalyptus.binding.HoldMe
+import com.eucalyptus.crypto.DefaultCryptoProvider
+import com.eucalyptus.ws.WebServicesException
+import org.apache.axiom.om.OMElement
+import org.apache.axiom.om.impl.builder.StAXOMBuilder
+import org.apache.axiom.soap.SOAP11Constants
+import org.apache.axiom.soap.SOAPEnvelope
+import org.apache.axiom.soap.SOAPFactory
+import org.apache.axiom.soap.impl.builder.StAXSOAPModelBuilder
+import org.apache.ws.security.WSConstants
+import org.apache.ws.security.WSEncryptionPart
+import org.apache.ws.security.WSSConfig
+import org.apache.ws.security.components.crypto.Crypto
+import org.apache.ws.security.message.WSSecHeader
+import org.apache.ws.security.message.WSSecSignature
+import org.apache.ws.security.message.WSSecTimestamp
+import org.apache.xml.security.c14n.Canonicalizer
+import org.bouncycastle.jce.provider.BouncyCastleProvider
+import org.junit.BeforeClass
+import org.junit.Test
+import org.w3c.dom.Document
+import org.w3c.dom.Element
+
+import javax.security.auth.x500.X500Principal
+import javax.xml.namespace.QName
+import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
+import java.nio.charset.StandardCharsets
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+import java.security.Security
+import java.security.cert.X509Certificate
+import java.time.Instant
+
+import static org.junit.Assert.*
+
+/**
+ * Interoperability tests for streaming WS-Security signing and verification.
+ */
+class WSSecuritySignerTest {
+
+  private static final String WSA_NS = 'http://www.w3.org/2005/08/addressing'
+  private static final String BODY = '<RunInstancesType xmlns="http://msgs.eucalyptus.com/" xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance">' +
+      '<correlationId>3c0a3a4c-0b4d-4c5e-8f1b-6e2e8a3c9d10</correlationId><userId>eucalyptus</userId>' +
+      '<instanceId>i-12345678</instanceId><reason xsi:nil="true"/><name a="&quot;1&quot;" b="2">ramdisk &lt;r&gt; &amp; kernel</name>' +
+      '<item xmlns=""><value xmlns:x="urn:x" x:type="t">v</value></item></RunInstancesType>'
+
+  private static KeyPair keys
+  private static X509Certificate certificate
+  private static Crypto credentials
+
+  @BeforeClass
+  static void setup( ) {
+    if ( Security.getProvider( BouncyCastleProvider.PROVIDER_NAME ) == null ) {
+      Security.addProvider( new BouncyCastleProvider( ) )
+    }
+    WSSecurity.init( )
+    KeyPairGenerator generator = KeyPairGenerator.getInstance( 'RSA' )
+    generator.initialize( 2048 )
+    keys = generator.generateKeyPair( )
+    certificate = new DefaultCryptoProvider( ).generateCertificate( keys, new X500Principal( 'CN=test' ) )
+    credentials = [
+        getX509Certificates: { Object type -> [ certificate ] as X509Certificate[] },
+        getPrivateKey: { Object... args -> keys.private },
+    ] as Crypto
+  }
+
+  @Test
+  void testCanonicalWriter( ) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( )
+    CanonicalXMLStreamWriter writer = new CanonicalXMLStreamWriter( out )
+    copy( BODY, writer )
+    writer.flush( )
+
+    assertEquals( 'Canonical form', canonicalize( BODY ), out.toString( 'UTF-8' ) )
+  }
+
+  @Test
+  void testStreamingSignatureVerifiedByObjectModel( ) {
+    String message = signStreaming( signer( true ), addressingHeaders( ) )
+
+    assertEquals( 'Signing certificate', certificate, WSSecurity.verifyWSSec( envelope( message ) ) )
+  }
+
+  @Test
+  void testObjectModelSignatureVerifiedByStreaming( ) {
+    String message = signObjectModel( parts( false ) )
+
+    assertEquals( 'Signing certificate', certificate, WSSecurityVerifier.verify( message ) )
+  }
+
+  @Test
+  void testStreamingSignatureVerifiedByStreaming( ) {
+    String message = signStreaming( signer( true ), addressingHeaders( ) )
+
+    assertEquals( 'Signing certificate', certificate, WSSecurityVerifier.verify( message ) )
+  }
+
+  @Test
+  void testCanSign( ) {
+    assertTrue( 'Body and timestamp', signer( false ).canSign( [ : ] ) )
+    assertFalse( 'Missing addressing headers', signer( true ).canSign( [ : ] ) )
+    assertTrue( 'Addressing headers', signer( true ).canSign( addressingHeaders( ) ) )
+  }
+
+  @Test( expected = WebServicesException )
+  void testModifiedBodyRejected( ) {
+    String message = signStreaming( signer( false ), [ : ] )
+
+    WSSecurityVerifier.verify( message.replace( 'i-12345678', 'i-87654321' ) )
+  }
+
+  @Test( expected = WebServicesException )
+  void testReplayRejected( ) {
+    String message = signStreaming( signer( false ), [ : ] )
+
+    WSSecurityVerifier.verify( message )
+    WSSecurityVerifier.verify( message )
+  }
+
+  @Test( expected = WebServicesException )
+  void testMissingCreatedRejected( ) {
+    String message = signObjectModel( parts( false ) ) { Element timestamp ->
+      timestamp.removeChild( timestamp.getElementsByTagNameNS( WSConstants.WSU_NS, 'Created' ).item( 0 ) )
+    }
+
+    WSSecurityVerifier.verify( message )
+  }
+
+  @Test( expected = WebServicesException )
+  void testMissingExpiresRejected( ) {
+    String message = signObjectModel( parts( false ) ) { Element timestamp ->
+      timestamp.removeChild( timestamp.getElementsByTagNameNS( WSConstants.WSU_NS, 'Expires' ).item( 0 ) )
+    }
+
+    WSSecurityVerifier.verify( message )
+  }
+
+  @Test( expected = WebServicesException )
+  void testStaleCreatedRejected( ) {
+    String message = signObjectModel( parts( false ) ) { Element timestamp ->
+      timestamp.getElementsByTagNameNS( WSConstants.WSU_NS, 'Created' ).item( 0 ).setTextContent(
+          Instant.now( ).minusSeconds( WSSConfig.getNewInstance( ).getTimeStampTTL( ) + 60 ).toString( ) )
+    }
+
+    WSSecurityVerifier.verify( message )
+  }
+
+  @Test( expected = WebServicesException )
+  void testFutureCreatedRejected( ) {
+    String message = signObjectModel( parts( false ) ) { Element timestamp ->
+      timestamp.getElementsByTagNameNS( WSConstants.WSU_NS, 'Created' ).item( 0 ).setTextContent(
+          Instant.now( ).plusSeconds( WSSConfig.getNewInstance( ).getTimeStampFutureTTL( ) + 60 ).toString( ) )
+    }
+
+    WSSecurityVerifier.verify( message )
+  }
+
+  private static WSSecuritySigner signer( boolean addressing ) {
+    new WSSecuritySigner( credentials, parts( addressing ), true )
+  }
+
+  private static List<WSEncryptionPart> parts( boolean addressing ) {
+    List<WSEncryptionPart> parts = [ ]
+    if ( addressing ) {
+      parts << new WSEncryptionPart( 'To', WSA_NS, 'Content' )
+      parts << new WSEncryptionPart( 'MessageID', WSA_NS, 'Content' )
+      parts << new WSEncryptionPart( 'Action', WSA_NS, 'Content' )
+    }
+    parts << new WSEncryptionPart( WSConstants.TIMESTAMP_TOKEN_LN, WSConstants.WSU_NS, 'Content' )
+    parts << new WSEncryptionPart( 'Body', SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI, 'Content' )
+    parts
+  }
+
+  private static Map<QName,String> addressingHeaders( ) {
+    Map<QName,String> headers = [ : ]
+    headers.put( new QName( WSA_NS, 'To', 'wsa' ), 'http://10.111.1.1:8774/axis2/services/EucalyptusCC' )
+    headers.put( new QName( WSA_NS, 'MessageID', 'wsa' ), "urn:uuid:${UUID.randomUUID( )}".toString( ) )
+    headers.put( new QName( WSA_NS, 'Action', 'wsa' ), 'EucalyptusCC#RunInstances' )
+    headers
+  }
+
+  private static String signStreaming( WSSecuritySigner signer, Map<QName,String> headers ) {
+    BoundElement body = BoundElement.of( new TestBinding( ), new Object( ), null )
+    signer.sign( headers, body, 4096 ).toString( StandardCharsets.UTF_8 )
+  }
+
+  /**
+   * Sign as per WsSecHandler
+   */
+  private static String signObjectModel( List<WSEncryptionPart> parts, Closure<?> timestampCallback = { } ) {
+    String message = '<soapenv:Envelope xmlns:soapenv="' + SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI + '">' +
+        '<soapenv:Header/><soapenv:Body>' + BODY + '</soapenv:Body></soapenv:Envelope>'
+    OMElement element = new StAXOMBuilder( HoldMe.getDOOMFactory( ), HoldMe.getXMLStreamReader( message ) ).getDocumentElement( )
+    element.build( )
+    Document doc = ( ( Element ) element ).getOwnerDocument( )
+    WSSecHeader header = new WSSecHeader( '', false )
+    header.insertSecurityHeader( doc )
+    WSSecSignature signature = new WSSecSignature( )
+    WSSConfig config = WSSConfig.getNewInstance( )
+    config.setWsiBSPCompliant( false )
+    signature.setWsConfig( config )
+    signature.setKeyIdentifierType( WSConstants.BST_DIRECT_REFERENCE )
+    signature.setSigCanonicalization( WSConstants.C14N_EXCL_OMIT_COMMENTS )
+    signature.prepare( doc, credentials, header )
+    WSSecTimestamp timestamp = new WSSecTimestamp( )
+    timestamp.setTimeToLive( 300 )
+    timestamp.prepare( doc )
+    timestampCallback.call( timestamp.getElement( ) )
+    timestamp.prependToHeader( header )
+    signature.appendBSTElementToHeader( header )
+    signature.computeSignature( signature.addReferencesToSign( parts, header ), false, null )
+    StringWriter out = new StringWriter( )
+    element.serialize( out )
+    out.toString( )
+  }
+
+  private static SOAPEnvelope envelope( String message ) {
+    SOAPFactory factory = HoldMe.getOMSOAP11Factory( )
+    SOAPEnvelope envelope = new StAXSOAPModelBuilder(
+        HoldMe.getXMLStreamReader( message ), factory, SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI ).getSOAPEnvelope( )
+    envelope.build( )
+    envelope
+  }
+
+  private static String canonicalize( String xml ) {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance( )
+    factory.setNamespaceAware( true )
+    Document doc = factory.newDocumentBuilder( ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) )
+    new String( Canonicalizer.getInstance( Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS )
+        .canonicalizeSubtree( doc.getDocumentElement( ) ), StandardCharsets.UTF_8 )
+  }
+
+  private static void copy( String xml, XMLStreamWriter writer ) {
+    XMLStreamReader reader = XMLInputFactory.newInstance( ).createXMLStreamReader( new StringReader( xml ) )
+    while ( reader.hasNext( ) ) {
+      switch ( reader.next( ) ) {
+        case XMLStreamConstants.START_ELEMENT:
+          writer.writeStartElement( reader.prefix ?: '', reader.localName, reader.namespaceURI ?: '' )
+          ( 0..<reader.namespaceCount ).each { int index ->
+            if ( reader.getNamespacePrefix( index ) ) {
+              writer.writeNamespace( reader.getNamespacePrefix( index ), reader.getNamespaceURI( index ) )
+            } else {
+              writer.writeDefaultNamespace( reader.getNamespaceURI( index ) ?: '' )
+            }
+          }
+          ( 0..<reader.attributeCount ).each { int index ->
+            if ( reader.getAttributePrefix( index ) ) {
+              writer.writeAttribute( reader.getAttributePrefix( index ), reader.getAttributeNamespace( index ),
+                  reader.getAttributeLocalName( index ), reader.getAttributeValue( index ) )
+            } else {
+              writer.writeAttribute( reader.getAttributeLocalName( index ), reader.getAttributeValue( index ) )
+            }
+          }
+          break
+        case XMLStreamConstants.END_ELEMENT:
+          writer.writeEndElement( )
+          break
+        case XMLStreamConstants.CHARACTERS:
+          writer.writeCharacters( reader.text )
+          break
+      }
+    }
+  }
+
+  private static class TestBinding extends Binding {
+    TestBinding( ) {
+      super( 'test' )
+    }
+
+    @Override
+    String toStream( XMLStreamWriter writer, Object param, String altNs ) throws BindingException {
+      copy( BODY, writer )
+      altNs
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities
+
+import com.eucalyptus.entities.impl.EucalyptusRegionFactory
+import org.hibernate.cache.spi.access.AccessType
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+class EntityCacheRegionsTest {
+
+  @CachedEntity
+  static class ImageEntity { }
+
+  @CachedEntity
+  static class VmTypeEntity { }
+
+  @CachedEntity( CachedEntity.Usage.READ_ONLY )
+  static class KeyPairEntity { }
+
+  @CachedEntity( maxEntries = 2 )
+  static class BoundedEntity { }
+
+  static class UncachedEntity { }
+
+  /**
+   * Simulated database, counts statements for entity loads.
+   */
+  static class Database {
+    int statements = 0
+
+    Object load( final EntityRegionAccessStrategy strategy, final Object id, final long timestamp ) {
+      Object value = strategy == null ? null : strategy.get( id, timestamp )
+      if ( value == null ) {
+        statements++
+        value = "entity-${id}".toString( )
+        strategy?.putFromLoad( id, value, timestamp, 1 )
+      }
+      value
+    }
+  }
+
+  private final EucalyptusRegionFactory factory = new EucalyptusRegionFactory( )
+
+  private EntityRegionAccessStrategy strategy( final Class<?> entityClass ) {
+    if ( EntityCacheRegions.isCached( entityClass ) ) {
+      EntityCacheRegions.register( entityClass )
+    }
+    EntityRegionAccessStrategy strategy = factory.buildEntityRegion( entityClass.name, new Properties( ), null )
+        .buildAccessStrategy( AccessType.NONSTRICT_READ_WRITE )
+    strategy.evictAll( )
+    strategy
+  }
+
+  private long begin( ) {
+    Thread.sleep( 1 )
+    factory.nextTimestamp( )
+  }
+
+  private EntityCacheRegions.Statistics statistics( final Class<?> entityClass ) {
+    EntityCacheRegions.region( entityClass.name ).getStatistics( )
+  }
+
+  @Test
+  void testCachedAfterLoad( ) {
+    EntityRegionAccessStrategy images = strategy( ImageEntity )
+    Database database = new Database( )
+    EntityCacheRegions.Statistics before = statistics( ImageEntity )
+    assertEquals( 'entity-1', database.load( images, 1, begin( ) ) )
+    assertEquals( 'entity-1', database.load( images, 1, begin( ) ) )
+    assertEquals( 'statements', 1, database.statements )
+    EntityCacheRegions.Statistics after = statistics( ImageEntity )
+    assertEquals( 'hits', 1, after.hits - before.hits )
+    assertEquals( 'misses', 1, after.misses - before.misses )
+  }
+
+  @Test
+  void testPassThroughWhenNotConfigured( ) {
+    EntityRegionAccessStrategy uncached = strategy( UncachedEntity )
+    Database database = new Database( )
+    database.load( uncached, 1, begin( ) )
+    database.load( uncached, 1, begin( ) )
+    assertEquals( 'statements', 2, database.statements )
+    assertNull( EntityCacheRegions.region( UncachedEntity.name ) )
+  }
+
+  @Test
+  void testUpdateInvalidates( ) {
+    EntityRegionAccessStrategy vmTypes = strategy( VmTypeEntity )
+    Database database = new Database( )
+    database.load( vmTypes, 1, begin( ) )
+    long concurrentLoad = begin( )
+    assertFalse( vmTypes.update( 1, 'updated', 2, 1 ) )
+    assertNull( 'invalidated on update', vmTypes.get( 1, begin( ) ) )
+    assertFalse( 'load started before update not cached', vmTypes.putFromLoad( 1, 'stale', concurrentLoad, 1 ) )
+    assertFalse( vmTypes.afterUpdate( 1, 'updated', 2, 1, null ) )
+    assertNotNull( 'version published', EntityCacheRegions.getVersions( ).get( VmTypeEntity.name ) )
+    database.load( vmTypes, 1, begin( ) )
+    database.load( vmTypes, 1, begin( ) )
+    assertEquals( 'statements', 2, database.statements )
+  }
+
+  @Test( expected = UnsupportedOperationException )
+  void testReadOnlyUpdate( ) {
+    EntityRegionAccessStrategy keyPairs = strategy( KeyPairEntity )
+    new Database( ).load( keyPairs, 1, begin( ) )
+    keyPairs.update( 1, 'updated', 2, 1 )
+  }
+
+  @Test
+  void testReadOnlyRemove( ) {
+    EntityRegionAccessStrategy keyPairs = strategy( KeyPairEntity )
+    new Database( ).load( keyPairs, 1, begin( ) )
+    keyPairs.remove( 1 )
+    assertNull( keyPairs.get( 1, begin( ) ) )
+  }
+
+  @Test
+  void testRemoteInvalidation( ) {
+    EntityRegionAccessStrategy images = strategy( ImageEntity )
+    Database database = new Database( )
+    database.load( images, 1, begin( ) )
+    long remoteBefore = statistics( ImageEntity ).remoteInvalidations
+    EntityCacheRegions.observe( 'host-b', [ ( ImageEntity.name ): 1L ] )
+    assertEquals( 'first observation invalidates', remoteBefore + 1, statistics( ImageEntity ).remoteInvalidations )
+    database.load( images, 1, begin( ) )
+    EntityCacheRegions.observe( 'host-b', [ ( ImageEntity.name ): 1L ] )
+    database.load( images, 1, begin( ) )
+    assertEquals( 'unchanged version retained', 2, database.statements )
+    EntityCacheRegions.observe( 'host-b', [ ( ImageEntity.name ): 2L ] )
+    database.load( images, 1, begin( ) )
+    assertEquals( 'changed version invalidated', 3, database.statements )
+    EntityCacheRegions.observe( 'host-b', null )
+    database.load( images, 1, begin( ) )
+    assertEquals( 'older host ignored', 3, database.statements )
+  }
+
+  @Test
+  void testBounded( ) {
+    EntityRegionAccessStrategy bounded = strategy( BoundedEntity )
+    Database database = new Database( )
+    long evictionsBefore = statistics( BoundedEntity ).evictions
+    ( 1..3 ).each { database.load( bounded, it, begin( ) ) }
+    EntityCacheRegions.Statistics after = statistics( BoundedEntity )
+    assertEquals( 'size', 2, after.size )
+    assertTrue( 'evictions', after.evictions > evictionsBefore )
+  }
+}
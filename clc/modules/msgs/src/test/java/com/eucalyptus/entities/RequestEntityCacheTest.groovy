@@ -0,0 +1,256 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities
+
+import com.eucalyptus.context.Context
+import com.eucalyptus.context.Contexts
+import com.google.common.collect.ImmutableList
+import org.junit.After
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Test
+
+import javax.persistence.Column
+import javax.persistence.Entity
+import javax.persistence.PersistenceContext
+import javax.persistence.Table
+
+import static org.junit.Assert.*
+
+/**
+ * Tests for request scoped caching of Entities lookups.
+ */
+class RequestEntityCacheTest {
+
+  private static final String PERSISTENCE_CONTEXT = 'eucalyptus_request_cache_test'
+
+  @Entity
+  @PersistenceContext( name = 'eucalyptus_request_cache_test' )
+  @Table( name = 'request_cache_group' )
+  @RequestCachedEntity
+  static class GroupEntity extends AbstractPersistent {
+    @Column( name = 'group_owner' )
+    String groupOwner
+    @Column( name = 'group_name' )
+    String groupName
+
+    static GroupEntity named( String groupName ) {
+      new GroupEntity( groupName: groupName )
+    }
+
+    static GroupEntity withNaturalId( String naturalId ) {
+      GroupEntity example = new GroupEntity( )
+      example.setNaturalId( naturalId )
+      example
+    }
+  }
+
+  @Entity
+  @PersistenceContext( name = 'eucalyptus_request_cache_test' )
+  @Table( name = 'request_cache_snapshot' )
+  static class SnapshotEntity extends AbstractPersistent {
+    @Column( name = 'snapshot_name' )
+    String snapshotName
+  }
+
+  private final Context context = new Context( )
+
+  @BeforeClass
+  static void setupPersistenceContext( ) {
+    Map<String,String> props = [
+        'hibernate.ejb.interceptor.session_scoped': 'com.eucalyptus.entities.DelegatingInterceptor',
+        'hibernate.show_sql': 'false',
+        'hibernate.format_sql': 'false',
+        'hibernate.generate_statistics': 'false',
+        'hibernate.bytecode.use_reflection_optimizer': 'true',
+        'javax.persistence.jdbc.driver': 'org.apache.derby.jdbc.EmbeddedDriver',
+        'javax.persistence.jdbc.user': 'root',
+        'javax.persistence.jdbc.password': 'root',
+        'hibernate.hbm2ddl.auto': 'create',
+        'hibernate.cache.use_second_level_cache': 'false',
+        'hibernate.dialect': 'org.hibernate.dialect.DerbyDialect',
+        'hibernate.connection.url': 'jdbc:derby:memory:request_cache_test;create=true',
+    ]
+    PersistenceContexts.registerPersistenceContext( new PersistenceContextConfiguration(
+        PERSISTENCE_CONTEXT,
+        ImmutableList.<Class<?>>of( GroupEntity, SnapshotEntity ),
+        props ) )
+  }
+
+  @AfterClass
+  static void tearDownPersistenceContext( ) {
+    PersistenceContexts.deregisterPersistenceContext( PERSISTENCE_CONTEXT )
+  }
+
+  @After
+  void clearContext( ) {
+    Contexts.removeThreadLocal( )
+    transaction( GroupEntity ) { Entities.deleteAll( GroupEntity ) }
+    transaction( SnapshotEntity ) { Entities.deleteAll( SnapshotEntity ) }
+  }
+
+  @Test
+  void testRepeatedLookupUsesIdentifier( ) {
+    String id = persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) ).id
+    Contexts.threadLocal( context )
+
+    GroupEntity first = transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+    GroupEntity second = transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+    GroupEntity byNaturalId = transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.withNaturalId( first.naturalId ) ) }
+    GroupEntity byNaturalIdAgain = transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.withNaturalId( first.naturalId ) ) }
+
+    assertEquals( 'Lookup result', id, first.id )
+    assertEquals( 'Cached lookup result', id, second.id )
+    assertEquals( 'Natural id lookup result', id, byNaturalId.id )
+    assertEquals( 'Cached natural id lookup result', id, byNaturalIdAgain.id )
+    assertEquals( 'Request cache hits', 2, context.entityCache.hits )
+    assertEquals( 'Request cache misses', 2, context.entityCache.misses )
+  }
+
+  @Test
+  void testModifiedEntityNotReturned( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    Contexts.threadLocal( context )
+    transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+
+    transaction( GroupEntity ) {
+      Entities.uniqueResult( GroupEntity.named( 'default' ) ).groupName = 'renamed' // modified but not flushed
+      try {
+        Entities.uniqueResult( GroupEntity.named( 'default' ) )
+        fail( 'Expected modified entity not found' )
+      } catch ( NoSuchElementException e ) {
+        // expected
+      }
+      assertEquals( 'Renamed entity', 'renamed', Entities.uniqueResult( GroupEntity.named( 'renamed' ) ).groupName )
+    }
+  }
+
+  @Test
+  void testNotUsedWithUnflushedChanges( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'web' ) )
+    Contexts.threadLocal( context )
+    transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+    transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'web' ) ) }
+    int misses = context.entityCache.misses
+
+    transaction( GroupEntity ) {
+      Entities.uniqueResult( GroupEntity.named( 'web' ) ).groupOwner = '000000000002' // modified but not flushed
+      assertEquals( 'Lookup result', 'default', Entities.uniqueResult( GroupEntity.named( 'default' ) ).groupName )
+    }
+
+    assertEquals( 'Request cache hits', 1, context.entityCache.hits )
+    assertEquals( 'Request cache misses', misses + 1, context.entityCache.misses )
+  }
+
+  @Test
+  void testListNotCachedWithoutSecondLevelCache( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    Contexts.threadLocal( context )
+    List<GroupEntity> groups = transaction( GroupEntity ) { Entities.query( new GroupEntity( groupOwner: '000000000001' ) ) }
+
+    transaction( GroupEntity ) {
+      Entities.query( new GroupEntity( groupOwner: '000000000001' ) )[ 0 ].groupOwner = '000000000002' // modified but not flushed
+      Entities.persist( new GroupEntity( groupOwner: '000000000001', groupName: 'web' ) )
+      assertEquals( 'Groups', [ 'web' ], Entities.query( new GroupEntity( groupOwner: '000000000001' ) )*.groupName )
+    }
+
+    assertEquals( 'Groups', [ 'default' ], groups*.groupName )
+    assertEquals( 'Request cache hits', 0, context.entityCache.hits )
+  }
+
+  @Test
+  void testUniqueLookupNotUsedForList( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'web' ) )
+    Contexts.threadLocal( context )
+
+    GroupEntity group = transaction( GroupEntity ) { Entities.uniqueResult( new GroupEntity( groupOwner: '000000000001' ) ) }
+    List<GroupEntity> groups = transaction( GroupEntity ) { Entities.query( new GroupEntity( groupOwner: '000000000001' ) ) }
+    GroupEntity cachedGroup = transaction( GroupEntity ) { Entities.uniqueResult( new GroupEntity( groupOwner: '000000000001' ) ) }
+
+    assertEquals( 'Groups', [ 'default', 'web' ] as Set, groups*.groupName as Set )
+    assertEquals( 'Cached group', group.id, cachedGroup.id )
+    assertEquals( 'Request cache hits', 1, context.entityCache.hits )
+  }
+
+  @Test
+  void testWriteInvalidatesLookups( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    Contexts.threadLocal( context )
+    transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'web' ) )
+    transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) }
+
+    assertEquals( 'Request cache hits', 0, context.entityCache.hits )
+  }
+
+  @Test
+  void testNotCachedWithoutRequest( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+
+    ( 1..3 ).each { transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) } }
+
+    assertNull( 'Request cache', Contexts.lookupEntityCache( ) )
+  }
+
+  @Test
+  void testNotCachedWithoutAnnotation( ) {
+    persist( new SnapshotEntity( snapshotName: 'snap-1' ) )
+    Contexts.threadLocal( context )
+
+    ( 1..3 ).each { transaction( SnapshotEntity ) { Entities.uniqueResult( new SnapshotEntity( snapshotName: 'snap-1' ) ) } }
+
+    assertEquals( 'Request cache hits', 0, context.entityCache.hits )
+    assertEquals( 'Request cache misses', 0, context.entityCache.misses )
+  }
+
+  @Test
+  void testOperationStatistics( ) {
+    persist( new GroupEntity( groupOwner: '000000000001', groupName: 'default' ) )
+    Contexts.threadLocal( context )
+    ( 1..3 ).each { transaction( GroupEntity ) { Entities.uniqueResult( GroupEntity.named( 'default' ) ) } }
+
+    context.entityCache.complete( 'DescribeSecurityGroups' )
+
+    RequestEntityCache.Statistics statistics = RequestEntityCache.statistics[ 'DescribeSecurityGroups' ]
+    assertNotNull( 'Statistics', statistics )
+    assertEquals( 'Requests', 1, statistics.requests )
+    assertEquals( 'Statements', context.entityCache.statements, statistics.statements )
+    assertEquals( 'Hits', 2, statistics.hits )
+    assertEquals( 'Misses', 1, statistics.misses )
+  }
+
+  private static <T> T persist( T entity ) {
+    transaction( entity.class ) { Entities.persist( entity ) }
+  }
+
+  private static <R> R transaction( Class<?> entityClass, Closure<R> closure ) {
+    TransactionResource db = Entities.transactionFor( entityClass )
+    try {
+      R result = closure.call( )
+      db.commit( )
+      result
+    } finally {
+      db.close( )
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities
+
+import com.google.common.base.Optional
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+class TransactionProfilerTest {
+
+  private static final String SQL = 'select vmtype0_.id as id1_0_ from cloud_vm_types vmtype0_ where vmtype0_.metadata_vm_type_name=?'
+
+  @Before
+  void enable( ) {
+    TransactionProfiler.reset( )
+    TransactionProfiler.PROFILING_ENABLED = true
+    TransactionProfiler.SLOW_TRANSACTION_THRESHOLD = 1000
+  }
+
+  @After
+  void disable( ) {
+    TransactionProfiler.PROFILING_ENABLED = false
+    TransactionProfiler.reset( )
+  }
+
+  @Test
+  void testAttribution( ) {
+    assertEquals( 'Action attribution', 'RunInstancesType',
+        TransactionProfiler.attribution( Optional.of( 'RunInstancesType' ), 'pool-3-thread-12' ) )
+    assertEquals( 'Pool thread attribution', 'Thread.pool-thread',
+        TransactionProfiler.attribution( Optional.<String>absent( ), 'pool-3-thread-12' ) )
+    assertEquals( 'Named thread attribution',
+        TransactionProfiler.attribution( Optional.<String>absent( ), 'Cluster.refresh-1' ),
+        TransactionProfiler.attribution( Optional.<String>absent( ), 'Cluster.refresh-27' ) )
+  }
+
+  @Test
+  void testTransactionCosts( ) {
+    String key = TransactionProfiler.attribution( Optional.<String>absent( ), Thread.currentThread( ).name )
+    TransactionProfiler.Profile outer = TransactionProfiler.begin( 'eucalyptus_cloud' )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.loaded( )
+    TransactionProfiler.Profile inner = TransactionProfiler.begin( 'eucalyptus_auth' )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.end( inner, false )
+    TransactionProfiler.end( inner, false )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.loaded( )
+    TransactionProfiler.loaded( )
+    TransactionProfiler.end( outer, true )
+
+    TransactionProfiler.Statistics statistics = TransactionProfiler.statistics[ key ]
+    assertNotNull( 'Statistics', statistics )
+    assertEquals( 'Transactions', 2, statistics.transactions )
+    assertEquals( 'Rollbacks', 1, statistics.rollbacks )
+    assertEquals( 'Statements', 4, statistics.statements )
+    assertEquals( 'Rows', 3, statistics.rows )
+    assertEquals( 'Slow transactions', 0, statistics.slowTransactions )
+    assertTrue( 'Recent percentile', statistics.getRecentMillisPercentile( 0.99 ) >= 1 )
+  }
+
+  @Test
+  void testSlowTransactionSampled( ) {
+    TransactionProfiler.SLOW_TRANSACTION_THRESHOLD = 0
+    TransactionProfiler.Profile profile = TransactionProfiler.begin( 'eucalyptus_cloud' )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.end( profile, true )
+
+    List<TransactionProfiler.SlowTransaction> slow = TransactionProfiler.slowTransactions
+    assertEquals( 'Slow transactions', 1, slow.size( ) )
+    assertEquals( 'Slow transaction statements', [ SQL ], slow[ 0 ].sql )
+  }
+
+  @Test
+  void testDisabled( ) {
+    TransactionProfiler.PROFILING_ENABLED = false
+    assertNull( 'Profile when disabled', TransactionProfiler.begin( 'eucalyptus_cloud' ) )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.end( null, true )
+    assertTrue( 'Statistics', TransactionProfiler.statistics.isEmpty( ) )
+  }
+
+  @Test
+  void testStatisticsByThread( ) {
+    [ 'Cluster.refresh-1', 'Cluster.refresh-2', 'ImageReaper-7' ].each { String name ->
+      Thread thread = Thread.start( name ) {
+        TransactionProfiler.Profile profile = TransactionProfiler.begin( 'eucalyptus_cloud' )
+        TransactionProfiler.statement( SQL )
+        TransactionProfiler.end( profile, true )
+      }
+      thread.join( )
+    }
+
+    Map<String,TransactionProfiler.Statistics> statistics = TransactionProfiler.statistics
+    assertEquals( 'Attributions', [ 'Thread.Cluster.refresh', 'Thread.ImageReaper' ], statistics.keySet( ) as List )
+    assertEquals( 'Refresh transactions', 2, statistics[ 'Thread.Cluster.refresh' ].transactions )
+    assertEquals( 'Refresh statements', 2, statistics[ 'Thread.Cluster.refresh' ].statements )
+    assertEquals( 'Reaper transactions', 1, statistics[ 'Thread.ImageReaper' ].transactions )
+  }
+
+  @Test
+  void testEndIdempotent( ) {
+    String key = TransactionProfiler.attribution( Optional.<String>absent( ), Thread.currentThread( ).name )
+    TransactionProfiler.Profile profile = TransactionProfiler.begin( 'eucalyptus_cloud' )
+    TransactionProfiler.statement( SQL )
+    TransactionProfiler.end( profile, false )
+    TransactionProfiler.end( profile, true )
+    TransactionProfiler.statement( SQL )
+
+    TransactionProfiler.Statistics statistics = TransactionProfiler.statistics[ key ]
+    assertEquals( 'Transactions', 1, statistics.transactions )
+    assertEquals( 'Rollbacks', 1, statistics.rollbacks )
+    assertEquals( 'Statements', 1, statistics.statements )
+  }
+}
@@ -0,0 +1,168 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.ws.handlers
+
+import com.eucalyptus.binding.Binding
+import com.eucalyptus.binding.BindingException
+import com.eucalyptus.binding.BoundElement
+import com.eucalyptus.http.MappingHttpResponse
+import org.apache.axiom.om.OMElement
+import org.jboss.netty.channel.MessageEvent
+import org.jboss.netty.handler.codec.http.HttpVersion
+import org.junit.Test
+
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+import java.nio.charset.StandardCharsets
+
+import static org.junit.Assert.*
+
+/**
+ * Differential tests for streaming and object model SOAP marshalling.
+ */
+class SoapMarshallingHandlerTest {
+
+  @Test
+  void testStreamedEquivalentToObjectModel( ) {
+    BoundElement element = BoundElement.of( new TestBinding( body( 3 ) ), new Object( ), null )
+    String streamed = marshal( element, false )
+    String built = marshal( element, true )
+
+    assertTrue( 'Streamed declaration', streamed.startsWith( '<?xml' ) )
+    assertEquals( 'Streamed/object model infoset', infoset( built ), infoset( streamed ) )
+  }
+
+  @Test
+  void testStreamedParse( ) {
+    String xml = body( 2 )
+    String streamed = marshal( BoundElement.of( new TestBinding( xml ), new Object( ), null ), false )
+    OMElement message = SoapMarshallingHandler.parseEnvelope( streamed ).getBody( ).getFirstElement( )
+
+    assertFalse( 'Message built', message.isComplete( ) )
+    assertEquals( 'Streamed message infoset',
+        infoset( xml ),
+        infoset( message.getXMLStreamReaderWithoutCaching( ) ) )
+  }
+
+  @Test
+  void testLargeStreamedEquivalentToObjectModel( ) {
+    BoundElement element = BoundElement.of( new TestBinding( body( 1000 ) ), new Object( ), null )
+    String streamed = marshal( element, false )
+    String built = marshal( element, true )
+
+    assertEquals( 'Streamed/object model infoset', infoset( built ), infoset( streamed ) )
+  }
+
+  @Test
+  void testBufferNotSizedByPreviousResponse( ) {
+    marshal( BoundElement.of( new TestBinding( body( 1000 ) ), new Object( ), null ), false )
+    MappingHttpResponse response = response( BoundElement.of( new TestBinding( body( 1 ) ), new Object( ), null ), false )
+
+    assertTrue( 'Small response buffer capacity', response.getContent( ).capacity( ) <= 4096 )
+  }
+
+  private static String marshal( BoundElement element, boolean objectModel ) {
+    response( element, objectModel ).getContent( ).toString( StandardCharsets.UTF_8 )
+  }
+
+  private static MappingHttpResponse response( BoundElement element, boolean objectModel ) {
+    MappingHttpResponse response = new MappingHttpResponse( HttpVersion.HTTP_1_1 )
+    response.setBoundMessage( element )
+    if ( objectModel ) {
+      assertNotNull( 'Envelope', response.getSoapEnvelope( ) )
+      assertNull( 'Streaming message', response.getStreamingMessage( ) )
+    } else {
+      assertNotNull( 'Streaming message', response.getStreamingMessage( ) )
+    }
+    new SoapMarshallingHandler( ).outgoingMessage( null, event( response ) )
+    assertEquals( 'Content length',
+        String.valueOf( response.getContent( ).readableBytes( ) ),
+        response.getHeader( 'Content-Length' ) )
+    response
+  }
+
+  private static MessageEvent event( Object message ) {
+    [ getMessage: { message } ] as MessageEvent
+  }
+
+  private static String body( int items ) {
+    StringBuilder xml = new StringBuilder( )
+    xml.append( '<DescribeInstancesResponse xmlns="http://ec2.amazonaws.com/doc/2015-10-01/"' )
+    xml.append( ' xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance">' )
+    xml.append( '<requestId>7f7e5b68-1b6c-4a8e-9d3c-5a07e4f0b0a1</requestId><reservationSet>' )
+    items.times { int index ->
+      xml.append( "<item><reservationId>r-${index}</reservationId><ownerId>000000000000</ownerId>" )
+      xml.append( "<instancesSet><item><instanceId>i-${index}</instanceId>" )
+      xml.append( '<instanceState><code>16</code><name>running</name></instanceState>' )
+      xml.append( '<reason xsi:nil="true"/><tagSet><item><key>Name</key>' )
+      xml.append( "<value>web &lt;${index}&gt; &amp; co</value></item></tagSet>" )
+      xml.append( '</item></instancesSet></item>' )
+    }
+    xml.append( '</reservationSet></DescribeInstancesResponse>' )
+    xml.toString( )
+  }
+
+  private static List<String> infoset( String xml ) {
+    infoset( XMLInputFactory.newInstance( ).createXMLStreamReader( new StringReader( xml ) ) )
+  }
+
+  /**
+   * Namespace aware element, attribute and text content ignoring prefixes and
+   * declarations.
+   */
+  private static List<String> infoset( XMLStreamReader reader ) {
+    List<String> events = [ ]
+    StringBuilder text = new StringBuilder( )
+    for ( int event = reader.eventType; ; event = reader.next( ) ) {
+      if ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ) {
+        text.append( reader.getText( ) )
+      } else {
+        if ( text.toString( ).trim( ) ) events << "text:${text}".toString( )
+        text.setLength( 0 )
+        if ( event == XMLStreamConstants.START_ELEMENT ) {
+          events << "start:${reader.name}".toString( )
+          events.addAll( ( 0..<reader.attributeCount ).collect { int index ->
+            "attr:${reader.getAttributeName( index )}=${reader.getAttributeValue( index )}".toString( )
+          }.sort( ) )
+        } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+          events << "end:${reader.name}".toString( )
+        }
+      }
+      if ( !reader.hasNext( ) ) break
+    }
+    events
+  }
+
+  private static class TestBinding extends Binding {
+    private final byte[] xml
+
+    TestBinding( String xml ) {
+      super( 'test' )
+      this.xml = xml.getBytes( StandardCharsets.UTF_8 )
+    }
+
+    @Override
+    String toStream( OutputStream outputStream, Object param, String altNs ) throws BindingException {
+      outputStream.write( xml )
+      altNs
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.entities;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Running object count and byte totals for a bucket, maintained alongside object and part state transitions so quota checks do not have to
+ * aggregate over the objects table. Sizes include records in 'creating' and 'extant' state, the count includes only 'extant' objects.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_osg")
+@Table(name = "bucket_counters", indexes = {
+    @Index(name = "IDX_bucket_counters_owner_canonical_id", columnList = "owner_canonical_id"),
+    @Index(name = "IDX_bucket_counters_owner_iam_user_id", columnList = "owner_iam_user_id")
+})
+public class BucketCounter extends AbstractPersistent {
+
+  @Column(name = "bucket_uuid", unique = true, nullable = false)
+  private String bucketUuid;
+
+  @Column(name = "owner_canonical_id")
+  private String ownerCanonicalId;
+
+  @Column(name = "owner_iam_user_id")
+  private String ownerIamUserId;
+
+  @Column(name = "object_count", nullable = false)
+  private Long objectCount;
+
+  @Column(name = "object_bytes", nullable = false)
+  private Long objectBytes;
+
+  @Column(name = "part_bytes", nullable = false)
+  private Long partBytes;
+
+  @Column(name = "last_reconciled")
+  private Date lastReconciled;
+
+  public BucketCounter withUuid(String bucketUuid) {
+    this.setBucketUuid(bucketUuid);
+    return this;
+  }
+
+  public static BucketCounter forBucket(Bucket bucket) {
+    BucketCounter counter = new BucketCounter().withUuid(bucket.getBucketUuid());
+    counter.setOwnerCanonicalId(bucket.getOwnerCanonicalId());
+    counter.setOwnerIamUserId(bucket.getOwnerIamUserId());
+    counter.setObjectCount(0L);
+    counter.setObjectBytes(0L);
+    counter.setPartBytes(0L);
+    return counter;
+  }
+
+  /**
+   * Total bytes used by the bucket, objects plus uploaded multipart parts
+   */
+  public long getTotalBytes() {
+    return objectBytes + partBytes;
+  }
+
+  public String getBucketUuid() {
+    return bucketUuid;
+  }
+
+  public void setBucketUuid(String bucketUuid) {
+    this.bucketUuid = bucketUuid;
+  }
+
+  public String getOwnerCanonicalId() {
+    return ownerCanonicalId;
+  }
+
+  public void setOwnerCanonicalId(String ownerCanonicalId) {
+    this.ownerCanonicalId = ownerCanonicalId;
+  }
+
+  public String getOwnerIamUserId() {
+    return ownerIamUserId;
+  }
+
+  public void setOwnerIamUserId(String ownerIamUserId) {
+    this.ownerIamUserId = ownerIamUserId;
+  }
+
+  public Long getObjectCount() {
+    return objectCount;
+  }
+
+  public void setObjectCount(Long objectCount) {
+    this.objectCount = objectCount;
+  }
+
+  public Long getObjectBytes() {
+    return objectBytes;
+  }
+
+  public void setObjectBytes(Long objectBytes) {
+    this.objectBytes = objectBytes;
+  }
+
+  public Long getPartBytes() {
+    return partBytes;
+  }
+
+  public void setPartBytes(Long partBytes) {
+    this.partBytes = partBytes;
+  }
+
+  public Date getLastReconciled() {
+    return lastReconciled;
+  }
+
+  public void setLastReconciled(Date lastReconciled) {
+    this.lastReconciled = lastReconciled;
+  }
+}
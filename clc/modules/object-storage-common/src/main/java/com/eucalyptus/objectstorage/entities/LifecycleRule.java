@@ -107,6 +107,13 @@ public class LifecycleRule extends AbstractPersistent {
   @Column(name = "last_processing_start")
   private Date lastProcessingStart;
 
+  // keyset position of the last object reaped for this rule, null when no pass is in progress
+  @Column(name = "reaping_cursor_key")
+  private String reapingCursorKey;
+
+  @Column(name = "reaping_cursor_uuid")
+  private String reapingCursorUuid;
+
   public String getBucketUuid() {
     return bucketUuid;
   }
@@ -186,4 +193,20 @@ public class LifecycleRule extends AbstractPersistent {
   public void setLastProcessingStart(Date lastProcessingStart) {
     this.lastProcessingStart = lastProcessingStart;
   }
+
+  public String getReapingCursorKey() {
+    return reapingCursorKey;
+  }
+
+  public void setReapingCursorKey(String reapingCursorKey) {
+    this.reapingCursorKey = reapingCursorKey;
+  }
+
+  public String getReapingCursorUuid() {
+    return reapingCursorUuid;
+  }
+
+  public void setReapingCursorUuid(String reapingCursorUuid) {
+    this.reapingCursorUuid = reapingCursorUuid;
+  }
 }
@@ -86,6 +86,7 @@ import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableFieldType;
 import com.eucalyptus.configurable.ConfigurableProperty;
 import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.configurable.PropertyChangeListener;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Entities;
@@ -102,6 +103,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
@@ -129,7 +131,7 @@ public class ObjectStorageGlobalConfiguration extends AbstractPersistent impleme
 
   @Override
   public ObjectStorageGlobalConfiguration getLatest() {
-    return getConfiguration();
+    return lookupConfiguration();
   }
 
   @Column
@@ -266,12 +268,21 @@ public class ObjectStorageGlobalConfiguration extends AbstractPersistent impleme
   }
 
   /**
-   * Gets this config from the DB. May throw an exception on db failure
-   * 
-   * @return
-   * @throws Exception
+   * Gets this config from the DB, or the cached snapshot if current. May throw
+   * an exception on db failure.
+   *
+   * The returned instance is shared and must not be modified.
    */
   public static ObjectStorageGlobalConfiguration getConfiguration() {
+    return ConfigurationSnapshots.get(ObjectStorageGlobalConfiguration.class, "", new Supplier<ObjectStorageGlobalConfiguration>() {
+      @Override
+      public ObjectStorageGlobalConfiguration get() {
+        return lookupConfiguration();
+      }
+    });
+  }
+
+  private static ObjectStorageGlobalConfiguration lookupConfiguration() {
     try {
       try {
         return Transactions.find(new ObjectStorageGlobalConfiguration());
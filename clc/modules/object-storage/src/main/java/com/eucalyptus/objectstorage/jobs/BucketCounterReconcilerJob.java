@@ -0,0 +1,78 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.jobs;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.quartz.InterruptableJob;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.UnableToInterruptJobException;
+
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.objectstorage.BucketMetadataManagers;
+import com.eucalyptus.objectstorage.BucketState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.metadata.BucketCounters;
+
+/*
+ * Recomputes the bucket counters used for quota enforcement from the object and part records, repairing any drift from the incremental updates.
+ */
+public class BucketCounterReconcilerJob implements InterruptableJob {
+
+  private static Logger LOG = Logger.getLogger(BucketCounterReconcilerJob.class);
+
+  private volatile boolean interrupted = false;
+
+  @Override
+  public void execute(JobExecutionContext context) throws JobExecutionException {
+    if ( Databases.isVolatile( ) ) {
+      LOG.warn( "Skipping job due to database not available" );
+      return;
+    }
+    List<Bucket> buckets;
+    try {
+      buckets = BucketMetadataManagers.getInstance().lookupBucketsByState(BucketState.extant);
+    } catch (Exception ex) {
+      LOG.error("exception occurred while retrieving buckets for counter reconciliation - " + ex.getMessage());
+      throw new JobExecutionException("exception occurred while retrieving buckets for counter reconciliation", ex);
+    }
+    int reconciled = 0;
+    for (Bucket bucket : buckets) {
+      if (interrupted) {
+        break;
+      }
+      try {
+        BucketCounters.reconcile(bucket);
+        reconciled++;
+      } catch (Exception ex) {
+        LOG.warn("failed to reconcile counters for bucket " + bucket.getBucketName() + " - " + ex.getMessage());
+      }
+    }
+    LOG.debug("reconciled counters for " + reconciled + " of " + buckets.size() + " buckets");
+  }
+
+  @Override
+  public void interrupt() throws UnableToInterruptJobException {
+    this.interrupted = true;
+  }
+}
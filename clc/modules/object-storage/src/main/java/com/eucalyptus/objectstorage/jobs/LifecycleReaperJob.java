@@ -63,9 +63,15 @@
 package com.eucalyptus.objectstorage.jobs;
 
 import java.util.Calendar;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.quartz.InterruptableJob;
@@ -77,22 +83,30 @@ import com.eucalyptus.bootstrap.Databases;
 import com.eucalyptus.objectstorage.BucketLifecycleManagers;
 import com.eucalyptus.objectstorage.BucketMetadataManagers;
 import com.eucalyptus.objectstorage.BucketState;
+import com.eucalyptus.objectstorage.ObjectStorage;
 import com.eucalyptus.objectstorage.ObjectMetadataManagers;
-import com.eucalyptus.objectstorage.ObjectState;
 import com.eucalyptus.objectstorage.entities.Bucket;
 import com.eucalyptus.objectstorage.entities.LifecycleRule;
 import com.eucalyptus.objectstorage.entities.ObjectEntity;
-import com.eucalyptus.objectstorage.exceptions.ObjectStorageException;
-import com.google.common.collect.Lists;
+import com.eucalyptus.system.Threads;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 
 /*
- *
+ * Expires objects matching lifecycle rules. Candidates are read in key ordered pages and each page is marked for deletion in one transaction, the
+ * position after each page is saved on the rule so an interrupted run picks up where it stopped. Buckets are processed in parallel, each bucket task
+ * handles a single page and then goes to the back of the queue so large buckets do not starve small ones.
  */
 public class LifecycleReaperJob implements InterruptableJob {
 
   private static Logger LOG = Logger.getLogger(LifecycleReaperJob.class);
 
-  private boolean interrupted = false;
+  static final int PAGE_SIZE = 1000;
+  static final int MAX_WORKERS = 4;
+
+  private volatile boolean interrupted = false;
+
+  private final AtomicLong expiredCount = new AtomicLong();
 
   @Override
   public void interrupt() throws UnableToInterruptJobException {
@@ -115,199 +129,223 @@ public class LifecycleReaperJob implements InterruptableJob {
       throw new JobExecutionException("exception occurred while retrieving lifecycle rules", ex);
     }
 
-    Bucket bucket;
-
-    // set reaped on objectinfo
-    if (rules != null && rules.size() > 0) {
-      LOG.debug("found " + rules.size() + " Object Lifecycle rules");
-      for (int idx = 0; idx < rules.size() && !interrupted; idx++) {
-        LifecycleRule rule = rules.get(idx);
-        if (rule.getEnabled() != null && rule.getEnabled().booleanValue()) {
-          LOG.debug("rule id - " + rule.getRuleId() + " on bucket " + rule.getBucketUuid() + " processing");
-          String ruleId = rule.getRuleId();
-          String prefix = rule.getPrefix();
-
-          try {
-            bucket = BucketMetadataManagers.getInstance().lookupBucketByUuid(rule.getBucketUuid());
-          } catch (Exception e) {
-            bucket = null;
-          }
-
-          if (bucket == null || !BucketState.extant.equals(bucket.getState())) {
-            // Skip, don't do rules for buckets marked for deletion.
-            LOG.warn("Cannot process lifecycle rule for bucket valid 'extant' record. bucket uuid: " + rule.getBucketUuid());
-            continue;
-          }
-
-          if (rule.getExpirationDate() != null) {
-            processExpirationByDate(ruleId, bucket, prefix, rule.getExpirationDate());
-          } else if (rule.getExpirationDays() != null) {
-            processExpirationByDays(ruleId, bucket, prefix, rule.getExpirationDays());
-          }
-          if (rule.getTransitionDate() != null) {
-            processTransitionByDate(ruleId, bucket, prefix, rule.getTransitionDate());
-          } else if (rule.getTransitionDays() != null) {
-            processTransitionByDays(ruleId, bucket, prefix, rule.getExpirationDays());
-          }
-        } else {
-          LOG.debug("rule id - " + rule.getRuleId() + " on bucket " + rule.getBucketUuid() + " is not enabled");
-        }
-      }
-    } else {
+    if (rules == null || rules.size() == 0) {
       LOG.info("there are no rules to process");
+      return;
     }
-
-  }
-
-  private List<String> findMatchingObjects(String ruleId, Bucket bucket, String objPrefix, Date age) {
-
-    try {
-      // this check has the additional responsibility of keeping other OSGs from processing the same rule
-      LifecycleRule retrievedRule = BucketLifecycleManagers.getInstance().getLifecycleRuleForReaping(ruleId, bucket.getBucketUuid());
-      if (retrievedRule == null) {
-        return Collections.EMPTY_LIST;
+    LOG.debug("found " + rules.size() + " Object Lifecycle rules");
+
+    ListMultimap<String, LifecycleRule> rulesByBucket = ArrayListMultimap.create();
+    for (LifecycleRule rule : rules) {
+      if (rule.getEnabled() != null && rule.getEnabled().booleanValue()) {
+        rulesByBucket.put(rule.getBucketUuid(), rule);
+      } else {
+        LOG.debug("rule id - " + rule.getRuleId() + " on bucket " + rule.getBucketUuid() + " is not enabled");
       }
-    } catch (ObjectStorageException e) {
-      LOG.error("exception caught while attempting to retrieve lifecycle rule with id - " + ruleId + " in bucket - " + bucket.getBucketName()
-          + " with message " + e.getMessage());
     }
-
-    // normalize the date to query by
-    Calendar ageCal = Calendar.getInstance();
-    ageCal.setTime(age);
-
-    Calendar queryCal = Calendar.getInstance();
-    queryCal.set(Calendar.DAY_OF_MONTH, ageCal.get(Calendar.DAY_OF_MONTH));
-    queryCal.set(Calendar.MONTH, ageCal.get(Calendar.MONTH));
-    queryCal.set(Calendar.YEAR, ageCal.get(Calendar.YEAR));
-    queryCal.set(Calendar.HOUR_OF_DAY, 0);
-    queryCal.set(Calendar.MINUTE, 0);
-    queryCal.set(Calendar.SECOND, 0);
-    queryCal.set(Calendar.MILLISECOND, 0);
-
-    List<ObjectEntity> results = ObjectMetadataManagers.getInstance().lookupObjectsForReaping(bucket, objPrefix, queryCal.getTime());
-
-    if (results == null || results.size() == 0) {
-      LOG.debug("there were no objects in bucket " + bucket.getBucketName() + " with prefix " + objPrefix + " older than " + queryCal.toString());
-      // no matches
-      return Collections.EMPTY_LIST;
+    if (rulesByBucket.isEmpty()) {
+      LOG.info("there are no enabled rules to process");
+      return;
     }
 
-    // gather up keys
-    List<String> objectKeys = Lists.newArrayList();
-    for (ObjectEntity objectInfo : results) {
-      objectKeys.add(objectInfo.getObjectKey());
+    long startTime = System.currentTimeMillis();
+    Map<String, Collection<LifecycleRule>> buckets = rulesByBucket.asMap();
+    CountDownLatch done = new CountDownLatch(buckets.size());
+    ExecutorService workers = Threads.lookup(ObjectStorage.class, LifecycleReaperJob.class).limitTo(MAX_WORKERS);
+    try {
+      for (Map.Entry<String, Collection<LifecycleRule>> entry : buckets.entrySet()) {
+        new BucketReaper(entry.getKey(), entry.getValue(), workers, done).submit();
+      }
+      done.await();
+    } catch (InterruptedException ie) {
+      this.interrupted = true;
+      Thread.currentThread().interrupt();
     }
-    LOG.debug("found " + objectKeys.size() + " matching objects in bucket " + bucket.getBucketName());
-    return interrupted ? Collections.EMPTY_LIST : objectKeys;
+
+    long endTime = System.currentTimeMillis();
+    long elapsed = Math.max(1l, endTime - startTime);
+    long expired = expiredCount.get();
+    Date scheduled = context.getScheduledFireTime();
+    long lag = scheduled == null ? 0l : endTime - scheduled.getTime();
+    LOG.info("finished Object Lifecycle processing" + (interrupted ? " (interrupted)" : "") + ", expired " + expired + " objects across "
+        + buckets.size() + " buckets in " + elapsed + "ms (" + (expired * 1000l / elapsed) + " objects/sec), lag behind schedule " + lag + "ms");
   }
 
-  private static abstract class ObjectInfoProcessor {
-    private List<String> objectKeys;
+  /**
+   * Works through the rules of one bucket a page at a time, resubmitting itself after each page.
+   */
+  private class BucketReaper implements Runnable {
+    private final String bucketUuid;
+    private final Iterator<LifecycleRule> rules;
+    private final ExecutorService workers;
+    private final CountDownLatch done;
     private Bucket bucket;
-    private boolean interrupted = false;
+    private RuleReaper current;
 
-    public ObjectInfoProcessor(List<String> objectKeys, Bucket foundBucket) {
-      this.objectKeys = objectKeys;
-      this.bucket = foundBucket;
+    BucketReaper(String bucketUuid, Collection<LifecycleRule> rules, ExecutorService workers, CountDownLatch done) {
+      this.bucketUuid = bucketUuid;
+      this.rules = rules.iterator();
+      this.workers = workers;
+      this.done = done;
     }
 
-    public void process() {
-      if (objectKeys != null && objectKeys.size() > 0) {
-        for (int idx = 0; !interrupted && idx < objectKeys.size(); idx++) {
-          String objectKey = objectKeys.get(idx);
-          try {
-            ObjectEntity objectEntity = ObjectMetadataManagers.getInstance().lookupObject(bucket, objectKey, null);
-            if (objectEntity == null) {
-              LOG.debug("failed to process object " + objectKey + " in bucket " + bucket.getBucketName()
-                  + " because it was not found in the database");
-            }
-            handle(objectEntity);
-          } catch (Exception ex) {
-            LOG.error("failed to process object " + objectKey + " in bucket " + bucket.getBucketName()
-                + " because an exception occurred with message " + ex.getMessage());
-          }
-        }
+    void submit() {
+      try {
+        workers.execute(this);
+      } catch (RejectedExecutionException e) {
+        done.countDown();
       }
     }
 
-    public abstract void handle(ObjectEntity retrieved);
-
-    public void interrupt() {
-      this.interrupted = true;
+    @Override
+    public void run() {
+      boolean more = false;
+      try {
+        more = !interrupted && step();
+      } catch (Exception ex) {
+        LOG.error("exception occurred while processing lifecycle rules for bucket " + bucketUuid + " with message - " + ex.getMessage());
+        // give up on the failed rule, its cursor is kept for the next run
+        current = null;
+        more = !interrupted && bucket != null && rules.hasNext();
+      }
+      if (more) {
+        submit();
+      } else {
+        done.countDown();
+      }
     }
-  }
-
-  public void processExpirationByDate(String ruleId, Bucket bucket, String prefix, Date expirationDate) {
-    LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
-        + "', marking matches for expiration if it is now past " + expirationDate.toString());
 
-    List<String> expiredObjectKeys = findMatchingObjects(ruleId, bucket, prefix, expirationDate);
-    ObjectInfoProcessor processor = new ObjectInfoProcessor(expiredObjectKeys, bucket) {
-      @Override
-      public void handle(ObjectEntity retrieved) {
-        ObjectMetadataManagers.getInstance().transitionObjectToState(retrieved, ObjectState.deleting);
-        if (interrupted) {
-          this.interrupt();
+    /**
+     * Processes one page for the current rule, returns false once all rules for the bucket are done.
+     */
+    private boolean step() throws Exception {
+      if (bucket == null) {
+        try {
+          bucket = BucketMetadataManagers.getInstance().lookupBucketByUuid(bucketUuid);
+        } catch (Exception e) {
+          bucket = null;
+        }
+        if (bucket == null || !BucketState.extant.equals(bucket.getState())) {
+          // Skip, don't do rules for buckets marked for deletion.
+          LOG.warn("Cannot process lifecycle rule for bucket valid 'extant' record. bucket uuid: " + bucketUuid);
+          return false;
         }
       }
-    };
-    processor.process();
-  }
-
-  public void processExpirationByDays(String ruleId, Bucket bucket, String prefix, Integer expirationDays) {
-    LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
-        + "', marking matches for expiration if they are older than " + expirationDays.toString() + " days old");
-
-    Calendar expireDay = Calendar.getInstance();
-    expireDay.add(Calendar.DATE, (-1 * expirationDays.intValue()));
-    List<String> expiredObjectKeys = findMatchingObjects(ruleId, bucket, prefix, expireDay.getTime());
-    ObjectInfoProcessor processor = new ObjectInfoProcessor(expiredObjectKeys, bucket) {
-      @Override
-      public void handle(ObjectEntity retrieved) {
-        ObjectMetadataManagers.getInstance().transitionObjectToState(retrieved, ObjectState.deleting);
-        if (interrupted) {
-          this.interrupt();
+      while (current == null) {
+        if (!rules.hasNext()) {
+          return false;
         }
+        current = RuleReaper.start(rules.next(), bucket);
+      }
+      int count = current.reapPage();
+      expiredCount.addAndGet(count);
+      if (current.isComplete()) {
+        LOG.info("finished rule id - " + current.ruleId + " on bucket " + bucket.getBucketName() + ", expired " + current.expired + " objects");
+        current = null;
       }
-    };
-    processor.process();
+      return true;
+    }
   }
 
-  public void processTransitionByDate(String ruleId, Bucket bucket, String prefix, Date transitionDate) {
-    LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
-        + "', marking matches for transition if it is now past " + transitionDate.toString());
-    List<String> expiredObjectKeys = findMatchingObjects(ruleId, bucket, prefix, transitionDate);
-    ObjectInfoProcessor processor = new ObjectInfoProcessor(expiredObjectKeys, bucket) {
-      @Override
-      public void handle(ObjectEntity retrieved) {
-        // TODO what to do?
+  /**
+   * Keyset scan over the objects expired by a single rule.
+   */
+  static class RuleReaper {
+    private final String ruleId;
+    private final Bucket bucket;
+    private final String prefix;
+    private final Date age;
+    private String cursorKey;
+    private String cursorUuid;
+    private boolean complete = false;
+    private long expired = 0;
+
+    private RuleReaper(String ruleId, Bucket bucket, String prefix, Date age, String cursorKey, String cursorUuid) {
+      this.ruleId = ruleId;
+      this.bucket = bucket;
+      this.prefix = prefix;
+      this.age = age;
+      this.cursorKey = cursorKey;
+      this.cursorUuid = cursorUuid;
+    }
 
-        if (interrupted) {
-          this.interrupt();
+    /**
+     * Claims the rule for this host, returns null if there is nothing to do for it.
+     */
+    static RuleReaper start(LifecycleRule rule, Bucket bucket) throws Exception {
+      String ruleId = rule.getRuleId();
+      String prefix = rule.getPrefix();
+      Date age;
+      if (rule.getExpirationDate() != null) {
+        if (rule.getExpirationDate().after(new Date())) {
+          LOG.debug("rule id - " + ruleId + " on bucket " + bucket.getBucketName() + " does not expire objects until " + rule.getExpirationDate());
+          return null;
         }
+        LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
+            + "', marking matches for expiration if it is now past " + rule.getExpirationDate().toString());
+        age = normalize(rule.getExpirationDate());
+      } else if (rule.getExpirationDays() != null) {
+        LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
+            + "', marking matches for expiration if they are older than " + rule.getExpirationDays().toString() + " days old");
+        Calendar expireDay = Calendar.getInstance();
+        expireDay.add(Calendar.DATE, (-1 * rule.getExpirationDays().intValue()));
+        age = normalize(expireDay.getTime());
+      } else {
+        // transitions to other storage classes are not supported, nothing to do for this rule
+        LOG.debug("rule id - " + ruleId + " on bucket " + bucket.getBucketName() + " has no expiration, skipping");
+        return null;
       }
-    };
-    processor.process();
-  }
 
-  public void processTransitionByDays(String ruleId, Bucket bucket, String prefix, Integer transitionDays) {
-    LOG.info("processing phase one for ruleId '" + ruleId + "' for bucket " + bucket.getBucketName() + " against objects prefixed '" + prefix
-        + "', marking matches for transition if they are older than " + transitionDays.toString() + " days old");
-    Calendar transitionDay = Calendar.getInstance();
-    transitionDay.add(Calendar.DATE, (-1 * transitionDays.intValue()));
-    List<String> transitionObjectKeys = findMatchingObjects(ruleId, bucket, prefix, transitionDay.getTime());
-    ObjectInfoProcessor processor = new ObjectInfoProcessor(transitionObjectKeys, bucket) {
-      @Override
-      public void handle(ObjectEntity retrieved) {
-        // TODO what to do?
+      // this check has the additional responsibility of keeping other OSGs from processing the same rule
+      LifecycleRule retrievedRule = BucketLifecycleManagers.getInstance().getLifecycleRuleForReaping(ruleId, bucket.getBucketUuid());
+      if (retrievedRule == null) {
+        return null;
+      }
+      if (retrievedRule.getReapingCursorKey() != null) {
+        LOG.info("resuming rule id - " + ruleId + " on bucket " + bucket.getBucketName() + " after object " + retrievedRule.getReapingCursorKey());
+      }
+      return new RuleReaper(ruleId, bucket, prefix, age, retrievedRule.getReapingCursorKey(), retrievedRule.getReapingCursorUuid());
+    }
 
-        if (interrupted) {
-          this.interrupt();
-        }
+    /**
+     * Marks the next page of matching objects for deletion and saves the cursor, returns the number of objects expired.
+     */
+    int reapPage() throws Exception {
+      List<ObjectEntity> page =
+          ObjectMetadataManagers.getInstance().lookupObjectsForReaping(bucket, prefix, age, cursorKey, cursorUuid, PAGE_SIZE);
+      int count = 0;
+      if (page != null && page.size() > 0) {
+        count = ObjectMetadataManagers.getInstance().transitionObjectsToDeleting(page);
+        expired += count;
+        ObjectEntity last = page.get(page.size() - 1);
+        cursorKey = last.getObjectKey();
+        cursorUuid = last.getObjectUuid();
       }
-    };
-    processor.process();
+      if (page == null || page.size() < PAGE_SIZE) {
+        complete = true;
+        cursorKey = null;
+        cursorUuid = null;
+      }
+      BucketLifecycleManagers.getInstance().updateLifecycleRuleProgress(ruleId, bucket.getBucketUuid(), cursorKey, cursorUuid);
+      return count;
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Truncates the date to midnight to query by
+     */
+    private static Date normalize(Date date) {
+      Calendar queryCal = Calendar.getInstance();
+      queryCal.setTime(date);
+      queryCal.set(Calendar.HOUR_OF_DAY, 0);
+      queryCal.set(Calendar.MINUTE, 0);
+      queryCal.set(Calendar.SECOND, 0);
+      queryCal.set(Calendar.MILLISECOND, 0);
+      return queryCal.getTime();
+    }
   }
 
   public boolean isInterrupted() {
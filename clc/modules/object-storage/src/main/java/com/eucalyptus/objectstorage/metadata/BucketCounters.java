@@ -0,0 +1,233 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.metadata;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.objectstorage.ObjectState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.entities.BucketCounter;
+import com.eucalyptus.objectstorage.entities.ObjectEntity;
+import com.eucalyptus.objectstorage.entities.PartEntity;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Maintains the per-bucket object count and byte totals used for quota enforcement.
+ * 
+ * Adjustments are bulk updates issued in the same transaction as the object or part state change, they hold the counter row lock until that
+ * transaction completes so concurrent uploads into one bucket serialize on the counter rather than failing optimistic version checks. The
+ * reconciler recomputes the counters from the metadata tables to repair any drift.
+ */
+public class BucketCounters {
+  private static final Logger LOG = Logger.getLogger(BucketCounters.class);
+
+  private static final String ADJUST = "SET objectCount = objectCount + :countDelta, objectBytes = objectBytes + :objectBytesDelta, "
+      + "partBytes = partBytes + :partBytesDelta WHERE bucketUuid = :bucketUuid";
+
+  private static final String LOCK = "SET lastReconciled = :now WHERE bucketUuid = :bucketUuid";
+
+  private static long countOf(ObjectState state) {
+    return ObjectState.extant.equals(state) ? 1l : 0l;
+  }
+
+  private static long bytesOf(ObjectState state, Long size) {
+    return size != null && (ObjectState.creating.equals(state) || ObjectState.extant.equals(state)) ? size : 0l;
+  }
+
+  /**
+   * Adjusts the counters for an object record moving from one state and size to another. Use null states for records being inserted or
+   * removed. Must be called from within the transaction that makes the change.
+   */
+  static void objectChanged(Bucket bucket, ObjectState fromState, Long fromSize, ObjectState toState, Long toSize) {
+    if (bucket != null) {
+      adjust(bucket.getBucketUuid(), countOf(toState) - countOf(fromState), bytesOf(toState, toSize) - bytesOf(fromState, fromSize), 0l);
+    }
+  }
+
+  /**
+   * Adjusts the counters for a multipart part record moving from one state and size to another. Must be called from within the transaction that
+   * makes the change.
+   */
+  static void partChanged(Bucket bucket, ObjectState fromState, Long fromSize, ObjectState toState, Long toSize) {
+    if (bucket != null) {
+      adjust(bucket.getBucketUuid(), 0l, 0l, bytesOf(toState, toSize) - bytesOf(fromState, fromSize));
+    }
+  }
+
+  static void partsRemoved(Bucket bucket, long bytes) {
+    if (bucket != null) {
+      adjust(bucket.getBucketUuid(), 0l, 0l, -bytes);
+    }
+  }
+
+  private static void adjust(String bucketUuid, long countDelta, long objectBytesDelta, long partBytesDelta) {
+    if (countDelta == 0 && objectBytesDelta == 0 && partBytesDelta == 0) {
+      return;
+    }
+    // No row means the bucket predates the counters, it is populated on first lookup or by the reconciler
+    Entities.updateAllMatching(BucketCounter.class, ADJUST, ImmutableMap.<String, Object>of("countDelta", countDelta, "objectBytesDelta",
+        objectBytesDelta, "partBytesDelta", partBytesDelta, "bucketUuid", bucketUuid));
+  }
+
+  /**
+   * Adds zeroed counters for a new bucket. Must be called from within a transaction.
+   */
+  static void create(Bucket bucket) {
+    try {
+      Entities.uniqueResult(new BucketCounter().withUuid(bucket.getBucketUuid()));
+    } catch (NoSuchElementException e) {
+      Entities.persist(BucketCounter.forBucket(bucket));
+    } catch (Exception e) {
+      LOG.warn("Error checking counters for bucket " + bucket.getBucketUuid() + ", the reconciler will create them", e);
+    }
+  }
+
+  /**
+   * Removes the counters for a deleted bucket. Must be called from within a transaction.
+   */
+  static void delete(String bucketUuid) {
+    Entities.deleteAllMatching(BucketCounter.class, "WHERE bucketUuid = :bucketUuid", ImmutableMap.of("bucketUuid", bucketUuid));
+  }
+
+  /**
+   * Returns the counters for the bucket, computing them if the bucket does not have any yet.
+   */
+  public static BucketCounter lookup(Bucket bucket) throws Exception {
+    try (TransactionResource tran = Entities.transactionFor(BucketCounter.class)) {
+      BucketCounter counter = Entities.uniqueResult(new BucketCounter().withUuid(bucket.getBucketUuid()));
+      tran.commit();
+      return counter;
+    } catch (NoSuchElementException e) {
+      try {
+        return reconcile(bucket);
+      } catch (Exception ex) {
+        // another request may have created the counters first
+        LOG.debug("Error creating counters for bucket " + bucket.getBucketName() + ", retrying lookup", ex);
+        try (TransactionResource tran = Entities.transactionFor(BucketCounter.class)) {
+          BucketCounter counter = Entities.uniqueResult(new BucketCounter().withUuid(bucket.getBucketUuid()));
+          tran.commit();
+          return counter;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the counters for the given buckets keyed by bucket uuid, computing any that are missing.
+   */
+  public static Map<String, BucketCounter> lookup(Collection<Bucket> buckets) throws Exception {
+    Map<String, BucketCounter> counters = Maps.newHashMap();
+    if (buckets.isEmpty()) {
+      return counters;
+    }
+    Map<String, Bucket> bucketsByUuid = Maps.newHashMap();
+    for (Bucket bucket : buckets) {
+      bucketsByUuid.put(bucket.getBucketUuid(), bucket);
+    }
+    try (TransactionResource tran = Entities.transactionFor(BucketCounter.class)) {
+      List<BucketCounter> found =
+          Entities.createCriteria(BucketCounter.class).add(Restrictions.in("bucketUuid", bucketsByUuid.keySet())).setReadOnly(true).list();
+      tran.commit();
+      for (BucketCounter counter : found) {
+        counters.put(counter.getBucketUuid(), counter);
+      }
+    }
+    for (Bucket bucket : buckets) {
+      if (!counters.containsKey(bucket.getBucketUuid())) {
+        counters.put(bucket.getBucketUuid(), lookup(bucket));
+      }
+    }
+    return counters;
+  }
+
+  /**
+   * Returns the total bytes across all bucket counters.
+   */
+  public static long getTotalBytes() throws Exception {
+    try (TransactionResource tran = Entities.transactionFor(BucketCounter.class)) {
+      Object[] sums =
+          (Object[]) Entities.createCriteria(BucketCounter.class)
+              .setProjection(Projections.projectionList().add(Projections.sum("objectBytes")).add(Projections.sum("partBytes"))).setReadOnly(true)
+              .uniqueResult();
+      tran.commit();
+      long total = 0;
+      if (sums != null) {
+        for (Object sum : sums) {
+          total += sum == null ? 0l : ((Number) sum).longValue();
+        }
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Recomputes the counters for the bucket from the object and part records, creating them if needed.
+   */
+  public static BucketCounter reconcile(Bucket bucket) throws Exception {
+    try (TransactionResource tran = Entities.transactionFor(BucketCounter.class)) {
+      // Take the counter row lock before aggregating so that transactions that already adjusted the counters have committed and any others
+      // apply their adjustments after this one
+      BucketCounter counter;
+      Date now = new Date();
+      if (Entities.updateAllMatching(BucketCounter.class, LOCK, ImmutableMap.of("now", now, "bucketUuid", bucket.getBucketUuid())) == 0) {
+        counter = Entities.persist(BucketCounter.forBucket(bucket));
+        Entities.flush(counter);
+      } else {
+        counter = Entities.uniqueResult(new BucketCounter().withUuid(bucket.getBucketUuid()));
+      }
+
+      long objectCount = aggregate(ObjectEntity.class, bucket, Projections.rowCount(), ObjectState.extant);
+      long objectBytes = aggregate(ObjectEntity.class, bucket, Projections.sum("size"), ObjectState.creating, ObjectState.extant);
+      long partBytes = aggregate(PartEntity.class, bucket, Projections.sum("size"), ObjectState.creating, ObjectState.extant);
+
+      if (counter.getObjectCount() != objectCount || counter.getObjectBytes() != objectBytes || counter.getPartBytes() != partBytes) {
+        LOG.debug("Correcting counters for bucket " + bucket.getBucketName() + " from count " + counter.getObjectCount() + " bytes "
+            + counter.getObjectBytes() + "/" + counter.getPartBytes() + " to count " + objectCount + " bytes " + objectBytes + "/" + partBytes);
+      }
+      counter.setObjectCount(objectCount);
+      counter.setObjectBytes(objectBytes);
+      counter.setPartBytes(partBytes);
+      counter.setLastReconciled(now);
+      tran.commit();
+      return counter;
+    }
+  }
+
+  private static long aggregate(Class<?> entityClass, Bucket bucket, Projection projection, ObjectState... states) {
+    Criteria criteria = Entities.createCriteria(entityClass).add(Restrictions.in("state", states)).setProjection(projection);
+    criteria.createCriteria("bucket").add(Restrictions.eq("naturalId", bucket.getNaturalId()));
+    Number result = (Number) criteria.setReadOnly(true).uniqueResult();
+    return result == null ? 0l : result.longValue();
+  }
+}
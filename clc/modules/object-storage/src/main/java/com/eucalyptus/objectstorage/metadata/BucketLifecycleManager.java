@@ -93,4 +93,11 @@ public interface BucketLifecycleManager {
   public com.eucalyptus.objectstorage.entities.LifecycleRule getLifecycleRuleForReaping(String ruleId, String bucketUuid)
       throws ObjectStorageException;
 
+  /**
+   * Records how far reaping has progressed for a rule and refreshes its processing start so other hosts continue to leave it alone. A null cursor
+   * marks the pass as complete.
+   */
+  public void updateLifecycleRuleProgress(String ruleId, String bucketUuid, String cursorObjectKey, String cursorObjectUuid)
+      throws ObjectStorageException;
+
 }
@@ -75,6 +75,7 @@ public class BucketStateTransitions {
           Bucket foundBucket = Entities.uniqueResult(new Bucket().withUuid(searchBucket.getBucketUuid()));
           if (!BucketState.deleting.equals(foundBucket.getState())) {
             foundBucket.setState(BucketState.extant);
+            BucketCounters.create(foundBucket);
             return foundBucket;
           } else {
             throw new IllegalResourceStateException("Cannot transition to extant from non-creating state", null, BucketState.creating.toString(),
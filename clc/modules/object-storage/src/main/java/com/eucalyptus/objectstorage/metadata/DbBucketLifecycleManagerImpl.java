@@ -303,4 +303,24 @@ public class DbBucketLifecycleManagerImpl implements BucketLifecycleManager {
     }
     return result;
   }
+
+  @Override
+  public void updateLifecycleRuleProgress(String ruleId, String bucketUuid, String cursorObjectKey, String cursorObjectUuid)
+      throws ObjectStorageException {
+    LifecycleRule example = new LifecycleRule();
+    example.setBucketUuid(bucketUuid);
+    example.setRuleId(ruleId);
+    try (TransactionResource tran = Entities.transactionFor(LifecycleRule.class)) {
+      LifecycleRule rule = Entities.uniqueResult(example);
+      rule.setReapingCursorKey(cursorObjectKey);
+      rule.setReapingCursorUuid(cursorObjectUuid);
+      rule.setLastProcessingStart(new Date());
+      tran.commit();
+    } catch (Exception ex) {
+      LOG.error("exception occurred while updating progress for lifecycle rule with id - " + ruleId + " in bucket - " + bucketUuid
+          + " with message - " + ex.getMessage());
+      throw new ObjectStorageException("exception occurred while updating progress for lifecycle rule with id - " + ruleId + " in bucket - "
+          + bucketUuid + " with message - " + ex.getMessage(), ex);
+    }
+  }
 }
@@ -177,6 +177,7 @@ public class DbBucketMetadataManagerImpl implements BucketMetadataManager {
       if (BucketState.deleting.equals(bucketToDelete.getState())) {
         // Remove the record.
         Entities.delete(bucketToDelete);
+        BucketCounters.delete(bucketToDelete.getBucketUuid());
       } else {
         throw new IllegalResourceStateException("Bucket not in deleting state, no valid transition to deleted", null,
             BucketState.deleting.toString(), bucketToDelete.getState().toString());
@@ -252,15 +252,17 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
       public boolean apply(String uploadId) {
         try (TransactionResource db = Entities.transactionFor(PartEntity.class)) {
           // Calculate the sum size of the parts to update the bucket size.
-          PartEntity searchExample = new PartEntity().withUploadId(uploadId).withState(ObjectState.extant);
+          PartEntity searchExample = new PartEntity().withUploadId(uploadId);
           long size =
               Objects.firstNonNull(
-                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample)).setProjection(Projections.sum("size"))
+                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample)).add(Restrictions.isNotNull("partNumber"))
+                      .add(Restrictions.in("state", new Object[] {ObjectState.creating, ObjectState.extant})).setProjection(Projections.sum("size"))
                       .setReadOnly(true).uniqueResult(), 0).longValue();
 
           // Remove all part records with this upload id
           Entities.deleteAllMatching(PartEntity.class, "where part_number IS NOT NULL and upload_id=:uploadId",
               Collections.singletonMap("uploadId", uploadId));
+          BucketCounters.partsRemoved(bucket, size);
           db.commit();
         } catch (Exception e) {
           LOG.trace("Error finalizing part-removal transaction. Will retry.", e);
@@ -282,9 +284,14 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
       search.add(Example.create(searchExample));
       search = getSearchByBucket(search, bucket);
       List<PartEntity> uploads = search.list();
+      long size = 0;
       for (PartEntity e : uploads) {
+        if ((ObjectState.creating.equals(e.getState()) || ObjectState.extant.equals(e.getState())) && e.getSize() != null) {
+          size += e.getSize();
+        }
         Entities.delete(e);
       }
+      BucketCounters.partsRemoved(bucket, size);
       db.commit();
     }
   }
@@ -33,6 +33,7 @@ import javax.persistence.EntityTransaction;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Example;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
@@ -45,7 +46,6 @@ import com.eucalyptus.auth.principal.UserPrincipal;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.entities.TransactionResource;
-import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.objectstorage.ObjectMetadataManagers;
 import com.eucalyptus.objectstorage.ObjectState;
 import com.eucalyptus.objectstorage.PaginatedResult;
@@ -70,6 +70,9 @@ import com.google.common.base.Strings;
 public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
   private static final Logger LOG = Logger.getLogger(DbObjectMetadataManagerImpl.class);
 
+  // Rows read after seeking past a common prefix in a delimited listing
+  private static final int SKIP_SCAN_FETCH_SIZE = 16;
+
   public void start() throws Exception {
     LOG.trace("Starting DbObjectMetadataManager");
   }
@@ -123,17 +126,24 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
   }
 
   @Override
-  public List<ObjectEntity> lookupObjectsForReaping(Bucket bucket, String objectKeyPrefix, Date age) {
+  public List<ObjectEntity> lookupObjectsForReaping(Bucket bucket, String objectKeyPrefix, Date age, String afterObjectKey, String afterObjectUuid,
+      int maxResults) {
     List<ObjectEntity> results;
     try (TransactionResource tran = Entities.transactionFor(ObjectEntity.class)) {
       // setup example and criteria
       ObjectEntity example = new ObjectEntity().withState(ObjectState.extant).withBucket(bucket);
+      example.setIsLatest(Boolean.TRUE);
       Criteria search = Entities.createCriteria(ObjectEntity.class).add(Example.create(example));
       search.add(Restrictions.lt("creationTimestamp", age));
       if (objectKeyPrefix != null && !objectKeyPrefix.equals("")) {
         search.add(Restrictions.like("objectKey", objectKeyPrefix, MatchMode.START));
       }
-      search = getSearchByBucket(search, bucket);
+      if (afterObjectKey != null) {
+        search.add(Restrictions.or(Restrictions.gt("objectKey", afterObjectKey),
+            Restrictions.and(Restrictions.eq("objectKey", afterObjectKey), Restrictions.gt("objectUuid", Strings.nullToEmpty(afterObjectUuid)))));
+      }
+      search.addOrder(Order.asc("objectKey")).addOrder(Order.asc("objectUuid")).setMaxResults(maxResults);
+      getSearchByBucket(search, bucket);
       results = search.list();
       tran.commit();
     } catch (Exception ex) {
@@ -144,6 +154,33 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     return results;
   }
 
+  @Override
+  public int transitionObjectsToDeleting(List<ObjectEntity> objects) throws MetadataOperationFailureException {
+    if (objects == null || objects.isEmpty()) {
+      return 0;
+    }
+    List<String> objectUuids = new ArrayList<>(objects.size());
+    for (ObjectEntity object : objects) {
+      objectUuids.add(object.getObjectUuid());
+    }
+    try (TransactionResource tran = Entities.transactionFor(ObjectEntity.class)) {
+      // reload under this transaction so objects overwritten or deleted since the lookup are left alone
+      ObjectEntity example = new ObjectEntity().withState(ObjectState.extant);
+      example.setIsLatest(Boolean.TRUE);
+      List<ObjectEntity> found =
+          Entities.createCriteria(ObjectEntity.class).add(Example.create(example)).add(Restrictions.in("objectUuid", objectUuids)).list();
+      for (ObjectEntity entity : found) {
+        ObjectStateTransitions.TRANSITION_TO_DELETING.apply(entity);
+      }
+      tran.commit();
+      return found.size();
+    } catch (ObjectStorageInternalException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new MetadataOperationFailureException(e);
+    }
+  }
+
   /**
    * Provides the search criteria to handle the FK relation from ObjectEntity->Bucket Returns a criteria for a search that matches the given bucket
    * 
@@ -369,7 +406,12 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     try {
       // Delete markers can be just removed not state transitioned.
       if (objectToDelete.getIsDeleteMarker()) {
-        Transactions.delete(objectToDelete);
+        try (TransactionResource tran = Entities.transactionFor(ObjectEntity.class)) {
+          ObjectEntity marker = Entities.uniqueResult(new ObjectEntity().withUuid(objectToDelete.getObjectUuid()));
+          BucketCounters.objectChanged(marker.getBucket(), marker.getState(), marker.getSize(), null, null);
+          Entities.delete(marker);
+          tran.commit();
+        }
         return;
       }
 
@@ -662,14 +704,7 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
           searchObj.setIsDeleteMarker(false);
         }
 
-        Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
-        objCriteria.setReadOnly(true);
-        objCriteria.setFetchSize(queryStrideSize);
-        objCriteria.add(Example.create(searchObj));
-        objCriteria.addOrder(Order.asc("objectKey"));
-        objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
-        objCriteria.setMaxResults(queryStrideSize);
-
+        Criterion position = null;
         if (!Strings.isNullOrEmpty(fromKeyMarker)) {
           if (!Strings.isNullOrEmpty(fromVersionId)) {
             // Look for the key that matches the key-marker and version-id-marker
@@ -687,69 +722,54 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
 
             // The result set should be exclusive of the key with the key-marker version-id-marker pair. Look for keys that chronologically
             // follow the version-id-marker for the given key-marker and also the keys that follow the key-marker.
-            objCriteria.add(Restrictions.or(
+            position = Restrictions.or(
                 Restrictions.and(Restrictions.eq("objectKey", fromKeyMarker),
                     Restrictions.lt("objectModifiedTimestamp", matchingObject.getObjectModifiedTimestamp())),
-                Restrictions.gt("objectKey", fromKeyMarker)));
+                Restrictions.gt("objectKey", fromKeyMarker));
           } else { // No version-id-marker, just set the criteria the key-marker
-            objCriteria.add(Restrictions.gt("objectKey", fromKeyMarker));
+            position = Restrictions.gt("objectKey", fromKeyMarker);
           }
         } else {
           // No criteria to be set
         }
 
-        if (!Strings.isNullOrEmpty(prefix)) {
-          objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
-        } else {
+        if (Strings.isNullOrEmpty(prefix)) {
           prefix = "";
         }
 
-        objCriteria = getSearchByBucket(objCriteria, bucket);
-
         // Ensure not null.
         if (Strings.isNullOrEmpty(delimiter)) {
           delimiter = "";
         }
 
-        List<ObjectEntity> objectInfos = null;
         int resultKeyCount = 0;
-        String[] parts = null;
-        String prefixString = null;
         boolean useDelimiter = !Strings.isNullOrEmpty(delimiter);
-        int pages = 0;
-
-        // Iterate over result sets of size maxkeys + 1 since
-        // commonPrefixes collapse the list, we may examine many more
-        // records than maxkeys + 1
-        do {
-          parts = null;
-          prefixString = null;
-
-          // Skip ahead the next page of 'queryStrideSize' results.
-          objCriteria.setFirstResult(pages++ * queryStrideSize);
-
-          objectInfos = (List<ObjectEntity>) objCriteria.list();
-          if (objectInfos == null) {
-            // nothing to do.
-            break;
-          }
+        boolean done = false;
+        int fetchSize = queryStrideSize;
+
+        // Each query reads forward from the current position. When a key rolls up into a common prefix the listing seeks past every key
+        // sharing that prefix rather than reading through them, so the rows examined are proportional to the entries returned and not to
+        // the number of objects under the prefixes.
+        while (!done) {
+          int fetch = Math.min(fetchSize, queryStrideSize - resultKeyCount);
+          List<ObjectEntity> objectInfos = (List<ObjectEntity>) listingCriteria(bucket, searchObj, prefix, position, fetch).list();
+          Criterion seek = null;
+          ObjectEntity lastRecord = null;
 
           for (ObjectEntity objectRecord : objectInfos) {
+            lastRecord = objectRecord;
             if (useDelimiter) {
-              // Check if it will get aggregated as a commonprefix
-              // Split the substring with at least 2 matches as we need a result containing trailing strings. For instance
-              // if "x" is delimiter and key string is also "x", then this key should be included in common prefixes.
-              // "x".split("x") gives 0 strings which causes the subsequent logic to skip the key where as
-              // "x".split("x", 2) gives 2 empty strings which is what the logic expects
-              parts = objectRecord.getObjectKey().substring(prefix.length()).split(delimiter, 2);
-              if (parts.length > 1) {
-                prefixString = prefix + parts[0] + delimiter;
+              // Check if it will get aggregated as a commonprefix. A key equal to prefix + delimiter rolls up into that prefix.
+              int delimiterIndex = objectRecord.getObjectKey().indexOf(delimiter, prefix.length());
+              if (delimiterIndex >= 0) {
+                String prefixString = objectRecord.getObjectKey().substring(0, delimiterIndex + delimiter.length());
                 if (!prefixString.equals(fromKeyMarker) && !commonPrefixes.contains(prefixString)) {
                   if (resultKeyCount == maxEntries) {
                     // This is a new record, so we know
                     // we're truncating if this is true
                     result.setIsTruncated(true);
                     resultKeyCount++;
+                    done = true;
                     break;
                   } else {
                     // Add it to the common prefix set
@@ -759,10 +779,11 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
                     // single return entry
                     resultKeyCount++;
                   }
-                } else {
-                  // Already have this prefix, so skip
                 }
-                continue;
+                // Nothing else under this prefix is listed, continue from the first key after it. The position after this row is
+                // included so the listing still advances if the database collation does not sort the bound after the prefix.
+                seek = Restrictions.and(Restrictions.gt("objectKey", prefixString + Character.MAX_VALUE), positionAfter(objectRecord));
+                break;
               }
             }
 
@@ -771,6 +792,7 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
               // we know we're truncating
               result.setIsTruncated(true);
               resultKeyCount++;
+              done = true;
               break;
             }
 
@@ -779,10 +801,21 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
             resultKeyCount++;
           }
 
-          if (resultKeyCount <= maxEntries && objectInfos.size() <= maxEntries) {
+          if (done) {
             break;
+          } else if (seek != null) {
+            // Keys following a common prefix often share the next one, so read a small page after a seek and grow it while plain keys are
+            // being returned
+            position = seek;
+            fetchSize = SKIP_SCAN_FETCH_SIZE;
+          } else if (objectInfos.size() < fetch) {
+            // Reached the end of the listing
+            done = true;
+          } else {
+            position = positionAfter(lastRecord);
+            fetchSize = Math.min(fetchSize * 2, queryStrideSize);
           }
-        } while (resultKeyCount <= maxEntries);
+        }
 
         // Sort the prefixes from the hashtable and add to the reply
         if (commonPrefixes != null) {
@@ -802,6 +835,48 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     }
   }
 
+  /**
+   * Builds the query for the next page of a listing, starting at the given position. Rows are ordered by key then newest version first, with
+   * the object uuid breaking ties so that a page can always be continued from its last row.
+   */
+  private static Criteria listingCriteria(Bucket bucket, ObjectEntity searchObj, String prefix, @Nullable Criterion position, int fetch) {
+    Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
+    objCriteria.setReadOnly(true);
+    objCriteria.setFetchSize(fetch);
+    objCriteria.add(Example.create(searchObj));
+    objCriteria.addOrder(Order.asc("objectKey"));
+    objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
+    objCriteria.addOrder(Order.asc("objectUuid"));
+    objCriteria.setMaxResults(fetch);
+    if (position != null) {
+      objCriteria.add(position);
+    }
+    if (!prefix.isEmpty()) {
+      // The lower bound lets the key index be used as a range even where like cannot
+      objCriteria.add(Restrictions.ge("objectKey", prefix));
+      objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
+    }
+    getSearchByBucket(objCriteria, bucket);
+    return objCriteria;
+  }
+
+  /**
+   * Position immediately after the given row in listing order
+   */
+  private static Criterion positionAfter(ObjectEntity last) {
+    Criterion sameKeyAfter;
+    if (last.getObjectModifiedTimestamp() != null) {
+      sameKeyAfter =
+          Restrictions.or(Restrictions.lt("objectModifiedTimestamp", last.getObjectModifiedTimestamp()),
+              Restrictions.and(Restrictions.eq("objectModifiedTimestamp", last.getObjectModifiedTimestamp()),
+                  Restrictions.gt("objectUuid", last.getObjectUuid())));
+    } else {
+      sameKeyAfter = Restrictions.gt("objectUuid", last.getObjectUuid());
+    }
+    return Restrictions.or(Restrictions.gt("objectKey", last.getObjectKey()),
+        Restrictions.and(Restrictions.eq("objectKey", last.getObjectKey()), sameKeyAfter));
+  }
+
   @Override
   public long countValid(Bucket bucket) throws Exception {
     try (TransactionResource trans = Entities.transactionFor(ObjectEntity.class)) {
@@ -80,7 +80,9 @@ public class MpuPartStateTransitions {
           initializedObject.setBucket(extantBucket);
           initializedObject.setState(ObjectState.creating);
           initializedObject.updateCreationExpiration();
-          return Entities.persist(initializedObject);
+          PartEntity created = Entities.persist(initializedObject);
+          BucketCounters.partChanged(extantBucket, null, null, ObjectState.creating, created.getSize());
+          return created;
         }
 
       }
@@ -99,6 +101,8 @@ public class MpuPartStateTransitions {
       } else {
         try {
           PartEntity updatingEntity = Entities.uniqueResult(new PartEntity().withUuid(entity.getPartUuid()));
+          ObjectState fromState = updatingEntity.getState();
+          Long fromSize = updatingEntity.getSize();
           if (!ObjectState.deleting.equals(entity.getState())) {
             // Set the new part state
             updatingEntity.setState(ObjectState.extant);
@@ -111,6 +115,8 @@ public class MpuPartStateTransitions {
             // Remove old versions and update bucket size within this transaction.
             MpuPartMetadataManagers.getInstance().cleanupInvalidParts(entity.getBucket(), entity.getObjectKey(), entity.getUploadId(),
                 entity.getPartNumber());
+
+            BucketCounters.partChanged(updatingEntity.getBucket(), fromState, fromSize, ObjectState.extant, updatingEntity.getSize());
           } else {
             throw new IllegalResourceStateException("Cannot transition to extant from non-creating state", null, ObjectState.creating.toString(),
                 entity.getState().toString());
@@ -149,6 +155,7 @@ public class MpuPartStateTransitions {
             entity = objectToUpdate;
           }
 
+          BucketCounters.partChanged(entity.getBucket(), entity.getState(), entity.getSize(), ObjectState.deleting, entity.getSize());
           entity.setState(ObjectState.deleting);
           return entity;
         } catch (NoSuchElementException e) {
@@ -233,7 +233,29 @@ public interface ObjectMetadataManager {
    */
   public long getTotalSize(Bucket bucket) throws Exception;
 
-  public List<ObjectEntity> lookupObjectsForReaping(Bucket bucket, String objectKeyPrefix, Date age);
+  /**
+   * Returns one page of latest, extant objects in the bucket created before the given age, ordered by object key and uuid. Pass the key and uuid of
+   * the last object of the previous page to continue a scan, or nulls to start at the beginning.
+   * 
+   * @param bucket
+   * @param objectKeyPrefix
+   * @param age
+   * @param afterObjectKey
+   * @param afterObjectUuid
+   * @param maxResults
+   * @return
+   */
+  public List<ObjectEntity> lookupObjectsForReaping(Bucket bucket, String objectKeyPrefix, Date age, String afterObjectKey, String afterObjectUuid,
+      int maxResults);
+
+  /**
+   * Transitions the given objects to 'deleting' state in a single transaction. Objects that are no longer the latest extant version are skipped.
+   * 
+   * @param objects
+   * @return the number of objects transitioned
+   * @throws MetadataOperationFailureException
+   */
+  public int transitionObjectsToDeleting(List<ObjectEntity> objects) throws MetadataOperationFailureException;
 
   /**
    * Fix an object history if needed. Scans the sorted object records and marks latest as well as marking contiguous null-versioned records for
@@ -82,7 +82,9 @@ public class ObjectStateTransitions {
           initializedObject.setBucket(extantBucket);
           initializedObject.setState(ObjectState.creating);
           initializedObject.updateCreationExpiration();
-          return Entities.persist(initializedObject);
+          ObjectEntity created = Entities.persist(initializedObject);
+          BucketCounters.objectChanged(extantBucket, null, null, ObjectState.creating, created.getSize());
+          return created;
         }
 
       }
@@ -101,6 +103,8 @@ public class ObjectStateTransitions {
       } else {
         try {
           ObjectEntity updatingEntity = Entities.uniqueResult(new ObjectEntity().withUuid(entity.getObjectUuid()));
+          ObjectState fromState = updatingEntity.getState();
+          Long fromSize = updatingEntity.getSize();
           if (!ObjectState.deleting.equals(entity.getState())) {
             // Remove old versions and update bucket size within this transaction.
             // If quota enforcement wasn't needed this would be unnecessary.
@@ -129,6 +133,8 @@ public class ObjectStateTransitions {
 
             ObjectMetadataManagers.getInstance().cleanupInvalidObjects(updatingEntity.getBucket(), updatingEntity.getObjectKey());
 
+            BucketCounters.objectChanged(updatingEntity.getBucket(), fromState, fromSize, ObjectState.extant, updatingEntity.getSize());
+
           } else {
             throw new IllegalResourceStateException("Cannot transition to extant from non-creating state", null, ObjectState.creating.toString(),
                 entity.getState().toString());
@@ -164,6 +170,8 @@ public class ObjectStateTransitions {
             updatingEntity.setCreationExpiration(null);
             updatingEntity.setObjectModifiedTimestamp(entity.getObjectModifiedTimestamp());
             updatingEntity.setUploadId(entity.getUploadId());
+            BucketCounters.objectChanged(updatingEntity.getBucket(), ObjectState.creating, updatingEntity.getSize(), ObjectState.mpu_pending,
+                updatingEntity.getSize());
           } else {
             throw new IllegalResourceStateException("Cannot transition to mpu-pending from non-creating state", null,
                 ObjectState.creating.toString(), entity.getState().toString());
@@ -198,6 +206,7 @@ public class ObjectStateTransitions {
           } else {
             entity = objectToUpdate;
           }
+          BucketCounters.objectChanged(entity.getBucket(), entity.getState(), entity.getSize(), ObjectState.deleting, entity.getSize());
           entity.setState(ObjectState.deleting);
           entity.setIsLatest(Boolean.FALSE);
 
@@ -66,12 +66,10 @@ import java.util.List;
 
 import com.eucalyptus.auth.Accounts;
 import com.eucalyptus.auth.AuthException;
-import com.eucalyptus.entities.Entities;
-import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.objectstorage.BucketMetadataManagers;
-import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
-import com.eucalyptus.objectstorage.ObjectMetadataManagers;
 import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.entities.BucketCounter;
+import com.eucalyptus.objectstorage.metadata.BucketCounters;
 
 public class ObjectStorageQuotaUtil {
 
@@ -93,18 +91,15 @@ public class ObjectStorageQuotaUtil {
 
   public static long countBucketObjects(String bucketName) throws AuthException {
     try {
-      return ObjectMetadataManagers.getInstance().countValid(BucketMetadataManagers.getInstance().lookupBucket(bucketName));
+      return BucketCounters.lookup(BucketMetadataManagers.getInstance().lookupBucket(bucketName)).getObjectCount();
     } catch (Exception e) {
       throw new AuthException("Failed to search object", e);
     }
   }
 
   public static long getBucketSize(String bucketName) throws AuthException {
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      Bucket bucket = BucketMetadataManagers.getInstance().lookupBucket(bucketName);
-      long objectSize = ObjectMetadataManagers.getInstance().getTotalSize(bucket);
-      long mpuPartsSize = MpuPartMetadataManagers.getInstance().getTotalSize(bucket);
-      return objectSize + mpuPartsSize;
+    try {
+      return BucketCounters.lookup(BucketMetadataManagers.getInstance().lookupBucket(bucketName)).getTotalBytes();
     } catch (Exception e) {
       throw new AuthException("Failed to get bucket total size", e);
     }
@@ -112,40 +107,35 @@ public class ObjectStorageQuotaUtil {
 
   public static long getTotalObjectsSizeByAccount(String accountId) throws AuthException {
     String canonicalId = Accounts.lookupCanonicalIdByAccountId(accountId);
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+    try {
+      return totalBytes(BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId));
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
   }
 
   public static long getTotalObjectsSizeByUser(String userId) throws AuthException {
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByUser(userId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+    try {
+      return totalBytes(BucketMetadataManagers.getInstance().lookupBucketsByUser(userId));
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
   }
 
+  private static long totalBytes(List<Bucket> bucketList) throws Exception {
+    long size = 0;
+    for (BucketCounter counter : BucketCounters.lookup(bucketList).values()) {
+      size += counter.getTotalBytes();
+    }
+    return size;
+  }
+
   /**
    * Return the total size in bytes of objects in the ObjectStorage.
    *
    * @return The size or -1 if the size could not be determined.
    */
   public static long getTotalObjectSize() throws Exception {
-    // return BucketMetadataManagers.getInstance().totalSizeOfAllBuckets();
-    return ObjectMetadataManagers.getInstance().getTotalSize(null) + MpuPartMetadataManagers.getInstance().getTotalSize(null);
+    return BucketCounters.getTotalBytes();
   }
 }
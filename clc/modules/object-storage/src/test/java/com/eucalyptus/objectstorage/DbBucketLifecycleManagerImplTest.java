@@ -320,6 +320,51 @@ public class DbBucketLifecycleManagerImplTest {
     cleanRules(bucketTwoName);
   }
 
+  @Test
+  public void updateLifecycleRuleProgressTest() throws Exception {
+    LifecycleRule testRule = new LifecycleRule();
+    testRule.setId("test-progress-rule");
+    testRule.setStatus(BucketLifecycleManager.RULE_STATUS_ENABLED);
+    testRule.setPrefix("/some/test/data");
+    Expiration expiration = new Expiration();
+    expiration.setCreationDelayDays(3);
+    testRule.setExpiration(expiration);
+    List<LifecycleRule> rules = new ArrayList<>();
+    rules.add(testRule);
+    mgr.addLifecycleRules(rules, "my-progress-test-bucket");
+
+    com.eucalyptus.objectstorage.entities.LifecycleRule claimed = mgr.getLifecycleRuleForReaping("test-progress-rule", "my-progress-test-bucket");
+    assertTrue("expected the lifecycle rule to be retrievable", claimed != null);
+    assertTrue("expected no cursor before any progress is saved", claimed.getReapingCursorKey() == null);
+
+    mgr.updateLifecycleRuleProgress("test-progress-rule", "my-progress-test-bucket", "/some/test/data/key-42", "uuid-42");
+
+    com.eucalyptus.objectstorage.entities.LifecycleRule saved = null;
+    for (com.eucalyptus.objectstorage.entities.LifecycleRule rule : mgr.getLifecycleRules()) {
+      if ("my-progress-test-bucket".equals(rule.getBucketUuid())) {
+        saved = rule;
+      }
+    }
+    assertTrue("expected the saved rule to be found", saved != null);
+    assertTrue("expected the cursor key to be saved", "/some/test/data/key-42".equals(saved.getReapingCursorKey()));
+    assertTrue("expected the cursor uuid to be saved", "uuid-42".equals(saved.getReapingCursorUuid()));
+    assertTrue("expected the processing start to be refreshed",
+        !saved.getLastProcessingStart().before(claimed.getLastProcessingStart()));
+
+    // saving progress keeps the rule claimed
+    assertTrue("expected the lifecycle rule to be unretrievable while in progress",
+        mgr.getLifecycleRuleForReaping("test-progress-rule", "my-progress-test-bucket") == null);
+
+    mgr.updateLifecycleRuleProgress("test-progress-rule", "my-progress-test-bucket", null, null);
+    for (com.eucalyptus.objectstorage.entities.LifecycleRule rule : mgr.getLifecycleRules()) {
+      if ("my-progress-test-bucket".equals(rule.getBucketUuid())) {
+        assertTrue("expected the cursor to be cleared on completion", rule.getReapingCursorKey() == null && rule.getReapingCursorUuid() == null);
+      }
+    }
+
+    cleanRules("my-progress-test-bucket");
+  }
+
   @Ignore
   @Test
   public void getLifecycleForReapingTest() throws Exception {
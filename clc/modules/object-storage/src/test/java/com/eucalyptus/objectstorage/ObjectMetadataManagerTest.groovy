@@ -285,6 +285,63 @@ public class ObjectMetadataManagerTest {
     assert(verifyListingOrder(listing))
   }
 
+  @Test
+  public void testListPaginatedWithDelimiter() {
+    UserPrincipal usr = Accounts.lookupPrincipalByUserId(UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first())
+    Bucket bucket = TestUtils.createTestBucket(mgr, 'bucket')
+    ['logs/2016/01/', 'logs/2016/02/', 'logs/2017/01/', 'logs/readme', 'other/', 'top'].each { k ->
+      TestUtils.createNObjects(objMgr, 12, bucket, (String)k, 100, usr)
+    }
+
+    PaginatedResult<ObjectEntity> root = objMgr.listPaginated(bucket, 1000, null, '/', null)
+    assert(root.getCommonPrefixes() == ['logs/', 'other/'])
+    assert(root.getEntityList().size() == 12)
+    assert(root.getEntityList().every { it.getObjectKey().startsWith('top') })
+    assert(!root.getIsTruncated())
+
+    PaginatedResult<ObjectEntity> logs = objMgr.listPaginated(bucket, 1000, 'logs/', '/', null)
+    assert(logs.getCommonPrefixes() == ['logs/2016/', 'logs/2017/'])
+    assert(logs.getEntityList().size() == 12)
+    assert(verifyListingOrder(logs))
+
+    PaginatedResult<ObjectEntity> year = objMgr.listPaginated(bucket, 1000, 'logs/2016/', '/', null)
+    assert(year.getCommonPrefixes() == ['logs/2016/01/', 'logs/2016/02/'])
+    assert(year.getEntityList().isEmpty())
+
+    // Continue one entry at a time from the returned marker
+    def entries = []
+    String marker = null
+    while (true) {
+      PaginatedResult<ObjectEntity> page = objMgr.listPaginated(bucket, 1, 'logs/', '/', marker)
+      entries.addAll(page.getCommonPrefixes())
+      entries.addAll(page.getEntityList().collect { it.getObjectKey() })
+      assert(page.getCommonPrefixes().size() + page.getEntityList().size() == 1)
+      if (!page.getIsTruncated()) {
+        break
+      }
+      marker = page.getLastEntry() instanceof ObjectEntity ? ((ObjectEntity) page.getLastEntry()).getObjectKey() : (String) page.getLastEntry()
+    }
+    assert(entries.size() == 14)
+    assert(entries.toSet().size() == 14)
+    assert(entries.containsAll(['logs/2016/', 'logs/2017/']))
+
+    // Without a delimiter every key is listed exactly once across pages
+    def keys = []
+    marker = null
+    while (true) {
+      PaginatedResult<ObjectEntity> page = objMgr.listPaginated(bucket, 7, null, null, marker)
+      assert(page.getCommonPrefixes().isEmpty())
+      keys.addAll(page.getEntityList().collect { it.getObjectKey() })
+      if (!page.getIsTruncated()) {
+        break
+      }
+      marker = ((ObjectEntity) page.getLastEntry()).getObjectKey()
+    }
+    assert(keys.size() == 72)
+    assert(keys.toSet().size() == 72)
+    assert(keys == keys.collect().sort())
+  }
+
   private static boolean verifyListingOrder(PaginatedResult<ObjectEntity> listing) {
     ObjectEntity last = null;
     for(ObjectEntity e : listing.getEntityList()) {
@@ -307,6 +364,50 @@ public class ObjectMetadataManagerTest {
     return true;
   }
 
+  @Test
+  public void testLookupObjectsForReapingPaged() {
+    String key = "reapkey";
+    Bucket bucket = TestUtils.createTestBucket(mgr, "testbucket")
+    assert(bucket != null)
+
+    UserPrincipal usr = Accounts.lookupPrincipalByUserId(UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first())
+    def objs = TestUtils.createNObjects(objMgr, 25, bucket, key, 100, usr)
+    TestUtils.createNObjects(objMgr, 5, bucket, "otherkey", 100, usr)
+    assert(objs.size() == 25)
+
+    Date age = new Date(System.currentTimeMillis() + 60000l)
+    def seen = [] as Set
+    String afterKey = null
+    String afterUuid = null
+    int pages = 0
+    while (true) {
+      List<ObjectEntity> page = objMgr.lookupObjectsForReaping(bucket, key, age, afterKey, afterUuid, 10)
+      if (page.isEmpty()) {
+        break
+      }
+      pages++
+      for (ObjectEntity e : page) {
+        assert(e.getObjectKey().startsWith(key))
+        assert(seen.add(e.getObjectUuid()))
+      }
+      afterKey = page.last().getObjectKey()
+      afterUuid = page.last().getObjectUuid()
+    }
+    assert(pages == 3)
+    assert(seen.size() == 25)
+
+    // nothing is old enough yet
+    assert(objMgr.lookupObjectsForReaping(bucket, key, new Date(System.currentTimeMillis() - 60000l), null, null, 10).isEmpty())
+
+    List<ObjectEntity> firstPage = objMgr.lookupObjectsForReaping(bucket, key, age, null, null, 10)
+    assert(objMgr.transitionObjectsToDeleting(firstPage) == 10)
+    // already transitioned objects are skipped
+    assert(objMgr.transitionObjectsToDeleting(firstPage) == 0)
+    assert(objMgr.lookupObjectsInState(bucket, firstPage.first().getObjectKey(), firstPage.first().getVersionId(), ObjectState.deleting).size() == 1)
+    assert(objMgr.countValid(bucket) == 20)
+    assert(objMgr.lookupObjectsForReaping(bucket, key, age, null, null, 100).size() == 15)
+  }
+
   @Test
   public void testTransitionObjectToState() {
     String bucketName = 'bucket'
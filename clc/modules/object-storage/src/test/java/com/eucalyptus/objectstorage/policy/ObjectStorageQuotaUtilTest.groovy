@@ -23,13 +23,16 @@ package com.eucalyptus.objectstorage.policy
 import com.eucalyptus.auth.Accounts
 import com.eucalyptus.auth.principal.AccountIdentifiers
 import com.eucalyptus.auth.principal.UserPrincipal
+import com.eucalyptus.entities.Entities
 import com.eucalyptus.objectstorage.BucketMetadataManagers
 import com.eucalyptus.objectstorage.BucketState
 import com.eucalyptus.objectstorage.ObjectMetadataManagers
 import com.eucalyptus.objectstorage.ObjectState
 import com.eucalyptus.objectstorage.UnitTestSupport
 import com.eucalyptus.objectstorage.entities.Bucket
+import com.eucalyptus.objectstorage.entities.BucketCounter
 import com.eucalyptus.objectstorage.entities.ObjectEntity
+import com.eucalyptus.objectstorage.metadata.BucketCounters
 import com.google.common.collect.Lists
 import groovy.transform.CompileStatic
 import org.junit.After
@@ -38,6 +41,8 @@ import org.junit.Before
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javax.persistence.EntityTransaction
+
 /**
  * Created by zhill on 3/13/14.
  */
@@ -155,4 +160,45 @@ public class ObjectStorageQuotaUtilTest {
   public void testGetTotalObjectSize() throws Exception {
     assert(ObjectStorageQuotaUtil.getTotalObjectSize() == bucketCount * objectCount * size)
   }
+
+  @Test
+  public void testCountersFollowObjectTransitions() throws Exception {
+    Bucket b = buckets.first()
+    BucketCounter before = BucketCounters.lookup(b)
+
+    ObjectEntity obj = ObjectEntity.newInitializedForCreate(b, 'counter-key', size, a1u1)
+    obj = ObjectMetadataManagers.getInstance().transitionObjectToState(obj, ObjectState.creating)
+    assert(BucketCounters.lookup(b).getObjectCount() == before.getObjectCount())
+    assert(BucketCounters.lookup(b).getTotalBytes() == before.getTotalBytes() + size)
+
+    obj.setObjectModifiedTimestamp(new Date())
+    obj.seteTag("etag-counter")
+    obj = ObjectMetadataManagers.getInstance().transitionObjectToState(obj, ObjectState.extant)
+    assert(BucketCounters.lookup(b).getObjectCount() == before.getObjectCount() + 1)
+    assert(BucketCounters.lookup(b).getTotalBytes() == before.getTotalBytes() + size)
+
+    ObjectMetadataManagers.getInstance().transitionObjectToState(obj, ObjectState.deleting)
+    assert(BucketCounters.lookup(b).getObjectCount() == before.getObjectCount())
+    assert(BucketCounters.lookup(b).getTotalBytes() == before.getTotalBytes())
+  }
+
+  @Test
+  public void testReconcileRepairsDrift() throws Exception {
+    Bucket b = buckets.first()
+    EntityTransaction db = Entities.get(BucketCounter.class)
+    try {
+      Entities.updateAllMatching(BucketCounter.class, "SET objectCount = 0, objectBytes = 0 WHERE bucketUuid = :bucketUuid",
+          Collections.singletonMap("bucketUuid", b.getBucketUuid()))
+      db.commit()
+    } finally {
+      if (db.isActive()) {
+        db.rollback()
+      }
+    }
+    assert(ObjectStorageQuotaUtil.countBucketObjects(b.getBucketName()) == 0)
+
+    BucketCounters.reconcile(b)
+    assert(ObjectStorageQuotaUtil.countBucketObjects(b.getBucketName()) == objectCount)
+    assert(ObjectStorageQuotaUtil.getBucketSize(b.getBucketName()) == objectCount * size)
+  }
 }
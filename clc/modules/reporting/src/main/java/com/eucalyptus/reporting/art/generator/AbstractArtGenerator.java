@@ -103,10 +103,12 @@ public abstract class AbstractArtGenerator implements ArtGenerator {
           if ( endTimes == null ) {
             endTimes = Lists.newArrayList( event.getTimestampMs() );
             keyToTimesMap.put( key, endTimes );
+          } else if ( endTimes.get( endTimes.size() - 1 ) <= event.getTimestampMs() ) {
+            endTimes.add( event.getTimestampMs() ); // usual case, events are in timestamp order
           } else {
-            endTimes.add( event.getTimestampMs() );
+            final int index = Collections.binarySearch( endTimes, event.getTimestampMs() );
+            endTimes.add( index < 0 ? -( index + 1 ) : index, event.getTimestampMs() );
           }
-          Collections.sort( endTimes );
         } else {
           return false; // end of relevant data
         }
@@ -122,12 +124,20 @@ public abstract class AbstractArtGenerator implements ArtGenerator {
 
     final List<Long> endTimesForKey = keyToEndTimesMap.get( key );
     if ( endTimesForKey != null ) {
-      for ( final Long endTime : endTimesForKey ) {
-        if ( endTime > startTime ) {
-          timeAfter = endTime;
-          break;
+      // binary search for the first end time after the start time, end times are sorted
+      int low = 0;
+      int high = endTimesForKey.size();
+      while ( low < high ) {
+        final int mid = ( low + high ) >>> 1;
+        if ( endTimesForKey.get( mid ) > startTime ) {
+          high = mid;
+        } else {
+          low = mid + 1;
         }
       }
+      if ( low < endTimesForKey.size() ) {
+        timeAfter = endTimesForKey.get( low );
+      }
     }
 
     return timeAfter;
@@ -68,6 +68,8 @@ import com.eucalyptus.reporting.art.entity.*;
 import com.eucalyptus.reporting.domain.*;
 import com.eucalyptus.reporting.event_store.ReportingInstanceCreateEvent;
 import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent;
+import com.eucalyptus.reporting.rollup.InstanceUsageRollups;
+import com.eucalyptus.reporting.rollup.ReportingInstanceUsageRollup;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Maps;
 
@@ -92,6 +94,7 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
   public static final String DIM_EXTERNAL = "external";
 
   private static final long USAGE_SEARCH_PERIOD = TimeUnit.DAYS.toMillis( 12 );
+  private static final long ROLLUP_PERIOD = TimeUnit.HOURS.toMillis( 1 );
 
   @Override
   public ReportArtEntity generateReportArt( final ReportArtEntity report ) {
@@ -112,13 +115,73 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
       }
     } );
 
-    /* Scan through usage events in order, and populate the ART tree with nodes and usage.
+    /* Scan through hourly usage rollups and then usage events in order, and populate the ART tree
+     * with nodes and usage. Rollups are only used when the report is for whole hours, otherwise
+     * usage for part of an hour would be needed.
      */
+    final long usageBeginMs = report.getBeginMs() - USAGE_SEARCH_PERIOD;
+    final long usageEndMs = report.getEndMs() + USAGE_SEARCH_PERIOD;
+    final long rollupEndMs = getInstanceUsageRollupEnd( report, usageBeginMs, usageEndMs );
     final Map<InstanceMetricDimensionKey, MetricPrevData> prevDataMap = Maps.newHashMap();
     final Map<String, InstanceUsageArtEntity> usageEntities = Maps.newHashMap();
+    if ( rollupEndMs > usageBeginMs ) foreachInstanceUsageRollup(
+        usageBeginMs,
+        rollupEndMs,
+        new Predicate<ReportingInstanceUsageRollup>() {
+          @Override
+          public boolean apply( final ReportingInstanceUsageRollup rollup ) {
+            final InstanceMetricDimensionKey key =
+                new InstanceMetricDimensionKey( rollup.getUuid(), rollup.getMetric(),
+                    rollup.getDimension() );
+            final long firstMs = rollup.getFirstMs();
+
+            if ( !usageEntities.containsKey( rollup.getUuid() ) ) {
+              usageEntities.put( rollup.getUuid(), new InstanceUsageArtEntity() );
+            }
+            final InstanceUsageArtEntity usageEntity = usageEntities.get( rollup.getUuid() );
+            final ReportingInstanceCreateEvent createEvent = createEvents.get( rollup.getUuid() );
+            if ( createEvent == null ) {
+              log.error( "Usage rollup without create event:" + rollup.getUuid() );
+              return true;
+            }
+
+            if (!addParentNodes( report, createEvent, usageEntity )) {
+              return true;
+            }
+
+            /* The first event in the rollup is handled as for a usage event, the usage for periods
+             * between events within the hour is only included when the hour is within the report.
+             */
+            final MetricPrevData prevData = prevDataMap.get( key );
+            final long keyFirstMs;
+            if ( prevData == null || rollup.getPreviousUsage() == null ) {
+              usageEntity.setDurationMs( Math.max( usageEntity.getDurationMs(),
+                  overlap( report.getBeginMs(), report.getEndMs(), createEvent.getTimestampMs(), firstMs ) ) );
+              addMetricValueToUsageEntity( usageEntity, rollup.getMetric(), rollup.getDimension(),
+                  fractionalUsage( report.getBeginMs(), report.getEndMs(),
+                      createEvent.getTimestampMs(), firstMs, rollup.getFirstValue() ) );
+              keyFirstMs = firstMs;
+            } else {
+              addMetricValueToUsageEntity( usageEntity, rollup.getMetric(), rollup.getDimension(),
+                  fractionalUsage( report.getBeginMs(), report.getEndMs(),
+                      prevData.lastMs, firstMs, rollup.getPreviousUsage() ) );
+              keyFirstMs = prevData.firstMs;
+            }
+            usageEntity.setDurationMs( Math.max( usageEntity.getDurationMs(),
+                overlap( report.getBeginMs(), report.getEndMs(), keyFirstMs, rollup.getLastMs() ) ) );
+            if ( rollup.getTimestampMs() >= report.getBeginMs() &&
+                rollup.getTimestampMs() + ROLLUP_PERIOD <= report.getEndMs() ) {
+              addMetricValueToUsageEntity( usageEntity, rollup.getMetric(), rollup.getDimension(),
+                  rollup.getUsage() );
+            }
+            prevDataMap.put( key, new MetricPrevData( keyFirstMs, rollup.getLastMs(),
+                rollup.getLastValue(), rollup.getLastSequenceNum() ) );
+            return true;
+          }
+        } );
     foreachInstanceUsageEvent(
-        report.getBeginMs() - USAGE_SEARCH_PERIOD,
-        report.getEndMs() + USAGE_SEARCH_PERIOD,
+        Math.max( usageBeginMs, rollupEndMs ),
+        usageEndMs,
         new Predicate<ReportingInstanceUsageEvent>() {
           @Override
           public boolean apply( final ReportingInstanceUsageEvent event ) {
@@ -282,7 +345,10 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
   }
 
   private static void addMetricValueToUsageEntity( InstanceUsageArtEntity usage, String metric, String dim, double val ) {
-    final long value = new Double( val ).longValue();
+    addMetricValueToUsageEntity( usage, metric, dim, new Double( val ).longValue() );
+  }
+
+  private static void addMetricValueToUsageEntity( InstanceUsageArtEntity usage, String metric, String dim, long value ) {
     if ( metric.equals( METRIC_NET_IN_BYTES ) && dim.equals( DIM_TOTAL ) ) {
       usage.addNetTotalInBytes( value );
     } else if ( metric.equals( METRIC_NET_OUT_BYTES ) && dim.equals( DIM_TOTAL ) ) {
@@ -389,6 +455,32 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
     return usage * (overlapping / duration);
   }
 
+  /**
+   * Get the end of the usage scan that is covered by hourly rollups.
+   *
+   * @return The exclusive end time for rollups, rollups are not used if not after the begin time
+   */
+  private long getInstanceUsageRollupEnd( final ReportArtEntity report,
+                                          final long usageBeginMs,
+                                          final long usageEndMs ) {
+    final Long watermark = getInstanceUsageRollupWatermark();
+    if ( watermark == null ||
+        report.getBeginMs() % ROLLUP_PERIOD != 0 ||
+        report.getEndMs() % ROLLUP_PERIOD != 0 ) {
+      return usageBeginMs;
+    }
+    return Math.min( watermark, usageEndMs );
+  }
+
+  protected Long getInstanceUsageRollupWatermark() {
+    return InstanceUsageRollups.getWatermark();
+  }
+
+  protected void foreachInstanceUsageRollup( long startInclusive, long endExclusive,
+                                             Predicate<? super ReportingInstanceUsageRollup> callback ) {
+    foreach( ReportingInstanceUsageRollup.class, between( startInclusive, endExclusive ), true, callback );
+  }
+
   protected void foreachInstanceUsageEvent( long startInclusive, long endExclusive,
                                             Predicate<? super ReportingInstanceUsageEvent> callback ) {
     foreach( ReportingInstanceUsageEvent.class, between( startInclusive, endExclusive ), true, callback );
@@ -35,11 +35,13 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.reporting.domain.ReportingAccount;
 import com.eucalyptus.reporting.domain.ReportingUser;
 import com.eucalyptus.reporting.event_store.ReportingEventSupport;
+import com.eucalyptus.util.Exceptions;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Predicates;
@@ -56,6 +58,7 @@ public class Export {
   private static final Logger log = Logger.getLogger( Export.class );
 
   private static final String CREATION_TIMESTAMP = "creationTimestamp";
+  private static final String ID = "id";
 
   public static ReportingExport export( final Date startDate,
                                         final Date endDate,
@@ -154,8 +157,10 @@ public class Export {
       final boolean includeDependencies ) {
     return new Iterator<ReportingEventSupport>() {
       private static final int batchSize = 5000;
-      private int offset = 0;
       private final LinkedList<ReportingEventSupport> data = Lists.newLinkedList();
+      private Date lastCreated = null;
+      private String lastId = null;
+      private boolean complete = false;
 
       @Override
       public boolean hasNext() {
@@ -175,23 +180,49 @@ public class Export {
       }
 
       private void ensureData() {
-        if ( data.isEmpty() ) {
+        while ( data.isEmpty() && !complete ) {
           readNextBatch();
         }
       }
 
+      /**
+       * Read the batch following the last item read, ordering by creation
+       * timestamp and id so that each batch is a range scan rather than an
+       * offset from the first item.
+       */
       private void readNextBatch() {
         final EntityTransaction transaction = Entities.get( eventClass );
         try {
+          final Criteria criteria = criteriaFor( eventClass, criterion );
+          if ( lastCreated != null ) {
+            criteria.add( Restrictions.or(
+                Restrictions.gt( CREATION_TIMESTAMP, lastCreated ),
+                Restrictions.and(
+                    Restrictions.eq( CREATION_TIMESTAMP, lastCreated ),
+                    Restrictions.gt( ID, lastId ) ) ) );
+          }
+          final List<?> batch = criteria
+              .addOrder( Order.asc( CREATION_TIMESTAMP ) )
+              .addOrder( Order.asc( ID ) )
+              .setMaxResults( batchSize )
+              .list();
+          complete = batch.size() < batchSize;
+          if ( !batch.isEmpty() ) {
+            final ReportingEventSupport last = (ReportingEventSupport) batch.get( batch.size() - 1 );
+            lastCreated = last.getCreationTimestamp();
+            lastId = last.getId();
+          }
           addToExportList(
               data,
               dependencies,
               includeDependencies,
-              criteriaFor(eventClass, criterion).setFirstResult( offset ).setMaxResults( batchSize ).list() );
-        } catch ( Exception e) {
-          log.error(e, e);
+              batch );
+        } catch ( Exception e ) {
+          // fail the export rather than returning partial data
+          complete = true;
+          log.error( "Error reading " + eventClass.getSimpleName() + " for export", e );
+          throw Exceptions.toUndeclared( e );
         } finally {
-          offset += batchSize;
           transaction.rollback();
         }
       }
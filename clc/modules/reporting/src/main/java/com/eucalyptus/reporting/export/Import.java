@@ -24,6 +24,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Set;
@@ -38,6 +39,7 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.reporting.domain.ReportingAccount;
 import com.eucalyptus.reporting.domain.ReportingUser;
 import com.eucalyptus.reporting.event_store.ReportingEventSupport;
+import com.eucalyptus.reporting.rollup.InstanceUsageRollups;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
@@ -50,6 +52,7 @@ import com.google.common.io.Closeables;
  */
 public class Import {
   private static final Logger logger = Logger.getLogger(Import.class);
+  private static final int FLUSH_INTERVAL = 500;
   private int count;
   private long minTimestamp;
   private long maxTimestamp;
@@ -73,9 +76,18 @@ public class Import {
     }
   }
 
+  /**
+   * Import data from the given stream, which may be gzip compressed.
+   */
   public static ImportResult importData( final InputStream in,
                                         final Runnable preImportCallback ) throws Exception {
-    return new Import().doImport( in, preImportCallback );
+    final BufferedInputStream bufferedIn = new BufferedInputStream( in );
+    bufferedIn.mark( 2 );
+    final int magic = bufferedIn.read() | ( bufferedIn.read() << 8 );
+    bufferedIn.reset();
+    return new Import().doImport(
+        magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream( bufferedIn ) : bufferedIn,
+        preImportCallback );
   }
 
   protected void resetStats() {
@@ -98,7 +110,7 @@ public class Import {
       }
     } );
     resetStats();
-    return transactional( new Callable<ImportResult>() {
+    final ImportResult result = transactional( new Callable<ImportResult>() {
       @Override
       public ImportResult call() throws Exception {
         ReportingExport.setLoadListenerSupplier(
@@ -146,6 +158,9 @@ public class Import {
                 minTimestamp = Math.min( minTimestamp, event.getTimestampMs() );
                 maxTimestamp = Math.max( maxTimestamp, event.getTimestampMs() );
                 merge( event );
+                if ( count % FLUSH_INTERVAL == 0 ) {
+                  flush(); // write out in (jdbc) batches and keep the session small
+                }
               }
             } ) );
 
@@ -156,6 +171,8 @@ public class Import {
         return getStats();
       }
     });
+    InstanceUsageRollups.reset(); // imported usage may precede the rollup watermark
+    return result;
   }
 
   protected <T> T transactional( final Callable<T> callable ) throws Exception {
@@ -171,12 +188,18 @@ public class Import {
     Entities.mergeDirect( object );
   }
 
+  protected void flush( ) {
+    Entities.flushSession( ExportUtils.getTemplateClass() );
+    Entities.clearSession( ExportUtils.getTemplateClass() );
+  }
+
   public static int deleteAll( @Nonnull  final Iterable<Class<?>> entityClasses,
                                @Nullable final Date createdTimestamp ) {
     int deleted = 0;
     for ( final Class<?> reportingClass : entityClasses ) {
       deleted += deleteAll( reportingClass, createdTimestamp );
     }
+    InstanceUsageRollups.reset();
     return deleted;
   }
 
@@ -0,0 +1,159 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.rollup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Folds instance usage events into hourly rollups.
+ *
+ * <p>Events must be added in timestamp order and must not precede the latest
+ * rollups the builder was created with.</p>
+ */
+public class InstanceUsageRollupBuilder {
+
+  public static final long HOUR_MS = TimeUnit.HOURS.toMillis( 1 );
+
+  private final Map<RollupKey,ReportingInstanceUsageRollup> latestRollups = Maps.newHashMap( );
+  private final Set<ReportingInstanceUsageRollup> initialRollups = Sets.newIdentityHashSet( );
+  private final List<ReportingInstanceUsageRollup> rollups = Lists.newArrayList( );
+  private final List<ReportingInstanceUsageRollup> superseded = Lists.newArrayList( );
+
+  public InstanceUsageRollupBuilder( final Iterable<ReportingInstanceUsageRollup> latestRollups ) {
+    for ( final ReportingInstanceUsageRollup rollup : latestRollups ) {
+      this.latestRollups.put( RollupKey.of( rollup ), rollup );
+      this.initialRollups.add( rollup );
+    }
+  }
+
+  public static long hour( final long timestampMs ) {
+    return timestampMs - ( timestampMs % HOUR_MS );
+  }
+
+  public void add( final ReportingInstanceUsageEvent event ) {
+    if ( event.getValue( ) == null ) return;
+
+    final RollupKey key = RollupKey.of( event );
+    final long eventMs = event.getTimestampMs( );
+    final long hourMs = hour( eventMs );
+    final ReportingInstanceUsageRollup latest = latestRollups.get( key );
+    if ( latest != null && latest.getLastMs( ) > eventMs ) {
+      throw new IllegalArgumentException( "Event out of order for rollup: " + event );
+    }
+
+    if ( latest != null && latest.getTimestampMs( ) == hourMs ) {
+      latest.addEvent( eventMs, event.getValue( ), event.getSequenceNum( ), eventMs > latest.getLastMs( ) ?
+          (long) usage( latest, event ) :
+          0L ); // zero length period has no usage
+    } else {
+      final ReportingInstanceUsageRollup rollup = new ReportingInstanceUsageRollup(
+          event.getUuid( ),
+          event.getMetric( ),
+          event.getDimension( ),
+          hourMs,
+          eventMs,
+          event.getValue( ),
+          event.getSequenceNum( ),
+          latest == null ? null : latest.getLastMs( ),
+          latest == null ? null : usage( latest, event ) );
+      if ( latest != null ) {
+        latest.setLatest( false );
+        if ( initialRollups.remove( latest ) ) {
+          superseded.add( latest );
+        }
+      }
+      latestRollups.put( key, rollup );
+      rollups.add( rollup );
+    }
+  }
+
+  /**
+   * Rollups created by this builder.
+   */
+  public List<ReportingInstanceUsageRollup> getRollups( ) {
+    return Collections.unmodifiableList( rollups );
+  }
+
+  /**
+   * Previously latest rollups that are no longer latest.
+   */
+  public List<ReportingInstanceUsageRollup> getSuperseded( ) {
+    return Collections.unmodifiableList( superseded );
+  }
+
+  /**
+   * Usage between the last rolled up event and the given event.
+   *
+   * Metric values are cumulative, a sequence number that goes backwards (or
+   * is zero) is a sensor reset, in which case all the value is usage.
+   */
+  private static double usage( final ReportingInstanceUsageRollup previous,
+                               final ReportingInstanceUsageEvent event ) {
+    if ( event.getSequenceNum( ) < previous.getLastSequenceNum( ) || event.getSequenceNum( ) == 0 ) {
+      return event.getValue( );
+    } else {
+      return event.getValue( ) - previous.getLastValue( );
+    }
+  }
+
+  private static final class RollupKey {
+    private final String uuid;
+    private final String metric;
+    private final String dimension;
+
+    private RollupKey( final String uuid, final String metric, final String dimension ) {
+      this.uuid = uuid;
+      this.metric = metric;
+      this.dimension = dimension;
+    }
+
+    static RollupKey of( final ReportingInstanceUsageRollup rollup ) {
+      return new RollupKey( rollup.getUuid( ), rollup.getMetric( ), rollup.getDimension( ) );
+    }
+
+    static RollupKey of( final ReportingInstanceUsageEvent event ) {
+      return new RollupKey( event.getUuid( ), event.getMetric( ), event.getDimension( ) );
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final RollupKey that = (RollupKey) o;
+      return Objects.equal( uuid, that.uuid ) &&
+          Objects.equal( metric, that.metric ) &&
+          Objects.equal( dimension, that.dimension );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( uuid, metric, dimension );
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.rollup;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.log4j.Logger;
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.BootstrapArgs;
+import com.eucalyptus.bootstrap.Hosts;
+import com.eucalyptus.component.id.Reporting;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Hertz;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.system.Threads;
+
+/**
+ * Periodically rolls up instance usage on the coordinator.
+ */
+public class InstanceUsageRollupListener implements EventListener<Hertz> {
+
+  private static final Logger logger = Logger.getLogger( InstanceUsageRollupListener.class );
+  private static final long ROLLUP_INTERVAL_SECS = 60;
+  private static final AtomicBoolean busy = new AtomicBoolean( false );
+
+  public static void register( ) {
+    Listeners.register( Hertz.class, new InstanceUsageRollupListener( ) );
+  }
+
+  @Override
+  public void fireEvent( final Hertz event ) {
+    if ( !Bootstrap.isOperational( ) ||
+        !BootstrapArgs.isCloudController( ) ||
+        !event.isAsserted( ROLLUP_INTERVAL_SECS ) ||
+        !InstanceUsageRollups.ROLLUP_ENABLED ||
+        !Hosts.isCoordinator( ) ) {
+      return;
+    }
+
+    if ( busy.compareAndSet( false, true ) ) {
+      try {
+        Threads.lookup( Reporting.class, InstanceUsageRollupListener.class ).submit( new Runnable( ) {
+          @Override
+          public void run( ) {
+            try {
+              InstanceUsageRollups.rollup( System.currentTimeMillis( ) );
+            } catch ( final Exception e ) {
+              logger.error( "Error rolling up instance usage", e );
+            } finally {
+              busy.set( false );
+            }
+          }
+        } );
+      } catch ( final RuntimeException e ) {
+        busy.set( false );
+        throw e;
+      }
+    }
+  }
+}
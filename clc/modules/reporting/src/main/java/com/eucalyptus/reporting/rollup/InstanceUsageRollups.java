@@ -0,0 +1,199 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.rollup;
+
+import static com.eucalyptus.reporting.rollup.InstanceUsageRollupBuilder.HOUR_MS;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.persistence.EntityTransaction;
+import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent;
+import com.eucalyptus.util.Exceptions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Maintains hourly rollups of instance usage events.
+ *
+ * <p>Complete hours of usage are rolled up in order and the watermark is
+ * advanced in the same transaction as the rollups for each hour. Usage
+ * events that arrive after their hour was rolled up are not included in
+ * rollups, so the rollup delay should exceed the usage write interval.</p>
+ */
+@ConfigurableClass( root = "reporting", description = "Parameters controlling reporting usage rollups" )
+public class InstanceUsageRollups {
+
+  private static final Logger logger = Logger.getLogger( InstanceUsageRollups.class );
+  private static final String WATERMARK_NAME = "instance-usage";
+  private static final String TIMESTAMP_MS = "timestampMs";
+  private static final int UUID_BATCH_SIZE = 500;
+
+  @ConfigurableField( initial = "true", description = "Set this to false to generate instance reports from usage events only" )
+  public static Boolean ROLLUP_ENABLED = true;
+
+  @ConfigurableField( initial = "120", description = "Minimum age in minutes of instance usage events before they are rolled up" )
+  public static Long ROLLUP_DELAY_MINS = 120L;
+
+  @ConfigurableField( initial = "24", description = "Maximum number of hours of instance usage to roll up in each pass" )
+  public static Integer ROLLUP_BATCH_HOURS = 24;
+
+  /**
+   * Get the time up to which instance usage is rolled up.
+   *
+   * @return The exclusive watermark, or null if rollups are not available
+   */
+  @Nullable
+  public static Long getWatermark( ) {
+    if ( !ROLLUP_ENABLED ) return null;
+    final EntityTransaction transaction = Entities.get( ReportingRollupWatermark.class );
+    try {
+      final ReportingRollupWatermark watermark = lookupWatermark( );
+      return watermark == null ? null : watermark.getTimestampMs( );
+    } finally {
+      transaction.rollback( );
+    }
+  }
+
+  /**
+   * Discard all rollups, they will be rebuilt from the usage events.
+   *
+   * <p>Must be called when usage events are deleted or imported.</p>
+   */
+  public static void reset( ) {
+    final EntityTransaction transaction = Entities.get( ReportingRollupWatermark.class );
+    try {
+      Entities.deleteAll( ReportingRollupWatermark.class );
+      Entities.deleteAll( ReportingInstanceUsageRollup.class );
+    } finally {
+      transaction.commit( );
+    }
+  }
+
+  /**
+   * Roll up complete hours of usage, up to the configured batch size.
+   *
+   * @param now The current time
+   * @return The number of hours rolled up
+   */
+  public static int rollup( final long now ) {
+    final long rollupEnd =
+        InstanceUsageRollupBuilder.hour( now - TimeUnit.MINUTES.toMillis( ROLLUP_DELAY_MINS ) );
+    long hourMs = initializeWatermark( rollupEnd );
+    int hours = 0;
+    for ( ; hours < ROLLUP_BATCH_HOURS && hourMs < rollupEnd; hours++ ) {
+      rollupHour( hourMs );
+      hourMs += HOUR_MS;
+    }
+    if ( hours > 0 ) {
+      logger.debug( "Rolled up " + hours + " hour(s) of instance usage, watermark now " + hourMs );
+    }
+    return hours;
+  }
+
+  /**
+   * Initial watermark is the hour of the first usage event, if any.
+   */
+  private static long initializeWatermark( final long rollupEnd ) {
+    final EntityTransaction transaction = Entities.get( ReportingRollupWatermark.class );
+    try {
+      ReportingRollupWatermark watermark = lookupWatermark( );
+      if ( watermark == null ) {
+        final Long firstEventMs = (Long) Entities.createCriteria( ReportingInstanceUsageEvent.class )
+            .setProjection( Projections.min( TIMESTAMP_MS ) )
+            .uniqueResult( );
+        watermark = Entities.persist( new ReportingRollupWatermark(
+            WATERMARK_NAME,
+            firstEventMs == null ? rollupEnd : InstanceUsageRollupBuilder.hour( firstEventMs ) ) );
+      }
+      final long watermarkMs = watermark.getTimestampMs( );
+      transaction.commit( );
+      return watermarkMs;
+    } catch ( final Exception e ) {
+      transaction.rollback( );
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static void rollupHour( final long hourMs ) {
+    final Criterion hour = Restrictions.conjunction( )
+        .add( Restrictions.ge( TIMESTAMP_MS, hourMs ) )
+        .add( Restrictions.lt( TIMESTAMP_MS, hourMs + HOUR_MS ) );
+    final EntityTransaction transaction = Entities.get( ReportingInstanceUsageRollup.class );
+    ScrollableResults results = null;
+    try {
+      final List<String> uuids = (List<String>) Entities.createCriteria( ReportingInstanceUsageEvent.class )
+          .add( hour )
+          .setProjection( Projections.distinct( Projections.property( "uuid" ) ) )
+          .list( );
+      final List<ReportingInstanceUsageRollup> latestRollups = Lists.newArrayList( );
+      for ( final List<String> uuidBatch : Iterables.partition( uuids, UUID_BATCH_SIZE ) ) {
+        latestRollups.addAll( (List<ReportingInstanceUsageRollup>)
+            Entities.createCriteria( ReportingInstanceUsageRollup.class )
+                .add( Restrictions.eq( "latest", true ) )
+                .add( Restrictions.in( "uuid", uuidBatch ) )
+                .list( ) );
+      }
+
+      final InstanceUsageRollupBuilder builder = new InstanceUsageRollupBuilder( latestRollups );
+      results = Entities.createCriteria( ReportingInstanceUsageEvent.class )
+          .setReadOnly( true )
+          .setCacheable( false )
+          .setCacheMode( CacheMode.IGNORE )
+          .setFetchSize( 100 )
+          .add( hour )
+          .addOrder( Order.asc( TIMESTAMP_MS ) )
+          .scroll( ScrollMode.FORWARD_ONLY );
+      while ( results.next( ) ) {
+        final ReportingInstanceUsageEvent event = (ReportingInstanceUsageEvent) results.get( 0 );
+        builder.add( event );
+        Entities.evict( event );
+      }
+
+      for ( final ReportingInstanceUsageRollup rollup : builder.getRollups( ) ) {
+        Entities.persist( rollup );
+      }
+      lookupWatermark( ).setTimestampMs( hourMs + HOUR_MS );
+      transaction.commit( );
+    } catch ( final Exception e ) {
+      transaction.rollback( );
+      throw Exceptions.toUndeclared( e );
+    } finally {
+      if ( results != null ) try { results.close( ); } catch( Exception e ) { }
+    }
+  }
+
+  private static ReportingRollupWatermark lookupWatermark( ) {
+    return (ReportingRollupWatermark) Entities.createCriteria( ReportingRollupWatermark.class )
+        .add( Restrictions.eq( "name", WATERMARK_NAME ) )
+        .uniqueResult( );
+  }
+}
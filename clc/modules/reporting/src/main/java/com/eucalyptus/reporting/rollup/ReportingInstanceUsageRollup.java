@@ -0,0 +1,198 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.rollup;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import com.eucalyptus.component.annotation.RemotablePersistence;
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Hourly rollup of usage events for an instance metric/dimension.
+ *
+ * <p>Each rollup holds the first and last event in the hour and the summed
+ * usage for all periods between events within the hour. The period from the
+ * last event of the previous rollup to the first event in this hour crosses
+ * an hour boundary and so is held separately (previousMs, previousUsage) to
+ * allow it to be apportioned to any report.</p>
+ */
+@Entity
+@PersistenceContext(name="eucalyptus_reporting_backend")
+@RemotablePersistence
+@Table(name="reporting_instance_usage_rollups", indexes = {
+    @Index(name = "IDX_reporting_instance_usage_rollups_ts", columnList = "timestamp_ms"),
+    @Index(name = "IDX_reporting_instance_usage_rollups_uuid", columnList = "uuid")
+})
+public class ReportingInstanceUsageRollup extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column(name="uuid", nullable=false)
+  private String uuid;
+  @Column(name="metric", nullable=false)
+  private String metric;
+  @Column(name="dimension", nullable=false)
+  private String dimension;
+  @Column(name="timestamp_ms", nullable=false)
+  private Long timestampMs;
+  @Column(name="first_ms", nullable=false)
+  private Long firstMs;
+  @Column(name="first_value", nullable=false)
+  private Double firstValue;
+  @Column(name="first_sequence_num", nullable=false)
+  private Long firstSequenceNum;
+  @Column(name="last_ms", nullable=false)
+  private Long lastMs;
+  @Column(name="last_value", nullable=false)
+  private Double lastValue;
+  @Column(name="last_sequence_num", nullable=false)
+  private Long lastSequenceNum;
+  @Column(name="usage_value", nullable=false)
+  private Long usage;
+  @Column(name="previous_ms")
+  private Long previousMs;
+  @Column(name="previous_usage")
+  private Double previousUsage;
+  @Column(name="latest", nullable=false)
+  private Boolean latest;
+
+  protected ReportingInstanceUsageRollup( ) {
+  }
+
+  ReportingInstanceUsageRollup( final String uuid,
+                                final String metric,
+                                final String dimension,
+                                final Long timestampMs,
+                                final Long eventMs,
+                                final Double value,
+                                final Long sequenceNum,
+                                final Long previousMs,
+                                final Double previousUsage ) {
+    this.uuid = uuid;
+    this.metric = metric;
+    this.dimension = dimension;
+    this.timestampMs = timestampMs;
+    this.firstMs = eventMs;
+    this.firstValue = value;
+    this.firstSequenceNum = sequenceNum;
+    this.lastMs = eventMs;
+    this.lastValue = value;
+    this.lastSequenceNum = sequenceNum;
+    this.usage = 0L;
+    this.previousMs = previousMs;
+    this.previousUsage = previousUsage;
+    this.latest = true;
+  }
+
+  public String getUuid( ) {
+    return uuid;
+  }
+
+  public String getMetric( ) {
+    return metric;
+  }
+
+  public String getDimension( ) {
+    return dimension;
+  }
+
+  /**
+   * The start of the hour for this rollup.
+   */
+  public Long getTimestampMs( ) {
+    return timestampMs;
+  }
+
+  public Long getFirstMs( ) {
+    return firstMs;
+  }
+
+  public Double getFirstValue( ) {
+    return firstValue;
+  }
+
+  public Long getFirstSequenceNum( ) {
+    return firstSequenceNum;
+  }
+
+  public Long getLastMs( ) {
+    return lastMs;
+  }
+
+  public Double getLastValue( ) {
+    return lastValue;
+  }
+
+  public Long getLastSequenceNum( ) {
+    return lastSequenceNum;
+  }
+
+  /**
+   * Usage for periods starting and ending within the hour.
+   */
+  public Long getUsage( ) {
+    return usage;
+  }
+
+  /**
+   * Time of the event preceding the first event in the hour, if any.
+   */
+  public Long getPreviousMs( ) {
+    return previousMs;
+  }
+
+  /**
+   * Usage for the period from the previous event to the first event in the hour.
+   */
+  public Double getPreviousUsage( ) {
+    return previousUsage;
+  }
+
+  public Boolean getLatest( ) {
+    return latest;
+  }
+
+  void setLatest( final Boolean latest ) {
+    this.latest = latest;
+  }
+
+  void addEvent( final Long eventMs,
+                 final Double value,
+                 final Long sequenceNum,
+                 final Long usage ) {
+    this.lastMs = eventMs;
+    this.lastValue = value;
+    this.lastSequenceNum = sequenceNum;
+    this.usage += usage;
+  }
+
+  @Override
+  public String toString( ) {
+    return "ReportingInstanceUsageRollup [uuid=" + uuid
+        + ", metric=" + metric
+        + ", dimension=" + dimension
+        + ", timestamp=" + timestampMs
+        + ", first=" + firstMs
+        + ", last=" + lastMs
+        + ", usage=" + usage + "]";
+  }
+}
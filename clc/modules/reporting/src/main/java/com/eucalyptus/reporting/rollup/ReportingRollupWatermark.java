@@ -0,0 +1,66 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.rollup;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import com.eucalyptus.component.annotation.RemotablePersistence;
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Durable record of the time up to which events have been rolled up.
+ */
+@Entity
+@PersistenceContext(name="eucalyptus_reporting_backend")
+@RemotablePersistence
+@Table(name="reporting_rollup_watermarks")
+public class ReportingRollupWatermark extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column(name="name", nullable=false, unique=true, updatable=false)
+  private String name;
+  @Column(name="timestamp_ms", nullable=false)
+  private Long timestampMs;
+
+  protected ReportingRollupWatermark( ) {
+  }
+
+  ReportingRollupWatermark( final String name, final Long timestampMs ) {
+    this.name = name;
+    this.timestampMs = timestampMs;
+  }
+
+  public String getName( ) {
+    return name;
+  }
+
+  /**
+   * Events before this time (exclusive) are rolled up.
+   */
+  public Long getTimestampMs( ) {
+    return timestampMs;
+  }
+
+  void setTimestampMs( final Long timestampMs ) {
+    this.timestampMs = timestampMs;
+  }
+}
@@ -799,6 +799,11 @@ class InstanceArtGeneratorTest {
           event.getTimestampMs() < endExclusive }.every { event -> callback.apply( event ) }
       }
 
+      @Override
+      protected Long getInstanceUsageRollupWatermark() {
+        return null
+      }
+
       @Override
       protected ReportingUser getUserById(String userId) {
         return user( userId, userToAccount[userId] )
@@ -0,0 +1,296 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.art.generator
+
+import static org.junit.Assert.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import org.junit.Test
+import com.eucalyptus.reporting.art.entity.ReportArtEntity
+import com.eucalyptus.reporting.domain.ReportingAccount
+import com.eucalyptus.reporting.domain.ReportingUser
+import com.eucalyptus.reporting.event_store.ReportingInstanceCreateEvent
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent
+import com.eucalyptus.reporting.rollup.InstanceUsageRollupBuilder
+import com.eucalyptus.reporting.rollup.ReportingInstanceUsageRollup
+import com.google.common.base.Charsets
+import com.google.common.base.Predicate
+
+/**
+ * Differential test for instance reports generated from usage rollups.
+ */
+class InstanceUsageRollupTest {
+  private static final String ACCOUNT1 = "account1"
+  private static final String USER1 = "user1"
+  private static final String USER2 = "user2"
+  private static final String ZONE1 = "zone1"
+  private static final String ZONE2 = "zone2"
+  private static final String VMTYPE1 = "vmtype1"
+  private static final String VMTYPE2 = "vmtype2"
+  private static final long HOUR = TimeUnit.HOURS.toMillis( 1 )
+  private static final long DAY = TimeUnit.DAYS.toMillis( 1 )
+  private static final long START = 1325376000000L // 2012-01-01T00:00:00Z
+  private static final List<List<String>> METRICS = [
+      [ "NetworkIn", "total" ],
+      [ "NetworkOut", "total" ],
+      [ "NetworkInExternal", "default" ],
+      [ "NetworkOutExternal", "default" ],
+      [ "CPUUtilization", "default" ],
+      [ "DiskReadOps", "vda" ],
+      [ "DiskWriteOps", "vda" ],
+      [ "DiskReadBytes", "vda" ],
+      [ "DiskWriteBytes", "vda" ],
+      [ "VolumeTotalReadTime", "vda" ],
+      [ "VolumeTotalWriteTime", "vda" ],
+  ]
+  private static Map<String,String> userToAccount = [
+      (USER1): ACCOUNT1,
+      (USER2): ACCOUNT1,
+  ]
+
+  @Test
+  void testRollupReportsMatchEventReports( ) {
+    Random random = new Random( 7 )
+    List<ReportingInstanceCreateEvent> creates = [
+        instanceCreate( "i-00000001", USER1, START, VMTYPE1, ZONE1 ),
+        instanceCreate( "i-00000002", USER2, START + 25*DAY + 17*60000, VMTYPE2, ZONE1 ),
+        instanceCreate( "i-00000003", USER1, START + 2*DAY, VMTYPE1, ZONE2 ),
+    ]
+    List<ReportingInstanceUsageEvent> usage = sorted(
+        usage( random, "i-00000001", START + HOUR, START + 70*DAY, 95 ) +
+        usage( random, "i-00000002", START + 25*DAY + 22*60000, START + 40*DAY, 30 ) +
+        usage( random, "i-00000003", START + 30*DAY, START + 70*DAY, 180 ) +
+        usage( random, "i-00000004", START + 20*DAY, START + 50*DAY, 60 ) // no create event
+    )
+    List<ReportingInstanceUsageRollup> rollups = rollup( usage, START + 80*DAY )
+
+    long begin = START + 35*DAY
+    [
+        [ begin, begin + DAY ],
+        [ begin + 7*HOUR, begin + 8*HOUR ],
+        [ begin, begin + 30*DAY ],
+        [ begin + 30*60000, begin + DAY ], // partial hour, rollups not used
+    ].each { List<Long> period ->
+      long beginMs = period[0]
+      long endMs = period[1]
+      String expected = describe( generator( creates, usage, [], null, new AtomicInteger() )
+          .generateReportArt( new ReportArtEntity( beginMs, endMs ) ) )
+      [ START, beginMs - 5*DAY, InstanceUsageRollupBuilder.hour( ( beginMs + endMs ) / 2 as long ), START + 80*DAY ].each { Long watermark ->
+        AtomicInteger rows = new AtomicInteger()
+        String actual = describe( generator( creates, usage, rollups, watermark, rows )
+            .generateReportArt( new ReportArtEntity( beginMs, endMs ) ) )
+        assertEquals( "Report ${beginMs}-${endMs} with watermark ${watermark}", expected, actual )
+      }
+    }
+  }
+
+  @Test
+  void testReportRowsRead( ) {
+    Random random = new Random( 11 )
+    List<ReportingInstanceCreateEvent> creates = [
+        instanceCreate( "i-00000001", USER1, START, VMTYPE1, ZONE1 ),
+    ]
+    List<ReportingInstanceUsageEvent> usage = usage( random, "i-00000001", START + HOUR, START + 400*DAY, 15, 15 )
+    long end = START + 390*DAY
+    List<ReportingInstanceUsageRollup> rollups = rollup( usage, end + 5*DAY )
+
+    [ 1, 30, 365 ].each { Integer days ->
+      AtomicInteger eventRows = new AtomicInteger()
+      AtomicInteger rollupRows = new AtomicInteger()
+      ReportArtEntity eventReport = generator( creates, usage, [], null, eventRows )
+          .generateReportArt( new ReportArtEntity( end - days*DAY, end ) )
+      ReportArtEntity rollupReport = generator( creates, usage, rollups, end + 5*DAY, rollupRows )
+          .generateReportArt( new ReportArtEntity( end - days*DAY, end ) )
+      assertEquals( "Report for ${days} day(s)", describe( eventReport ), describe( rollupReport ) )
+      assertTrue( "Rollup rows for ${days} day(s)", rollupRows.get( ) < eventRows.get( ) )
+    }
+  }
+
+  /**
+   * Roll up usage an hour at a time, as for InstanceUsageRollups
+   */
+  private List<ReportingInstanceUsageRollup> rollup( List<ReportingInstanceUsageEvent> usage, long watermark ) {
+    List<ReportingInstanceUsageRollup> rollups = []
+    Map<List<String>,ReportingInstanceUsageRollup> latest = [:]
+    usage.findAll{ event -> event.getTimestampMs( ) < watermark }.groupBy{ event ->
+      InstanceUsageRollupBuilder.hour( event.getTimestampMs( ) )
+    }.each { Long hour, List<ReportingInstanceUsageEvent> events ->
+      InstanceUsageRollupBuilder builder = new InstanceUsageRollupBuilder( latest.values( ) )
+      events.each{ event -> builder.add( event ) }
+      builder.getRollups( ).each{ rollup ->
+        assertTrue( "Superseded rollup latest", builder.getSuperseded( ).every{ !it.getLatest( ) } )
+        if ( rollup.getLatest( ) ) latest.put( [ rollup.getUuid( ), rollup.getMetric( ), rollup.getDimension( ) ], rollup )
+        rollups << rollup
+      }
+    }
+    rollups
+  }
+
+  private List<ReportingInstanceUsageEvent> usage( Random random,
+                                                   String instanceId,
+                                                   long startMs,
+                                                   long endMs,
+                                                   int maxIntervalMins,
+                                                   int minIntervalMins = 0 ) {
+    List<ReportingInstanceUsageEvent> events = []
+    Map<String,Double> values = [:]
+    long sequence = 1
+    long time = startMs
+    while ( time < endMs ) {
+      if ( random.nextInt( 200 ) == 0 ) { // sensor reset
+        sequence = 0
+        values.clear( )
+      }
+      METRICS.each { List<String> metricAndDimension ->
+        String metric = metricAndDimension[0]
+        String dimension = metricAndDimension[1]
+        double value = ( values[metric] ?: 0d ) + random.nextInt( 1000000 )
+        values[metric] = value
+        events << instanceUsage( instanceId, metric, sequence, dimension, value, time )
+      }
+      sequence++
+      time += TimeUnit.MINUTES.toMillis( minIntervalMins ) +
+          1000L * random.nextInt( ( maxIntervalMins - minIntervalMins ) * 60 + 1 )
+    }
+    events
+  }
+
+  private List<ReportingInstanceUsageEvent> sorted( List<ReportingInstanceUsageEvent> events ) {
+    events.sort{ event -> event.getTimestampMs( ) }
+  }
+
+  private InstanceArtGenerator generator( List<ReportingInstanceCreateEvent> creates,
+                                          List<ReportingInstanceUsageEvent> usage,
+                                          List<ReportingInstanceUsageRollup> rollups,
+                                          Long watermark,
+                                          AtomicInteger rows ) {
+    new InstanceArtGenerator() {
+      @Override
+      protected void foreachInstanceUsageEvent( final long startInclusive,
+                                                final long endExclusive,
+                                                final Predicate<? super ReportingInstanceUsageEvent> callback ) {
+        range( usage, startInclusive, endExclusive ).every { event ->
+          rows.incrementAndGet( )
+          callback.apply( event )
+        }
+      }
+
+      @Override
+      protected void foreachInstanceUsageRollup( final long startInclusive,
+                                                 final long endExclusive,
+                                                 final Predicate<? super ReportingInstanceUsageRollup> callback ) {
+        range( rollups, startInclusive, endExclusive ).every { rollup ->
+          rows.incrementAndGet( )
+          callback.apply( rollup )
+        }
+      }
+
+      @Override
+      protected Long getInstanceUsageRollupWatermark( ) {
+        watermark
+      }
+
+      @Override
+      protected void foreachInstanceCreateEvent( final long endExclusive,
+                                                 final Predicate<? super ReportingInstanceCreateEvent> callback ) {
+        creates.findAll{ event -> event.getTimestampMs( ) < endExclusive }.every { event -> callback.apply( event ) }
+      }
+
+      @Override
+      protected ReportingUser getUserById( String userId ) {
+        user( userId, userToAccount[userId] )
+      }
+
+      @Override
+      protected ReportingAccount getAccountById( String accountId ) {
+        account( accountId )
+      }
+    }
+  }
+
+  private <T> List<T> range( List<T> items, long startInclusive, long endExclusive ) {
+    items.subList( lowerBound( items, startInclusive ), lowerBound( items, endExclusive ) )
+  }
+
+  private int lowerBound( List<?> items, long timestamp ) {
+    int low = 0
+    int high = items.size( )
+    while ( low < high ) {
+      int mid = ( low + high ) >>> 1
+      if ( items[mid].getTimestampMs( ) < timestamp ) {
+        low = mid + 1
+      } else {
+        high = mid
+      }
+    }
+    low
+  }
+
+  private String describe( ReportArtEntity art ) {
+    List<String> lines = []
+    describe( "art", art, lines )
+    lines.sort( ).join( "\n" )
+  }
+
+  private void describe( String prefix, Object object, List<String> lines ) {
+    if ( object == null || object instanceof String || object instanceof Number || object instanceof Boolean ) {
+      lines << prefix + " = " + object
+    } else if ( object instanceof Map ) {
+      ((Map)object).each { name, value -> describe( prefix + "." + name, value, lines ) }
+    } else {
+      object.properties.each { name, value ->
+        if ( !"class".equals( name ) ) describe( prefix + "." + name, value, lines )
+      }
+    }
+  }
+
+  @SuppressWarnings("GroovyAccessibility")
+  private ReportingInstanceCreateEvent instanceCreate( String instanceId,
+                                                       String userId,
+                                                       long timestamp,
+                                                       String vmType,
+                                                       String zone ) {
+    new ReportingInstanceCreateEvent( uuid(instanceId), instanceId, timestamp, vmType, userId, zone )
+  }
+
+  @SuppressWarnings("GroovyAccessibility")
+  private ReportingInstanceUsageEvent instanceUsage( String instanceId,
+                                                     String metric,
+                                                     long sequenceNum,
+                                                     String dimension,
+                                                     double value,
+                                                     long timestamp ) {
+    new ReportingInstanceUsageEvent( uuid(instanceId), metric, sequenceNum, dimension, value, timestamp )
+  }
+
+  @SuppressWarnings("GroovyAccessibility")
+  private ReportingUser user( String id, String accountId ) {
+    new ReportingUser( id, accountId, id + "-name" )
+  }
+
+  @SuppressWarnings("GroovyAccessibility")
+  private ReportingAccount account( String id ) {
+    new ReportingAccount( id, id + "-name" )
+  }
+
+  private String uuid( String seed ) {
+    UUID.nameUUIDFromBytes( seed.getBytes( Charsets.UTF_8 ) ).toString( )
+  }
+}
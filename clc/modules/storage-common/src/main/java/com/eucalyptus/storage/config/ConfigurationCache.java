@@ -20,33 +20,38 @@
 
 package com.eucalyptus.storage.config;
 
-import java.util.concurrent.TimeUnit;
+import java.util.NoSuchElementException;
 
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.util.Exceptions;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.base.Supplier;
 
 /**
  * Created by zhill on 5/5/14.
  *
  * A repository of configuration entities to be updated periodically and to get the current cached value
+ *
+ * Entries are held as configuration snapshots so they are invalidated when the configuration is modified.
  */
 public class ConfigurationCache {
-  private static final long ENTRY_EXPIRATION_TIME_SEC = 5l; // 5 seconds for each entry's valid period
 
-  protected static final LoadingCache<Class<? extends CacheableConfiguration>, CacheableConfiguration> configCache = CacheBuilder.newBuilder()
-      .refreshAfterWrite(ENTRY_EXPIRATION_TIME_SEC, TimeUnit.SECONDS)
-      .build(new CacheLoader<Class<? extends CacheableConfiguration>, CacheableConfiguration>() {
+  @SuppressWarnings("unchecked")
+  public static <T extends CacheableConfiguration> T getConfiguration(final Class<T> configType) {
+    try {
+      final T configuration = ConfigurationSnapshots.get(configType, "", new Supplier<T>() {
         @Override
-        public CacheableConfiguration load(Class<? extends CacheableConfiguration> aClass) throws Exception {
-          return (CacheableConfiguration) (aClass.newInstance()).getLatest();
+        public T get() {
+          try {
+            return (T) configType.newInstance().getLatest();
+          } catch (InstantiationException | IllegalAccessException e) {
+            throw Exceptions.toUndeclared(e);
+          }
         }
       });
-
-  public static <T extends CacheableConfiguration> T getConfiguration(Class<T> configType) {
-    try {
-      return (T) configCache.get(configType);
+      if (configuration == null) {
+        throw new NoSuchElementException(configType.getName());
+      }
+      return configuration;
     } catch (Throwable f) {
       throw Exceptions.toUndeclared("No configuration entry found for type " + configType.getName(), f);
     }
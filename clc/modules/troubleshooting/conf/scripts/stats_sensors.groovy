@@ -40,6 +40,10 @@ threadTtlSeconds = threadPollingIntervalSeconds + default_ext
 dbPollingIntervalSeconds = 60
 dbTtlSeconds = dbPollingIntervalSeconds + default_ext
 
+//Db transaction costs, only available when transaction profiling is enabled
+dbTransactionPollingIntervalSeconds = 60
+dbTransactionTtlSeconds = dbTransactionPollingIntervalSeconds + default_ext
+
 contextsIntervalSeconds = 60
 contextsEventTtlSeconds = contextsIntervalSeconds + default_ext
 
@@ -47,6 +51,7 @@ return [ ] +
         Sensors.JvmMemorySensors(memoryUsagePollingIntervalSeconds, memoryUsageTtlSeconds) +
         Sensors.JvmThreadSensors(threadPollingIntervalSeconds, threadTtlSeconds) +
         Sensors.DbConnectionPoolSensors(dbPollingIntervalSeconds, dbTtlSeconds) +
+        Sensors.DbTransactionSensors(dbTransactionPollingIntervalSeconds, dbTransactionTtlSeconds) +
         Sensors.ComponentsSensor(componentsPollingIntervalSeconds, componentsCheckTtlSeconds) +
         Sensors.ContextSensor(contextsIntervalSeconds, contextsEventTtlSeconds)
 
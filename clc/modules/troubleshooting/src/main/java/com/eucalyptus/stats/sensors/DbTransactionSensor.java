@@ -0,0 +1,67 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.stats.sensors;
+
+import com.eucalyptus.entities.TransactionProfiler;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Database transaction costs by operation or background task, when
+ * transaction profiling is enabled.
+ */
+public enum DbTransactionSensor implements Callable<Map<String, Object>> {
+    INSTANCE {
+        @Override
+        public Map<String, Object> call() throws Exception {
+            Map<String, Object> results = Maps.newTreeMap();
+            for (Map.Entry<String, TransactionProfiler.Statistics> entry : TransactionProfiler.getStatistics().entrySet()) {
+                String prefix = entry.getKey() + ".";
+                TransactionProfiler.Statistics statistics = entry.getValue();
+                results.put(prefix + "TransactionCount", statistics.getTransactions());
+                results.put(prefix + "RollbackCount", statistics.getRollbacks());
+                results.put(prefix + "SlowTransactionCount", statistics.getSlowTransactions());
+                results.put(prefix + "TransactionMillis", statistics.getMillis());
+                results.put(prefix + "MaxTransactionMillis", statistics.getMaxMillis());
+                results.put(prefix + "RecentP50TransactionMillis", statistics.getRecentMillisPercentile(0.5));
+                results.put(prefix + "RecentP99TransactionMillis", statistics.getRecentMillisPercentile(0.99));
+                results.put(prefix + "ConnectionWaitMillis", statistics.getConnectionWaitMillis());
+                results.put(prefix + "StatementMillis", statistics.getStatementMillis());
+                results.put(prefix + "StatementCount", statistics.getStatements());
+                results.put(prefix + "RowCount", statistics.getRows());
+            }
+            return results;
+        }
+    },
+    SLOW {
+        @Override
+        public Map<String, Object> call() throws Exception {
+            Map<String, Object> results = Maps.newTreeMap();
+            int index = 0;
+            for (TransactionProfiler.SlowTransaction slowTransaction : TransactionProfiler.getSlowTransactions()) {
+                results.put("SlowTransaction." + index++, slowTransaction.toString());
+            }
+            return results;
+        }
+    }
+}
@@ -35,6 +35,8 @@ public class Sensors {
     private static final String COMPONENT_NAME_PREFIX = "euca.components";
     private static final String CONTEXT_SENSOR_NAME = COMPONENT_NAME_PREFIX + ".message_contexts";
     private static final String DB_POOL_SENSOR_NAME = "euca.db.connection_pools";
+    private static final String DB_TRANSACTION_SENSOR_NAME = "euca.db.transactions";
+    private static final String DB_SLOW_TRANSACTION_SENSOR_NAME = "euca.db.transactions.slow";
     private static final String MEMORY_NAME_PREFIX = "euca.jvm.memory";
     private static final String THREAD_SENSOR_NAME = "euca.jvm.threads.state";
     private static final String MEMORY_GENERAL_SENSOR_NAME = MEMORY_NAME_PREFIX + ".general";
@@ -45,6 +47,7 @@ public class Sensors {
     private static final List<String> DEFAULT_MEM_HEAP_TAGS = Lists.newArrayList("memory", "jvm", "heap", "non-heap");
     private static final List<String> DEFAULT_THREAD_TAGS = Lists.newArrayList("threads", "jvm");
     private static final List<String> DEFAULT_DB_TAGS = Lists.newArrayList("db", "connection_count");
+    private static final List<String> DEFAULT_DB_TRANSACTION_TAGS = Lists.newArrayList("db", "transactions");
 
     public static String pollingIntervalTag(long intervalSec) {
         return "polling_interval: " + String.valueOf(intervalSec) + " sec";
@@ -149,6 +152,41 @@ public class Sensors {
         return poolSensors;
     }
 
+    /**
+     * Sensors for database transaction costs and slow transaction samples. Values
+     * are only available when transaction profiling is enabled (bootstrap.tx.profiling_enabled)
+     *
+     * @param pollingInterval
+     * @param ttl
+     * @return
+     */
+    public static List<SensorEntry> DbTransactionSensors(final long pollingInterval, final long ttl) {
+        List<SensorEntry> transactionSensors = Lists.newArrayList();
+        LOG.info("Building Db transaction sensors with ttl " + ttl + "sec and polling interval " + pollingInterval + "sec");
+        List<String> tags = Lists.newArrayList();
+        tags.addAll(DEFAULT_DB_TRANSACTION_TAGS);
+        tags.add(pollingIntervalTag(pollingInterval));
+        try {
+            transactionSensors.add(new SensorEntry(BaseStatsSensor.buildSensor(DB_TRANSACTION_SENSOR_NAME,
+                    "Db transaction costs by operation or background task",
+                    tags,
+                    ttl,
+                    DbTransactionSensor.INSTANCE),
+                    pollingInterval));
+            transactionSensors.add(new SensorEntry(BaseStatsSensor.buildSensor(DB_SLOW_TRANSACTION_SENSOR_NAME,
+                    "Recent slow Db transactions with statements",
+                    tags,
+                    ttl,
+                    DbTransactionSensor.SLOW),
+                    pollingInterval));
+        } catch (Exception e) {
+            LOG.error("Error loading db transaction sensor.");
+            throw Exceptions.toUndeclared(e);
+        }
+
+        return transactionSensors;
+    }
+
     /**
      * Returns a single sensor the runs check on each local service and emits
      * a system metric for that state.
@@ -64,6 +64,7 @@ package com.eucalyptus.walrus.entities;
 
 import java.io.File;
 
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.PersistenceContext;
@@ -73,9 +74,11 @@ import javax.persistence.Table;
 import org.apache.log4j.Logger;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.ConfigurationSnapshots;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.walrus.util.WalrusProperties;
+import com.google.common.base.Supplier;
 
 @Entity
 @PersistenceContext(name = "eucalyptus_walrus")
@@ -236,7 +239,21 @@ public class WalrusInfo extends AbstractPersistent {
         new Boolean(WalrusProperties.BUCKET_NAMES_REQUIRE_DNS_COMPLIANCE));
   }
 
+  /**
+   * Get the configuration snapshot, the returned instance must not be modified.
+   */
   public static WalrusInfo getWalrusInfo() {
+    final WalrusInfo walrusInfo = ConfigurationSnapshots.get(WalrusInfo.class, "", new Supplier<WalrusInfo>() {
+      @Override
+      public WalrusInfo get() {
+        return lookupWalrusInfo();
+      }
+    });
+    return walrusInfo != null ? walrusInfo : generateDefault();
+  }
+
+  @Nullable
+  private static WalrusInfo lookupWalrusInfo() {
     WalrusInfo walrusInfo = null;
     try {
       walrusInfo = Transactions.find(new WalrusInfo());
@@ -253,10 +270,6 @@ public class WalrusInfo extends AbstractPersistent {
       }
     }
 
-    if (walrusInfo == null) {
-      walrusInfo = generateDefault();
-    }
-
     return walrusInfo;
   }
 }
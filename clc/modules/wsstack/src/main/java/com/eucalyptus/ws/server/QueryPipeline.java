@@ -27,13 +27,12 @@ import java.util.Set;
 
 import com.eucalyptus.ws.Handlers;
 import com.eucalyptus.ws.handlers.MessageStackHandler;
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.net.URLCodec;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
+import com.eucalyptus.http.HttpParameters;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.util.Strings;
 import com.eucalyptus.ws.protocol.RequiredQueryParams;
@@ -86,22 +85,7 @@ public abstract class QueryPipeline extends FilteredPipeline {
           if ( httpRequest.getMethod( ).equals( HttpMethod.POST ) ) {
             final Map<String, String> parameters = new HashMap<String, String>( httpRequest.getParameters( ) );
             final Set<String> nonQueryParameters = Sets.newHashSet( );
-            final String query = httpRequest.getContentAsString( true );
-            for ( String p : query.split( "&" ) ) {
-              String[] splitParam = p.split( "=", 2 );
-              String lhs = splitParam[ 0 ];
-              String rhs = splitParam.length == 2 ? splitParam[ 1 ] : null;
-              try {
-                if ( lhs != null ) lhs = new URLCodec( ).decode( lhs );
-              } catch ( DecoderException e ) {
-              }
-              try {
-                if ( rhs != null ) rhs = new URLCodec( ).decode( rhs );
-              } catch ( DecoderException e ) {
-              }
-              parameters.put( lhs, rhs );
-              nonQueryParameters.add( lhs );
-            }
+            HttpParameters.parse( httpRequest.getContent( ), parameters, nonQueryParameters );
             httpRequest.getParameters( ).putAll( parameters );
             httpRequest.addNonQueryParameterKeys( nonQueryParameters );
           }